@@ -0,0 +1,19 @@
+package com.example.bankrest.archive;
+
+/**
+ * Колонка архивного файла. Значения LONG не могут быть null, STRING — могут.
+ */
+public record Column(String name, Type type) {
+
+    public static Column ofLong(String name) {
+        return new Column(name, Type.LONG);
+    }
+
+    public static Column ofString(String name) {
+        return new Column(name, Type.STRING);
+    }
+
+    public enum Type {
+        LONG, STRING
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.bankrest.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Блок колоночного файла. Колонки распаковываются лениво, при первом обращении, поэтому
+ * колонки, не нужные запросу или не дошедшие до проверки, не распаковываются вовсе.
+ */
+public final class ColumnarBlock {
+    private final List<Column> columns;
+    private final int rows;
+    private final long[] min;
+    private final long[] max;
+    private final Object[] decoded;
+    private byte[][] data;
+
+    ColumnarBlock(List<Column> columns, int rows, long[] min, long[] max) {
+        this.columns = columns;
+        this.rows = rows;
+        this.min = min;
+        this.max = max;
+        this.decoded = new Object[columns.size()];
+    }
+
+    void attach(byte[][] data) {
+        this.data = data;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public long min(int column) {
+        requireType(column, Column.Type.LONG);
+        return min[column];
+    }
+
+    public long max(int column) {
+        requireType(column, Column.Type.LONG);
+        return max[column];
+    }
+
+    /**
+     * Может ли числовая колонка блока содержать значение.
+     */
+    public boolean mayContain(int column, long value) {
+        return min(column) <= value && value <= max(column);
+    }
+
+    public long[] longs(int column) {
+        requireType(column, Column.Type.LONG);
+        if (decoded[column] == null) {
+            decoded[column] = decodeLongs(column);
+        }
+        return (long[]) decoded[column];
+    }
+
+    public String[] strings(int column) {
+        requireType(column, Column.Type.STRING);
+        if (decoded[column] == null) {
+            decoded[column] = decodeStrings(column);
+        }
+        return (String[]) decoded[column];
+    }
+
+    private long[] decodeLongs(int column) {
+        long[] values = new long[rows];
+        Inflater inflater = new Inflater();
+        try (InputStream in = inflate(column, inflater)) {
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                long zigZag = readVarLong(in);
+                previous += (zigZag >>> 1) ^ -(zigZag & 1);
+                values[i] = previous;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+        return values;
+    }
+
+    private String[] decodeStrings(int column) {
+        String[] values = new String[rows];
+        Inflater inflater = new Inflater();
+        try (InputStream in = inflate(column, inflater)) {
+            for (int i = 0; i < rows; i++) {
+                long length = readVarLong(in);
+                values[i] = length == 0 ? null : new String(in.readNBytes((int) (length - 1)), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+        return values;
+    }
+
+    private InputStream inflate(int column, Inflater inflater) {
+        if (data == null) {
+            throw new IllegalStateException("Block data was skipped");
+        }
+        return new InflaterInputStream(new ByteArrayInputStream(data[column]), inflater, 8192);
+    }
+
+    private void requireType(int column, Column.Type type) {
+        if (columns.get(column).type() != type) {
+            throw new IllegalArgumentException("Column " + columns.get(column).name() + " is not " + type);
+        }
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of column data");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in column data");
+    }
+}
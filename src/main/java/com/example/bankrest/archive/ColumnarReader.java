@@ -0,0 +1,68 @@
+package com.example.bankrest.archive;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Читает файл, записанный {@link ColumnarWriter}. Фильтр блока видит только заголовок с минимумами
+ * и максимумами колонок; отвергнутый блок пропускается без чтения и распаковки данных.
+ */
+public final class ColumnarReader {
+
+    private ColumnarReader() {
+    }
+
+    public static void read(Path path, Predicate<ColumnarBlock> blockFilter, Consumer<ColumnarBlock> consumer)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            List<Column> columns = readHeader(in, path);
+            int rows;
+            while ((rows = in.readInt()) > 0) {
+                long[] min = new long[columns.size()];
+                long[] max = new long[columns.size()];
+                int[] lengths = new int[columns.size()];
+                long dataLength = 0;
+                for (int i = 0; i < columns.size(); i++) {
+                    if (columns.get(i).type() == Column.Type.LONG) {
+                        min[i] = in.readLong();
+                        max[i] = in.readLong();
+                    }
+                    lengths[i] = in.readInt();
+                    dataLength += lengths[i];
+                }
+                ColumnarBlock block = new ColumnarBlock(columns, rows, min, max);
+                if (!blockFilter.test(block)) {
+                    in.skipNBytes(dataLength);
+                    continue;
+                }
+                byte[][] data = new byte[columns.size()][];
+                for (int i = 0; i < columns.size(); i++) {
+                    data[i] = in.readNBytes(lengths[i]);
+                }
+                block.attach(data);
+                consumer.accept(block);
+            }
+        }
+    }
+
+    private static List<Column> readHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != ColumnarWriter.MAGIC || in.readByte() != ColumnarWriter.VERSION) {
+            throw new IOException("Not a columnar archive file: " + path);
+        }
+        int count = in.readUnsignedShort();
+        List<Column> columns = new ArrayList<>(count);
+        Column.Type[] types = Column.Type.values();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            columns.add(new Column(name, types[in.readUnsignedByte()]));
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.bankrest.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Пишет строки в колоночный файл блоками по blockRows строк. Каждая колонка блока сжимается
+ * отдельно: числа хранятся разностями с предыдущим значением, поэтому отсортированные колонки
+ * сжимаются особенно хорошо. Для числовых колонок в заголовке блока хранятся минимум и максимум,
+ * по которым читатель пропускает блоки, не распаковывая их.
+ * <p>
+ * Файл пишется во временный и переименовывается только в {@link #commit()}, поэтому под итоговым
+ * именем никогда не бывает недописанного файла.
+ *
+ * <pre>
+ * файл:  MAGIC, VERSION, число колонок, (имя, тип)*, блок*, 0, всего строк
+ * блок:  число строк, ([min, max для LONG], длина сжатых данных)*, сжатые данные колонок*
+ * </pre>
+ */
+public class ColumnarWriter implements AutoCloseable {
+    static final int MAGIC = 0x42434F4C;
+    static final byte VERSION = 1;
+
+    private final Path path;
+    private final Path tempPath;
+    private final List<Column> columns;
+    private final int blockRows;
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+    private final long[][] longs;
+    private final String[][] strings;
+
+    private int buffered;
+    private long rowCount;
+    private boolean committed;
+
+    public ColumnarWriter(Path path, List<Column> columns, int blockRows) throws IOException {
+        if (blockRows < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.path = path;
+        this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        this.columns = List.copyOf(columns);
+        this.blockRows = blockRows;
+        this.longs = new long[columns.size()][];
+        this.strings = new String[columns.size()][];
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).type() == Column.Type.LONG) {
+                longs[i] = new long[blockRows];
+            } else {
+                strings[i] = new String[blockRows];
+            }
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.file = new FileOutputStream(tempPath.toFile());
+        this.out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(columns.size());
+        for (Column column : columns) {
+            out.writeUTF(column.name());
+            out.writeByte(column.type().ordinal());
+        }
+    }
+
+    /**
+     * Добавляет строку; значения перечисляются в порядке колонок: Long для LONG, String для STRING.
+     */
+    public void append(Object... values) throws IOException {
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (longs[i] != null) {
+                longs[i][buffered] = (Long) values[i];
+            } else {
+                strings[i][buffered] = (String) values[i];
+            }
+        }
+        buffered++;
+        rowCount++;
+        if (buffered == blockRows) {
+            flushBlock();
+        }
+    }
+
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Дописывает последний блок, сбрасывает файл на диск и переименовывает его в итоговый.
+     */
+    public void commit() throws IOException {
+        flushBlock();
+        out.writeInt(0);
+        out.writeLong(rowCount);
+        out.flush();
+        file.getChannel().force(true);
+        out.close();
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        committed = true;
+    }
+
+    /**
+     * Без {@link #commit()} временный файл удаляется.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            out.close();
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        byte[][] encoded = new byte[columns.size()][];
+        for (int i = 0; i < columns.size(); i++) {
+            encoded[i] = longs[i] != null ? encodeLongs(longs[i], buffered) : encodeStrings(strings[i], buffered);
+        }
+        out.writeInt(buffered);
+        for (int i = 0; i < columns.size(); i++) {
+            if (longs[i] != null) {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int row = 0; row < buffered; row++) {
+                    min = Math.min(min, longs[i][row]);
+                    max = Math.max(max, longs[i][row]);
+                }
+                out.writeLong(min);
+                out.writeLong(max);
+            }
+            out.writeInt(encoded[i].length);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+        buffered = 0;
+    }
+
+    private static byte[] encodeLongs(long[] values, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream compressed = new DeflaterOutputStream(bytes, deflater, 8192)) {
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                writeVarLong(compressed, zigZag(values[i] - previous));
+                previous = values[i];
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeStrings(String[] values, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream compressed = new DeflaterOutputStream(bytes, deflater, 8192)) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] == null) {
+                    writeVarLong(compressed, 0);
+                } else {
+                    byte[] utf8 = values[i].getBytes(StandardCharsets.UTF_8);
+                    writeVarLong(compressed, utf8.length + 1L);
+                    compressed.write(utf8);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(DeflaterOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.bankrest.config;
 
 import com.example.bankrest.security.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,10 +34,13 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Повторная диспетчеризация потоковых ответов уже прошла проверку в исходном запросе
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .requestMatchers("/api/auth/**", "/swagger-ui/**", "/v3/api-docs/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/cards/**").hasAnyRole("USER", "ADMIN")
                 .requestMatchers("/api/cards/**").hasAnyRole("USER", "ADMIN")
                 .requestMatchers("/api/users/**").hasRole("ADMIN")
+                .requestMatchers("/api/limits/**").hasRole("ADMIN")
                 .requestMatchers("/api/transfers/**").hasAnyRole("USER", "ADMIN")
                 .requestMatchers("/api/card-block-requests/**").hasAnyRole("USER", "ADMIN")
                 .anyRequest().authenticated()
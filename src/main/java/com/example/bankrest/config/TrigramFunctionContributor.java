@@ -0,0 +1,20 @@
+package com.example.bankrest.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Функция trgm_similar(a, b) для запросов JPA: оператор pg_trgm a % b, истинный, когда строки похожи по
+ * триграммам сильнее порога pg_trgm.similarity_threshold. В отличие от функции similarity() оператор
+ * использует GIN-индекс с gin_trgm_ops.
+ */
+public class TrigramFunctionContributor implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        functionContributions.getFunctionRegistry().registerPattern("trgm_similar", "(?1 % ?2)",
+                functionContributions.getTypeConfiguration().getBasicTypeRegistry()
+                        .resolve(StandardBasicTypes.BOOLEAN));
+    }
+}
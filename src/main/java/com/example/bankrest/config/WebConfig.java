@@ -0,0 +1,29 @@
+package com.example.bankrest.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Сессия JPA на весь запрос (spring.jpa.open-in-view) выключена: открытая сессия держит соединение пула
+ * до конца запроса, и перевод, ожидающий блокировку карты, занимал бы соединение всё время ожидания.
+ * Для остальных запросов сессия открывается здесь же, потому что их ответы читают ленивые связи.
+ * Ответы переводов собираются из уже загруженных данных и сессии не требуют.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor)
+                .excludePathPatterns("/api/transfers", "/api/transfers/batch");
+    }
+}
@@ -1,11 +1,11 @@
 package com.example.bankrest.controller;
 
+import com.example.bankrest.dto.PageResponse;
 import com.example.bankrest.entity.CardBlockRequest;
 import com.example.bankrest.service.CardBlockRequestService;
 import jakarta.validation.Valid;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -45,16 +45,33 @@ public class CardBlockRequestController {
      */
     @GetMapping("/my")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Page<CardBlockRequest>> getMyRequests(
+    public ResponseEntity<PageResponse<CardBlockRequest>> getMyRequests(
             @AuthenticationPrincipal String username,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
         if (page < 0) throw new IllegalArgumentException("Page number must be 0 or greater");
         if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<CardBlockRequest> requests = blockRequestService.getUserRequests(username, pageable);
+        PageResponse<CardBlockRequest> requests = blockRequestService.getUserRequests(username, pageable, withTotal);
+        return ResponseEntity.ok(requests);
+    }
+
+    /**
+     * Получить запросы пользователя по курсору (для пользователя). Пустой after запрашивает первую страницу.
+     */
+    @GetMapping(value = "/my", params = "after")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<PageResponse<CardBlockRequest>> getMyRequestsAfter(
+            @AuthenticationPrincipal String username,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        
+        PageResponse<CardBlockRequest> requests = blockRequestService.getUserRequestsAfter(username, after, size);
         return ResponseEntity.ok(requests);
     }
 
@@ -63,15 +80,31 @@ public class CardBlockRequestController {
      */
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<CardBlockRequest>> getAllRequests(
+    public ResponseEntity<PageResponse<CardBlockRequest>> getAllRequests(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
         if (page < 0) throw new IllegalArgumentException("Page number must be 0 or greater");
         if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<CardBlockRequest> requests = blockRequestService.getAllRequests(pageable);
+        PageResponse<CardBlockRequest> requests = blockRequestService.getAllRequests(pageable, withTotal);
+        return ResponseEntity.ok(requests);
+    }
+
+    /**
+     * Получить все запросы по курсору (для администратора).
+     */
+    @GetMapping(params = "after")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PageResponse<CardBlockRequest>> getAllRequestsAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        
+        PageResponse<CardBlockRequest> requests = blockRequestService.getAllRequestsAfter(after, size);
         return ResponseEntity.ok(requests);
     }
 
@@ -80,16 +113,34 @@ public class CardBlockRequestController {
      */
     @GetMapping("/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<CardBlockRequest>> getRequestsByStatus(
+    public ResponseEntity<PageResponse<CardBlockRequest>> getRequestsByStatus(
             @PathVariable CardBlockRequest.BlockRequestStatus status,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         
         if (page < 0) throw new IllegalArgumentException("Page number must be 0 or greater");
         if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<CardBlockRequest> requests = blockRequestService.getRequestsByStatus(status, pageable);
+        PageResponse<CardBlockRequest> requests =
+                blockRequestService.getRequestsByStatus(status, pageable, withTotal);
+        return ResponseEntity.ok(requests);
+    }
+
+    /**
+     * Получить запросы по статусу по курсору (для администратора).
+     */
+    @GetMapping(value = "/status/{status}", params = "after")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PageResponse<CardBlockRequest>> getRequestsByStatusAfter(
+            @PathVariable CardBlockRequest.BlockRequestStatus status,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size) {
+        
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        
+        PageResponse<CardBlockRequest> requests = blockRequestService.getRequestsByStatusAfter(status, after, size);
         return ResponseEntity.ok(requests);
     }
 
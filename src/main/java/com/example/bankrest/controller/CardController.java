@@ -1,21 +1,41 @@
 package com.example.bankrest.controller;
 
+import com.example.bankrest.dto.BulkCardIssueResultDto;
+import com.example.bankrest.dto.BulkCardStatusResultDto;
+import com.example.bankrest.dto.CardDto;
+import com.example.bankrest.dto.CardSearchFilter;
+import com.example.bankrest.dto.CardTurnoverDto;
+import com.example.bankrest.dto.PageResponse;
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferStatementFormat;
 import com.example.bankrest.entity.*;
 import com.example.bankrest.entity.CardOperationHistory;
+import com.example.bankrest.security.CardAccess;
+import com.example.bankrest.service.CardBulkStatusService;
 import com.example.bankrest.service.CardService;
 import com.example.bankrest.service.UserService;
 import com.example.bankrest.service.TransferService;
 import com.example.bankrest.service.CardOperationHistoryService;
+import com.example.bankrest.service.CardTurnoverService;
+import com.example.bankrest.service.TransferStatementService;
 import jakarta.validation.Valid;
 import lombok.*;
 import org.springframework.data.domain.*;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.constraints.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/cards")
@@ -26,33 +46,100 @@ public class CardController {
     private final UserService userService;
     private final TransferService transferService;
     private final CardOperationHistoryService operationHistoryService;
+    private final TransferStatementService statementService;
+    private final CardTurnoverService turnoverService;
+    private final CardAccess cardAccess;
+    private final CardBulkStatusService bulkStatusService;
 
     @GetMapping("/all")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Page<Card>> getAllCards(
+    public ResponseEntity<PageResponse<CardDto>> getAllCards(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         if (page < 0) throw new IllegalArgumentException("Page number must be 0 or greater");
         if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
         Pageable pageable = PageRequest.of(page, size);
-        Page<Card> cards = cardService.getAllCards(pageable);
+        PageResponse<CardDto> cards = cardService.getAllCards(pageable, withTotal);
         return ResponseEntity.ok(cards);
     }
 
+    /**
+     * Все карты по курсору. Пустой after запрашивает первую страницу.
+     */
+    @GetMapping(value = "/all", params = "after")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PageResponse<CardDto>> getAllCardsAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size) {
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        return ResponseEntity.ok(cardService.getAllCardsAfter(after, size));
+    }
+
+    /**
+     * Поиск карт по статусу, сроку действия, имени владельца, последним цифрам номера и пользователю.
+     * Фильтры необязательны и объединяются по И; результат читается по курсору в порядке id.
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<PageResponse<CardDto>> searchCards(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiryFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate expiryTo,
+            @RequestParam(required = false) String owner,
+            @RequestParam(defaultValue = "prefix") String ownerMatch,
+            @RequestParam(required = false) String last4,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "") String after,
+            @RequestParam(defaultValue = "10") int size) {
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        CardSearchFilter filter = CardSearchFilter.builder()
+                .status(CardSearchFilter.statusFromParam(status))
+                .expiryFrom(expiryFrom)
+                .expiryTo(expiryTo)
+                .owner(owner)
+                .ownerMatch(CardSearchFilter.OwnerMatch.fromParam(ownerMatch))
+                .last4(last4)
+                .userId(userId)
+                .build();
+        return ResponseEntity.ok(cardService.searchCards(filter, after, size));
+    }
+
+    /**
+     * Поиск карты по полному номеру. Номер передаётся в теле запроса, чтобы не попадать в журналы URL.
+     */
+    @PostMapping("/lookup")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CardDto> lookupCard(@RequestBody @Valid CardLookupRequest request) {
+        return ResponseEntity.ok(cardService.getCardByNumber(request.getCardNumber()));
+    }
+
     @GetMapping
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Page<Card>> getUserCards(
+    public ResponseEntity<PageResponse<CardDto>> getUserCards(
             @AuthenticationPrincipal String username,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         if (page < 0) throw new IllegalArgumentException("Page number must be 0 or greater");
         if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
         User user = userService.getUserByUsername(username);
         Pageable pageable = PageRequest.of(page, size);
-        Page<Card> cards = cardService.getCardsByUser(user, pageable);
+        PageResponse<CardDto> cards = cardService.getCardsByUser(user, pageable, withTotal);
         return ResponseEntity.ok(cards);
     }
 
+    @GetMapping(params = "after")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<PageResponse<CardDto>> getUserCardsAfter(
+            @AuthenticationPrincipal String username,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size) {
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        User user = userService.getUserByUsername(username);
+        return ResponseEntity.ok(cardService.getCardsByUserAfter(user, after, size));
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> createCard(@RequestBody @Valid CreateCardRequest request) {
@@ -67,43 +154,156 @@ public class CardController {
         }
     }
 
+    /**
+     * Выпуск пакета карт одной транзакцией: при ошибке в любой карте не выпускается ни одна.
+     * В ответе только число выпущенных карт и их id.
+     */
+    @PostMapping("/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkCardIssueResultDto> createCards(
+            @AuthenticationPrincipal String username,
+            @RequestBody @Valid BulkCreateCardRequest request) {
+        User issuedBy = userService.getUserByUsername(username);
+        Map<String, User> users = userService.getUsersByUsernames(request.getCards().stream()
+                .map(CreateCardRequest::getUsername)
+                .toList());
+        List<CardService.NewCard> newCards = request.getCards().stream()
+                .map(item -> new CardService.NewCard(item.getCardNumber(), item.getOwner(), item.getExpiryDate(),
+                        users.get(item.getUsername())))
+                .toList();
+        List<Card> issued = cardService.createCards(newCards, issuedBy);
+        return ResponseEntity.ok(BulkCardIssueResultDto.builder()
+                .issued(issued.size())
+                .cardIds(issued.stream().map(Card::getId).toList())
+                .build());
+    }
+
     @GetMapping("/{cardId}/transfers")
     @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
-    public ResponseEntity<Page<Transfer>> getCardTransfers(
+    public ResponseEntity<PageResponse<Transfer>> getCardTransfers(
             @PathVariable Long cardId,
             @AuthenticationPrincipal String username,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "both") String direction,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         if (page < 0) throw new IllegalArgumentException("Page number must be 0 or greater");
         if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        TransferDirection transferDirection = TransferDirection.fromParam(direction);
         Pageable pageable = PageRequest.of(page, size);
-        Card card = cardService.getCardById(cardId);
-        User user = userService.getUserByUsername(username);
-        boolean isAdmin = user.getRoles().stream().anyMatch(r -> r.name().equals("ADMIN"));
-        if (!isAdmin && !card.getUser().getId().equals(user.getId())) {
+        if (!cardAccess.canAccess(username, List.of(cardId))) {
             return ResponseEntity.status(403).build();
         }
-        Page<Transfer> transfers = transferService.getTransfersFromCard(cardId, pageable);
+        PageResponse<Transfer> transfers =
+                transferService.getCardTransfers(cardId, transferDirection, from, to, pageable, withTotal);
         return ResponseEntity.ok(transfers);
     }
 
+    @GetMapping(value = "/{cardId}/transfers", params = "after")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<PageResponse<Transfer>> getCardTransfersAfter(
+            @PathVariable Long cardId,
+            @AuthenticationPrincipal String username,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "both") String direction,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        TransferDirection transferDirection = TransferDirection.fromParam(direction);
+        if (!cardAccess.canAccess(username, List.of(cardId))) {
+            return ResponseEntity.status(403).build();
+        }
+        PageResponse<Transfer> transfers = transferService.getCardTransfersAfter(
+                cardId, transferDirection, from, to, after, size);
+        return ResponseEntity.ok(transfers);
+    }
+
+    /**
+     * Выписка по всем переводам карты за период одним потоком, без постраничного деления.
+     */
+    @GetMapping("/{cardId}/transfers/export")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<StreamingResponseBody> exportCardTransfers(
+            @PathVariable Long cardId,
+            @AuthenticationPrincipal String username,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "both") String direction,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        TransferStatementFormat statementFormat = TransferStatementFormat.fromParam(format);
+        TransferDirection transferDirection = TransferDirection.fromParam(direction);
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new IllegalArgumentException("Start of period must be before its end");
+        }
+        if (!cardAccess.canAccess(username, List.of(cardId))) {
+            return ResponseEntity.status(403).build();
+        }
+        StreamingResponseBody body = out ->
+                statementService.export(cardId, transferDirection, from, to, statementFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(statementFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("card-" + cardId + "-transfers." + statementFormat.getExtension())
+                        .build().toString())
+                .body(body);
+    }
+
+    /**
+     * Сумма и количество списаний и зачислений по карте за период с разбивкой по дням или месяцам.
+     * По умолчанию возвращается текущий месяц.
+     */
+    @GetMapping("/{cardId}/turnover")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<CardTurnoverDto> getCardTurnover(
+            @PathVariable Long cardId,
+            @AuthenticationPrincipal String username,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String groupBy) {
+        CardTurnoverDto.Grouping grouping = CardTurnoverDto.Grouping.fromParam(groupBy);
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.withDayOfMonth(1);
+        if (!cardAccess.canAccess(username, List.of(cardId))) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(turnoverService.getTurnover(cardId, start, end, grouping));
+    }
+
     @GetMapping("/{cardId}/history")
     @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
-    public ResponseEntity<Page<CardOperationHistory>> getCardHistory(
+    public ResponseEntity<PageResponse<CardOperationHistory>> getCardHistory(
             @PathVariable Long cardId,
             @AuthenticationPrincipal String username,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         if (page < 0) throw new IllegalArgumentException("Page number must be 0 or greater");
         if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
         Pageable pageable = PageRequest.of(page, size);
-        Card card = cardService.getCardById(cardId);
-        User user = userService.getUserByUsername(username);
-        boolean isAdmin = user.getRoles().stream().anyMatch(r -> r.name().equals("ADMIN"));
-        if (!isAdmin && !card.getUser().getId().equals(user.getId())) {
+        if (!cardAccess.canAccess(username, List.of(cardId))) {
+            return ResponseEntity.status(403).build();
+        }
+        PageResponse<CardOperationHistory> history =
+                operationHistoryService.getCardHistory(cardService.getCardReference(cardId), pageable, withTotal);
+        return ResponseEntity.ok(history);
+    }
+
+    @GetMapping(value = "/{cardId}/history", params = "after")
+    @PreAuthorize("hasAnyRole('ADMIN', 'USER')")
+    public ResponseEntity<PageResponse<CardOperationHistory>> getCardHistoryAfter(
+            @PathVariable Long cardId,
+            @AuthenticationPrincipal String username,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size) {
+        if (size < 1 || size > 100) throw new IllegalArgumentException("Page size must be between 1 and 100");
+        if (!cardAccess.canAccess(username, List.of(cardId))) {
             return ResponseEntity.status(403).build();
         }
-        Page<CardOperationHistory> history = operationHistoryService.getCardHistory(card, pageable);
+        PageResponse<CardOperationHistory> history =
+                operationHistoryService.getCardHistoryAfter(cardService.getCardReference(cardId), after, size);
         return ResponseEntity.ok(history);
     }
 
@@ -123,6 +323,31 @@ public class CardController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Массовая блокировка карт по списку id или всех карт пользователя, порциями без загрузки сущностей.
+     */
+    @PostMapping("/bulk/block")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkCardStatusResultDto> blockCards(
+            @AuthenticationPrincipal String username,
+            @RequestBody @Valid BulkCardStatusRequest request) {
+        User performedBy = userService.getUserByUsername(username);
+        return ResponseEntity.ok(bulkStatusService.blockCards(request.getCardIds(), request.getUserId(), performedBy));
+    }
+
+    /**
+     * Массовая активация карт; просроченные карты остаются в прежнем статусе.
+     */
+    @PostMapping("/bulk/activate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<BulkCardStatusResultDto> activateCards(
+            @AuthenticationPrincipal String username,
+            @RequestBody @Valid BulkCardStatusRequest request) {
+        User performedBy = userService.getUserByUsername(username);
+        return ResponseEntity.ok(
+                bulkStatusService.activateCards(request.getCardIds(), request.getUserId(), performedBy));
+    }
+
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteCard(@PathVariable Long id) {
@@ -150,4 +375,29 @@ public class CardController {
         @NotBlank(message = "Username is required")
         private String username;
     }
+
+    @Data
+    public static class BulkCreateCardRequest {
+        @NotEmpty(message = "At least one card is required")
+        @Size(max = CardService.MAX_BULK_SIZE, message = "Bulk issue cannot contain more than 10000 cards")
+        private List<@Valid CreateCardRequest> cards;
+    }
+
+    @Data
+    public static class BulkCardStatusRequest {
+        @Size(max = CardBulkStatusService.MAX_CARD_IDS,
+                message = "Bulk status change cannot contain more than 100000 cards")
+        private List<@NotNull @Positive Long> cardIds;
+
+        @Positive(message = "User ID must be a positive number")
+        private Long userId;
+    }
+
+    @Data
+    public static class CardLookupRequest {
+        @NotBlank(message = "Card number is required")
+        @Pattern(regexp = "^\\d{4}\\s?\\d{4}\\s?\\d{4}\\s?\\d{4}$",
+                message = "Card number must be exactly 16 digits with optional spaces (e.g., 1234 5678 9012 3456)")
+        private String cardNumber;
+    }
 }
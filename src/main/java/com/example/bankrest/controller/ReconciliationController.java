@@ -0,0 +1,31 @@
+package com.example.bankrest.controller;
+
+import com.example.bankrest.dto.BalanceReconciliationDto;
+import com.example.bankrest.service.BalanceReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/reconciliation")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class ReconciliationController {
+
+    private final BalanceReconciliationService reconciliationService;
+
+    /**
+     * Запускает сверку балансов в фоне; ход сверки доступен через GET.
+     */
+    @PostMapping
+    public ResponseEntity<BalanceReconciliationDto> start() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconciliationService.start());
+    }
+
+    @GetMapping
+    public ResponseEntity<BalanceReconciliationDto> getReport() {
+        return ResponseEntity.ok(reconciliationService.report());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankrest.controller;
+
+import com.example.bankrest.entity.LimitPeriod;
+import com.example.bankrest.entity.LimitScope;
+import com.example.bankrest.entity.SpendingLimit;
+import com.example.bankrest.service.SpendingLimitService;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/limits")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class SpendingLimitController {
+
+    private final SpendingLimitService spendingLimitService;
+
+    @GetMapping
+    public ResponseEntity<List<SpendingLimit>> getLimits(
+            @RequestParam LimitScope scope,
+            @RequestParam Long subjectId) {
+        return ResponseEntity.ok(spendingLimitService.getLimits(scope, subjectId));
+    }
+
+    /**
+     * Создаёт лимит или заменяет существующий лимит того же субъекта за тот же период.
+     */
+    @PutMapping
+    public ResponseEntity<SpendingLimit> setLimit(@RequestBody @Valid SpendingLimitRequest request) {
+        return ResponseEntity.ok(spendingLimitService.setLimit(request.getScope(), request.getSubjectId(),
+                request.getPeriod(), request.getMaxAmount(), request.getMaxCount()));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteLimit(@PathVariable Long id) {
+        if (id == null || id <= 0) throw new IllegalArgumentException("Limit ID must be a positive number");
+        spendingLimitService.deleteLimit(id);
+        return ResponseEntity.ok().build();
+    }
+
+    @Data
+    public static class SpendingLimitRequest {
+        @NotNull(message = "Scope is required")
+        private LimitScope scope;
+
+        @NotNull(message = "Subject ID is required")
+        @Positive(message = "Subject ID must be positive")
+        private Long subjectId;
+
+        @NotNull(message = "Period is required")
+        private LimitPeriod period;
+
+        @DecimalMin(value = "0.01", message = "Max amount must be greater than 0")
+        private BigDecimal maxAmount;
+
+        @Positive(message = "Max count must be positive")
+        private Integer maxCount;
+    }
+}
@@ -1,20 +1,29 @@
 package com.example.bankrest.controller;
 
+import com.example.bankrest.dto.BatchTransferResultDto;
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.dto.TransferSubmissionDto;
 import com.example.bankrest.entity.Card;
 import com.example.bankrest.entity.Transfer;
 import com.example.bankrest.entity.User;
+import com.example.bankrest.security.CardAccess;
 import com.example.bankrest.service.CardService;
+import com.example.bankrest.service.TransferIdempotencyService;
 import com.example.bankrest.service.TransferService;
+import com.example.bankrest.service.TransferSubmissionService;
 import com.example.bankrest.service.UserService;
 import jakarta.validation.Valid;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import jakarta.validation.constraints.*;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/transfers")
@@ -22,22 +31,103 @@ import java.math.BigDecimal;
 public class TransferController {
 
     private final TransferService transferService;
+    private final TransferIdempotencyService idempotencyService;
+    private final TransferSubmissionService submissionService;
     private final CardService cardService;
     private final UserService userService;
+    private final CardAccess cardAccess;
 
     @PostMapping
     public ResponseEntity<Transfer> transfer(
             @AuthenticationPrincipal String username,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @RequestBody @Valid TransferRequest request) {
         request.validate();
-        User user = userService.getUserByUsername(username);
-        Card fromCard = cardService.getCardById(request.getFromCardId());
-        Card toCard = cardService.getCardById(request.getToCardId());
-        if (!fromCard.getUser().getId().equals(user.getId()) || !toCard.getUser().getId().equals(user.getId())) {
-            return ResponseEntity.status(403).build();
+        List<Long> cardIds = List.of(request.getFromCardId(), request.getToCardId());
+        if (idempotencyKey == null) {
+            if (!cardAccess.isOwner(username, cardIds)) {
+                return ResponseEntity.status(403).build();
+            }
+            Card fromCard = cardService.getCardById(request.getFromCardId());
+            Card toCard = cardService.getCardById(request.getToCardId());
+            Transfer transfer = transferService.transferBetweenCards(fromCard, toCard, request.getAmount());
+            return responseOf(transfer);
         }
-        Transfer transfer = transferService.transferBetweenCards(fromCard, toCard, request.getAmount());
-        return ResponseEntity.ok(transfer);
+
+        User user = userService.getUserByUsername(username);
+        TransferDto expected = TransferDto.builder()
+                .fromCardId(request.getFromCardId())
+                .toCardId(request.getToCardId())
+                .amount(request.getAmount())
+                .build();
+        Transfer transfer = idempotencyService.execute(user, idempotencyKey, expected, recorder -> {
+            if (!cardAccess.isOwner(username, cardIds)) {
+                throw new AccessDeniedException("Transfers allowed only between own cards");
+            }
+            Card fromCard = cardService.getCardById(request.getFromCardId());
+            Card toCard = cardService.getCardById(request.getToCardId());
+            return transferService.transferBetweenCards(fromCard, toCard, request.getAmount(), recorder);
+        });
+        return responseOf(transfer);
+    }
+
+    /**
+     * Перевод, зачисление которого движок в памяти не подтвердил в срок, уже выполнен
+     * и отдаётся со статусом 202.
+     */
+    private static ResponseEntity<Transfer> responseOf(Transfer transfer) {
+        return transfer.isPending() ? ResponseEntity.accepted().body(transfer) : ResponseEntity.ok(transfer);
+    }
+
+    /**
+     * Асинхронный перевод: запрос ставится в очередь, статус доступен по GET /api/transfers/{requestId}.
+     */
+    @PostMapping("/async")
+    public ResponseEntity<TransferSubmissionDto> submitTransfer(
+            @AuthenticationPrincipal String username,
+            @RequestBody @Valid TransferRequest request) {
+        request.validate();
+        TransferSubmissionDto submission = submissionService.submit(username, TransferDto.builder()
+                .fromCardId(request.getFromCardId())
+                .toCardId(request.getToCardId())
+                .amount(request.getAmount())
+                .build());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/transfers/" + submission.getRequestId()))
+                .body(submission);
+    }
+
+    @GetMapping("/{requestId}")
+    public ResponseEntity<TransferSubmissionDto> getSubmission(
+            @AuthenticationPrincipal String username,
+            @PathVariable String requestId) {
+        return ResponseEntity.ok(submissionService.getSubmission(username, requestId));
+    }
+
+    /**
+     * Пакетный перевод между собственными картами: результат возвращается по каждой инструкции.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchTransferResultDto>> transferBatch(
+            @AuthenticationPrincipal String username,
+            @RequestBody @Valid BatchTransferRequest request) {
+        request.getTransfers().forEach(TransferRequest::validate);
+        User user = userService.getUserByUsername(username);
+        List<TransferDto> instructions = request.getTransfers().stream()
+                .map(item -> TransferDto.builder()
+                        .fromCardId(item.getFromCardId())
+                        .toCardId(item.getToCardId())
+                        .amount(item.getAmount())
+                        .build())
+                .toList();
+        return ResponseEntity.ok(transferService.transferBatch(user.getId(), instructions));
+    }
+
+    @Data
+    public static class BatchTransferRequest {
+        @NotEmpty(message = "At least one transfer is required")
+        @Size(max = TransferService.MAX_BATCH_SIZE, message = "Batch cannot contain more than 1000 transfers")
+        private List<@Valid TransferRequest> transfers;
     }
 
     @Data
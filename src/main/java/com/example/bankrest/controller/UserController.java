@@ -1,12 +1,12 @@
 package com.example.bankrest.controller;
 
+import com.example.bankrest.dto.PageResponse;
 import com.example.bankrest.entity.Role;
 import com.example.bankrest.entity.User;
 import com.example.bankrest.service.UserService;
 import jakarta.validation.Valid;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -38,9 +38,10 @@ public class UserController {
     }
 
     @GetMapping
-    public ResponseEntity<Page<User>> getUsers(
+    public ResponseEntity<PageResponse<User>> getUsers(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
         try {
             if (page < 0) {
                 throw new IllegalArgumentException("Page number must be 0 or greater");
@@ -49,13 +50,23 @@ public class UserController {
                 throw new IllegalArgumentException("Page size must be between 1 and 100");
             }
             Pageable pageable = PageRequest.of(page, size);
-            Page<User> users = userService.getUsers(pageable);
+            PageResponse<User> users = userService.getUsers(pageable, withTotal);
             return ResponseEntity.ok(users);
         } catch (Exception e) {
             throw e;
         }
     }
 
+    @GetMapping(params = "after")
+    public ResponseEntity<PageResponse<User>> getUsersAfter(
+            @RequestParam String after,
+            @RequestParam(defaultValue = "10") int size) {
+        if (size < 1 || size > 100) {
+            throw new IllegalArgumentException("Page size must be between 1 and 100");
+        }
+        return ResponseEntity.ok(userService.getUsersAfter(after, size));
+    }
+
     @Data
     public static class CreateUserRequest {
         @NotBlank(message = "Username is required and cannot be empty")
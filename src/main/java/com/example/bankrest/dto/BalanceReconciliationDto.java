@@ -0,0 +1,52 @@
+package com.example.bankrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Состояние последней сверки балансов. Пока сверка идёт, счётчики показывают её прогресс;
+ * mismatches содержит не больше app.reconciliation.max-reported расхождений, mismatchCount — все.
+ * orphanedLedgerEntries и orphanedIdempotencyKeys считают ссылки на переводы, которых нет в transfers.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceReconciliationDto {
+    private Status status;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long rangesTotal;
+    private long rangesCompleted;
+    private long cardsChecked;
+    private long transfersRead;
+    private long mismatchCount;
+    private long orphanedLedgerEntries;
+    private long orphanedIdempotencyKeys;
+    private String error;
+    private List<Mismatch> mismatches;
+
+    /**
+     * Карта, баланс которой не совпадает с суммой её движений: expected — баланс, следующий
+     * из переводов и корректировок, actual — текущий баланс карты.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Mismatch {
+        private Long cardId;
+        private BigDecimal expected;
+        private BigDecimal actual;
+    }
+
+    public enum Status {
+        IDLE, RUNNING, COMPLETED, FAILED
+    }
+}
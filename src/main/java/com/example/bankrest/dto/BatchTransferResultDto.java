@@ -0,0 +1,28 @@
+package com.example.bankrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResultDto {
+    private int index;
+    private Status status;
+    private Long transferId;
+    private Long fromCardId;
+    private Long toCardId;
+    private BigDecimal amount;
+    private LocalDateTime timestamp;
+    private String message;
+
+    public enum Status {
+        COMPLETED, REJECTED
+    }
+}
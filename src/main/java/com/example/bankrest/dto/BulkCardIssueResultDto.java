@@ -0,0 +1,22 @@
+package com.example.bankrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Итог выпуска пакета карт: число выпущенных карт и их id в порядке запроса. Сами карты
+ * не возвращаются, чтобы ответ на пакет из тысяч карт оставался небольшим; при необходимости
+ * их читают через списки карт.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCardIssueResultDto {
+    private int issued;
+    private List<Long> cardIds;
+}
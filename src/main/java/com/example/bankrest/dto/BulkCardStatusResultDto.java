@@ -0,0 +1,20 @@
+package com.example.bankrest.dto;
+
+import com.example.bankrest.entity.CardStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Итог массовой смены статуса. Карты, уже находившиеся в целевом статусе, а при активации — и
+ * просроченные карты, не меняются и в updated не входят.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkCardStatusResultDto {
+    private CardStatus status;
+    private int updated;
+}
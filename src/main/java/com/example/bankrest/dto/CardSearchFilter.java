@@ -0,0 +1,58 @@
+package com.example.bankrest.dto;
+
+import com.example.bankrest.entity.CardStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Фильтры поиска карт администратором. Незаданные фильтры не применяются, заданные объединяются по И;
+ * границы срока действия включаются в период.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardSearchFilter {
+    private CardStatus status;
+    private LocalDate expiryFrom;
+    private LocalDate expiryTo;
+    private String owner;
+    @Builder.Default
+    private OwnerMatch ownerMatch = OwnerMatch.PREFIX;
+    private String last4;
+    private Long userId;
+
+    public static CardStatus statusFromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return CardStatus.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Status must be one of: active, blocked, expired");
+        }
+    }
+
+    /**
+     * Сравнение имени владельца: по началу имени или по похожести триграмм, без учёта регистра.
+     */
+    public enum OwnerMatch {
+        PREFIX, FUZZY;
+
+        public static OwnerMatch fromParam(String value) {
+            if (value == null || value.isBlank()) {
+                return PREFIX;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Owner match must be one of: prefix, fuzzy");
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.bankrest.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardTurnoverDto {
+    private Long cardId;
+    private LocalDate from;
+    private LocalDate to;
+    private Grouping groupBy;
+    private BigDecimal debitTotal;
+    private long debitCount;
+    private BigDecimal creditTotal;
+    private long creditCount;
+    private List<Period> periods;
+
+    /**
+     * Оборот за день или месяц; периоды без переводов не возвращаются.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Period {
+        private LocalDate start;
+        private BigDecimal debitTotal;
+        private long debitCount;
+        private BigDecimal creditTotal;
+        private long creditCount;
+    }
+
+    public enum Grouping {
+        DAY, MONTH;
+
+        public static Grouping fromParam(String value) {
+            if (value == null || value.isBlank()) {
+                return DAY;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Group by must be one of: day, month");
+            }
+        }
+    }
+}
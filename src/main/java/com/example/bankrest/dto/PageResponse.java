@@ -0,0 +1,77 @@
+package com.example.bankrest.dto;
+
+import com.example.bankrest.util.PageCursor;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Страница списка, общая для чтения по номеру страницы и по курсору. Продолжение определяется
+ * по лишней строке выборки, поэтому общее число строк по умолчанию не считается: totalElements
+ * и totalPages заполняются только по запросу withTotal=true. Страница по номеру содержит page,
+ * страница по курсору — nextCursor, значение after для следующей страницы; отсутствующие поля
+ * в ответ не попадают.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageResponse<T> {
+    private List<T> content;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer page;
+
+    private int size;
+    private boolean hasNext;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long totalElements;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer totalPages;
+
+    /**
+     * Собирает страницу из среза. count вызывается только при withTotal, и то не на единственной
+     * странице выборки: там общее число строк уже известно.
+     */
+    public static <T> PageResponse<T> of(Slice<T> slice, boolean withTotal, LongSupplier count) {
+        Long total = null;
+        if (withTotal) {
+            total = slice.isFirst() && !slice.hasNext() ? (long) slice.getNumberOfElements() : count.getAsLong();
+        }
+        return PageResponse.<T>builder()
+                .content(slice.getContent())
+                .page(slice.getNumber())
+                .size(slice.getSize())
+                .hasNext(slice.hasNext())
+                .totalElements(total)
+                .totalPages(total != null ? (int) Math.ceilDiv(total, (long) slice.getSize()) : null)
+                .build();
+    }
+
+    /**
+     * Собирает страницу по курсору из выборки размером до size + 1: лишняя строка лишь показывает,
+     * что есть продолжение. На последней странице nextCursor не задан.
+     */
+    public static <T> PageResponse<T> of(List<T> rows, int size, Function<T, PageCursor> cursorOf) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? List.copyOf(rows.subList(0, size)) : rows;
+        return PageResponse.<T>builder()
+                .content(content)
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? cursorOf.apply(content.getLast()).encode() : null)
+                .build();
+    }
+}
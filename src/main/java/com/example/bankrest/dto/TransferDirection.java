@@ -0,0 +1,21 @@
+package com.example.bankrest.dto;
+
+import java.util.Locale;
+
+/**
+ * Направление переводов относительно карты при запросе истории.
+ */
+public enum TransferDirection {
+    IN, OUT, BOTH;
+
+    public static TransferDirection fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return BOTH;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Direction must be one of: in, out, both");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bankrest.dto;
+
+import java.util.Locale;
+
+/**
+ * Формат выгрузки выписки по переводам карты.
+ */
+public enum TransferStatementFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String contentType;
+    private final String extension;
+
+    TransferStatementFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static TransferStatementFormat fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return CSV;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Format must be one of: csv, ndjson");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bankrest.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Строка выписки по карте. Читается напрямую из результата запроса, без загрузки сущностей.
+ */
+public record TransferStatementRow(Long id,
+                                   LocalDateTime timestamp,
+                                   TransferDirection direction,
+                                   Long fromCardId,
+                                   Long toCardId,
+                                   BigDecimal amount) {
+}
@@ -0,0 +1,33 @@
+package com.example.bankrest.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferSubmissionDto {
+    private String requestId;
+    private Status status;
+    private Long transferId;
+    private Long fromCardId;
+    private Long toCardId;
+    private BigDecimal amount;
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+    private String message;
+
+    @JsonIgnore
+    private String username;
+
+    public enum Status {
+        PENDING, COMPLETED, FAILED
+    }
+}
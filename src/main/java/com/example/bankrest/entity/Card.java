@@ -1,7 +1,9 @@
 package com.example.bankrest.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -14,8 +16,12 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @Builder
 public class Card {
+    /**
+     * Id выдаются блоками из последовательности, поэтому вставки карт объединяются в JDBC-пакеты.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_id_seq")
+    @SequenceGenerator(name = "card_id_seq", sequenceName = "cards_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "encrypted_number", nullable = false, unique = true)
@@ -24,6 +30,17 @@ public class Card {
     @Column(name = "masked_number", nullable = false, length = 19)
     private String maskedNumber; 
 
+    /**
+     * Слепой индекс номера для поиска карты без расшифровки, см. CardNumberIndexService.
+     */
+    @JsonIgnore
+    @Column(name = "number_hash", unique = true, length = 64)
+    private String numberHash;
+
+    @JsonIgnore
+    @Column(name = "last4", length = 4)
+    private String last4;
+
     @Column(nullable = false)
     private String owner;
 
@@ -34,9 +51,34 @@ public class Card {
     @Column(nullable = false, length = 20)
     private CardStatus status;
 
-    @Column(nullable = false, precision = 19, scale = 2)
+    /**
+     * Текущий баланс: баланс контрольной точки, если после неё по карте не было проводок, иначе остаток
+     * после последней из них по entry_seq. Проводки до контрольной точки не читаются: для карты без новых
+     * проводок подзапрос — одна пустая проба индекса (card_id, entry_seq).
+     */
+    @Formula("COALESCE((SELECT e.running_balance FROM ledger_entries e WHERE e.card_id = id "
+            + "AND e.entry_seq > balance_entry_seq ORDER BY e.entry_seq DESC LIMIT 1), balance)")
     private BigDecimal balance;
 
+    /**
+     * Баланс на последней контрольной точке. Меняется только фоновым переносом остатков из журнала.
+     */
+    @JsonIgnore
+    @Column(name = "balance", nullable = false, precision = 19, scale = 2, updatable = false)
+    private BigDecimal checkpointBalance;
+
+    /**
+     * Номер проводки карты (entry_seq), по которую баланс перенесён в контрольную точку.
+     */
+    @JsonIgnore
+    @Builder.Default
+    @Column(name = "balance_entry_seq", nullable = false, updatable = false)
+    private Long balanceEntrySeq = 0L;
+
+    @JsonIgnore
+    @Version
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -1,5 +1,6 @@
 package com.example.bankrest.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -47,6 +48,10 @@ public class CardBlockRequest {
     @Column(name = "processed_at")
     private LocalDateTime processedAt;
 
+    @JsonIgnore
+    @Version
+    private Long version;
+
     public enum BlockRequestStatus {
         PENDING, APPROVED, REJECTED
     }
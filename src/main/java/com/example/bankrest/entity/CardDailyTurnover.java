@@ -0,0 +1,52 @@
+package com.example.bankrest.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Дневной оборот карты: суммы и количество списаний и зачислений за день.
+ * Строки обновляются в той же транзакции, что и сам перевод.
+ */
+@Entity
+@Table(name = "card_daily_turnover")
+@IdClass(CardDailyTurnover.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CardDailyTurnover {
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Id
+    @Column(name = "turnover_date")
+    private LocalDate day;
+
+    @Column(name = "debit_total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal debitTotal;
+
+    @Column(name = "debit_count", nullable = false)
+    private long debitCount;
+
+    @Column(name = "credit_total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal creditTotal;
+
+    @Column(name = "credit_count", nullable = false)
+    private long creditCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long cardId;
+        private LocalDate day;
+    }
+}
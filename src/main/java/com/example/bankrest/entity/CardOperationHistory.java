@@ -16,7 +16,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class CardOperationHistory {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_operation_history_id_seq")
+    @SequenceGenerator(name = "card_operation_history_id_seq", sequenceName = "card_operation_history_id_seq",
+            allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -27,8 +29,11 @@ public class CardOperationHistory {
     @Column(name = "operation_type", nullable = false)
     private OperationType operationType;
 
+    /**
+     * Пользователь, выполнивший операцию; null для операций, выполненных системой.
+     */
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "performed_by_id", nullable = false)
+    @JoinColumn(name = "performed_by_id")
     private User performedBy;
 
     @Enumerated(EnumType.STRING)
@@ -46,6 +51,6 @@ public class CardOperationHistory {
     private LocalDateTime createdAt;
 
     public enum OperationType {
-        BLOCK, ACTIVATE, DELETE, CREATE
+        BLOCK, ACTIVATE, DELETE, CREATE, EXPIRE
     }
 } 
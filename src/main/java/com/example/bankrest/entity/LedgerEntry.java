@@ -0,0 +1,57 @@
+package com.example.bankrest.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Проводка по карте. Каждый перевод порождает списание с карты-источника и зачисление на
+ * карту-получатель; проводки без перевода — ручные корректировки баланса. Записи только
+ * добавляются, running_balance хранит остаток карты после проводки, а entry_seq — её порядковый
+ * номер среди проводок карты: уникальность пары (card_id, entry_seq) не даёт двум транзакциям
+ * продолжить историю карты от одного и того же остатка.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "transfer_id")
+    private Long transferId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false, length = 10)
+    private EntryType entryType;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "running_balance", nullable = false, precision = 19, scale = 2)
+    private BigDecimal runningBalance;
+
+    @Column(name = "entry_seq", nullable = false)
+    private Long entrySeq;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum EntryType {
+        DEBIT, CREDIT
+    }
+}
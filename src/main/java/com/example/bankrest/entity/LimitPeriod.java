@@ -0,0 +1,22 @@
+package com.example.bankrest.entity;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Скользящее окно лимита и число корзин, на которые оно делится при подсчёте.
+ */
+@Getter
+public enum LimitPeriod {
+    HOUR(Duration.ofHours(1), 60),
+    DAY(Duration.ofDays(1), 96);
+
+    private final Duration window;
+    private final int buckets;
+
+    LimitPeriod(Duration window, int buckets) {
+        this.window = window;
+        this.buckets = buckets;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.bankrest.entity;
+
+public enum LimitScope {
+    CARD,
+    USER
+}
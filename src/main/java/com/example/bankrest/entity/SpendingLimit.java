@@ -0,0 +1,58 @@
+package com.example.bankrest.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Лимит списаний с карты или со всех карт пользователя за скользящий час или сутки:
+ * по сумме, по числу переводов или по обоим сразу.
+ */
+@Entity
+@Table(name = "spending_limits")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SpendingLimit {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private LimitScope scope;
+
+    @Column(name = "subject_id", nullable = false)
+    private Long subjectId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private LimitPeriod period;
+
+    @Column(name = "max_amount", precision = 19, scale = 2)
+    private BigDecimal maxAmount;
+
+    @Column(name = "max_count")
+    private Integer maxCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.bankrest.entity;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -31,4 +32,12 @@ public class Transfer {
 
     @Column(nullable = false)
     private LocalDateTime timestamp;
+
+    /**
+     * Перевод записан в журнал движка в памяти, но зачисление ещё не подтверждено.
+     * Не хранится в БД и в ответе присутствует только со значением true.
+     */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean pending;
 }
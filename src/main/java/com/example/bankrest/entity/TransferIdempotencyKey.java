@@ -0,0 +1,51 @@
+package com.example.bankrest.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "transfer_idempotency_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferIdempotencyKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    /**
+     * Id перевода, выполненного по ключу; пуст, пока ключ занят движком в памяти и перевод ещё выполняется.
+     * Вместе с ним хранятся поля ответа, чтобы повтор не читал ни transfers, ни cards.
+     */
+    @Column(name = "transfer_id")
+    private Long transferId;
+
+    @Column(name = "from_card_id")
+    private Long fromCardId;
+
+    @Column(name = "to_card_id")
+    private Long toCardId;
+
+    @Column(precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "transfer_timestamp")
+    private LocalDateTime transferTimestamp;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
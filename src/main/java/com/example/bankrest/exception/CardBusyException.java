@@ -0,0 +1,7 @@
+package com.example.bankrest.exception;
+
+public class CardBusyException extends RuntimeException {
+    public CardBusyException() {
+        super("Card is busy with other transfers, please retry later");
+    }
+}
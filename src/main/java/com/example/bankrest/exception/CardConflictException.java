@@ -0,0 +1,7 @@
+package com.example.bankrest.exception;
+
+public class CardConflictException extends RuntimeException {
+    public CardConflictException(Throwable cause) {
+        super("Card was modified concurrently, please retry later", cause);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.bankrest.exception;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -37,6 +38,60 @@ public class GlobalExceptionHandler {
         return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(SpendingLimitExceededException.class)
+    public ResponseEntity<ErrorResponse> handleSpendingLimitExceededException(SpendingLimitExceededException ex) {
+        log.warn("Spending limit exceeded: {}", ex.getMessage());
+        return createErrorResponse(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(SpendingLimitNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleSpendingLimitNotFoundException(SpendingLimitNotFoundException ex) {
+        log.error("Spending limit not found: {}", ex.getMessage());
+        return createErrorResponse(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(TransferSubmissionNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleTransferSubmissionNotFoundException(TransferSubmissionNotFoundException ex) {
+        log.error("Transfer request not found: {}", ex.getMessage());
+        return createErrorResponse(ex.getMessage(), HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(TransferQueueFullException.class)
+    public ResponseEntity<ErrorResponse> handleTransferQueueFullException(TransferQueueFullException ex) {
+        log.warn("Transfer queue full: {}", ex.getMessage());
+        ResponseEntity<ErrorResponse> response = createErrorResponse(ex.getMessage(), HttpStatus.TOO_MANY_REQUESTS);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
+    @ExceptionHandler(CardBusyException.class)
+    public ResponseEntity<ErrorResponse> handleCardBusyException(CardBusyException ex) {
+        log.warn("Card lock timeout: {}", ex.getMessage());
+        ResponseEntity<ErrorResponse> response = createErrorResponse(ex.getMessage(), HttpStatus.TOO_MANY_REQUESTS);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
+    @ExceptionHandler(CardConflictException.class)
+    public ResponseEntity<ErrorResponse> handleCardConflictException(CardConflictException ex) {
+        log.warn("Card update conflict: {}", ex.getMessage());
+        return createErrorResponse(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(ReconciliationInProgressException.class)
+    public ResponseEntity<ErrorResponse> handleReconciliationInProgressException(ReconciliationInProgressException ex) {
+        log.warn("Reconciliation rejected: {}", ex.getMessage());
+        return createErrorResponse(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(TransferInProgressException.class)
+    public ResponseEntity<ErrorResponse> handleTransferInProgressException(TransferInProgressException ex) {
+        log.warn("Duplicate transfer rejected: {}", ex.getMessage());
+        return createErrorResponse(ex.getMessage(), HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArgumentException(IllegalArgumentException ex) {
         log.error("Invalid argument: {}", ex.getMessage());
@@ -0,0 +1,7 @@
+package com.example.bankrest.exception;
+
+public class ReconciliationInProgressException extends RuntimeException {
+    public ReconciliationInProgressException() {
+        super("Balance reconciliation is already running");
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankrest.exception;
+
+public class SpendingLimitExceededException extends RuntimeException {
+    public SpendingLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankrest.exception;
+
+public class SpendingLimitNotFoundException extends RuntimeException {
+    public SpendingLimitNotFoundException(String message) {
+        super(message);
+    }
+}
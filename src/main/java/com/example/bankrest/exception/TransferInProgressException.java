@@ -0,0 +1,7 @@
+package com.example.bankrest.exception;
+
+public class TransferInProgressException extends RuntimeException {
+    public TransferInProgressException() {
+        super("Transfer with this idempotency key is still in progress");
+    }
+}
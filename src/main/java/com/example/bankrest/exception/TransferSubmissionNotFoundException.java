@@ -0,0 +1,7 @@
+package com.example.bankrest.exception;
+
+public class TransferSubmissionNotFoundException extends RuntimeException {
+    public TransferSubmissionNotFoundException(String requestId) {
+        super("Transfer request not found with id: " + requestId);
+    }
+}
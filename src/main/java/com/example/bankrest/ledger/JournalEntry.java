@@ -0,0 +1,73 @@
+package com.example.bankrest.ledger;
+
+import com.example.bankrest.dto.TransferDto;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Запись журнала о переводе. Хранится на диске блоком фиксированной длины с контрольной суммой,
+ * чтобы при восстановлении отбросить недописанный хвост файла.
+ */
+public record JournalEntry(long sequence, long transferId, long fromCardId, long toCardId,
+                           BigDecimal amount, LocalDateTime timestamp) {
+    static final int SIZE = 64;
+    private static final int PAYLOAD_SIZE = SIZE - Long.BYTES;
+
+    JournalEntry withSequence(long sequence) {
+        return new JournalEntry(sequence, transferId, fromCardId, toCardId, amount, timestamp);
+    }
+
+    TransferDto toTransferDto() {
+        return TransferDto.builder()
+                .id(transferId)
+                .fromCardId(fromCardId)
+                .toCardId(toCardId)
+                .amount(amount)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putLong(sequence)
+                .putLong(transferId)
+                .putLong(fromCardId)
+                .putLong(toCardId)
+                .putLong(amount.unscaledValue().longValueExact())
+                .putInt(amount.scale())
+                .putLong(timestamp.toEpochSecond(ZoneOffset.UTC))
+                .putInt(timestamp.getNano());
+        buffer.putLong(checksum(buffer.slice(start, PAYLOAD_SIZE)));
+    }
+
+    /**
+     * Читает запись из буфера; возвращает null, если контрольная сумма не сходится.
+     */
+    static JournalEntry readFrom(ByteBuffer buffer) {
+        long expected = checksum(buffer.slice(buffer.position(), PAYLOAD_SIZE));
+        long sequence = buffer.getLong();
+        long transferId = buffer.getLong();
+        long fromCardId = buffer.getLong();
+        long toCardId = buffer.getLong();
+        long unscaledAmount = buffer.getLong();
+        int scale = buffer.getInt();
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        if (buffer.getLong() != expected) {
+            return null;
+        }
+        return new JournalEntry(sequence, transferId, fromCardId, toCardId,
+                BigDecimal.valueOf(unscaledAmount, scale),
+                LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC));
+    }
+
+    private static long checksum(ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return crc.getValue();
+    }
+}
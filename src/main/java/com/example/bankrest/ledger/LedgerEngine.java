@@ -0,0 +1,298 @@
+package com.example.bankrest.ledger;
+
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.Transfer;
+import com.example.bankrest.exception.CardNotFoundException;
+import com.example.bankrest.exception.InsufficientFundsException;
+import com.example.bankrest.repository.CardDailyTurnoverRepository;
+import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.LedgerEntryRepository;
+import com.example.bankrest.repository.TransferRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Движок переводов с балансами карт в памяти.
+ * Карты распределены по шардам по id, у каждого шарда один поток-писатель, поэтому баланс карты
+ * меняется без блокировок. Перевод считается выполненным после записи в журнал; в таблицы
+ * transfers и ledger_entries он переносится асинхронно. При старте журнал повторно применяется к БД,
+ * после чего балансы подгружаются из таблицы cards по мере обращения к картам и дальше
+ * не перечитываются, поэтому другие пути изменения баланса в этом режиме закрыты.
+ * Рассчитан на единственный экземпляр приложения, владеющий балансами.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.transfers", name = "engine", havingValue = "ledger")
+public class LedgerEngine {
+    private final CardRepository cardRepository;
+    private final TransferRepository transferRepository;
+    private final LedgerJournal journal;
+    private final LedgerProjector projector;
+    private final Shard[] shards;
+    private final int idBlockSize;
+    private final Duration timeout;
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+    private final Set<Long> loadedCards = ConcurrentHashMap.newKeySet();
+
+    public LedgerEngine(CardRepository cardRepository,
+                        TransferRepository transferRepository,
+                        LedgerEntryRepository ledgerEntryRepository,
+                        CardDailyTurnoverRepository turnoverRepository,
+                        TransactionTemplate transactionTemplate,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.transfers.ledger.shards:4}") int shardCount,
+                        @Value("${app.transfers.ledger.journal-path:data/ledger.journal}") Path journalPath,
+                        @Value("${app.transfers.ledger.journal-batch-size:512}") int journalBatchSize,
+                        @Value("${app.transfers.ledger.journal-compact-bytes:67108864}") long journalCompactBytes,
+                        @Value("${app.transfers.ledger.projection-batch-size:500}") int projectionBatchSize,
+                        @Value("${app.transfers.ledger.id-block-size:1000}") int idBlockSize,
+                        @Value("${app.transfers.ledger.timeout:PT5S}") Duration timeout) {
+        this.cardRepository = cardRepository;
+        this.transferRepository = transferRepository;
+        this.journal = new LedgerJournal(journalPath, journalBatchSize, journalCompactBytes);
+        this.projector = new LedgerProjector(transferRepository, ledgerEntryRepository, turnoverRepository,
+                transactionTemplate, meterRegistry, projectionBatchSize);
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        this.idBlockSize = idBlockSize;
+        this.timeout = timeout;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        List<JournalEntry> recovered = journal.recover();
+        if (!recovered.isEmpty()) {
+            log.info("Replaying {} ledger journal entries", recovered.size());
+            projector.replay(recovered);
+        }
+        journal.reset();
+        projector.start(journal::markProjected);
+        journal.start(projector::enqueue);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        journal.close();
+        projector.stop();
+    }
+
+    /**
+     * Выполняет перевод: списание в шарде карты-источника, запись в журнал, затем зачисление
+     * в шарде карты-получателя. Владелец и статус карт проверяются вызывающей стороной.
+     * Возвращает перевод со снимками карт, балансы которых отражают результат операции.
+     * Время ожидания ограничено только до начала списания: если списание не успело начаться,
+     * оно отменяется и вызывающий получает ошибку. Начатый перевод дожидается записи в журнал,
+     * а если зачисление не подтверждено в срок, возвращается перевод с признаком pending.
+     */
+    public Transfer transfer(Card fromCard, Card toCard, BigDecimal amount) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Long fromId = fromCard.getId();
+        Long toId = toCard.getId();
+        Shard fromShard = shardFor(fromId);
+        Shard toShard = shardFor(toId);
+        AtomicBoolean decided = new AtomicBoolean();
+
+        // Баланс получателя должен быть загружен до записи в журнал: иначе перенос этого перевода
+        // в БД может успеть раньше первой загрузки, и зачисление будет учтено дважды.
+        CompletableFuture<Void> toLoaded = loadedCards.contains(toId)
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(() -> toShard.balanceOf(toId), toShard.executor);
+
+        CompletableFuture<Debit> debited = toLoaded.thenApplyAsync(loaded -> {
+            if (!decided.compareAndSet(false, true)) {
+                throw new CancellationException("Transfer abandoned by the caller");
+            }
+            return fromShard.debit(fromId, toId, amount);
+        }, fromShard.executor);
+        CompletableFuture<JournalEntry> appended = debited.thenCompose(debit -> journal.append(debit.entry())
+                .whenComplete((entry, failure) -> {
+                    if (failure != null) {
+                        projector.untrack(debit.entry().transferId());
+                        fromShard.executor.execute(() -> fromShard.credit(fromId, amount));
+                    }
+                }));
+        CompletableFuture<BigDecimal> credited = appended.thenApplyAsync(entry -> toShard.credit(toId, amount),
+                toShard.executor);
+
+        Debit debit;
+        try {
+            debit = await(debited, deadline);
+        } catch (TimeoutException e) {
+            if (decided.compareAndSet(false, true)) {
+                throw new IllegalStateException("Ledger did not respond in time");
+            }
+            // Списание уже началось: дожидаемся его и записи в журнал, деньги могут быть переведены.
+            debit = await(debited);
+        }
+        JournalEntry entry = await(appended);
+        Transfer.TransferBuilder transfer = Transfer.builder()
+                .id(entry.transferId())
+                .fromCard(snapshotOf(fromCard, debit.fromBalance()))
+                .amount(amount)
+                .timestamp(entry.timestamp());
+        try {
+            return transfer.toCard(snapshotOf(toCard, await(credited, deadline))).build();
+        } catch (TimeoutException e) {
+            log.warn("Transfer {} is journaled but its credit is not confirmed in time", entry.transferId());
+            return transfer.toCard(snapshotOf(toCard, null)).pending(true).build();
+        }
+    }
+
+    /**
+     * Ожидает, пока перевод будет перенесён в таблицу transfers. Возвращает false, если перенос
+     * не завершился в срок; перевод при этом остаётся в журнале и будет перенесён позже.
+     */
+    public boolean awaitProjected(Long transferId) {
+        try {
+            await(projector.whenProjected(transferId), System.nanoTime() + timeout.toNanos());
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("Transfer {} is not projected to the database in time", transferId);
+            return false;
+        }
+    }
+
+    private Shard shardFor(Long cardId) {
+        return shards[Math.floorMod(cardId, shards.length)];
+    }
+
+    private synchronized long nextTransferId() {
+        if (reservedIds.isEmpty()) {
+            reservedIds.addAll(transferRepository.allocateIds(idBlockSize));
+        }
+        return reservedIds.poll();
+    }
+
+    private Card snapshotOf(Card card, BigDecimal balance) {
+        return Card.builder()
+                .id(card.getId())
+                .maskedNumber(card.getMaskedNumber())
+                .owner(card.getOwner())
+                .expiryDate(card.getExpiryDate())
+                .status(card.getStatus())
+                .balance(balance)
+                .user(card.getUser())
+                .build();
+    }
+
+    private <T> T await(CompletableFuture<T> future, long deadlineNanos) throws TimeoutException {
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the ledger");
+        } catch (ExecutionException e) {
+            throw failureOf(e);
+        }
+    }
+
+    /**
+     * Ожидание без срока — только для шагов, которые всегда завершаются: запись в журнал
+     * завершается либо fsync, либо ошибкой ввода-вывода.
+     */
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the ledger");
+        } catch (ExecutionException e) {
+            throw failureOf(e);
+        }
+    }
+
+    private static RuntimeException failureOf(ExecutionException e) {
+        if (e.getCause() instanceof UncheckedIOException) {
+            return new IllegalStateException("Ledger journal is unavailable", e.getCause());
+        }
+        if (e.getCause() instanceof RuntimeException cause) {
+            return cause;
+        }
+        return new IllegalStateException("Ledger operation failed", e.getCause());
+    }
+
+    private record Debit(JournalEntry entry, BigDecimal fromBalance) {
+    }
+
+    /**
+     * Шард балансов. Карта балансов доступна только потоку шарда.
+     */
+    private final class Shard {
+        private final ExecutorService executor;
+        private final Map<Long, BigDecimal> balances = new HashMap<>();
+
+        private Shard(int index) {
+            this.executor = Executors.newSingleThreadExecutor(
+                    Thread.ofPlatform().name("ledger-shard-" + index).daemon().factory());
+        }
+
+        private Debit debit(Long fromId, Long toId, BigDecimal amount) {
+            BigDecimal balance = balanceOf(fromId);
+            if (balance.compareTo(amount) < 0) {
+                throw new InsufficientFundsException();
+            }
+            long transferId = nextTransferId();
+            BigDecimal newBalance = balance.subtract(amount);
+            balances.put(fromId, newBalance);
+            projector.track(transferId);
+            JournalEntry entry = new JournalEntry(0, transferId, fromId, toId, amount, LocalDateTime.now());
+            return new Debit(entry, newBalance);
+        }
+
+        private BigDecimal credit(Long cardId, BigDecimal amount) {
+            BigDecimal newBalance = balanceOf(cardId).add(amount);
+            balances.put(cardId, newBalance);
+            return newBalance;
+        }
+
+        private BigDecimal balanceOf(Long cardId) {
+            return balances.computeIfAbsent(cardId, id -> {
+                BigDecimal balance = cardRepository.findById(id)
+                        .map(Card::getBalance)
+                        .orElseThrow(() -> new CardNotFoundException(id));
+                loadedCards.add(id);
+                return balance;
+            });
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.bankrest.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Последовательный журнал упреждающей записи переводов.
+ * Все записи выполняет один поток: он забирает накопившиеся заявки пачкой, пишет их одним
+ * вызовом и делает один fsync на всю пачку, после чего подтверждает каждую заявку.
+ */
+@Slf4j
+public class LedgerJournal implements AutoCloseable {
+    private final Path path;
+    private final int maxBatchSize;
+    private final long compactThresholdBytes;
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+
+    private FileChannel channel;
+    private Thread writer;
+    private Consumer<List<JournalEntry>> onDurable;
+    private volatile boolean running;
+    private volatile long writtenSequence;
+    private volatile long projectedSequence;
+
+    public LedgerJournal(Path path, int maxBatchSize, long compactThresholdBytes) {
+        this.path = path;
+        this.maxBatchSize = maxBatchSize;
+        this.compactThresholdBytes = compactThresholdBytes;
+    }
+
+    /**
+     * Открывает файл журнала и возвращает все целые записи. Недописанный хвост отрезается.
+     */
+    public List<JournalEntry> recover() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        List<JournalEntry> entries = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(JournalEntry.SIZE);
+        long position = 0;
+        while (readFully(buffer, position)) {
+            JournalEntry entry = JournalEntry.readFrom(buffer);
+            if (entry == null) {
+                break;
+            }
+            entries.add(entry);
+            position += JournalEntry.SIZE;
+        }
+        if (position < channel.size()) {
+            log.warn("Truncating ledger journal {} at {} of {} bytes", path, position, channel.size());
+            channel.truncate(position);
+        }
+        channel.position(position);
+        writtenSequence = entries.isEmpty() ? 0 : entries.getLast().sequence();
+        projectedSequence = 0;
+        return entries;
+    }
+
+    /**
+     * Очищает журнал после того, как восстановленные записи перенесены в БД.
+     */
+    public void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        projectedSequence = writtenSequence;
+    }
+
+    public void start(Consumer<List<JournalEntry>> onDurable) {
+        this.onDurable = onDurable;
+        running = true;
+        writer = Thread.ofPlatform().name("ledger-journal").daemon().start(this::writeLoop);
+    }
+
+    /**
+     * Ставит запись в очередь на запись; future завершается после fsync.
+     */
+    public CompletableFuture<JournalEntry> append(JournalEntry entry) {
+        CompletableFuture<JournalEntry> durable = new CompletableFuture<>();
+        if (!running) {
+            durable.completeExceptionally(new IllegalStateException("Ledger journal is not running"));
+            return durable;
+        }
+        queue.add(new PendingAppend(entry, durable));
+        return durable;
+    }
+
+    /**
+     * Сообщает журналу, до какого номера записи данные уже перенесены в БД.
+     */
+    public void markProjected(long sequence) {
+        projectedSequence = sequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingAppend> batch) {
+        long startPosition = -1;
+        long sequence = writtenSequence;
+        List<JournalEntry> entries = new ArrayList<>(batch.size());
+        try {
+            compactIfProjected();
+            startPosition = channel.position();
+            ByteBuffer buffer = ByteBuffer.allocate(batch.size() * JournalEntry.SIZE);
+            for (PendingAppend pending : batch) {
+                JournalEntry entry = pending.entry().withSequence(++sequence);
+                entry.writeTo(buffer);
+                entries.add(entry);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            log.error("Failed to write {} ledger journal entries", batch.size(), e);
+            if (startPosition >= 0) {
+                rollbackTo(startPosition);
+            }
+            UncheckedIOException failure = new UncheckedIOException("Ledger journal write failed", e);
+            batch.forEach(pending -> pending.durable().completeExceptionally(failure));
+            return;
+        }
+
+        writtenSequence = sequence;
+        onDurable.accept(entries);
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).durable().complete(entries.get(i));
+        }
+    }
+
+    private void compactIfProjected() throws IOException {
+        if (channel.size() >= compactThresholdBytes && projectedSequence >= writtenSequence) {
+            channel.truncate(0);
+            channel.position(0);
+        }
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private void rollbackTo(long position) {
+        try {
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            log.error("Failed to roll back ledger journal {} to {}", path, position, e);
+        }
+    }
+
+    private record PendingAppend(JournalEntry entry, CompletableFuture<JournalEntry> durable) {
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.bankrest.ledger;
+
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.repository.CardDailyTurnoverRepository;
+import com.example.bankrest.repository.LedgerEntryRepository;
+import com.example.bankrest.repository.TransferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Переносит записи журнала в таблицы transfers и ledger_entries.
+ * Перенос идемпотентен: перевод вставляется по заранее выданному id, а проводки
+ * и обороты карт добавляются только для фактически вставленных строк, поэтому повторное
+ * применение журнала безопасно. Перевод, который БД отвергает (например, карта удалена после
+ * перевода), не отбрасывается: он откладывается в ledger_dead_letters с ошибкой в журнале
+ * приложения и счётчиком bank.ledger.dead.letters, а до успешной записи туда остаётся в журнале.
+ */
+@Slf4j
+public class LedgerProjector {
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final TransferRepository transferRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final CardDailyTurnoverRepository turnoverRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Counter deadLetters;
+    private final BlockingQueue<JournalEntry> queue = new LinkedBlockingQueue<>();
+    private final Map<Long, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    private Thread worker;
+    private LongConsumer onProjected;
+    private volatile boolean running;
+
+    public LedgerProjector(TransferRepository transferRepository, LedgerEntryRepository ledgerEntryRepository,
+                           CardDailyTurnoverRepository turnoverRepository,
+                           TransactionTemplate transactionTemplate, MeterRegistry meterRegistry, int batchSize) {
+        this.transferRepository = transferRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.turnoverRepository = turnoverRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.deadLetters = Counter.builder("bank.ledger.dead.letters")
+                .description("Ledger transfers the database rejected and that were set aside for manual review")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Синхронно применяет записи, восстановленные из журнала при старте.
+     */
+    public void replay(List<JournalEntry> entries) {
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<JournalEntry> batch = entries.subList(from, Math.min(from + batchSize, entries.size()));
+            try {
+                project(batch);
+            } catch (DataIntegrityViolationException e) {
+                batch.forEach(this::projectSingle);
+            }
+        }
+    }
+
+    public void start(LongConsumer onProjected) {
+        this.onProjected = onProjected;
+        running = true;
+        worker = Thread.ofPlatform().name("ledger-projector").daemon().start(this::projectLoop);
+    }
+
+    /**
+     * Регистрирует перевод до записи в журнал, чтобы можно было дождаться его появления в БД.
+     */
+    public void track(long transferId) {
+        pending.put(transferId, new CompletableFuture<>());
+    }
+
+    public void untrack(long transferId) {
+        pending.remove(transferId);
+    }
+
+    public void enqueue(List<JournalEntry> entries) {
+        queue.addAll(entries);
+    }
+
+    /**
+     * Возвращает future, завершающийся после переноса перевода в БД.
+     */
+    public CompletableFuture<Void> whenProjected(long transferId) {
+        return pending.getOrDefault(transferId, CompletableFuture.completedFuture(null));
+    }
+
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void projectLoop() {
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                JournalEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                projectWithRetry(batch);
+                onProjected.accept(batch.getLast().sequence());
+                batch.forEach(entry -> {
+                    CompletableFuture<Void> projected = pending.remove(entry.transferId());
+                    if (projected != null) {
+                        projected.complete(null);
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void projectWithRetry(List<JournalEntry> batch) throws InterruptedException {
+        boolean oneByOne = false;
+        while (true) {
+            try {
+                if (oneByOne) {
+                    batch.forEach(this::projectSingle);
+                } else {
+                    project(batch);
+                }
+                return;
+            } catch (DataIntegrityViolationException e) {
+                // Карта могла быть удалена после перевода: переносим записи по одной, такие откладываем.
+                oneByOne = true;
+            } catch (RuntimeException e) {
+                log.error("Failed to project {} ledger entries, retrying", batch.size(), e);
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    /**
+     * Переносит одну запись, а отвергнутую БД откладывает. Если не удалось и это, исключение
+     * уходит в повтор, и запись остаётся в журнале.
+     */
+    private void projectSingle(JournalEntry entry) {
+        try {
+            project(List.of(entry));
+        } catch (DataIntegrityViolationException e) {
+            String reason = e.getMostSpecificCause().getMessage();
+            transactionTemplate.executeWithoutResult(status ->
+                    ledgerEntryRepository.deadLetterTransfer(entry.toTransferDto(), reason));
+            deadLetters.increment();
+            log.error("Ledger entry {} for transfer {} was rejected by the database and moved to ledger_dead_letters: {}",
+                    entry.sequence(), entry.transferId(), reason);
+        }
+    }
+
+    private void project(List<JournalEntry> entries) {
+        List<TransferDto> transfers = entries.stream().map(JournalEntry::toTransferDto).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<Long> inserted = new HashSet<>(transferRepository.insertAllIfAbsent(transfers));
+            Set<Long> cardIds = new HashSet<>();
+            List<TransferDto> projected = new ArrayList<>(inserted.size());
+            for (TransferDto transfer : transfers) {
+                if (inserted.contains(transfer.getId())) {
+                    cardIds.add(transfer.getFromCardId());
+                    cardIds.add(transfer.getToCardId());
+                    projected.add(transfer);
+                }
+            }
+            if (!projected.isEmpty()) {
+                ledgerEntryRepository.appendProjectedTransfers(projected, ledgerEntryRepository.currentBalances(cardIds));
+                turnoverRepository.applyTransfers(projected);
+            }
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.bankrest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Каталог месяцев, перенесённых из секций в архивные файлы. Запись в каталоге появляется
+ * только после того, как файл полностью записан, и с этого момента месяц читается из архива.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ArchiveRepository {
+    private static final long ARCHIVE_LOCK_KEY = 0x41524348L;
+    private static final String FIND_SQL =
+            "SELECT month, file_name, row_count FROM archived_partitions WHERE table_name = ? ORDER BY month";
+    private static final String REGISTER_SQL =
+            "INSERT INTO archived_partitions (table_name, month, file_name, row_count) VALUES (?, ?, ?, ?)";
+    private static final String ADD_ARCHIVED_NET_SQL =
+            "INSERT INTO card_archived_balances (card_id, net_amount) "
+                    + "SELECT t.card_id, SUM(t.amount) FROM ("
+                    + "SELECT to_card_id AS card_id, amount FROM %1$s "
+                    + "UNION ALL SELECT from_card_id, -amount FROM %1$s) t "
+                    + "JOIN cards c ON c.id = t.card_id GROUP BY t.card_id "
+                    + "ON CONFLICT (card_id) DO UPDATE "
+                    + "SET net_amount = card_archived_balances.net_amount + EXCLUDED.net_amount";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<ArchivedPartition> findArchived(String table) {
+        return jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new ArchivedPartition(
+                YearMonth.from(rs.getDate("month").toLocalDate()),
+                rs.getString("file_name"),
+                rs.getLong("row_count")), table);
+    }
+
+    /**
+     * Берёт транзакционную advisory-блокировку архивации; false, если архивацию уже ведёт другой узел.
+     */
+    public boolean tryLockArchiving() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ARCHIVE_LOCK_KEY));
+    }
+
+    public void register(String table, YearMonth month, String fileName, long rowCount) {
+        jdbcTemplate.update(REGISTER_SQL, table, Date.valueOf(month.atDay(1)), fileName, rowCount);
+    }
+
+    /**
+     * Прибавляет чистый оборот переводов архивируемой секции к архивным итогам карт. Вызывается
+     * в той же транзакции, что и {@link #register}, поэтому каждый месяц учитывается ровно один раз.
+     */
+    public void addArchivedTransferTotals(String partition) {
+        jdbcTemplate.update(String.format(ADD_ARCHIVED_NET_SQL, PartitionRepository.quote(partition)));
+    }
+
+    /**
+     * Читает все строки таблицы серверным курсором в заданном порядке. Должен вызываться в транзакции,
+     * иначе драйвер PostgreSQL игнорирует fetchSize и загружает результат целиком.
+     */
+    public void streamTable(String table, List<String> columns, List<String> orderBy, int fetchSize,
+                            RowCallbackHandler handler) {
+        String sql = "SELECT " + String.join(", ", columns) + " FROM " + PartitionRepository.quote(table)
+                + " ORDER BY " + String.join(", ", orderBy);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, handler);
+    }
+
+    public record ArchivedPartition(YearMonth month, String fileName, long rowCount) {
+    }
+}
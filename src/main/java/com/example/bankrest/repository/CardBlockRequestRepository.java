@@ -2,16 +2,29 @@ package com.example.bankrest.repository;
 
 import com.example.bankrest.entity.CardBlockRequest;
 import com.example.bankrest.entity.User;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface CardBlockRequestRepository extends JpaRepository<CardBlockRequest, Long> {
     
-    Page<CardBlockRequest> findByRequester(User requester, Pageable pageable);
-    
-    
-    Page<CardBlockRequest> findByStatus(CardBlockRequest.BlockRequestStatus status, Pageable pageable);
+    Slice<CardBlockRequest> findAllBy(Pageable pageable);
+
+    Slice<CardBlockRequest> findByRequester(User requester, Pageable pageable);
+
+    Slice<CardBlockRequest> findByStatus(CardBlockRequest.BlockRequestStatus status, Pageable pageable);
+
+    long countByRequester(User requester);
+
+    long countByStatus(CardBlockRequest.BlockRequestStatus status);
+
+    List<CardBlockRequest> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
 
+    List<CardBlockRequest> findByRequesterAndIdLessThanOrderByIdDesc(User requester, Long id, Limit limit);
 
+    List<CardBlockRequest> findByStatusAndIdLessThanOrderByIdDesc(CardBlockRequest.BlockRequestStatus status,
+                                                                  Long id, Limit limit);
 }
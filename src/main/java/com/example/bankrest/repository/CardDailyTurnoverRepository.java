@@ -0,0 +1,13 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.entity.CardDailyTurnover;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface CardDailyTurnoverRepository
+        extends JpaRepository<CardDailyTurnover, CardDailyTurnover.Key>, CardDailyTurnoverRepositoryCustom {
+
+    List<CardDailyTurnover> findByCardIdAndDayBetweenOrderByDayAsc(Long cardId, LocalDate from, LocalDate to);
+}
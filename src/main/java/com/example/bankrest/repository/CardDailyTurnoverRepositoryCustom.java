@@ -0,0 +1,31 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.TransferDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface CardDailyTurnoverRepositoryCustom {
+
+    /**
+     * Добавляет переводы к дневным оборотам карт: списание карте-источнику, зачисление карте-получателю.
+     * Строки обновляются в порядке (card_id, turnover_date), чтобы параллельные транзакции не взаимоблокировались.
+     */
+    void applyTransfers(List<TransferDto> transfers);
+
+    /**
+     * Блокирует состояние заполнения оборотов до конца транзакции.
+     */
+    Optional<BackfillProgress> lockBackfillProgress();
+
+    /**
+     * Добавляет к оборотам переводы с id в полуинтервале (afterId, upToId] одним агрегирующим запросом.
+     */
+    void backfill(long afterId, long upToId);
+
+    void updateBackfillProgress(long lastTransferId, LocalDateTime completedAt);
+
+    record BackfillProgress(long lastTransferId, long highWatermark, LocalDateTime completedAt) {
+    }
+}
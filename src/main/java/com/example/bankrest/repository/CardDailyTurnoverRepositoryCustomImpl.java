@@ -0,0 +1,116 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.TransferDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+@RequiredArgsConstructor
+public class CardDailyTurnoverRepositoryCustomImpl implements CardDailyTurnoverRepositoryCustom {
+    private static final String UPSERT_SQL =
+            "INSERT INTO card_daily_turnover (card_id, turnover_date, debit_total, debit_count, credit_total, credit_count) "
+                    + "VALUES (?, ?, ?, ?, ?, ?) "
+                    + "ON CONFLICT (card_id, turnover_date) DO UPDATE SET "
+                    + "debit_total = card_daily_turnover.debit_total + EXCLUDED.debit_total, "
+                    + "debit_count = card_daily_turnover.debit_count + EXCLUDED.debit_count, "
+                    + "credit_total = card_daily_turnover.credit_total + EXCLUDED.credit_total, "
+                    + "credit_count = card_daily_turnover.credit_count + EXCLUDED.credit_count";
+    private static final String BACKFILL_SQL =
+            "INSERT INTO card_daily_turnover (card_id, turnover_date, debit_total, debit_count, credit_total, credit_count) "
+                    + "SELECT card_id, turnover_date, SUM(debit_total), SUM(debit_count), SUM(credit_total), SUM(credit_count) "
+                    + "FROM ("
+                    + "SELECT from_card_id AS card_id, CAST(timestamp AS DATE) AS turnover_date, "
+                    + "amount AS debit_total, 1 AS debit_count, 0 AS credit_total, 0 AS credit_count "
+                    + "FROM transfers WHERE id > ? AND id <= ? "
+                    + "UNION ALL "
+                    + "SELECT to_card_id, CAST(timestamp AS DATE), 0, 0, amount, 1 "
+                    + "FROM transfers WHERE id > ? AND id <= ?"
+                    + ") t GROUP BY card_id, turnover_date ORDER BY card_id, turnover_date "
+                    + "ON CONFLICT (card_id, turnover_date) DO UPDATE SET "
+                    + "debit_total = card_daily_turnover.debit_total + EXCLUDED.debit_total, "
+                    + "debit_count = card_daily_turnover.debit_count + EXCLUDED.debit_count, "
+                    + "credit_total = card_daily_turnover.credit_total + EXCLUDED.credit_total, "
+                    + "credit_count = card_daily_turnover.credit_count + EXCLUDED.credit_count";
+    private static final String LOCK_PROGRESS_SQL =
+            "SELECT last_transfer_id, high_watermark, completed_at FROM card_turnover_backfill WHERE id = 1 FOR UPDATE";
+    private static final String UPDATE_PROGRESS_SQL =
+            "UPDATE card_turnover_backfill SET last_transfer_id = ?, completed_at = ? WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void applyTransfers(List<TransferDto> transfers) {
+        Map<DayKey, Totals> totals = new TreeMap<>(Comparator.comparing(DayKey::cardId).thenComparing(DayKey::day));
+        for (TransferDto transfer : transfers) {
+            LocalDate day = transfer.getTimestamp().toLocalDate();
+            totals.computeIfAbsent(new DayKey(transfer.getFromCardId(), day), key -> new Totals())
+                    .debit(transfer.getAmount());
+            totals.computeIfAbsent(new DayKey(transfer.getToCardId(), day), key -> new Totals())
+                    .credit(transfer.getAmount());
+        }
+        if (totals.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<DayKey, Totals>> ordered = new ArrayList<>(totals.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, ordered, ordered.size(), (ps, entry) -> {
+            Totals value = entry.getValue();
+            ps.setLong(1, entry.getKey().cardId());
+            ps.setDate(2, Date.valueOf(entry.getKey().day()));
+            ps.setBigDecimal(3, value.debitTotal);
+            ps.setLong(4, value.debitCount);
+            ps.setBigDecimal(5, value.creditTotal);
+            ps.setLong(6, value.creditCount);
+        });
+    }
+
+    @Override
+    public Optional<BackfillProgress> lockBackfillProgress() {
+        return jdbcTemplate.query(LOCK_PROGRESS_SQL, (rs, rowNum) -> {
+            Timestamp completedAt = rs.getTimestamp("completed_at");
+            return new BackfillProgress(rs.getLong("last_transfer_id"), rs.getLong("high_watermark"),
+                    completedAt != null ? completedAt.toLocalDateTime() : null);
+        }).stream().findFirst();
+    }
+
+    @Override
+    public void backfill(long afterId, long upToId) {
+        jdbcTemplate.update(BACKFILL_SQL, afterId, upToId, afterId, upToId);
+    }
+
+    @Override
+    public void updateBackfillProgress(long lastTransferId, LocalDateTime completedAt) {
+        jdbcTemplate.update(UPDATE_PROGRESS_SQL, lastTransferId,
+                completedAt != null ? Timestamp.valueOf(completedAt) : null);
+    }
+
+    private record DayKey(Long cardId, LocalDate day) {
+    }
+
+    private static final class Totals {
+        private BigDecimal debitTotal = BigDecimal.ZERO;
+        private long debitCount;
+        private BigDecimal creditTotal = BigDecimal.ZERO;
+        private long creditCount;
+
+        private void debit(BigDecimal amount) {
+            debitTotal = debitTotal.add(amount);
+            debitCount++;
+        }
+
+        private void credit(BigDecimal amount) {
+            creditTotal = creditTotal.add(amount);
+            creditCount++;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.bankrest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Перевод просроченных карт в статус EXPIRED одним запросом на порцию, без загрузки сущностей.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CardExpiryRepository {
+    /**
+     * Порция выбирается по частичному индексу idx_cards_expiry_pending, в который не входят уже
+     * просроченные карты, поэтому следующие порции не просматривают обработанные строки. Строки,
+     * заблокированные переводами или другим узлом, пропускаются и попадут в следующий запуск.
+     * Версия карты увеличивается, чтобы параллельный перевод, прочитавший карту активной, получил конфликт.
+     */
+    private static final String EXPIRE_CHUNK_SQL =
+            "WITH expired AS ("
+                    + "SELECT id, status FROM cards WHERE expiry_date < ? AND status <> 'EXPIRED' "
+                    + "ORDER BY expiry_date LIMIT ? FOR UPDATE SKIP LOCKED), "
+                    + "updated AS ("
+                    + "UPDATE cards c SET status = 'EXPIRED', version = c.version + 1, updated_at = ? "
+                    + "FROM expired WHERE c.id = expired.id "
+                    + "RETURNING c.id, expired.status AS previous_status) "
+                    + "INSERT INTO card_operations_history "
+                    + "(card_id, operation_type, previous_status, new_status, comment, created_at) "
+                    + "SELECT id, 'EXPIRE', previous_status, 'EXPIRED', 'Card expired', ? FROM updated";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Помечает просроченными до limit карт со сроком действия раньше today и записывает
+     * их операции в историю. Возвращает число обработанных карт.
+     */
+    public int expireChunk(LocalDate today, int limit, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        return jdbcTemplate.update(EXPIRE_CHUNK_SQL, Date.valueOf(today), limit, timestamp, timestamp);
+    }
+}
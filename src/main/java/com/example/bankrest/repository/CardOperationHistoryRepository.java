@@ -4,9 +4,36 @@ import com.example.bankrest.entity.Card;
 import com.example.bankrest.entity.CardOperationHistory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface CardOperationHistoryRepository extends JpaRepository<CardOperationHistory, Long> {
-    Page<CardOperationHistory> findByCardOrderByCreatedAtDesc(Card card, Pageable pageable);
+    /**
+     * Записи карты не старше from; from — граница холодного хранения, более старые месяцы читаются из архива.
+     */
+    Slice<CardOperationHistory> findByCardAndCreatedAtGreaterThanEqualOrderByCreatedAtDescIdDesc(
+            Card card, LocalDateTime from, Pageable pageable);
+
+    long countByCardAndCreatedAtGreaterThanEqual(Card card, LocalDateTime from);
+
     Page<CardOperationHistory> findByCardAndOperationTypeOrderByCreatedAtDesc(Card card, CardOperationHistory.OperationType operationType, Pageable pageable);
-} 
+
+    /**
+     * Записи карты, более старые, чем (createdAt, id). Сравнение строк целиком читается
+     * индексом (card_id, created_at, id) с нужной позиции, без пропуска предыдущих страниц;
+     * границы по created_at позволяют не заглядывать в более поздние секции и в месяцы,
+     * уже перенесённые в холодное хранение.
+     */
+    @Query(value = "SELECT * FROM card_operations_history WHERE card_id = :cardId AND created_at >= :from "
+            + "AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) "
+            + "ORDER BY created_at DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<CardOperationHistory> findByCardBefore(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") long id, @Param("limit") int limit);
+}
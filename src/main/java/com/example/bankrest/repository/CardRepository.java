@@ -1,11 +1,93 @@
 package com.example.bankrest.repository;
 
+import com.example.bankrest.dto.CardDto;
 import com.example.bankrest.entity.Card;
-import com.example.bankrest.entity.User;
-import org.springframework.data.domain.Page;
+import com.example.bankrest.entity.CardStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface CardRepository extends JpaRepository<Card, Long> {
-    Page<Card> findByUser(User user, Pageable pageable);
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface CardRepository extends JpaRepository<Card, Long>, CardRepositoryCustom {
+    /**
+     * Столбцы CardDto. Id владельца берётся из внешнего ключа карты, поэтому пользователи не читаются.
+     */
+    String CARD_DTO = "new com.example.bankrest.dto.CardDto("
+            + "c.id, c.maskedNumber, c.owner, c.expiryDate, c.status, c.balance, c.user.id)";
+
+    @Query("SELECT " + CARD_DTO + " FROM Card c ORDER BY c.id")
+    Slice<CardDto> findAllCardDtos(Pageable pageable);
+
+    @Query("SELECT " + CARD_DTO + " FROM Card c WHERE c.user.id = :userId ORDER BY c.id")
+    Slice<CardDto> findCardDtosByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    long countByUser_Id(Long userId);
+
+    @Query("SELECT " + CARD_DTO + " FROM Card c WHERE c.id > :afterId ORDER BY c.id")
+    List<CardDto> findCardDtosAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query("SELECT " + CARD_DTO + " FROM Card c WHERE c.user.id = :userId AND c.id > :afterId ORDER BY c.id")
+    List<CardDto> findCardDtosByUserIdAfter(@Param("userId") Long userId, @Param("afterId") Long afterId,
+                                            Limit limit);
+
+    /**
+     * Карта вместе с владельцем, чтобы её можно было использовать вне сессии.
+     */
+    @EntityGraph(attributePaths = "user")
+    Optional<Card> findWithUserById(Long id);
+
+    @Query("SELECT " + CARD_DTO + " FROM Card c WHERE c.numberHash = :numberHash")
+    Optional<CardDto> findCardDtoByNumberHash(@Param("numberHash") String numberHash);
+
+    /**
+     * Владелец и статус карт без загрузки сущностей: карты читаются по первичному ключу, владелец — по ключу users.
+     */
+    @Query("SELECT c.id AS id, u.id AS userId, u.username AS username, c.status AS status "
+            + "FROM Card c JOIN c.user u WHERE c.id IN :ids")
+    List<CardOwnership> findOwnershipByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c.numberHash FROM Card c WHERE c.numberHash IN :numberHashes")
+    List<String> findNumberHashesIn(@Param("numberHashes") Collection<String> numberHashes);
+
+    /**
+     * Карты, для которых ещё не построен индекс номера.
+     */
+    List<EncryptedNumber> findByNumberHashIsNullOrderByIdAsc(Limit limit);
+
+    /**
+     * Записывает индекс номера, не меняя версию карты.
+     */
+    @Modifying
+    @Query("UPDATE Card c SET c.numberHash = :numberHash, c.last4 = :last4 WHERE c.id = :id")
+    int updateNumberIndex(@Param("id") Long id, @Param("numberHash") String numberHash, @Param("last4") String last4);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    interface CardOwnership {
+        Long getId();
+
+        Long getUserId();
+
+        String getUsername();
+
+        CardStatus getStatus();
+    }
+
+    interface EncryptedNumber {
+        Long getId();
+
+        String getEncryptedNumber();
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.CardDto;
+import com.example.bankrest.entity.Card;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface CardRepositoryCustom {
+    /**
+     * Карты, подходящие под условие, по возрастанию id после afterId, не более limit строк.
+     * Читаются только столбцы CardDto, без загрузки сущностей и подсчёта общего числа строк.
+     */
+    List<CardDto> findCardDtos(Specification<Card> condition, long afterId, int limit);
+}
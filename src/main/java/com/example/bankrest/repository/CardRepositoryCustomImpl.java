@@ -0,0 +1,33 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.CardDto;
+import com.example.bankrest.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public class CardRepositoryCustomImpl implements CardRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CardDto> findCardDtos(Specification<Card> condition, long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardDto> query = cb.createQuery(CardDto.class);
+        Root<Card> card = query.from(Card.class);
+        query.select(cb.construct(CardDto.class,
+                card.get("id"), card.get("maskedNumber"), card.get("owner"), card.get("expiryDate"),
+                card.get("status"), card.get("balance"), card.get("user").get("id")));
+        Predicate after = cb.greaterThan(card.<Long>get("id"), afterId);
+        Predicate filter = condition.toPredicate(card, query, cb);
+        query.where(filter != null ? cb.and(filter, after) : after);
+        query.orderBy(cb.asc(card.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.CardSearchFilter;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardStatus;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Условия поиска карт. Каждое условие обслуживается своим индексом: статус и срок действия —
+ * (status, expiry_date, id), имя владельца — триграммным индексом по lower(owner), последние цифры
+ * номера — (last4, id), пользователь — (user_id, id).
+ */
+public final class CardSpecifications {
+    private static final char LIKE_ESCAPE = '\\';
+
+    private CardSpecifications() {
+    }
+
+    public static Specification<Card> matching(CardSearchFilter filter) {
+        List<Specification<Card>> conditions = new ArrayList<>();
+        if (filter.getStatus() != null) {
+            conditions.add(hasStatus(filter.getStatus()));
+        }
+        if (filter.getExpiryFrom() != null) {
+            conditions.add(expiresOnOrAfter(filter.getExpiryFrom()));
+        }
+        if (filter.getExpiryTo() != null) {
+            conditions.add(expiresOnOrBefore(filter.getExpiryTo()));
+        }
+        if (filter.getOwner() != null) {
+            conditions.add(filter.getOwnerMatch() == CardSearchFilter.OwnerMatch.FUZZY
+                    ? ownerSimilarTo(filter.getOwner())
+                    : ownerStartsWith(filter.getOwner()));
+        }
+        if (filter.getLast4() != null) {
+            conditions.add(hasLast4(filter.getLast4()));
+        }
+        if (filter.getUserId() != null) {
+            conditions.add(ownedBy(filter.getUserId()));
+        }
+        return Specification.allOf(conditions);
+    }
+
+    public static Specification<Card> hasStatus(CardStatus status) {
+        return (card, query, cb) -> cb.equal(card.get("status"), status);
+    }
+
+    public static Specification<Card> expiresOnOrAfter(LocalDate date) {
+        return (card, query, cb) -> cb.greaterThanOrEqualTo(card.<LocalDate>get("expiryDate"), date);
+    }
+
+    public static Specification<Card> expiresOnOrBefore(LocalDate date) {
+        return (card, query, cb) -> cb.lessThanOrEqualTo(card.<LocalDate>get("expiryDate"), date);
+    }
+
+    public static Specification<Card> ownerStartsWith(String prefix) {
+        String pattern = escapeLike(prefix.trim().toLowerCase(Locale.ROOT)) + "%";
+        return (card, query, cb) -> cb.like(cb.lower(card.<String>get("owner")), pattern, LIKE_ESCAPE);
+    }
+
+    /**
+     * Имя владельца похоже на name по триграммам, см. TrigramFunctionContributor.
+     */
+    public static Specification<Card> ownerSimilarTo(String name) {
+        String value = name.trim().toLowerCase(Locale.ROOT);
+        return (card, query, cb) -> cb.isTrue(cb.function("trgm_similar", Boolean.class,
+                cb.lower(card.<String>get("owner")), cb.literal(value)));
+    }
+
+    public static Specification<Card> hasLast4(String last4) {
+        return (card, query, cb) -> cb.equal(card.get("last4"), last4);
+    }
+
+    public static Specification<Card> ownedBy(Long userId) {
+        return (card, query, cb) -> cb.equal(card.get("user").get("id"), userId);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
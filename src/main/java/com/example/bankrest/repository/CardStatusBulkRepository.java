@@ -0,0 +1,105 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.entity.CardOperationHistory;
+import com.example.bankrest.entity.CardStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Массовая смена статуса карт одним запросом на порцию, без загрузки сущностей.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CardStatusBulkRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Меняет статус карт из cardIds, которые ещё не в целевом статусе, и записывает их операции
+     * в историю. Возвращает id изменённых карт.
+     */
+    public List<Long> changeStatusOfCards(Collection<Long> cardIds, StatusChange change, LocalDateTime now) {
+        String sql = changeStatusSql("id = ANY (?)", change, false);
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("bigint", cardIds.toArray()));
+            int index = bindTarget(ps, 2, change);
+            bindUpdate(ps, index, change, now);
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    /**
+     * То же для не больше limit карт пользователя. Изменённые карты больше не подходят под условие,
+     * поэтому следующая порция начинается с оставшихся.
+     */
+    public List<Long> changeStatusOfUserCards(Long userId, int limit, StatusChange change, LocalDateTime now) {
+        String sql = changeStatusSql("user_id = ?", change, true);
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setLong(1, userId);
+            int index = bindTarget(ps, 2, change);
+            ps.setInt(index++, limit);
+            bindUpdate(ps, index, change, now);
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    /**
+     * Карты блокируются в порядке id, как и при переводах, поэтому порция не взаимоблокируется с ними,
+     * а ждёт завершения переводов по своим картам. Версия карты увеличивается, чтобы параллельное
+     * изменение, прочитавшее старый статус, получило конфликт. Истёкшие карты не меняются: активация
+     * пропускает карты со сроком действия раньше activeOn, блокировка — карты в статусе EXPIRED.
+     */
+    static String changeStatusSql(String selection, StatusChange change, boolean limited) {
+        return "WITH target AS ("
+                + "SELECT id, status FROM cards WHERE " + selection + " AND status <> ?"
+                + (change.activeOn() != null ? " AND expiry_date >= ?" : "")
+                + (change.newStatus() == CardStatus.BLOCKED ? " AND status <> 'EXPIRED'" : "")
+                + " ORDER BY id" + (limited ? " LIMIT ?" : "") + " FOR UPDATE), "
+                + "updated AS ("
+                + "UPDATE cards c SET status = ?, version = c.version + 1, updated_at = ? "
+                + "FROM target WHERE c.id = target.id "
+                + "RETURNING c.id, target.status AS previous_status) "
+                + "INSERT INTO card_operations_history "
+                + "(card_id, operation_type, performed_by_id, previous_status, new_status, comment, created_at) "
+                + "SELECT id, ?, ?, previous_status, ?, ?, ? FROM updated RETURNING card_id";
+    }
+
+    private static int bindTarget(PreparedStatement ps, int index, StatusChange change) throws SQLException {
+        ps.setString(index++, change.newStatus().name());
+        if (change.activeOn() != null) {
+            ps.setDate(index++, Date.valueOf(change.activeOn()));
+        }
+        return index;
+    }
+
+    private static void bindUpdate(PreparedStatement ps, int index, StatusChange change, LocalDateTime now)
+            throws SQLException {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        ps.setString(index++, change.newStatus().name());
+        ps.setTimestamp(index++, timestamp);
+        ps.setString(index++, change.operationType().name());
+        ps.setObject(index++, change.performedById(), Types.BIGINT);
+        ps.setString(index++, change.newStatus().name());
+        ps.setString(index++, change.comment());
+        ps.setTimestamp(index, timestamp);
+    }
+
+    /**
+     * Смена статуса. activeOn задаётся для активации: карты со сроком действия раньше этой даты не меняются.
+     */
+    public record StatusChange(CardStatus newStatus, CardOperationHistory.OperationType operationType,
+                               String comment, Long performedById, LocalDate activeOn) {
+    }
+}
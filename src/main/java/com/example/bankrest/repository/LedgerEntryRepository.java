@@ -0,0 +1,7 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long>, LedgerEntryRepositoryCustom {
+}
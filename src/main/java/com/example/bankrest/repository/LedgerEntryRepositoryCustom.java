@@ -0,0 +1,62 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.TransferDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+public interface LedgerEntryRepositoryCustom {
+    /**
+     * Текущие балансы карт: остаток после последней проводки, а для карт без проводок —
+     * баланс контрольной точки из cards. Отсутствующие карты в результат не попадают.
+     */
+    Map<Long, BigDecimal> currentBalances(Collection<Long> cardIds);
+
+    /**
+     * Добавляет по две проводки на каждый перевод в порядке списка. Остатки считаются от balances,
+     * которые при этом обновляются до остатков после последней проводки по каждой карте.
+     * Переводы должны иметь id. Если балансы карты изменились после чтения или карта перестала
+     * быть активной, бросает ObjectOptimisticLockingFailureException.
+     */
+    void appendTransfers(List<TransferDto> transfers, Map<Long, BigDecimal> balances);
+
+    /**
+     * То же для переводов движка в памяти: они уже проведены, поэтому статус карт не проверяется.
+     */
+    void appendProjectedTransfers(List<TransferDto> transfers, Map<Long, BigDecimal> balances);
+
+    /**
+     * Добавляет ручную корректировку баланса карты на delta с итоговым остатком runningBalance.
+     * Если баланс карты к этому моменту отличается от runningBalance - delta, бросает
+     * ObjectOptimisticLockingFailureException.
+     */
+    void appendAdjustment(Long cardId, BigDecimal delta, BigDecimal runningBalance);
+
+    /**
+     * Откладывает перевод движка в памяти, который не удалось перенести в БД, в ledger_dead_letters
+     * для ручного разбора. Повторная запись того же перевода ничего не меняет.
+     */
+    void deadLetterTransfer(TransferDto transfer, String reason);
+
+    /**
+     * Блокирует строку прогресса контрольных точек. Пусто, если её держит другой узел.
+     */
+    OptionalLong lockCheckpoint();
+
+    /**
+     * Наибольший id проводки, созданной раньше createdBefore, или 0.
+     */
+    long lastEntryIdBefore(LocalDateTime createdBefore);
+
+    /**
+     * Переносит в cards.balance остатки последних по entry_seq проводок карт среди проводок с id
+     * в (afterId, upToId] и запоминает их entry_seq. Возвращает число обновлённых карт.
+     */
+    int checkpointBalances(long afterId, long upToId);
+
+    void updateCheckpoint(long lastEntryId);
+}
@@ -0,0 +1,177 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.LedgerEntry.EntryType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+@RequiredArgsConstructor
+public class LedgerEntryRepositoryCustomImpl implements LedgerEntryRepositoryCustom {
+    private static final String CURRENT_BALANCES_SQL =
+            "SELECT c.id, COALESCE(e.running_balance, c.balance) AS balance FROM cards c "
+                    + "LEFT JOIN LATERAL (SELECT running_balance FROM ledger_entries "
+                    + "WHERE card_id = c.id ORDER BY entry_seq DESC LIMIT 1) e ON TRUE "
+                    + "WHERE c.id = ANY (?)";
+    private static final String INSERT_SQL =
+            "INSERT INTO ledger_entries (card_id, transfer_id, entry_type, amount, running_balance, created_at, entry_seq) "
+                    + "SELECT c.id, ?, ?, ?, ?, ?, COALESCE(e.entry_seq, 0) + 1 FROM cards c "
+                    + "LEFT JOIN LATERAL (SELECT entry_seq, running_balance FROM ledger_entries "
+                    + "WHERE card_id = c.id ORDER BY entry_seq DESC LIMIT 1) e ON TRUE "
+                    + "WHERE c.id = ? AND COALESCE(e.running_balance, c.balance) = ?";
+    private static final String ACTIVE_CARD_CONDITION = " AND c.status = 'ACTIVE'";
+    private static final String DEAD_LETTER_SQL =
+            "INSERT INTO ledger_dead_letters (transfer_id, from_card_id, to_card_id, amount, transfer_timestamp, "
+                    + "reason, failed_at) VALUES (?, ?, ?, ?, ?, ?, ?) ON CONFLICT (transfer_id) DO NOTHING";
+    private static final String LOCK_CHECKPOINT_SQL =
+            "SELECT last_entry_id FROM ledger_checkpoint WHERE id = 1 FOR UPDATE SKIP LOCKED";
+    private static final String LAST_ENTRY_BEFORE_SQL =
+            "SELECT id FROM ledger_entries WHERE created_at < ? ORDER BY id DESC LIMIT 1";
+    // id проводки служит только курсором обхода журнала; позиция и порядок проводок карты — entry_seq.
+    private static final String CHECKPOINT_SQL =
+            "UPDATE cards c SET balance = e.running_balance, balance_entry_seq = e.entry_seq "
+                    + "FROM (SELECT DISTINCT ON (card_id) card_id, entry_seq, running_balance FROM ledger_entries "
+                    + "WHERE id > ? AND id <= ? ORDER BY card_id, entry_seq DESC) e "
+                    + "WHERE c.id = e.card_id AND c.balance_entry_seq < e.entry_seq";
+    private static final String UPDATE_CHECKPOINT_SQL = "UPDATE ledger_checkpoint SET last_entry_id = ? WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Map<Long, BigDecimal> currentBalances(Collection<Long> cardIds) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        if (cardIds.isEmpty()) {
+            return balances;
+        }
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(CURRENT_BALANCES_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", cardIds.toArray()));
+            return ps;
+        }, (RowCallbackHandler) rs -> balances.put(rs.getLong("id"), rs.getBigDecimal("balance")));
+        return balances;
+    }
+
+    @Override
+    public void appendTransfers(List<TransferDto> transfers, Map<Long, BigDecimal> balances) {
+        append(INSERT_SQL + ACTIVE_CARD_CONDITION, transferRows(transfers, balances));
+    }
+
+    @Override
+    public void appendProjectedTransfers(List<TransferDto> transfers, Map<Long, BigDecimal> balances) {
+        append(INSERT_SQL, transferRows(transfers, balances));
+    }
+
+    @Override
+    public void appendAdjustment(Long cardId, BigDecimal delta, BigDecimal runningBalance) {
+        append(INSERT_SQL, List.of(new Row(cardId, null, delta.signum() < 0 ? EntryType.DEBIT : EntryType.CREDIT,
+                delta.abs(), runningBalance.subtract(delta), runningBalance, LocalDateTime.now())));
+    }
+
+    @Override
+    public void deadLetterTransfer(TransferDto transfer, String reason) {
+        jdbcTemplate.update(DEAD_LETTER_SQL, transfer.getId(), transfer.getFromCardId(), transfer.getToCardId(),
+                transfer.getAmount(), Timestamp.valueOf(transfer.getTimestamp()), reason,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    @Override
+    public OptionalLong lockCheckpoint() {
+        List<Long> lastEntryId = jdbcTemplate.queryForList(LOCK_CHECKPOINT_SQL, Long.class);
+        return lastEntryId.isEmpty() ? OptionalLong.empty() : OptionalLong.of(lastEntryId.getFirst());
+    }
+
+    @Override
+    public long lastEntryIdBefore(LocalDateTime createdBefore) {
+        List<Long> ids = jdbcTemplate.queryForList(LAST_ENTRY_BEFORE_SQL, Long.class, Timestamp.valueOf(createdBefore));
+        return ids.isEmpty() ? 0 : ids.getFirst();
+    }
+
+    @Override
+    public int checkpointBalances(long afterId, long upToId) {
+        return jdbcTemplate.update(CHECKPOINT_SQL, afterId, upToId);
+    }
+
+    @Override
+    public void updateCheckpoint(long lastEntryId) {
+        jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, lastEntryId);
+    }
+
+    private static List<Row> transferRows(List<TransferDto> transfers, Map<Long, BigDecimal> balances) {
+        List<Row> rows = new ArrayList<>(transfers.size() * 2);
+        for (TransferDto transfer : transfers) {
+            BigDecimal amount = transfer.getAmount();
+            rows.add(row(balances, transfer.getFromCardId(), transfer, EntryType.DEBIT, amount.negate()));
+            rows.add(row(balances, transfer.getToCardId(), transfer, EntryType.CREDIT, amount));
+        }
+        return rows;
+    }
+
+    private static Row row(Map<Long, BigDecimal> balances, Long cardId, TransferDto transfer, EntryType type,
+                           BigDecimal delta) {
+        BigDecimal balance = balances.get(cardId);
+        if (balance == null) {
+            throw new IllegalStateException("Balance of card " + cardId + " is not loaded");
+        }
+        BigDecimal updated = balance.add(delta);
+        balances.put(cardId, updated);
+        return new Row(cardId, transfer.getId(), type, delta.abs(), balance, updated, transfer.getTimestamp());
+    }
+
+    /**
+     * Вставляет проводки по порядку. Каждая продолжает историю карты, только если последняя проводка
+     * в БД всё ещё оставила тот остаток, от которого посчитана новая; иначе, как и при одновременной
+     * вставке того же entry_seq другой транзакцией, бросает ObjectOptimisticLockingFailureException,
+     * и транзакция должна повториться с новыми балансами. Строка карты при этом только читается.
+     */
+    private void append(String sql, List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int[][] counts;
+        try {
+            counts = jdbcTemplate.batchUpdate(sql, rows, rows.size(), (ps, row) -> {
+                if (row.transferId() != null) {
+                    ps.setLong(1, row.transferId());
+                } else {
+                    ps.setNull(1, Types.BIGINT);
+                }
+                ps.setString(2, row.type().name());
+                ps.setBigDecimal(3, row.amount());
+                ps.setBigDecimal(4, row.runningBalance());
+                ps.setTimestamp(5, Timestamp.valueOf(row.createdAt()));
+                ps.setLong(6, row.cardId());
+                ps.setBigDecimal(7, row.previousBalance());
+            });
+        } catch (DuplicateKeyException e) {
+            throw new ObjectOptimisticLockingFailureException("Card ledger was extended concurrently", e);
+        }
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    throw new ObjectOptimisticLockingFailureException(Card.class, rows.get(index).cardId());
+                }
+                index++;
+            }
+        }
+    }
+
+    private record Row(long cardId, Long transferId, EntryType type, BigDecimal amount,
+                       BigDecimal previousBalance, BigDecimal runningBalance, LocalDateTime createdAt) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.bankrest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Обслуживание месячных секций таблиц, секционированных по времени.
+ * Секции называются parent_YYYY_MM и создаются функцией create_monthly_partition из миграции.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    private static final String CREATE_SQL = "SELECT create_monthly_partition(?, ?)";
+    private static final String PARTITIONS_SQL =
+            "SELECT c.relname, i.inhdetachpending FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                    + "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname";
+    private static final String MONTHLY_TABLES_SQL =
+            "SELECT relname FROM pg_class WHERE relkind = 'r' AND relnamespace = current_schema()::regnamespace "
+                    + "AND relname ~ ('^' || ? || '_[0-9]{4}_[0-9]{2}$') ORDER BY relname";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Создаёт секцию месяца, если её ещё нет, и возвращает true, если она создана. Должен вызываться
+     * в транзакции: ожидание блокировки родительской таблицы ограничено lockTimeout, чтобы создание
+     * секции не выстраивало за собой очередь запросов.
+     */
+    public boolean createMonthlyPartition(String parent, LocalDate month, Duration lockTimeout) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = '" + lockTimeout.toMillis() + "ms'");
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(CREATE_SQL, Boolean.class, parent, Date.valueOf(month)));
+    }
+
+    public List<Partition> findPartitions(String parent) {
+        return jdbcTemplate.query(PARTITIONS_SQL,
+                (rs, rowNum) -> new Partition(rs.getString("relname"), rs.getBoolean("inhdetachpending")), parent);
+    }
+
+    /**
+     * Месячные таблицы родителя, как присоединённые секции, так и уже отсоединённые.
+     */
+    public List<String> findMonthlyTables(String parent) {
+        return jdbcTemplate.queryForList(MONTHLY_TABLES_SQL, String.class, parent);
+    }
+
+    /**
+     * Отсоединяет секцию через DETACH PARTITION CONCURRENTLY: запросы к родительской таблице
+     * при этом не блокируются. Команда не может выполняться внутри транзакции. Секция, отсоединение
+     * которой было прервано, завершается через FINALIZE. Данные остаются в самостоятельной таблице.
+     */
+    public void detachPartition(String parent, Partition partition, Duration lockTimeout) {
+        String sql = "ALTER TABLE " + quote(parent) + " DETACH PARTITION " + quote(partition.name())
+                + (partition.detachPending() ? " FINALIZE" : " CONCURRENTLY");
+        executeWithLockTimeout(sql, lockTimeout);
+    }
+
+    public void dropTable(String table, Duration lockTimeout) {
+        executeWithLockTimeout("DROP TABLE IF EXISTS " + quote(table), lockTimeout);
+    }
+
+    private void executeWithLockTimeout(String sql, Duration lockTimeout) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            try (Statement statement = con.createStatement()) {
+                statement.execute("SET lock_timeout = '" + lockTimeout.toMillis() + "ms'");
+                try {
+                    statement.execute(sql);
+                } finally {
+                    statement.execute("RESET lock_timeout");
+                }
+            }
+            return null;
+        });
+    }
+
+    static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    public record Partition(String name, boolean detachPending) {
+    }
+}
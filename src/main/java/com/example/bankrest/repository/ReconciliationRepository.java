@@ -0,0 +1,114 @@
+package com.example.bankrest.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Чтения для сверки балансов. Все запросы ограничены диапазоном id карт [fromId, toId)
+ * и идут по индексам, начинающимся с id карты.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ReconciliationRepository {
+    private static final String ID_BOUNDS_SQL = "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM cards";
+    private static final String OUTGOING_SQL =
+            "SELECT from_card_id AS card_id, amount FROM transfers WHERE from_card_id >= ? AND from_card_id < ?";
+    private static final String INCOMING_SQL =
+            "SELECT to_card_id AS card_id, amount FROM transfers WHERE to_card_id >= ? AND to_card_id < ?";
+    private static final String CARD_BALANCES_SQL =
+            "SELECT c.id, COALESCE(e.running_balance, c.balance) AS actual, "
+                    + "COALESCE(a.adjustments, 0) AS adjustments, COALESCE(b.net_amount, 0) AS archived "
+                    + "FROM cards c "
+                    + "LEFT JOIN LATERAL (SELECT running_balance FROM ledger_entries "
+                    + "WHERE card_id = c.id ORDER BY entry_seq DESC LIMIT 1) e ON TRUE "
+                    + "LEFT JOIN LATERAL (SELECT SUM(CASE WHEN entry_type = 'CREDIT' THEN amount ELSE -amount END) "
+                    + "AS adjustments FROM ledger_entries WHERE card_id = c.id AND transfer_id IS NULL) a ON TRUE "
+                    + "LEFT JOIN card_archived_balances b ON b.card_id = c.id "
+                    + "WHERE c.id >= ? AND c.id < ? ORDER BY c.id";
+    // Строки старше самого раннего перевода в transfers относятся к месяцам, перенесённым в холодное хранение.
+    private static final String ORPHANED_ENTRIES_SQL =
+            "SELECT count(*) FROM ledger_entries e WHERE e.card_id >= ? AND e.card_id < ? "
+                    + "AND e.transfer_id IS NOT NULL AND e.created_at >= (SELECT MIN(timestamp) FROM transfers) "
+                    + "AND NOT EXISTS (SELECT 1 FROM transfers t WHERE t.id = e.transfer_id)";
+    private static final String ORPHANED_KEYS_SQL =
+            "SELECT count(*) FROM transfer_idempotency_keys k WHERE k.transfer_id IS NOT NULL "
+                    + "AND k.transfer_timestamp >= (SELECT MIN(timestamp) FROM transfers) "
+                    + "AND NOT EXISTS (SELECT 1 FROM transfers t "
+                    + "WHERE t.id = k.transfer_id AND t.timestamp = k.transfer_timestamp)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Наименьший и наибольший id карт; null, если карт нет.
+     */
+    public IdBounds findCardIdBounds() {
+        List<IdBounds> bounds = jdbcTemplate.query(ID_BOUNDS_SQL, (rs, rowNum) -> {
+            long min = rs.getLong("min_id");
+            return rs.wasNull() ? null : new IdBounds(min, rs.getLong("max_id"));
+        });
+        return bounds.isEmpty() ? null : bounds.getFirst();
+    }
+
+    /**
+     * Передаёт суммы переводов карт диапазона: исходящих при outgoing, иначе входящих.
+     * Строки читаются серверным курсором, поэтому метод должен вызываться в транзакции.
+     */
+    public void streamTransferAmounts(boolean outgoing, long fromId, long toId, int fetchSize,
+                                      AmountConsumer consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(outgoing ? OUTGOING_SQL : INCOMING_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, fromId);
+            ps.setLong(2, toId);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getLong("card_id"), rs.getBigDecimal("amount")));
+    }
+
+    /**
+     * Текущий баланс карт диапазона вместе с суммой ручных корректировок и итогом архивных переводов.
+     */
+    public void streamCardBalances(long fromId, long toId, Consumer<CardBalance> consumer) {
+        jdbcTemplate.query(CARD_BALANCES_SQL, (RowCallbackHandler) rs -> consumer.accept(new CardBalance(
+                rs.getLong("id"),
+                rs.getBigDecimal("actual"),
+                rs.getBigDecimal("adjustments"),
+                rs.getBigDecimal("archived"))), fromId, toId);
+    }
+
+    /**
+     * Число проводок карт диапазона, ссылающихся на отсутствующий в transfers перевод. Внешнего ключа
+     * на секционированную transfers нет, поэтому целостность ссылок проверяется сверкой.
+     */
+    public long countOrphanedLedgerEntries(long fromId, long toId) {
+        Long count = jdbcTemplate.queryForObject(ORPHANED_ENTRIES_SQL, Long.class, fromId, toId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Число ключей идемпотентности, записанный перевод которых отсутствует в transfers.
+     */
+    public long countOrphanedIdempotencyKeys() {
+        Long count = jdbcTemplate.queryForObject(ORPHANED_KEYS_SQL, Long.class);
+        return count != null ? count : 0;
+    }
+
+    @FunctionalInterface
+    public interface AmountConsumer {
+        void accept(long cardId, BigDecimal amount);
+    }
+
+    public record IdBounds(long minId, long maxId) {
+    }
+
+    public record CardBalance(long cardId, BigDecimal actual, BigDecimal adjustments, BigDecimal archived) {
+    }
+}
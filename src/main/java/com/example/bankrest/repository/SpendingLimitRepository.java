@@ -0,0 +1,16 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.entity.LimitPeriod;
+import com.example.bankrest.entity.LimitScope;
+import com.example.bankrest.entity.SpendingLimit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SpendingLimitRepository extends JpaRepository<SpendingLimit, Long> {
+
+    List<SpendingLimit> findByScopeAndSubjectIdOrderByPeriodAsc(LimitScope scope, Long subjectId);
+
+    Optional<SpendingLimit> findByScopeAndSubjectIdAndPeriod(LimitScope scope, Long subjectId, LimitPeriod period);
+}
@@ -0,0 +1,33 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.entity.TransferIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface TransferIdempotencyKeyRepository extends JpaRepository<TransferIdempotencyKey, Long> {
+    @Query("SELECT k FROM TransferIdempotencyKey k WHERE k.user.id = :userId AND k.idempotencyKey = :key")
+    Optional<TransferIdempotencyKey> findByUserIdAndKey(@Param("userId") Long userId, @Param("key") String key);
+
+    /**
+     * Записывает в занятый ключ выполненный перевод и поля ответа на повторы.
+     */
+    @Modifying
+    @Query("UPDATE TransferIdempotencyKey k SET k.transferId = :transferId, k.fromCardId = :fromCardId, "
+            + "k.toCardId = :toCardId, k.amount = :amount, k.transferTimestamp = :timestamp WHERE k.id = :id")
+    int recordTransfer(@Param("id") Long id, @Param("transferId") Long transferId,
+                       @Param("fromCardId") Long fromCardId, @Param("toCardId") Long toCardId,
+                       @Param("amount") BigDecimal amount, @Param("timestamp") LocalDateTime timestamp);
+
+    /**
+     * Освобождает занятый ключ, если его с момента createdAt никто не записал и не перезанял.
+     */
+    @Modifying
+    @Query("DELETE FROM TransferIdempotencyKey k WHERE k.id = :id AND k.transferId IS NULL AND k.createdAt = :createdAt")
+    int releaseStaleClaim(@Param("id") Long id, @Param("createdAt") LocalDateTime createdAt);
+}
@@ -3,9 +3,100 @@ package com.example.bankrest.repository;
 import com.example.bankrest.entity.Transfer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface TransferRepository extends JpaRepository<Transfer, Long> {
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TransferRepository extends JpaRepository<Transfer, Long>, TransferRepositoryCustom {
     Page<Transfer> findByFromCard_Id(Long cardId, Pageable pageable);
     Page<Transfer> findByToCard_Id(Long cardId, Pageable pageable);
+
+    @Query("SELECT t FROM Transfer t WHERE t.fromCard.id = :cardId AND t.timestamp >= :from AND t.timestamp < :to "
+            + "ORDER BY t.timestamp DESC, t.id DESC")
+    Slice<Transfer> findOutgoing(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                                 @Param("to") LocalDateTime to, Pageable pageable);
+
+    @Query("SELECT t FROM Transfer t WHERE t.toCard.id = :cardId AND t.timestamp >= :from AND t.timestamp < :to "
+            + "ORDER BY t.timestamp DESC, t.id DESC")
+    Slice<Transfer> findIncoming(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                                 @Param("to") LocalDateTime to, Pageable pageable);
+
+    /**
+     * Входящие и исходящие переводы карты. Каждая ветка читает не больше window строк по своему
+     * составному индексу в порядке убывания времени, после чего ветки сливаются. Для среза window
+     * должен покрывать смещение страницы и её размер вместе с лишней строкой.
+     */
+    @Query(value = "SELECT t.* FROM ("
+            + "(SELECT * FROM transfers WHERE from_card_id = :cardId AND timestamp >= :from AND timestamp < :to "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :window) "
+            + "UNION ALL "
+            + "(SELECT * FROM transfers WHERE to_card_id = :cardId AND timestamp >= :from AND timestamp < :to "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :window)"
+            + ") t ORDER BY t.timestamp DESC, t.id DESC",
+            nativeQuery = true)
+    Slice<Transfer> findIncomingAndOutgoing(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to, @Param("window") long window,
+                                            Pageable pageable);
+
+    @Query("SELECT count(t) FROM Transfer t WHERE t.fromCard.id = :cardId "
+            + "AND t.timestamp >= :from AND t.timestamp < :to")
+    long countOutgoing(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                       @Param("to") LocalDateTime to);
+
+    @Query("SELECT count(t) FROM Transfer t WHERE t.toCard.id = :cardId "
+            + "AND t.timestamp >= :from AND t.timestamp < :to")
+    long countIncoming(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                       @Param("to") LocalDateTime to);
+
+    /**
+     * Переводы по курсору: строки старше (beforeTimestamp, beforeId) читаются по составному индексу
+     * с нужной позиции, поэтому стоимость страницы не зависит от её номера. Отдельные границы
+     * по timestamp дублируют сравнение строк, чтобы планировщик отсекал лишние месячные секции.
+     */
+    @Query(value = "SELECT * FROM transfers WHERE from_card_id = :cardId AND timestamp >= :from "
+            + "AND timestamp <= :beforeTimestamp AND (timestamp, id) < (:beforeTimestamp, :beforeId) "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Transfer> findOutgoingBefore(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                                      @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                      @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    @Query(value = "SELECT * FROM transfers WHERE to_card_id = :cardId AND timestamp >= :from "
+            + "AND timestamp <= :beforeTimestamp AND (timestamp, id) < (:beforeTimestamp, :beforeId) "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Transfer> findIncomingBefore(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                                      @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                      @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    @Query(value = "SELECT t.* FROM ("
+            + "(SELECT * FROM transfers WHERE from_card_id = :cardId AND timestamp >= :from "
+            + "AND timestamp <= :beforeTimestamp AND (timestamp, id) < (:beforeTimestamp, :beforeId) "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :limit) "
+            + "UNION ALL "
+            + "(SELECT * FROM transfers WHERE to_card_id = :cardId AND timestamp >= :from "
+            + "AND timestamp <= :beforeTimestamp AND (timestamp, id) < (:beforeTimestamp, :beforeId) "
+            + "ORDER BY timestamp DESC, id DESC LIMIT :limit)"
+            + ") t ORDER BY t.timestamp DESC, t.id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Transfer> findIncomingAndOutgoingBefore(@Param("cardId") Long cardId, @Param("from") LocalDateTime from,
+                                                 @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                                 @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    /**
+     * Самый ранний перевод с такими картами и суммой, выполненный не раньше since и ещё не записанный
+     * ни в один ключ идемпотентности. По нему устаревший занятый ключ узнаёт, успел ли пройти его перевод.
+     */
+    @Query(value = "SELECT * FROM transfers t WHERE t.from_card_id = :fromCardId AND t.to_card_id = :toCardId "
+            + "AND t.amount = :amount AND t.timestamp >= :since AND NOT EXISTS ("
+            + "SELECT 1 FROM transfer_idempotency_keys k WHERE k.transfer_id = t.id) "
+            + "ORDER BY t.timestamp, t.id LIMIT 1",
+            nativeQuery = true)
+    List<Transfer> findUnclaimedTransfer(@Param("fromCardId") Long fromCardId, @Param("toCardId") Long toCardId,
+                                         @Param("amount") BigDecimal amount, @Param("since") LocalDateTime since);
 }
@@ -0,0 +1,44 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.dto.TransferStatementRow;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface TransferRepositoryCustom {
+    List<Long> insertAll(List<TransferDto> transfers);
+
+    /**
+     * Резервирует идентификаторы переводов в последовательности таблицы transfers.
+     */
+    List<Long> allocateIds(int count);
+
+    /**
+     * Вставляет переводы с заранее выданными идентификаторами, пропуская уже существующие.
+     * Возвращает идентификаторы фактически вставленных строк.
+     */
+    List<Long> insertAllIfAbsent(List<TransferDto> transfers);
+
+    /**
+     * Передаёт переводы карты в порядке возрастания времени, читая результат серверным курсором
+     * порциями по fetchSize строк. Должен вызываться внутри транзакции, иначе драйвер PostgreSQL
+     * загрузит весь результат в память. Границы периода необязательны.
+     */
+    void streamStatement(Long cardId, TransferDirection direction, LocalDateTime from, LocalDateTime to,
+                         int fetchSize, Consumer<TransferStatementRow> consumer);
+
+    /**
+     * Передаёт списания начиная с since, сгруппированные по карте и минуте, для карт из cardIds
+     * и для всех карт пользователей из userIds.
+     */
+    void streamDebitTotals(LocalDateTime since, Collection<Long> cardIds, Collection<Long> userIds,
+                           Consumer<DebitTotal> consumer);
+
+    record DebitTotal(long cardId, long userId, LocalDateTime minute, BigDecimal amount, int count) {
+    }
+}
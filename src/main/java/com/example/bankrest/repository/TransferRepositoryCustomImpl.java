@@ -0,0 +1,162 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.dto.TransferStatementRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+@RequiredArgsConstructor
+public class TransferRepositoryCustomImpl implements TransferRepositoryCustom {
+    private static final String INSERT_SQL =
+            "INSERT INTO transfers (from_card_id, to_card_id, amount, timestamp) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_IF_ABSENT_SQL =
+            "INSERT INTO transfers (id, from_card_id, to_card_id, amount, timestamp) VALUES (?, ?, ?, ?, ?) "
+                    + "ON CONFLICT (id, timestamp) DO NOTHING";
+    private static final String ALLOCATE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('transfers', 'id')) FROM generate_series(1, ?)";
+
+    private static final String STATEMENT_COLUMNS = "SELECT id, timestamp, from_card_id, to_card_id, amount, ";
+
+    private static final String DEBIT_TOTALS_SQL =
+            "SELECT t.from_card_id, c.user_id, date_trunc('minute', t.timestamp) AS minute, "
+                    + "SUM(t.amount) AS amount, COUNT(*) AS cnt "
+                    + "FROM transfers t JOIN cards c ON c.id = t.from_card_id "
+                    + "WHERE t.timestamp >= ? AND (t.from_card_id = ANY (?) OR c.user_id = ANY (?)) "
+                    + "GROUP BY t.from_card_id, c.user_id, date_trunc('minute', t.timestamp)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> insertAll(List<TransferDto> transfers) {
+        if (transfers.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        TransferDto transfer = transfers.get(i);
+                        ps.setLong(1, transfer.getFromCardId());
+                        ps.setLong(2, transfer.getToCardId());
+                        ps.setBigDecimal(3, transfer.getAmount());
+                        ps.setTimestamp(4, Timestamp.valueOf(transfer.getTimestamp()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return transfers.size();
+                    }
+                }, keyHolder);
+        return keyHolder.getKeyList().stream()
+                .map(keys -> ((Number) keys.get("id")).longValue())
+                .toList();
+    }
+
+    @Override
+    public List<Long> allocateIds(int count) {
+        return jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Long.class, count);
+    }
+
+    @Override
+    public List<Long> insertAllIfAbsent(List<TransferDto> transfers) {
+        if (transfers.isEmpty()) {
+            return List.of();
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_IF_ABSENT_SQL, transfers, transfers.size(), (ps, transfer) -> {
+            ps.setLong(1, transfer.getId());
+            ps.setLong(2, transfer.getFromCardId());
+            ps.setLong(3, transfer.getToCardId());
+            ps.setBigDecimal(4, transfer.getAmount());
+            ps.setTimestamp(5, Timestamp.valueOf(transfer.getTimestamp()));
+        });
+        List<Long> inserted = new ArrayList<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            if (counts[0][i] == 1) {
+                inserted.add(transfers.get(i).getId());
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public void streamStatement(Long cardId, TransferDirection direction, LocalDateTime from, LocalDateTime to,
+                                int fetchSize, Consumer<TransferStatementRow> consumer) {
+        List<Object> params = new ArrayList<>();
+        String branches = switch (direction) {
+            case OUT -> statementBranch(TransferDirection.OUT, cardId, from, to, params);
+            case IN -> statementBranch(TransferDirection.IN, cardId, from, to, params);
+            // Обе ветки идут по индексам (card_id, timestamp), и PostgreSQL сливает их без сортировки.
+            case BOTH -> statementBranch(TransferDirection.OUT, cardId, from, to, params)
+                    + " UNION ALL " + statementBranch(TransferDirection.IN, cardId, from, to, params);
+        };
+        String sql = branches + " ORDER BY timestamp, id";
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new TransferStatementRow(
+                rs.getLong("id"),
+                rs.getTimestamp("timestamp").toLocalDateTime(),
+                TransferDirection.valueOf(rs.getString("direction")),
+                rs.getLong("from_card_id"),
+                rs.getLong("to_card_id"),
+                rs.getBigDecimal("amount"))));
+    }
+
+    private String statementBranch(TransferDirection direction, Long cardId, LocalDateTime from, LocalDateTime to,
+                                   List<Object> params) {
+        StringBuilder sql = new StringBuilder(STATEMENT_COLUMNS)
+                .append('\'').append(direction.name()).append("' AS direction FROM transfers WHERE ")
+                .append(direction == TransferDirection.OUT ? "from_card_id" : "to_card_id").append(" = ?");
+        params.add(cardId);
+        if (from != null) {
+            sql.append(" AND timestamp >= ?");
+            params.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND timestamp < ?");
+            params.add(Timestamp.valueOf(to));
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public void streamDebitTotals(LocalDateTime since, Collection<Long> cardIds, Collection<Long> userIds,
+                                  Consumer<DebitTotal> consumer) {
+        if (cardIds.isEmpty() && userIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DEBIT_TOTALS_SQL);
+            ps.setTimestamp(1, Timestamp.valueOf(since));
+            ps.setArray(2, con.createArrayOf("bigint", cardIds.toArray()));
+            ps.setArray(3, con.createArrayOf("bigint", userIds.toArray()));
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(new DebitTotal(
+                rs.getLong("from_card_id"),
+                rs.getLong("user_id"),
+                rs.getTimestamp("minute").toLocalDateTime(),
+                rs.getBigDecimal("amount"),
+                rs.getInt("cnt"))));
+    }
+}
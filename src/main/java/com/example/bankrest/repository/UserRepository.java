@@ -1,10 +1,21 @@
 package com.example.bankrest.repository;
 
 import com.example.bankrest.entity.User;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+
+    Slice<User> findAllBy(Pageable pageable);
+
+    List<User> findByUsernameIn(Collection<String> usernames);
+
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 }
@@ -0,0 +1,63 @@
+package com.example.bankrest.security;
+
+import com.example.bankrest.entity.Role;
+import com.example.bankrest.exception.CardNotFoundException;
+import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.CardRepository.CardOwnership;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Проверка права работать с картами. Владельцы и статусы всех карт читаются одним запросом по первичному
+ * ключу, без загрузки карт и пользователя; роль администратора берётся из полномочий текущей аутентификации.
+ * Отсутствующая карта всегда даёт CardNotFoundException, чтобы ответ не зависел от прав вызывающего.
+ */
+@Component
+@RequiredArgsConstructor
+public class CardAccess {
+    private final CardRepository cardRepository;
+
+    /**
+     * Принадлежат ли все карты пользователю.
+     */
+    public boolean isOwner(String username, Collection<Long> cardIds) {
+        return ownership(cardIds).stream().allMatch(card -> card.getUsername().equals(username));
+    }
+
+    /**
+     * Может ли пользователь работать с картами: администратор — с любыми, остальные — только со своими.
+     */
+    public boolean canAccess(String username, Collection<Long> cardIds) {
+        return isOwner(username, cardIds) || isAdmin();
+    }
+
+    /**
+     * Владелец и текущий статус карты.
+     */
+    public CardOwnership getOwnership(Long cardId) {
+        return ownership(List.of(cardId)).getFirst();
+    }
+
+    private List<CardOwnership> ownership(Collection<Long> cardIds) {
+        Set<Long> missing = new HashSet<>(cardIds);
+        List<CardOwnership> cards = cardRepository.findOwnershipByIdIn(missing);
+        if (cards.size() < missing.size()) {
+            cards.forEach(card -> missing.remove(card.getId()));
+            throw new CardNotFoundException(missing.iterator().next());
+        }
+        return cards;
+    }
+
+    private static boolean isAdmin() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> Role.ROLE_ADMIN.getValue().equals(authority.getAuthority()));
+    }
+}
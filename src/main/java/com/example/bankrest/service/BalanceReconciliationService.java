@@ -0,0 +1,282 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.BalanceReconciliationDto;
+import com.example.bankrest.dto.BalanceReconciliationDto.Mismatch;
+import com.example.bankrest.dto.BalanceReconciliationDto.Status;
+import com.example.bankrest.exception.ReconciliationInProgressException;
+import com.example.bankrest.repository.ReconciliationRepository;
+import com.example.bankrest.repository.ReconciliationRepository.IdBounds;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сверка балансов карт с их движениями. Ожидаемый баланс карты — сумма входящих переводов минус
+ * сумма исходящих, плюс ручные корректировки из журнала проводок и итог переводов, перенесённых
+ * в холодное хранение; он сравнивается с текущим балансом карты.
+ * <p>
+ * Пространство id карт делится на диапазоны по range-size id, которые параллельно обрабатывает
+ * fork/join-пул. Каждый диапазон читается в своей read-only транзакции REPEATABLE READ: переводы
+ * и балансы видны из одного снимка, поэтому идущие в это время переводы не дают ложных расхождений.
+ * Переводы диапазона читаются потоком и суммируются в массиве по смещению id, так что память
+ * на диапазон не зависит от числа переводов.
+ * <p>
+ * Внешних ключей от ledger_entries и transfer_idempotency_keys к секционированной transfers нет,
+ * поэтому сверка заодно считает проводки и ключи, ссылающиеся на отсутствующие переводы.
+ */
+@Slf4j
+@Service
+public class BalanceReconciliationService {
+    private final ReconciliationRepository reconciliationRepository;
+    private final TransactionTemplate snapshotTransaction;
+    private final Clock clock;
+    private final int parallelism;
+    private final int rangeSize;
+    private final int fetchSize;
+    private final int maxReported;
+    private final Timer duration;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong rangesTotal = new AtomicLong();
+    private final AtomicLong rangesCompleted = new AtomicLong();
+    private final AtomicLong cardsChecked = new AtomicLong();
+    private final AtomicLong transfersRead = new AtomicLong();
+    private final AtomicLong mismatchCount = new AtomicLong();
+    private final AtomicLong orphanedLedgerEntries = new AtomicLong();
+    private final AtomicLong orphanedIdempotencyKeys = new AtomicLong();
+    private final Queue<Mismatch> mismatches = new ConcurrentLinkedQueue<>();
+
+    private volatile Status status = Status.IDLE;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+    private volatile ForkJoinPool pool;
+
+    public BalanceReconciliationService(ReconciliationRepository reconciliationRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${app.reconciliation.parallelism:4}") int parallelism,
+                                        @Value("${app.reconciliation.range-size:10000}") int rangeSize,
+                                        @Value("${app.reconciliation.fetch-size:5000}") int fetchSize,
+                                        @Value("${app.reconciliation.max-reported:1000}") int maxReported) {
+        this(reconciliationRepository, snapshotTransaction(transactionManager), meterRegistry,
+                Clock.systemDefaultZone(), parallelism, rangeSize, fetchSize, maxReported);
+    }
+
+    BalanceReconciliationService(ReconciliationRepository reconciliationRepository,
+                                 TransactionTemplate snapshotTransaction, MeterRegistry meterRegistry, Clock clock,
+                                 int parallelism, int rangeSize, int fetchSize, int maxReported) {
+        if (parallelism < 1 || rangeSize < 1) {
+            throw new IllegalArgumentException("Reconciliation parallelism and range size must be positive");
+        }
+        this.reconciliationRepository = reconciliationRepository;
+        this.snapshotTransaction = snapshotTransaction;
+        this.clock = clock;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.fetchSize = fetchSize;
+        this.maxReported = maxReported;
+        this.duration = Timer.builder("bank.reconciliation")
+                .description("Duration of balance reconciliation runs")
+                .register(meterRegistry);
+        gauge(meterRegistry, "bank.reconciliation.ranges.total", "Card id ranges in the current run", rangesTotal);
+        gauge(meterRegistry, "bank.reconciliation.ranges.completed", "Card id ranges reconciled", rangesCompleted);
+        gauge(meterRegistry, "bank.reconciliation.cards.checked", "Cards reconciled", cardsChecked);
+        gauge(meterRegistry, "bank.reconciliation.transfers.read", "Transfers read by reconciliation", transfersRead);
+        gauge(meterRegistry, "bank.reconciliation.mismatches", "Cards whose balance does not match", mismatchCount);
+        gauge(meterRegistry, "bank.reconciliation.orphaned.entries", "Ledger entries of missing transfers",
+                orphanedLedgerEntries);
+        gauge(meterRegistry, "bank.reconciliation.orphaned.keys", "Idempotency keys of missing transfers",
+                orphanedIdempotencyKeys);
+        Gauge.builder("bank.reconciliation.running", running, flag -> flag.get() ? 1 : 0)
+                .description("Whether a reconciliation is running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Запускает сверку в фоне и возвращает её начальное состояние.
+     */
+    public BalanceReconciliationDto start() {
+        begin();
+        Thread.ofVirtual().name("balance-reconciliation").start(this::execute);
+        return report();
+    }
+
+    /**
+     * Выполняет сверку в вызывающем потоке.
+     */
+    BalanceReconciliationDto runNow() {
+        begin();
+        execute();
+        return report();
+    }
+
+    public BalanceReconciliationDto report() {
+        return BalanceReconciliationDto.builder()
+                .status(status)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .rangesTotal(rangesTotal.get())
+                .rangesCompleted(rangesCompleted.get())
+                .cardsChecked(cardsChecked.get())
+                .transfersRead(transfersRead.get())
+                .mismatchCount(mismatchCount.get())
+                .orphanedLedgerEntries(orphanedLedgerEntries.get())
+                .orphanedIdempotencyKeys(orphanedIdempotencyKeys.get())
+                .error(error)
+                .mismatches(mismatches.stream().sorted(Comparator.comparing(Mismatch::getCardId)).toList())
+                .build();
+    }
+
+    @PreDestroy
+    public void stop() {
+        ForkJoinPool current = pool;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    private void begin() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ReconciliationInProgressException();
+        }
+        rangesTotal.set(0);
+        rangesCompleted.set(0);
+        cardsChecked.set(0);
+        transfersRead.set(0);
+        mismatchCount.set(0);
+        orphanedLedgerEntries.set(0);
+        orphanedIdempotencyKeys.set(0);
+        mismatches.clear();
+        error = null;
+        finishedAt = null;
+        startedAt = LocalDateTime.now(clock);
+        status = Status.RUNNING;
+    }
+
+    private void execute() {
+        long startedNanos = System.nanoTime();
+        ForkJoinPool workers = new ForkJoinPool(parallelism);
+        pool = workers;
+        try {
+            IdBounds bounds = reconciliationRepository.findCardIdBounds();
+            if (bounds != null) {
+                long width = bounds.maxId() - bounds.minId() + 1;
+                rangesTotal.set((width + rangeSize - 1) / rangeSize);
+                workers.invoke(new RangeTask(bounds.minId(), bounds.maxId() + 1));
+            }
+            orphanedIdempotencyKeys.set(reconciliationRepository.countOrphanedIdempotencyKeys());
+            status = Status.COMPLETED;
+            log.info("Balance reconciliation checked {} cards and {} transfers, {} mismatches",
+                    cardsChecked.get(), transfersRead.get(), mismatchCount.get());
+            if (orphanedLedgerEntries.get() > 0 || orphanedIdempotencyKeys.get() > 0) {
+                log.error("Balance reconciliation found references to missing transfers: {} ledger entries, "
+                        + "{} idempotency keys", orphanedLedgerEntries.get(), orphanedIdempotencyKeys.get());
+            }
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            status = Status.FAILED;
+            log.error("Balance reconciliation failed", e);
+        } finally {
+            workers.shutdown();
+            pool = null;
+            finishedAt = LocalDateTime.now(clock);
+            duration.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+            running.set(false);
+        }
+    }
+
+    private void reconcileRange(long fromId, long toId) {
+        long[] netCents = new long[(int) (toId - fromId)];
+        long[] transfers = {0};
+        snapshotTransaction.executeWithoutResult(transaction -> {
+            reconciliationRepository.streamTransferAmounts(true, fromId, toId, fetchSize, (cardId, amount) -> {
+                netCents[(int) (cardId - fromId)] -= cents(amount);
+                transfers[0]++;
+            });
+            reconciliationRepository.streamTransferAmounts(false, fromId, toId, fetchSize, (cardId, amount) -> {
+                netCents[(int) (cardId - fromId)] += cents(amount);
+                transfers[0]++;
+            });
+            reconciliationRepository.streamCardBalances(fromId, toId, card -> {
+                BigDecimal expected = BigDecimal.valueOf(netCents[(int) (card.cardId() - fromId)], 2)
+                        .add(card.adjustments())
+                        .add(card.archived());
+                if (expected.compareTo(card.actual()) != 0) {
+                    reportMismatch(card.cardId(), expected, card.actual());
+                }
+                cardsChecked.incrementAndGet();
+            });
+            orphanedLedgerEntries.addAndGet(reconciliationRepository.countOrphanedLedgerEntries(fromId, toId));
+        });
+        // Каждый перевод учитывается дважды, по карте списания и по карте зачисления.
+        transfersRead.addAndGet(transfers[0]);
+        rangesCompleted.incrementAndGet();
+    }
+
+    private void reportMismatch(long cardId, BigDecimal expected, BigDecimal actual) {
+        log.debug("Card {} balance mismatch: expected {}, actual {}", cardId, expected, actual);
+        if (mismatchCount.incrementAndGet() <= maxReported) {
+            mismatches.add(new Mismatch(cardId, expected, actual));
+        }
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    private static void gauge(MeterRegistry meterRegistry, String name, String description, AtomicLong value) {
+        Gauge.builder(name, value, AtomicLong::get).description(description).register(meterRegistry);
+    }
+
+    private static TransactionTemplate snapshotTransaction(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    /**
+     * Делит диапазон [fromId, toId) пополам, пока он шире range-size.
+     */
+    private final class RangeTask extends RecursiveAction {
+        private final long fromId;
+        private final long toId;
+
+        private RangeTask(long fromId, long toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected void compute() {
+            if (toId - fromId <= rangeSize) {
+                reconcileRange(fromId, toId);
+                return;
+            }
+            // Середина выравнивается по range-size, чтобы число диапазонов совпадало с rangesTotal.
+            long ranges = (toId - fromId + rangeSize - 1) / rangeSize;
+            long middle = fromId + ranges / 2 * rangeSize;
+            invokeAll(new RangeTask(fromId, middle), new RangeTask(middle, toId));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.LedgerEntryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически переносит остатки из журнала проводок в cards.balance. Контрольная точка лишь
+ * сокращает путь к текущему балансу: сам баланс всегда определяется последней проводкой карты.
+ * Переносятся только проводки старше app.balances.checkpoint.lag, чтобы транзакции, получившие
+ * меньший id, но ещё не зафиксированные, не остались позади продвинувшейся точки.
+ * Прогресс хранится в ledger_checkpoint и блокируется с SKIP LOCKED, поэтому на нескольких
+ * узлах перенос выполняет один из них.
+ */
+@Slf4j
+@Service
+public class CardBalanceCheckpointService {
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int chunkSize;
+    private final Duration lag;
+
+    private ScheduledExecutorService scheduler;
+
+    public CardBalanceCheckpointService(LedgerEntryRepository ledgerEntryRepository,
+                                        TransactionTemplate transactionTemplate,
+                                        @Value("${app.balances.checkpoint.enabled:true}") boolean enabled,
+                                        @Value("${app.balances.checkpoint.interval:PT1M}") Duration interval,
+                                        @Value("${app.balances.checkpoint.chunk-size:10000}") int chunkSize,
+                                        @Value("${app.balances.checkpoint.lag:PT10S}") Duration lag) {
+        this(ledgerEntryRepository, transactionTemplate, Clock.systemDefaultZone(), enabled, interval, chunkSize, lag);
+    }
+
+    CardBalanceCheckpointService(LedgerEntryRepository ledgerEntryRepository, TransactionTemplate transactionTemplate,
+                                 Clock clock, boolean enabled, Duration interval, int chunkSize, Duration lag) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.chunkSize = chunkSize;
+        this.lag = lag;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("balance-checkpoint").factory());
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    run();
+                } catch (RuntimeException e) {
+                    log.error("Card balance checkpoint failed, it will be retried", e);
+                }
+            }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Переносит порции до текущей границы и возвращает их количество.
+     */
+    public int run() {
+        LocalDateTime boundary = LocalDateTime.now(clock).minus(lag);
+        int chunks = 0;
+        while (Boolean.TRUE.equals(transactionTemplate.execute(status -> checkpointNextChunk(boundary)))) {
+            chunks++;
+        }
+        return chunks;
+    }
+
+    /**
+     * Возвращает true, если порция перенесена; false, когда переносить нечего или точку держит другой узел.
+     */
+    private boolean checkpointNextChunk(LocalDateTime boundary) {
+        OptionalLong locked = ledgerEntryRepository.lockCheckpoint();
+        if (locked.isEmpty()) {
+            return false;
+        }
+        long afterId = locked.getAsLong();
+        long upToId = Math.min(ledgerEntryRepository.lastEntryIdBefore(boundary), afterId + chunkSize);
+        if (upToId <= afterId) {
+            return false;
+        }
+        int cards = ledgerEntryRepository.checkpointBalances(afterId, upToId);
+        ledgerEntryRepository.updateCheckpoint(upToId);
+        log.debug("Card balances checkpointed for entries {}..{}, {} cards updated", afterId + 1, upToId, cards);
+        return true;
+    }
+}
@@ -1,42 +1,52 @@
 package com.example.bankrest.service;
 
+import com.example.bankrest.dto.PageResponse;
 import com.example.bankrest.entity.Card;
 import com.example.bankrest.entity.CardBlockRequest;
 import com.example.bankrest.entity.CardOperationHistory;
 import com.example.bankrest.entity.User;
 import com.example.bankrest.repository.CardBlockRequestRepository;
+import com.example.bankrest.repository.CardRepository.CardOwnership;
+import com.example.bankrest.security.CardAccess;
+import com.example.bankrest.util.PageCursor;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class CardBlockRequestService {
     private final CardBlockRequestRepository blockRequestRepository;
     private final CardService cardService;
+    private final CardAccess cardAccess;
     private final UserService userService;
     private final CardOperationHistoryService operationHistoryService;
+    private final CardConcurrencyPolicy concurrencyPolicy;
+    private final TransactionTemplate transactionTemplate;
 
     @Transactional
     public CardBlockRequest createBlockRequest(Long cardId, String username, String reason) {
-        User requester = userService.getUserByUsername(username);
-        Card card = cardService.getCardById(cardId);
+        CardOwnership ownership = cardAccess.getOwnership(cardId);
         
-        if (!card.getUser().getId().equals(requester.getId())) {
+        if (!ownership.getUsername().equals(username)) {
             throw new IllegalArgumentException("You can only request blocking of your own cards");
         }
         
-        if (card.getStatus() != com.example.bankrest.entity.CardStatus.ACTIVE) {
+        if (ownership.getStatus() != com.example.bankrest.entity.CardStatus.ACTIVE) {
             throw new IllegalStateException("Can only request blocking of active cards");
         }
         
+        // Статус проверен по БД; карта с владельцем для ответа берётся из кэша
+        Card card = cardService.getCardById(cardId);
         CardBlockRequest request = CardBlockRequest.builder()
                 .card(card)
-                .requester(requester)
+                .requester(card.getUser())
                 .reason(reason)
                 .status(CardBlockRequest.BlockRequestStatus.PENDING)
                 .createdAt(LocalDateTime.now())
@@ -45,21 +55,52 @@ public class CardBlockRequestService {
         return blockRequestRepository.save(request);
     }
 
-    public Page<CardBlockRequest> getUserRequests(String username, Pageable pageable) {
+    public PageResponse<CardBlockRequest> getUserRequests(String username, Pageable pageable, boolean withTotal) {
         User user = userService.getUserByUsername(username);
-        return blockRequestRepository.findByRequester(user, pageable);
+        return PageResponse.of(blockRequestRepository.findByRequester(user, pageable), withTotal,
+                () -> blockRequestRepository.countByRequester(user));
     }
 
-    public Page<CardBlockRequest> getAllRequests(Pageable pageable) {
-        return blockRequestRepository.findAll(pageable);
+    public PageResponse<CardBlockRequest> getAllRequests(Pageable pageable, boolean withTotal) {
+        return PageResponse.of(blockRequestRepository.findAllBy(pageable), withTotal, blockRequestRepository::count);
     }
 
-    public Page<CardBlockRequest> getRequestsByStatus(CardBlockRequest.BlockRequestStatus status, Pageable pageable) {
-        return blockRequestRepository.findByStatus(status, pageable);
+    public PageResponse<CardBlockRequest> getRequestsByStatus(CardBlockRequest.BlockRequestStatus status,
+                                                              Pageable pageable, boolean withTotal) {
+        return PageResponse.of(blockRequestRepository.findByStatus(status, pageable), withTotal,
+                () -> blockRequestRepository.countByStatus(status));
     }
 
-    @Transactional
+    /**
+     * Запросы пользователя по курсору, от новых к старым (по убыванию id).
+     */
+    public PageResponse<CardBlockRequest> getUserRequestsAfter(String username, String after, int size) {
+        User user = userService.getUserByUsername(username);
+        return page(blockRequestRepository.findByRequesterAndIdLessThanOrderByIdDesc(
+                user, beforeId(after), Limit.of(size + 1)), size);
+    }
+
+    public PageResponse<CardBlockRequest> getAllRequestsAfter(String after, int size) {
+        return page(blockRequestRepository.findByIdLessThanOrderByIdDesc(beforeId(after), Limit.of(size + 1)), size);
+    }
+
+    public PageResponse<CardBlockRequest> getRequestsByStatusAfter(CardBlockRequest.BlockRequestStatus status,
+                                                                 String after, int size) {
+        return page(blockRequestRepository.findByStatusAndIdLessThanOrderByIdDesc(
+                status, beforeId(after), Limit.of(size + 1)), size);
+    }
+
+    /**
+     * Обрабатывает запрос. Версия запроса не даёт двум администраторам обработать его дважды:
+     * проигравшая сторона повторяет обработку и видит уже обработанный запрос.
+     */
     public CardBlockRequest processBlockRequest(Long requestId, String adminUsername, boolean approved, String adminComment) {
+        return concurrencyPolicy.execute("process-block-request", () -> transactionTemplate.execute(
+                status -> processInTransaction(requestId, adminUsername, approved, adminComment)));
+    }
+
+    private CardBlockRequest processInTransaction(Long requestId, String adminUsername, boolean approved,
+                                                  String adminComment) {
         User admin = userService.getUserByUsername(adminUsername);
         CardBlockRequest request = blockRequestRepository.findById(requestId)
                 .orElseThrow(() -> new IllegalArgumentException("Block request not found"));
@@ -86,6 +127,15 @@ public class CardBlockRequestService {
             request.setStatus(CardBlockRequest.BlockRequestStatus.REJECTED);
         }
         
-        return blockRequestRepository.save(request);
+        return blockRequestRepository.saveAndFlush(request);
+    }
+
+    private long beforeId(String after) {
+        PageCursor cursor = PageCursor.parse(after);
+        return cursor != null ? cursor.id() : Long.MAX_VALUE;
+    }
+
+    private PageResponse<CardBlockRequest> page(List<CardBlockRequest> rows, int size) {
+        return PageResponse.of(rows, size, request -> PageCursor.ofId(request.getId()));
     }
 } 
@@ -0,0 +1,135 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.BulkCardStatusResultDto;
+import com.example.bankrest.entity.CardOperationHistory;
+import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.repository.CardStatusBulkRepository;
+import com.example.bankrest.repository.CardStatusBulkRepository.StatusChange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Массовая блокировка и активация карт администратором: по списку id или все карты пользователя.
+ * Карты обрабатываются порциями по app.cards.bulk-status.chunk-size; каждая порция — один запрос,
+ * который меняет статус и пишет записи истории, в своей короткой транзакции. При ошибке уже
+ * обработанные порции остаются в силе, а повторный вызов изменит только оставшиеся карты.
+ */
+@Slf4j
+@Service
+public class CardBulkStatusService {
+    public static final int MAX_CARD_IDS = 100000;
+
+    private final CardStatusBulkRepository bulkRepository;
+    private final CardCache cardCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int chunkSize;
+
+    public CardBulkStatusService(CardStatusBulkRepository bulkRepository,
+                                 CardCache cardCache,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${app.cards.bulk-status.chunk-size:1000}") int chunkSize) {
+        this(bulkRepository, cardCache, transactionTemplate, Clock.systemDefaultZone(), chunkSize);
+    }
+
+    CardBulkStatusService(CardStatusBulkRepository bulkRepository, CardCache cardCache,
+                          TransactionTemplate transactionTemplate, Clock clock, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Bulk status chunk size must be positive");
+        }
+        this.bulkRepository = bulkRepository;
+        this.cardCache = cardCache;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Блокирует карты из cardIds либо все карты пользователя userId; задаётся ровно одно из двух.
+     * Карты в статусе EXPIRED не блокируются.
+     */
+    public BulkCardStatusResultDto blockCards(List<Long> cardIds, Long userId, User performedBy) {
+        return changeStatus(cardIds, userId, new StatusChange(CardStatus.BLOCKED,
+                CardOperationHistory.OperationType.BLOCK, "Card blocked", idOf(performedBy), null));
+    }
+
+    /**
+     * Активирует карты так же, как {@link #blockCards}; просроченные карты пропускаются.
+     */
+    public BulkCardStatusResultDto activateCards(List<Long> cardIds, Long userId, User performedBy) {
+        return changeStatus(cardIds, userId, new StatusChange(CardStatus.ACTIVE,
+                CardOperationHistory.OperationType.ACTIVATE, "Card activated", idOf(performedBy),
+                LocalDate.now(clock)));
+    }
+
+    private BulkCardStatusResultDto changeStatus(List<Long> cardIds, Long userId, StatusChange change) {
+        boolean byIds = cardIds != null && !cardIds.isEmpty();
+        if (byIds == (userId != null)) {
+            throw new IllegalArgumentException("Either card IDs or user ID must be specified");
+        }
+        int updated = byIds ? changeStatusOfCards(cardIds, change) : changeStatusOfUserCards(userId, change);
+        log.info("Bulk {} changed {} cards to {}", change.operationType(), updated, change.newStatus());
+        return BulkCardStatusResultDto.builder()
+                .status(change.newStatus())
+                .updated(updated)
+                .build();
+    }
+
+    private int changeStatusOfCards(List<Long> cardIds, StatusChange change) {
+        if (cardIds.size() > MAX_CARD_IDS) {
+            throw new IllegalArgumentException("Bulk status change cannot contain more than " + MAX_CARD_IDS
+                    + " cards");
+        }
+        if (cardIds.stream().anyMatch(id -> id == null || id <= 0)) {
+            throw new IllegalArgumentException("Card ID must be a positive number");
+        }
+        // Соседние id попадают в одну порцию и читаются одним диапазоном индекса.
+        List<Long> ids = cardIds.stream().distinct().sorted().toList();
+        int updated = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            updated += inTransaction(() -> bulkRepository.changeStatusOfCards(chunk, change,
+                    LocalDateTime.now(clock)));
+        }
+        return updated;
+    }
+
+    private int changeStatusOfUserCards(Long userId, StatusChange change) {
+        if (userId <= 0) {
+            throw new IllegalArgumentException("User ID must be a positive number");
+        }
+        int updated = 0;
+        int chunk;
+        do {
+            chunk = inTransaction(() -> bulkRepository.changeStatusOfUserCards(userId, chunkSize, change,
+                    LocalDateTime.now(clock)));
+            updated += chunk;
+        } while (chunk == chunkSize);
+        return updated;
+    }
+
+    /**
+     * Выполняет порцию в отдельной транзакции; изменённые карты удаляются из кэша после её фиксации.
+     */
+    private int inTransaction(Supplier<List<Long>> chunk) {
+        return Objects.requireNonNull(transactionTemplate.execute(status -> {
+            List<Long> changed = chunk.get();
+            cardCache.invalidateAfterCommit(changed);
+            return changed.size();
+        }));
+    }
+
+    private static Long idOf(User user) {
+        return user != null ? user.getId() : null;
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.entity.Card;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограниченный кэш карт для проверок владельца, статуса и срока действия. Хранятся снимки карт без
+ * баланса: баланс меняется каждым переводом и всегда читается из журнала проводок. Каждый вызов
+ * получает свою копию снимка, поэтому изменения вызывающего не попадают в кэш.
+ * <p>
+ * Вытеснение W-TinyLFU: новые карты попадают в небольшое LRU-окно, а вытесненная из окна карта
+ * допускается в основную область, только если по {@link FrequencySketch} к ней обращаются чаще,
+ * чем к кандидату на вытеснение оттуда. Основная область — сегментированный LRU: повторное
+ * обращение переводит карту из испытательного сегмента в защищённый. Разовые чтения множества карт
+ * поэтому не вымывают часто используемые.
+ * <p>
+ * Снимок живёт не дольше app.cards.cache.ttl. Изменения карт на этом узле удаляют её из кэша после
+ * фиксации транзакции, а изменения на других узлах видны после истечения срока; транзакции переводов
+ * перечитывают карты из БД под блокировкой, поэтому устаревший статус не пропускает перевод.
+ */
+@Component
+public class CardCache {
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final int protectedCapacity;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Long, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Long, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    /**
+     * Увеличивается при каждом удалении из кэша; загрузка, во время которой карту удалили, не кэшируется.
+     */
+    private long generation;
+
+    public CardCache(MeterRegistry meterRegistry,
+                     @Value("${app.cards.cache.maximum-size:10000}") int maximumSize,
+                     @Value("${app.cards.cache.ttl:PT5M}") Duration ttl) {
+        this(meterRegistry, maximumSize, ttl, System::nanoTime);
+    }
+
+    CardCache(MeterRegistry meterRegistry, int maximumSize, Duration ttl, LongSupplier ticker) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Card cache size cannot be negative");
+        }
+        this.windowCapacity = maximumSize == 0 ? 0 : Math.max(1, maximumSize / 100);
+        this.mainCapacity = maximumSize - windowCapacity;
+        this.protectedCapacity = mainCapacity * 4 / 5;
+        this.ttlNanos = ttl.toNanos();
+        this.ticker = ticker;
+        this.sketch = new FrequencySketch(maximumSize);
+        this.hits = Counter.builder("bank.cards.cache.requests")
+                .description("Card cache lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("bank.cards.cache.requests")
+                .description("Card cache lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("bank.cards.cache.evictions")
+                .description("Cards evicted from the cache by size or age")
+                .register(meterRegistry);
+        Gauge.builder("bank.cards.cache.size", this, CardCache::size)
+                .description("Cards in the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Копия карты из кэша; при промахе карта загружается loader и кэшируется. Отсутствие карты не кэшируется.
+     */
+    public Optional<Card> get(Long id, Function<Long, Optional<Card>> loader) {
+        Card cached;
+        long observedGeneration;
+        lock.lock();
+        try {
+            sketch.increment(id);
+            cached = lookup(id);
+            observedGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(copyOf(cached));
+        }
+        misses.increment();
+        Optional<Card> loaded = loader.apply(id).map(CardCache::copyOf);
+        loaded.ifPresent(card -> put(id, card, observedGeneration));
+        return loaded.map(CardCache::copyOf);
+    }
+
+    /**
+     * Удаляет карты из кэша после завершения текущей транзакции, а вне транзакции — сразу.
+     */
+    public void invalidateAfterCommit(Collection<Long> ids) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(ids);
+                }
+            });
+        } else {
+            invalidate(ids);
+        }
+    }
+
+    public void invalidate(Collection<Long> ids) {
+        lock.lock();
+        try {
+            generation++;
+            for (Long id : ids) {
+                if (window.remove(id) == null && probation.remove(id) == null) {
+                    protectedSegment.remove(id);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return window.size() + probation.size() + protectedSegment.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Card lookup(Long id) {
+        Entry entry = window.get(id);
+        if (entry != null) {
+            return live(id, entry, window);
+        }
+        entry = probation.remove(id);
+        if (entry != null) {
+            if (isExpired(entry)) {
+                evictions.increment();
+                return null;
+            }
+            protectedSegment.put(id, entry);
+            if (protectedSegment.size() > protectedCapacity) {
+                Map.Entry<Long, Entry> demoted = protectedSegment.pollFirstEntry();
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+            return entry.card();
+        }
+        entry = protectedSegment.get(id);
+        return entry != null ? live(id, entry, protectedSegment) : null;
+    }
+
+    private Card live(Long id, Entry entry, Map<Long, Entry> segment) {
+        if (isExpired(entry)) {
+            segment.remove(id);
+            evictions.increment();
+            return null;
+        }
+        return entry.card();
+    }
+
+    private void put(Long id, Card card, long observedGeneration) {
+        if (windowCapacity == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (generation != observedGeneration
+                    || window.containsKey(id) || probation.containsKey(id) || protectedSegment.containsKey(id)) {
+                return;
+            }
+            window.put(id, new Entry(card, ticker.getAsLong()));
+            if (window.size() > windowCapacity) {
+                admit(window.pollFirstEntry());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Переносит вытесненную из окна карту в основную область, если та не заполнена или кандидат
+     * используется чаще жертвы из испытательного сегмента; иначе вытесняется сам кандидат.
+     */
+    private void admit(Map.Entry<Long, Entry> candidate) {
+        if (probation.size() + protectedSegment.size() < mainCapacity) {
+            probation.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        evictions.increment();
+        LinkedHashMap<Long, Entry> victims = probation.isEmpty() ? protectedSegment : probation;
+        Map.Entry<Long, Entry> victim = victims.firstEntry();
+        if (victim != null && sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            victims.remove(victim.getKey());
+            probation.put(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return ticker.getAsLong() - entry.loadedAt() > ttlNanos;
+    }
+
+    private static Card copyOf(Card card) {
+        return Card.builder()
+                .id(card.getId())
+                .encryptedNumber(card.getEncryptedNumber())
+                .maskedNumber(card.getMaskedNumber())
+                .numberHash(card.getNumberHash())
+                .last4(card.getLast4())
+                .owner(card.getOwner())
+                .expiryDate(card.getExpiryDate())
+                .status(card.getStatus())
+                .balanceEntrySeq(card.getBalanceEntrySeq())
+                .version(card.getVersion())
+                .user(card.getUser())
+                .createdAt(card.getCreatedAt())
+                .updatedAt(card.getUpdatedAt())
+                .build();
+    }
+
+    private record Entry(Card card, long loadedAt) {
+    }
+}
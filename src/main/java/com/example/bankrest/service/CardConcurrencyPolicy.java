@@ -0,0 +1,112 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.exception.CardConflictException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Политика конкурентного изменения карт. В режиме OPTIMISTIC переводы не блокируют и не изменяют
+ * строки карт, а конфликт обнаруживает вставка проводок, продолжающих историю карты от прочитанного
+ * остатка, что дешевле для карт с редкими конфликтами; PESSIMISTIC блокирует строки на всю
+ * транзакцию. Смена статуса карты проверяет её версию. Конфликты повторяются с экспоненциальной
+ * задержкой и полным разбросом. Счётчики bank.cards.conflicts и bank.cards.conflict.retries
+ * по операциям показывают, где конфликтов столько, что картам нужна другая стратегия.
+ */
+@Slf4j
+@Component
+public class CardConcurrencyPolicy {
+    public enum LockMode {
+        OPTIMISTIC, PESSIMISTIC
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final LockMode lockMode;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public CardConcurrencyPolicy(MeterRegistry meterRegistry,
+                                 @Value("${app.cards.concurrency.lock-mode:OPTIMISTIC}") LockMode lockMode,
+                                 @Value("${app.cards.concurrency.max-attempts:4}") int maxAttempts,
+                                 @Value("${app.cards.concurrency.initial-backoff:PT0.01S}") Duration initialBackoff,
+                                 @Value("${app.cards.concurrency.max-backoff:PT0.2S}") Duration maxBackoff) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be positive");
+        }
+        this.meterRegistry = meterRegistry;
+        this.lockMode = lockMode;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public LockMode lockMode() {
+        return lockMode;
+    }
+
+    /**
+     * Выполняет действие, повторяя его при конфликте версий. Действие должно открывать
+     * собственную транзакцию: повтор внутри уже откатываемой транзакции бесполезен.
+     * Если попытки исчерпаны, бросает CardConflictException.
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        Counters operationCounters = counters.computeIfAbsent(operation, this::register);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                operationCounters.conflicts().increment();
+                if (attempt >= maxAttempts) {
+                    operationCounters.exhausted().increment();
+                    log.warn("Giving up {} after {} conflicting attempts: {}", operation, attempt, e.getMessage());
+                    throw new CardConflictException(e);
+                }
+                operationCounters.retries().increment();
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void backoff(int attempt, OptimisticLockingFailureException conflict) {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardConflictException(conflict);
+        }
+    }
+
+    private Counters register(String operation) {
+        return new Counters(
+                Counter.builder("bank.cards.conflicts")
+                        .description("Optimistic version conflicts on card operations")
+                        .tag("operation", operation)
+                        .register(meterRegistry),
+                Counter.builder("bank.cards.conflict.retries")
+                        .description("Card operations retried after a version conflict")
+                        .tag("operation", operation)
+                        .register(meterRegistry),
+                Counter.builder("bank.cards.conflict.exhausted")
+                        .description("Card operations abandoned after exhausting retries")
+                        .tag("operation", operation)
+                        .register(meterRegistry));
+    }
+
+    private record Counters(Counter conflicts, Counter retries, Counter exhausted) {
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.CardExpiryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодически переводит карты с истёкшим сроком действия в статус EXPIRED. Карты обрабатываются
+ * порциями по app.cards.expiry.chunk-size: каждая порция — один запрос, который меняет статус и
+ * пишет записи истории, в своей короткой транзакции. Граница берётся на момент запуска, поэтому
+ * запуск завершается, даже если карты продолжают истекать.
+ */
+@Slf4j
+@Service
+public class CardExpiryService {
+    private final CardExpiryRepository cardExpiryRepository;
+    private final CardCache cardCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int chunkSize;
+
+    private ScheduledExecutorService scheduler;
+
+    public CardExpiryService(CardExpiryRepository cardExpiryRepository,
+                             CardCache cardCache,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${app.cards.expiry.enabled:true}") boolean enabled,
+                             @Value("${app.cards.expiry.interval:PT1H}") Duration interval,
+                             @Value("${app.cards.expiry.chunk-size:5000}") int chunkSize) {
+        this(cardExpiryRepository, cardCache, transactionTemplate, Clock.systemDefaultZone(), enabled, interval,
+                chunkSize);
+    }
+
+    CardExpiryService(CardExpiryRepository cardExpiryRepository, CardCache cardCache,
+                      TransactionTemplate transactionTemplate, Clock clock, boolean enabled, Duration interval,
+                      int chunkSize) {
+        this.cardExpiryRepository = cardExpiryRepository;
+        this.cardCache = cardCache;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("card-expiry").factory());
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    run();
+                } catch (RuntimeException e) {
+                    log.error("Card expiry failed, it will be retried", e);
+                }
+            }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Обрабатывает порции, пока находятся просроченные карты, и возвращает число помеченных карт.
+     */
+    public int run() {
+        LocalDate today = LocalDate.now(clock);
+        int expired = 0;
+        int chunk;
+        do {
+            chunk = Objects.requireNonNull(transactionTemplate.execute(
+                    status -> cardExpiryRepository.expireChunk(today, chunkSize, LocalDateTime.now(clock))));
+            expired += chunk;
+        } while (chunk == chunkSize);
+        if (expired > 0) {
+            // Какие карты истекли, запросы не возвращают, поэтому кэш сбрасывается целиком.
+            cardCache.invalidateAll();
+            log.info("Marked {} cards expired before {}", expired, today);
+        }
+        return expired;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.exception.CardBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые блокировки карт внутри JVM. Перевод по «горячей» карте ждёт своей очереди здесь,
+ * а не на блокировке строки в PostgreSQL, и поэтому не удерживает соединение из пула.
+ * Блокировки строк в БД остаются: они по-прежнему обеспечивают корректность между узлами,
+ * полосы лишь упорядочивают конкурирующие запросы одного узла.
+ */
+@Component
+public class CardLocks {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutNanos;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReferenceArray<Timer> waitTimers;
+    private final Counter timeouts;
+
+    public CardLocks(MeterRegistry meterRegistry,
+                     @Value("${app.transfers.locks.stripes:256}") int stripeCount,
+                     @Value("${app.transfers.locks.timeout:PT5S}") Duration timeout) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Lock stripes must be positive");
+        }
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            // Честные блокировки: ожидающие переводы выполняются в порядке поступления.
+            stripes[i] = new ReentrantLock(true);
+        }
+        this.mask = size - 1;
+        this.timeoutNanos = timeout.toNanos();
+        this.meterRegistry = meterRegistry;
+        this.waitTimers = new AtomicReferenceArray<>(size);
+        this.timeouts = Counter.builder("bank.cards.lock.timeouts")
+                .description("Card lock acquisitions abandoned after the timeout")
+                .register(meterRegistry);
+        Gauge.builder("bank.cards.lock.waiting", this, CardLocks::waitingThreads)
+                .description("Threads waiting for card locks")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет действие под блокировками обеих карт. Полосы захватываются по возрастанию
+     * номера, поэтому встречные переводы между одними картами не взаимоблокируются.
+     * Повторный захват тем же потоком не ждёт и в гистограмму не попадает.
+     */
+    public <T> T callWithLocks(Long firstCardId, Long secondCardId, Supplier<T> action) {
+        int first = stripeOf(firstCardId);
+        int second = stripeOf(secondCardId);
+        int lower = Math.min(first, second);
+        int upper = Math.max(first, second);
+
+        acquire(lower);
+        try {
+            if (upper != lower) {
+                acquire(upper);
+                try {
+                    return action.get();
+                } finally {
+                    stripes[upper].unlock();
+                }
+            }
+            return action.get();
+        } finally {
+            stripes[lower].unlock();
+        }
+    }
+
+    int stripeOf(Long cardId) {
+        int hash = Long.hashCode(cardId);
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    private void acquire(int stripe) {
+        ReentrantLock lock = stripes[stripe];
+        if (lock.isHeldByCurrentThread()) {
+            lock.lock();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CardBusyException();
+        }
+        waitTimer(stripe).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            timeouts.increment();
+            throw new CardBusyException();
+        }
+    }
+
+    /**
+     * Таймер полосы регистрируется при первом обращении, чтобы не публиковать гистограммы простаивающих полос.
+     */
+    private Timer waitTimer(int stripe) {
+        Timer timer = waitTimers.get(stripe);
+        if (timer == null) {
+            timer = Timer.builder("bank.cards.lock.wait")
+                    .description("Time spent waiting for a card lock stripe")
+                    .tag("stripe", Integer.toString(stripe))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            waitTimers.set(stripe, timer);
+        }
+        return timer;
+    }
+
+    private double waitingThreads() {
+        int waiting = 0;
+        for (ReentrantLock stripe : stripes) {
+            waiting += stripe.getQueueLength();
+        }
+        return waiting;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.CardRepository.EncryptedNumber;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Однократное построение индекса номера для карт, выпущенных до его появления. Номер таких карт
+ * известен только в зашифрованном виде, поэтому индекс строится в приложении: номер расшифровывается,
+ * и в карту записываются его HMAC и последние четыре цифры. Новые карты получают индекс при создании.
+ * Каждая порция обрабатывается в своей транзакции; прерванное заполнение продолжается с оставшихся карт.
+ */
+@Slf4j
+@Service
+public class CardNumberIndexBackfillService {
+    private final CardRepository cardRepository;
+    private final EncryptionService encryptionService;
+    private final CardNumberIndexService cardNumberIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+
+    public CardNumberIndexBackfillService(CardRepository cardRepository,
+                                          EncryptionService encryptionService,
+                                          CardNumberIndexService cardNumberIndex,
+                                          TransactionTemplate transactionTemplate,
+                                          @Value("${app.cards.number-index.backfill.enabled:true}") boolean enabled,
+                                          @Value("${app.cards.number-index.backfill.chunk-size:1000}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.encryptionService = encryptionService;
+        this.cardNumberIndex = cardNumberIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (enabled) {
+            Thread.ofVirtual().name("card-number-index-backfill").start(() -> {
+                try {
+                    run();
+                } catch (RuntimeException e) {
+                    log.error("Card number index backfill stopped, it will resume on next start", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Индексирует карты порциями до конца и возвращает число проиндексированных карт.
+     */
+    public int run() {
+        int indexed = 0;
+        int chunk;
+        do {
+            chunk = Objects.requireNonNull(transactionTemplate.execute(status -> indexNextChunk()));
+            indexed += chunk;
+        } while (chunk == chunkSize);
+        if (indexed > 0) {
+            log.info("Card number index built for {} cards", indexed);
+        }
+        return indexed;
+    }
+
+    private int indexNextChunk() {
+        List<EncryptedNumber> cards = cardRepository.findByNumberHashIsNullOrderByIdAsc(Limit.of(chunkSize));
+        for (EncryptedNumber card : cards) {
+            String cardNumber = encryptionService.decrypt(card.getEncryptedNumber());
+            cardRepository.updateNumberIndex(card.getId(), cardNumberIndex.hash(cardNumber),
+                    CardNumberIndexService.last4(cardNumber));
+        }
+        return cards.size();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bankrest.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+/**
+ * Слепой индекс номера карты: HMAC-SHA256 от цифр номера на отдельном ключе. Индекс детерминирован
+ * и не зависит от шифрования номера, поэтому карта находится по номеру одним запросом по индексу
+ * без расшифровки, а по индексу номер восстановить нельзя.
+ */
+@Service
+public class CardNumberIndexService {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec secretKey;
+
+    public CardNumberIndexService(@Value("${app.encryption.index-secret}") String secret) {
+        if (secret == null || secret.length() < 32) {
+            throw new IllegalArgumentException("Card number index secret must be at least 32 characters long");
+        }
+        this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * Индекс номера карты; пробелы и другие разделители не учитываются.
+     */
+    public String hash(String cardNumber) {
+        if (cardNumber == null) {
+            throw new IllegalArgumentException("Card number cannot be null");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secretKey);
+            return HexFormat.of().formatHex(mac.doFinal(digits(cardNumber).getBytes(StandardCharsets.US_ASCII)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Card number index error", e);
+        }
+    }
+
+    /**
+     * Последние четыре цифры номера.
+     */
+    public static String last4(String cardNumber) {
+        String digits = digits(cardNumber);
+        if (digits.length() < 4) {
+            throw new IllegalArgumentException("Card number must contain at least 4 digits");
+        }
+        return digits.substring(digits.length() - 4);
+    }
+
+    private static String digits(String cardNumber) {
+        return cardNumber.replaceAll("\\D", "");
+    }
+}
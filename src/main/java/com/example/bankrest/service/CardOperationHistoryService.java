@@ -1,22 +1,35 @@
 package com.example.bankrest.service;
 
+import com.example.bankrest.dto.PageResponse;
 import com.example.bankrest.entity.Card;
 import com.example.bankrest.entity.CardOperationHistory;
 import com.example.bankrest.entity.CardStatus;
 import com.example.bankrest.entity.User;
+import com.example.bankrest.repository.ArchiveRepository.ArchivedPartition;
 import com.example.bankrest.repository.CardOperationHistoryRepository;
+import com.example.bankrest.service.ColdStorageService.ArchivedOperation;
+import com.example.bankrest.util.PageCursor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class CardOperationHistoryService {
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private final CardOperationHistoryRepository operationHistoryRepository;
+    private final ColdStorageService coldStorage;
 
 
     @Transactional
@@ -36,8 +49,108 @@ public class CardOperationHistoryService {
         return operationHistoryRepository.save(history);
     }
 
-    public Page<CardOperationHistory> getCardHistory(Card card, Pageable pageable) {
-        return operationHistoryRepository.findByCardOrderByCreatedAtDesc(card, pageable);
+    /**
+     * Записывает одну и ту же операцию для нескольких карт; вставки уходят JDBC-пакетами при сбросе.
+     */
+    @Transactional
+    public List<CardOperationHistory> recordOperations(Collection<Card> cards,
+                                                       CardOperationHistory.OperationType operationType,
+                                                       User performedBy, CardStatus previousStatus,
+                                                       CardStatus newStatus, String comment) {
+        LocalDateTime now = LocalDateTime.now();
+        List<CardOperationHistory> history = cards.stream()
+                .map(card -> CardOperationHistory.builder()
+                        .card(card)
+                        .operationType(operationType)
+                        .performedBy(performedBy)
+                        .previousStatus(previousStatus)
+                        .newStatus(newStatus)
+                        .comment(comment)
+                        .createdAt(now)
+                        .build())
+                .toList();
+        return operationHistoryRepository.saveAll(history);
+    }
+
+    /**
+     * История карты по номеру страницы, от новых записей к старым. Месяцы, перенесённые в холодное
+     * хранение, идут после строк таблицы: страница, которую таблица не заполнила, дочитывается из архива.
+     */
+    public PageResponse<CardOperationHistory> getCardHistory(Card card, Pageable pageable, boolean withTotal) {
+        List<ArchivedPartition> archived = coldStorage.archived(ColdStorageService.OPERATIONS_HISTORY);
+        LocalDateTime horizon = ColdStorageService.horizonOf(archived);
+        LocalDateTime hotStart = horizon != null ? horizon : HISTORY_START;
+        Slice<CardOperationHistory> hot = operationHistoryRepository
+                .findByCardAndCreatedAtGreaterThanEqualOrderByCreatedAtDescIdDesc(card, hotStart, pageable);
+        if (horizon == null || hot.hasNext()) {
+            return PageResponse.of(hot, withTotal, () -> operationHistoryRepository
+                    .countByCardAndCreatedAtGreaterThanEqual(card, hotStart) + countArchived(archived, card));
+        }
+
+        long hotCount = hot.hasContent() ? pageable.getOffset() + hot.getNumberOfElements()
+                : operationHistoryRepository.countByCardAndCreatedAtGreaterThanEqual(card, hotStart);
+        long[] skip = {Math.max(0, pageable.getOffset() - hotCount)};
+        int limit = pageable.getPageSize() + 1;
+        List<CardOperationHistory> rows = new ArrayList<>(hot.getContent());
+        coldStorage.scanOperations(archived, card.getId(), PageCursor.of(horizon, 0), row -> {
+            if (skip[0] > 0) {
+                skip[0]--;
+                return true;
+            }
+            rows.add(archivedOperation(card, row));
+            return rows.size() < limit;
+        });
+        boolean hasNext = rows.size() == limit;
+        Slice<CardOperationHistory> page = new SliceImpl<>(hasNext ? rows.subList(0, limit - 1) : rows, pageable,
+                hasNext);
+        return PageResponse.of(page, withTotal, () -> hotCount + countArchived(archived, card));
+    }
+
+    /**
+     * История карты по курсору, от новых записей к старым. Записи старше границы холодного
+     * хранения дочитываются из архива, когда строк из таблицы не хватает на страницу.
+     */
+    public PageResponse<CardOperationHistory> getCardHistoryAfter(Card card, String after, int size) {
+        PageCursor cursor = PageCursor.parseTimed(after);
+        PageCursor before = cursor != null ? cursor : PageCursor.of(HISTORY_END, Long.MAX_VALUE);
+        int limit = size + 1;
+        List<ArchivedPartition> archived = coldStorage.archived(ColdStorageService.OPERATIONS_HISTORY);
+        LocalDateTime horizon = ColdStorageService.horizonOf(archived);
+        List<CardOperationHistory> rows = new ArrayList<>();
+        if (horizon == null || before.timestamp().isAfter(horizon)) {
+            rows.addAll(operationHistoryRepository.findByCardBefore(card.getId(),
+                    horizon != null ? horizon : HISTORY_START, before.timestamp(), before.id(), limit));
+        }
+        if (rows.size() < limit && horizon != null) {
+            PageCursor archiveBefore = before.timestamp().isAfter(horizon) ? PageCursor.of(horizon, 0) : before;
+            coldStorage.scanOperations(archived, card.getId(), archiveBefore, row -> {
+                rows.add(archivedOperation(card, row));
+                return rows.size() < limit;
+            });
+        }
+        return PageResponse.of(rows, size, history -> PageCursor.of(history.getCreatedAt(), history.getId()));
+    }
+
+    private long countArchived(List<ArchivedPartition> archived, Card card) {
+        long[] count = {0};
+        coldStorage.scanOperations(archived, card.getId(), PageCursor.of(HISTORY_END, Long.MAX_VALUE), row -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    private static CardOperationHistory archivedOperation(Card card, ArchivedOperation row) {
+        return CardOperationHistory.builder()
+                .id(row.id())
+                .card(card)
+                .operationType(CardOperationHistory.OperationType.valueOf(row.operationType()))
+                .performedBy(row.performedById() != null ? User.builder().id(row.performedById()).build() : null)
+                .previousStatus(row.previousStatus() != null ? CardStatus.valueOf(row.previousStatus()) : null)
+                .newStatus(row.newStatus() != null ? CardStatus.valueOf(row.newStatus()) : null)
+                .comment(row.comment())
+                .createdAt(row.createdAt())
+                .build();
     }
 
 
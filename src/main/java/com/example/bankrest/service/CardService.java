@@ -1,58 +1,116 @@
 package com.example.bankrest.service;
 
+import com.example.bankrest.dto.CardDto;
+import com.example.bankrest.dto.CardSearchFilter;
+import com.example.bankrest.dto.PageResponse;
+import com.example.bankrest.dto.TransferDto;
 import com.example.bankrest.entity.*;
 import com.example.bankrest.exception.CardNotFoundException;
+import com.example.bankrest.ledger.LedgerEngine;
 import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.CardSpecifications;
+import com.example.bankrest.repository.LedgerEntryRepository;
+import com.example.bankrest.util.PageCursor;
 import com.example.bankrest.util.ValidationUtils;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class CardService {
+    public static final int MAX_BULK_SIZE = 10000;
+
     private final CardRepository cardRepository;
     private final EncryptionService encryptionService;
+    private final CardNumberIndexService cardNumberIndex;
     private final CardOperationHistoryService operationHistoryService;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final CardConcurrencyPolicy concurrencyPolicy;
+    private final TransactionTemplate transactionTemplate;
+    private final CardCache cardCache;
+
+    /**
+     * Движок переводов в памяти; задан, только если app.transfers.engine=ledger.
+     */
+    private LedgerEngine ledgerEngine;
+
+    @Autowired(required = false)
+    public void setLedgerEngine(LedgerEngine ledgerEngine) {
+        this.ledgerEngine = ledgerEngine;
+    }
+
+    /**
+     * Карты пользователя в порядке id. Страница читается одним запросом без загрузки сущностей и пользователей;
+     * число карт считается отдельно и только при withTotal.
+     */
+    public PageResponse<CardDto> getCardsByUser(User user, Pageable pageable, boolean withTotal) {
+        return PageResponse.of(cardRepository.findCardDtosByUserId(user.getId(), pageable), withTotal,
+                () -> cardRepository.countByUser_Id(user.getId()));
+    }
 
-    public Page<Card> getCardsByUser(User user, Pageable pageable) {
-        return cardRepository.findByUser(user, pageable);
+    public PageResponse<CardDto> getCardsByUserAfter(User user, String after, int size) {
+        long afterId = afterId(after);
+        return PageResponse.of(cardRepository.findCardDtosByUserIdAfter(user.getId(), afterId, Limit.of(size + 1)),
+                size, card -> PageCursor.ofId(card.getId()));
     }
 
+    /**
+     * Карта для проверок владельца, статуса и срока действия, по возможности из кэша. Возвращается
+     * отсоединённая копия без баланса; для изменения карты она перечитывается из БД.
+     */
     public Card getCardById(Long id) {
-        return cardRepository.findById(id)
+        return cardCache.get(id, cardRepository::findWithUserById)
                 .orElseThrow(() -> new CardNotFoundException(id));
     }
 
+    /**
+     * Удаляет карты из кэша после фиксации текущей транзакции; вызывается при изменении карт в обход сервиса.
+     */
+    public void invalidateCachedCards(Collection<Long> cardIds) {
+        cardCache.invalidateAfterCommit(cardIds);
+    }
+
     public Optional<Card> findCardById(Long id) {
         return cardRepository.findById(id);
     }
 
+    /**
+     * Ссылка на карту без чтения из БД; данные загружаются при первом обращении к ним.
+     */
+    public Card getCardReference(Long id) {
+        return cardRepository.getReferenceById(id);
+    }
+
+    /**
+     * Находит карту по полному номеру через слепой индекс, без расшифровки номеров.
+     * Читаются только столбцы CardDto: ни шифротекст номера, ни владелец в ответ не попадают.
+     */
+    public CardDto getCardByNumber(String cardNumber) {
+        ValidationUtils.validateCardNumber(cardNumber);
+        return cardRepository.findCardDtoByNumberHash(cardNumberIndex.hash(cardNumber))
+                .orElseThrow(() -> new CardNotFoundException("Card not found with given number"));
+    }
+
     @Transactional
     public Card createCard(String cardNumber, String owner, LocalDate expiryDate, User user) {
-        ValidationUtils.validateCardNumber(cardNumber);
-        ValidationUtils.validateNotNullOrEmpty(owner, "Owner");
-        ValidationUtils.validateNotNull(expiryDate, "Expiry date");
-        ValidationUtils.validateNotNull(user, "User");
-        ValidationUtils.validateFutureDate(expiryDate, "Expiry date");
-        
-        String encryptedNumber = encryptionService.encrypt(cardNumber);
-        String maskedNumber = maskCardNumber(cardNumber);
-        Card card = Card.builder()
-                .encryptedNumber(encryptedNumber)
-                .maskedNumber(maskedNumber)
-                .owner(owner.trim())
-                .expiryDate(expiryDate)
-                .status(CardStatus.ACTIVE)
-                .balance(BigDecimal.ZERO)
-                .user(user)
-                .build();
+        validateNewCard(cardNumber, owner, expiryDate, user);
+        Card card = buildCard(cardNumber, owner, expiryDate, user);
         Card savedCard = cardRepository.save(card);
         
         operationHistoryService.recordOperation(
@@ -67,43 +125,84 @@ public class CardService {
         return savedCard;
     }
 
+    /**
+     * Выпускает карты одной транзакцией. Номера шифруются и индексируются параллельно, а id карт
+     * и записей истории берутся блоками из последовательностей, поэтому вставки уходят JDBC-пакетами.
+     */
     @Transactional
+    public List<Card> createCards(List<NewCard> newCards, User issuedBy) {
+        if (newCards.isEmpty() || newCards.size() > MAX_BULK_SIZE) {
+            throw new IllegalArgumentException("Bulk issue must contain between 1 and " + MAX_BULK_SIZE + " cards");
+        }
+        for (int i = 0; i < newCards.size(); i++) {
+            NewCard newCard = newCards.get(i);
+            try {
+                validateNewCard(newCard.cardNumber(), newCard.owner(), newCard.expiryDate(), newCard.user());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Card " + i + ": " + e.getMessage(), e);
+            }
+        }
+        List<Card> cards = newCards.parallelStream()
+                .map(newCard -> buildCard(newCard.cardNumber(), newCard.owner(), newCard.expiryDate(), newCard.user()))
+                .toList();
+
+        Set<String> numberHashes = new HashSet<>();
+        for (Card card : cards) {
+            if (!numberHashes.add(card.getNumberHash())) {
+                throw new IllegalArgumentException("Duplicate card number in request: " + card.getMaskedNumber());
+            }
+        }
+        Set<String> existing = new HashSet<>(cardRepository.findNumberHashesIn(numberHashes));
+        if (!existing.isEmpty()) {
+            Card duplicate = cards.stream().filter(card -> existing.contains(card.getNumberHash())).findFirst().orElseThrow();
+            throw new IllegalArgumentException("Card number already exists: " + duplicate.getMaskedNumber());
+        }
+
+        List<Card> savedCards = cardRepository.saveAll(cards);
+        operationHistoryService.recordOperations(savedCards, CardOperationHistory.OperationType.CREATE, issuedBy,
+                null, CardStatus.ACTIVE, "Card created");
+        return savedCards;
+    }
+
+    /**
+     * Смена статуса проверяет версию карты и при конфликте с параллельным изменением повторяется.
+     */
     public void blockCard(Long cardId) {
-        Card card = getCardById(cardId);
-        CardStatus previousStatus = card.getStatus();
-        card.setStatus(CardStatus.BLOCKED);
-        cardRepository.save(card);
-        
-        operationHistoryService.recordOperation(
-                card,
-                CardOperationHistory.OperationType.BLOCK,
-                null,
-                previousStatus,
-                CardStatus.BLOCKED,
-                "Card blocked"
-        );
+        changeStatus("block", cardId, CardStatus.BLOCKED, CardOperationHistory.OperationType.BLOCK, "Card blocked");
     }
 
-    @Transactional
     public void activateCard(Long cardId) {
-        Card card = getCardById(cardId);
-        CardStatus previousStatus = card.getStatus();
-        card.setStatus(CardStatus.ACTIVE);
-        cardRepository.save(card);
-        
-        operationHistoryService.recordOperation(
-                card,
-                CardOperationHistory.OperationType.ACTIVATE,
-                null,
-                previousStatus,
-                CardStatus.ACTIVE,
-                "Card activated"
-        );
+        changeStatus("activate", cardId, CardStatus.ACTIVE, CardOperationHistory.OperationType.ACTIVATE, "Card activated");
+    }
+
+    private void changeStatus(String operation, Long cardId, CardStatus newStatus,
+                              CardOperationHistory.OperationType operationType, String description) {
+        concurrencyPolicy.execute(operation, () -> transactionTemplate.execute(status -> {
+            Card card = loadCard(cardId);
+            CardStatus previousStatus = card.getStatus();
+            if (newStatus == CardStatus.ACTIVE && card.getExpiryDate() != null
+                    && card.getExpiryDate().isBefore(LocalDate.now())) {
+                throw new IllegalStateException("Expired card cannot be activated");
+            }
+            card.setStatus(newStatus);
+            cardRepository.saveAndFlush(card);
+            cardCache.invalidateAfterCommit(List.of(cardId));
+
+            operationHistoryService.recordOperation(
+                    card,
+                    operationType,
+                    null,
+                    previousStatus,
+                    newStatus,
+                    description
+            );
+            return card;
+        }));
     }
 
     @Transactional
     public void deleteCard(Long cardId) {
-        Card card = getCardById(cardId);
+        Card card = loadCard(cardId);
         CardStatus previousStatus = card.getStatus();
         
         operationHistoryService.recordOperation(
@@ -116,10 +215,89 @@ public class CardService {
         );
         
         cardRepository.deleteById(cardId);
+        cardCache.invalidateAfterCommit(List.of(cardId));
+    }
+
+    /**
+     * Все карты в порядке id, одним запросом на страницу без загрузки сущностей.
+     */
+    public PageResponse<CardDto> getAllCards(Pageable pageable, boolean withTotal) {
+        return PageResponse.of(cardRepository.findAllCardDtos(pageable), withTotal, cardRepository::count);
+    }
+
+    /**
+     * Все карты по возрастанию id начиная с позиции курсора.
+     */
+    public PageResponse<CardDto> getAllCardsAfter(String after, int size) {
+        long afterId = afterId(after);
+        return PageResponse.of(cardRepository.findCardDtosAfter(afterId, Limit.of(size + 1)),
+                size, card -> PageCursor.ofId(card.getId()));
+    }
+
+    /**
+     * Поиск карт администратором по курсору в порядке id. Страница читается одним запросом без подсчёта
+     * общего числа карт, поэтому её стоимость не зависит от размера таблицы.
+     */
+    public PageResponse<CardDto> searchCards(CardSearchFilter filter, String after, int size) {
+        validateSearchFilter(filter);
+        long afterId = afterId(after);
+        return PageResponse.of(cardRepository.findCardDtos(CardSpecifications.matching(filter), afterId, size + 1),
+                size, card -> PageCursor.ofId(card.getId()));
+    }
+
+    private Card loadCard(Long cardId) {
+        return cardRepository.findById(cardId)
+                .orElseThrow(() -> new CardNotFoundException(cardId));
+    }
+
+    private long afterId(String after) {
+        PageCursor cursor = PageCursor.parse(after);
+        return cursor != null ? cursor.id() : 0L;
+    }
+
+    private void validateSearchFilter(CardSearchFilter filter) {
+        if (filter.getExpiryFrom() != null && filter.getExpiryTo() != null
+                && filter.getExpiryFrom().isAfter(filter.getExpiryTo())) {
+            throw new IllegalArgumentException("Expiry date range start must not be after its end");
+        }
+        if (filter.getOwner() != null) {
+            if (filter.getOwner().isBlank()) {
+                throw new IllegalArgumentException("Owner filter cannot be blank");
+            }
+            // Похожесть считается по триграммам; у более коротких строк их нет
+            if (filter.getOwnerMatch() == CardSearchFilter.OwnerMatch.FUZZY && filter.getOwner().trim().length() < 3) {
+                throw new IllegalArgumentException("Fuzzy owner search requires at least 3 characters");
+            }
+        }
+        if (filter.getLast4() != null && !filter.getLast4().matches("\\d{4}")) {
+            throw new IllegalArgumentException("Last 4 digits must be exactly 4 digits");
+        }
+        if (filter.getUserId() != null && filter.getUserId() <= 0) {
+            throw new IllegalArgumentException("User ID must be a positive number");
+        }
+    }
+
+    private void validateNewCard(String cardNumber, String owner, LocalDate expiryDate, User user) {
+        ValidationUtils.validateCardNumber(cardNumber);
+        ValidationUtils.validateNotNullOrEmpty(owner, "Owner");
+        ValidationUtils.validateNotNull(expiryDate, "Expiry date");
+        ValidationUtils.validateNotNull(user, "User");
+        ValidationUtils.validateFutureDate(expiryDate, "Expiry date");
     }
 
-    public Page<Card> getAllCards(Pageable pageable) {
-        return cardRepository.findAll(pageable);
+    private Card buildCard(String cardNumber, String owner, LocalDate expiryDate, User user) {
+        return Card.builder()
+                .encryptedNumber(encryptionService.encrypt(cardNumber))
+                .maskedNumber(maskCardNumber(cardNumber))
+                .numberHash(cardNumberIndex.hash(cardNumber))
+                .last4(CardNumberIndexService.last4(cardNumber))
+                .owner(owner.trim())
+                .expiryDate(expiryDate)
+                .status(CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .checkpointBalance(BigDecimal.ZERO)
+                .user(user)
+                .build();
     }
 
     private String maskCardNumber(String cardNumber) {
@@ -131,9 +309,64 @@ public class CardService {
         return "**** **** **** " + last4;
     }
 
+    /**
+     * Устанавливает баланс карты корректирующей проводкой на разницу с текущим балансом.
+     * Когда балансами владеет движок в памяти, проводка в обход него разошлась бы с его балансом,
+     * поэтому в этом режиме корректировки отклоняются. Если по карте параллельно прошла другая
+     * проводка, корректировка не записывается и бросается ObjectOptimisticLockingFailureException.
+     */
     @Transactional
     public void updateCardBalance(Card card, BigDecimal newBalance) {
+        if (ledgerEngine != null) {
+            throw new IllegalStateException("Balance adjustments are not supported while the ledger engine owns card balances");
+        }
+        BigDecimal current = ledgerEntryRepository.currentBalances(List.of(card.getId())).get(card.getId());
+        if (current == null) {
+            throw new CardNotFoundException(card.getId());
+        }
+        BigDecimal delta = newBalance.subtract(current);
+        if (delta.signum() != 0) {
+            ledgerEntryRepository.appendAdjustment(card.getId(), delta, newBalance);
+        }
         card.setBalance(newBalance);
-        cardRepository.save(card);
+        cardCache.invalidateAfterCommit(List.of(card.getId()));
+    }
+
+    /**
+     * Загружает карты одним IN-запросом. В режиме PESSIMISTIC их строки блокируются до конца
+     * транзакции, в режиме OPTIMISTIC параллельные изменения обнаруживает вставка проводок
+     * в {@link #recordTransferEntries}.
+     */
+    @Transactional
+    public Map<Long, Card> lockCards(Collection<Long> cardIds, CardConcurrencyPolicy.LockMode lockMode) {
+        List<Card> cards = lockMode == CardConcurrencyPolicy.LockMode.PESSIMISTIC
+                ? cardRepository.findAllByIdInForUpdate(cardIds)
+                : cardRepository.findAllById(cardIds);
+        return cards.stream().collect(Collectors.toMap(Card::getId, Function.identity()));
+    }
+
+    public Map<Long, Card> findCardsByIds(Collection<Long> cardIds) {
+        return cardRepository.findAllById(cardIds).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+    }
+
+    /**
+     * Текущие балансы карт по журналу проводок.
+     */
+    public Map<Long, BigDecimal> currentBalances(Collection<Long> cardIds) {
+        return ledgerEntryRepository.currentBalances(cardIds);
+    }
+
+    /**
+     * Добавляет в журнал проводки сохранённых переводов; balances обновляются до итоговых остатков.
+     * Если балансы карт изменились после чтения или карта перестала быть активной, бросает
+     * ObjectOptimisticLockingFailureException, и транзакцию нужно повторить.
+     */
+    @Transactional
+    public void recordTransferEntries(List<TransferDto> transfers, Map<Long, BigDecimal> balances) {
+        ledgerEntryRepository.appendTransfers(transfers, balances);
+    }
+
+    public record NewCard(String cardNumber, String owner, LocalDate expiryDate, User user) {
     }
 }
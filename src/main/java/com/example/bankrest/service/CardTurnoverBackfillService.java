@@ -0,0 +1,84 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.CardDailyTurnoverRepository;
+import com.example.bankrest.repository.CardDailyTurnoverRepositoryCustom.BackfillProgress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Однократное заполнение card_daily_turnover по переводам, сделанным до появления оборотов.
+ * Граница (high_watermark) зафиксирована миграцией: более поздние переводы уже учтены инкрементально.
+ * Каждая порция обрабатывается в своей транзакции вместе с сохранением прогресса, поэтому
+ * прерванное заполнение продолжается с места остановки и ни один перевод не учитывается дважды.
+ */
+@Slf4j
+@Service
+public class CardTurnoverBackfillService {
+    private final CardDailyTurnoverRepository turnoverRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+
+    public CardTurnoverBackfillService(CardDailyTurnoverRepository turnoverRepository,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${app.turnover.backfill.enabled:true}") boolean enabled,
+                                       @Value("${app.turnover.backfill.chunk-size:10000}") int chunkSize) {
+        this.turnoverRepository = turnoverRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (enabled) {
+            Thread.ofVirtual().name("turnover-backfill").start(() -> {
+                try {
+                    run();
+                } catch (RuntimeException e) {
+                    log.error("Card turnover backfill stopped, it will resume on next start", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Обрабатывает порции до конца и возвращает их количество.
+     */
+    public int run() {
+        int chunks = 0;
+        while (Boolean.TRUE.equals(transactionTemplate.execute(status -> backfillNextChunk()))) {
+            chunks++;
+        }
+        return chunks;
+    }
+
+    /**
+     * Возвращает true, если порция обработана; false, когда заполнять больше нечего.
+     */
+    private boolean backfillNextChunk() {
+        Optional<BackfillProgress> locked = turnoverRepository.lockBackfillProgress();
+        if (locked.isEmpty() || locked.get().completedAt() != null) {
+            return false;
+        }
+        BackfillProgress progress = locked.get();
+        long afterId = progress.lastTransferId();
+        long upToId = Math.min(progress.highWatermark(), afterId + chunkSize);
+        if (afterId >= progress.highWatermark()) {
+            turnoverRepository.updateBackfillProgress(afterId, LocalDateTime.now());
+            log.info("Card turnover backfill completed up to transfer {}", afterId);
+            return false;
+        }
+        turnoverRepository.backfill(afterId, upToId);
+        turnoverRepository.updateBackfillProgress(upToId, null);
+        log.debug("Card turnover backfilled transfers {}..{} of {}", afterId + 1, upToId, progress.highWatermark());
+        return true;
+    }
+}
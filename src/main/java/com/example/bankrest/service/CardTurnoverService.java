@@ -0,0 +1,86 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.CardTurnoverDto;
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.entity.CardDailyTurnover;
+import com.example.bankrest.repository.CardDailyTurnoverRepository;
+import com.example.bankrest.util.ValidationUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обороты карт по дням. Суммы ведутся инкрементально при каждом переводе,
+ * поэтому сводка за период читает не больше одной строки на день.
+ */
+@Service
+@RequiredArgsConstructor
+public class CardTurnoverService {
+    public static final long MAX_PERIOD_DAYS = 3660;
+
+    private final CardDailyTurnoverRepository turnoverRepository;
+
+    /**
+     * Учитывает переводы в оборотах; вызывается внутри транзакции, в которой переводы сохраняются.
+     */
+    public void recordTransfers(List<TransferDto> transfers) {
+        if (!transfers.isEmpty()) {
+            turnoverRepository.applyTransfers(transfers);
+        }
+    }
+
+    /**
+     * Оборот карты за период [from, to] включительно с разбивкой по дням или месяцам.
+     */
+    public CardTurnoverDto getTurnover(Long cardId, LocalDate from, LocalDate to, CardTurnoverDto.Grouping groupBy) {
+        ValidationUtils.validateNotNull(cardId, "Card ID");
+        ValidationUtils.validateNotNull(from, "Start of period");
+        ValidationUtils.validateNotNull(to, "End of period");
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start of period must not be after its end");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_PERIOD_DAYS) {
+            throw new IllegalArgumentException("Period must not exceed " + MAX_PERIOD_DAYS + " days");
+        }
+
+        Map<LocalDate, CardTurnoverDto.Period> periods = new LinkedHashMap<>();
+        BigDecimal debitTotal = BigDecimal.ZERO;
+        BigDecimal creditTotal = BigDecimal.ZERO;
+        long debitCount = 0;
+        long creditCount = 0;
+        for (CardDailyTurnover day : turnoverRepository.findByCardIdAndDayBetweenOrderByDayAsc(cardId, from, to)) {
+            LocalDate start = groupBy == CardTurnoverDto.Grouping.MONTH ? day.getDay().withDayOfMonth(1) : day.getDay();
+            CardTurnoverDto.Period period = periods.computeIfAbsent(start, key -> CardTurnoverDto.Period.builder()
+                    .start(key)
+                    .debitTotal(BigDecimal.ZERO)
+                    .creditTotal(BigDecimal.ZERO)
+                    .build());
+            period.setDebitTotal(period.getDebitTotal().add(day.getDebitTotal()));
+            period.setDebitCount(period.getDebitCount() + day.getDebitCount());
+            period.setCreditTotal(period.getCreditTotal().add(day.getCreditTotal()));
+            period.setCreditCount(period.getCreditCount() + day.getCreditCount());
+            debitTotal = debitTotal.add(day.getDebitTotal());
+            creditTotal = creditTotal.add(day.getCreditTotal());
+            debitCount += day.getDebitCount();
+            creditCount += day.getCreditCount();
+        }
+
+        return CardTurnoverDto.builder()
+                .cardId(cardId)
+                .from(from)
+                .to(to)
+                .groupBy(groupBy)
+                .debitTotal(debitTotal)
+                .debitCount(debitCount)
+                .creditTotal(creditTotal)
+                .creditCount(creditCount)
+                .periods(List.copyOf(periods.values()))
+                .build();
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.archive.Column;
+import com.example.bankrest.archive.ColumnarBlock;
+import com.example.bankrest.archive.ColumnarReader;
+import com.example.bankrest.archive.ColumnarWriter;
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferStatementRow;
+import com.example.bankrest.repository.ArchiveRepository;
+import com.example.bankrest.repository.ArchiveRepository.ArchivedPartition;
+import com.example.bankrest.repository.PartitionRepository;
+import com.example.bankrest.repository.PartitionRepository.Partition;
+import com.example.bankrest.util.PageCursor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Холодное хранение старых месяцев transfers и card_operations_history. Секция месяца старше
+ * after-months выгружается в сжатый колоночный файл, отсортированный по карте, регистрируется
+ * в каталоге archived_partitions, после чего отсоединяется и удаляется. Так размер «горячих»
+ * таблиц и их индексов ограничен сроком хранения, а не всей историей.
+ * <p>
+ * Месяцы из каталога читаются только из файлов, остальные — только из БД: граница между ними
+ * ({@link #horizonOf}) — начало месяца, следующего за последним архивным.
+ */
+@Slf4j
+@Service
+public class ColdStorageService {
+    public static final String TRANSFERS = "transfers";
+    public static final String OPERATIONS_HISTORY = "card_operations_history";
+    static final String FILE_EXTENSION = ".col";
+
+    private static final int TRANSFER_FROM_CARD = 0;
+    private static final int TRANSFER_TO_CARD = 1;
+    private static final int TRANSFER_TIMESTAMP = 2;
+    private static final int TRANSFER_ID = 3;
+    private static final int TRANSFER_AMOUNT = 4;
+    private static final int OPERATION_CARD = 0;
+    private static final int OPERATION_CREATED_AT = 1;
+    private static final int OPERATION_ID = 2;
+    private static final int OPERATION_TYPE = 3;
+    private static final int OPERATION_PERFORMED_BY = 4;
+    private static final int OPERATION_PREVIOUS_STATUS = 5;
+    private static final int OPERATION_NEW_STATUS = 6;
+    private static final int OPERATION_COMMENT = 7;
+
+    /**
+     * Колонки архивных файлов. Время хранится в микросекундах, как в PostgreSQL, суммы — в копейках;
+     * операции, выполненные системой без пользователя, хранятся с performed_by_id 0.
+     */
+    static final List<ArchivedTable> TABLES = List.of(
+            new ArchivedTable(TRANSFERS,
+                    List.of(Column.ofLong("from_card_id"), Column.ofLong("to_card_id"), Column.ofLong("timestamp"),
+                            Column.ofLong("id"), Column.ofLong("amount")),
+                    List.of("from_card_id", "timestamp", "id"),
+                    rs -> new Object[]{
+                            rs.getLong("from_card_id"),
+                            rs.getLong("to_card_id"),
+                            toMicros(rs.getTimestamp("timestamp").toLocalDateTime()),
+                            rs.getLong("id"),
+                            rs.getBigDecimal("amount").movePointRight(2).longValueExact()}),
+            new ArchivedTable(OPERATIONS_HISTORY,
+                    List.of(Column.ofLong("card_id"), Column.ofLong("created_at"), Column.ofLong("id"),
+                            Column.ofString("operation_type"), Column.ofLong("performed_by_id"),
+                            Column.ofString("previous_status"), Column.ofString("new_status"),
+                            Column.ofString("comment")),
+                    List.of("card_id", "created_at", "id"),
+                    rs -> new Object[]{
+                            rs.getLong("card_id"),
+                            toMicros(rs.getTimestamp("created_at").toLocalDateTime()),
+                            rs.getLong("id"),
+                            rs.getString("operation_type"),
+                            rs.getLong("performed_by_id"),
+                            rs.getString("previous_status"),
+                            rs.getString("new_status"),
+                            rs.getString("comment")}));
+
+    private static final Comparator<TransferStatementRow> BY_TIME =
+            Comparator.comparing(TransferStatementRow::timestamp).thenComparing(TransferStatementRow::id);
+
+    private final ArchiveRepository archiveRepository;
+    private final PartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int afterMonths;
+    private final Path directory;
+    private final int blockRows;
+    private final int fetchSize;
+    private final Duration lockTimeout;
+
+    private ScheduledExecutorService scheduler;
+
+    public ColdStorageService(ArchiveRepository archiveRepository,
+                              PartitionRepository partitionRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${app.archive.enabled:true}") boolean enabled,
+                              @Value("${app.archive.interval:PT6H}") Duration interval,
+                              @Value("${app.archive.after-months:24}") int afterMonths,
+                              @Value("${app.archive.directory:data/archive}") Path directory,
+                              @Value("${app.archive.block-rows:8192}") int blockRows,
+                              @Value("${app.archive.fetch-size:1000}") int fetchSize,
+                              @Value("${app.partitions.lock-timeout:PT5S}") Duration lockTimeout) {
+        this(archiveRepository, partitionRepository, transactionTemplate, Clock.systemDefaultZone(), enabled,
+                interval, afterMonths, directory, blockRows, fetchSize, lockTimeout);
+    }
+
+    ColdStorageService(ArchiveRepository archiveRepository, PartitionRepository partitionRepository,
+                       TransactionTemplate transactionTemplate, Clock clock, boolean enabled, Duration interval,
+                       int afterMonths, Path directory, int blockRows, int fetchSize, Duration lockTimeout) {
+        this.archiveRepository = archiveRepository;
+        this.partitionRepository = partitionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.afterMonths = afterMonths;
+        this.directory = directory;
+        this.blockRows = blockRows;
+        this.fetchSize = fetchSize;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (enabled && afterMonths > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("cold-storage").factory());
+            scheduler.scheduleWithFixedDelay(this::run, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Архивирует месяцы старше after-months во всех таблицах. Ошибка по одной таблице не мешает
+     * остальным; недоделанные шаги повторяются при следующем запуске.
+     */
+    public void run() {
+        if (afterMonths < 1) {
+            return;
+        }
+        YearMonth cutoff = YearMonth.now(clock).minusMonths(afterMonths);
+        for (ArchivedTable table : TABLES) {
+            try {
+                archiveBefore(table, cutoff);
+            } catch (RuntimeException e) {
+                log.warn("Archiving of {} failed, it will be retried: {}", table.name(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Архивные месяцы таблицы по возрастанию.
+     */
+    public List<ArchivedPartition> archived(String table) {
+        return archiveRepository.findArchived(table);
+    }
+
+    /**
+     * Начало первого месяца после архивных: строки раньше этой границы читаются из архива.
+     * Null, если архива нет.
+     */
+    public static LocalDateTime horizonOf(List<ArchivedPartition> archived) {
+        return archived.isEmpty() ? null : archived.getLast().month().plusMonths(1).atDay(1).atStartOfDay();
+    }
+
+    /**
+     * Переводы карты из архивных месяцев с timestamp >= from (from может быть null) и (timestamp, id)
+     * строго меньше before — в том же смысле, что и у курсоров истории. Строки передаются
+     * в порядке (timestamp, id), по возрастанию или убыванию, пока consumer возвращает true.
+     * Внутри файла читаются только блоки, в которые может попасть карта.
+     */
+    public void scanTransfers(List<ArchivedPartition> archived, Long cardId, TransferDirection direction,
+                              LocalDateTime from, PageCursor before, boolean descending,
+                              Predicate<TransferStatementRow> consumer) {
+        for (ArchivedPartition partition : monthsBetween(archived, from, before, descending)) {
+            List<TransferStatementRow> rows = readTransfers(partition, cardId, direction, from, before);
+            rows.sort(descending ? BY_TIME.reversed() : BY_TIME);
+            for (TransferStatementRow row : rows) {
+                if (!consumer.test(row)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Операции карты из архивных месяцев с (created_at, id) строго меньше before, от новых к старым,
+     * пока consumer возвращает true.
+     */
+    public void scanOperations(List<ArchivedPartition> archived, Long cardId, PageCursor before,
+                               Predicate<ArchivedOperation> consumer) {
+        for (ArchivedPartition partition : monthsBetween(archived, null, before, true)) {
+            List<ArchivedOperation> rows = readOperations(partition, cardId, before);
+            rows.sort(Comparator.comparing(ArchivedOperation::createdAt).thenComparing(ArchivedOperation::id)
+                    .reversed());
+            for (ArchivedOperation row : rows) {
+                if (!consumer.test(row)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static List<ArchivedPartition> monthsBetween(List<ArchivedPartition> archived, LocalDateTime from,
+                                                         PageCursor before, boolean descending) {
+        return archived.stream()
+                .filter(partition -> from == null
+                        || partition.month().plusMonths(1).atDay(1).atStartOfDay().isAfter(from))
+                .filter(partition -> !partition.month().atDay(1).atStartOfDay().isAfter(before.timestamp()))
+                .sorted(descending ? Comparator.comparing(ArchivedPartition::month).reversed()
+                        : Comparator.comparing(ArchivedPartition::month))
+                .toList();
+    }
+
+    private List<ArchivedOperation> readOperations(ArchivedPartition partition, Long cardId, PageCursor before) {
+        long beforeMicros = toMicros(before.timestamp());
+        List<ArchivedOperation> rows = new ArrayList<>();
+        try {
+            ColumnarReader.read(directory.resolve(partition.fileName()),
+                    block -> block.min(OPERATION_CREATED_AT) <= beforeMicros && block.mayContain(OPERATION_CARD, cardId),
+                    block -> collectOperations(block, cardId, before, rows));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive " + partition.fileName(), e);
+        }
+        return rows;
+    }
+
+    private static void collectOperations(ColumnarBlock block, long cardId, PageCursor before,
+                                          List<ArchivedOperation> rows) {
+        long[] cards = block.longs(OPERATION_CARD);
+        long[] createdAt = block.longs(OPERATION_CREATED_AT);
+        long[] ids = block.longs(OPERATION_ID);
+        long beforeMicros = toMicros(before.timestamp());
+        for (int i = 0; i < block.rows(); i++) {
+            if (cards[i] != cardId || createdAt[i] > beforeMicros
+                    || createdAt[i] == beforeMicros && ids[i] >= before.id()) {
+                continue;
+            }
+            long performedBy = block.longs(OPERATION_PERFORMED_BY)[i];
+            rows.add(new ArchivedOperation(ids[i], fromMicros(createdAt[i]), block.strings(OPERATION_TYPE)[i],
+                    performedBy != 0 ? performedBy : null, block.strings(OPERATION_PREVIOUS_STATUS)[i],
+                    block.strings(OPERATION_NEW_STATUS)[i], block.strings(OPERATION_COMMENT)[i]));
+        }
+    }
+
+    private List<TransferStatementRow> readTransfers(ArchivedPartition partition, Long cardId,
+                                                     TransferDirection direction, LocalDateTime from,
+                                                     PageCursor before) {
+        long fromMicros = from != null ? toMicros(from) : Long.MIN_VALUE;
+        long beforeMicros = toMicros(before.timestamp());
+        boolean outgoing = direction != TransferDirection.IN;
+        boolean incoming = direction != TransferDirection.OUT;
+        List<TransferStatementRow> rows = new ArrayList<>();
+        try {
+            ColumnarReader.read(directory.resolve(partition.fileName()),
+                    block -> block.max(TRANSFER_TIMESTAMP) >= fromMicros
+                            && block.min(TRANSFER_TIMESTAMP) <= beforeMicros
+                            && (outgoing && block.mayContain(TRANSFER_FROM_CARD, cardId)
+                            || incoming && block.mayContain(TRANSFER_TO_CARD, cardId)),
+                    block -> collectTransfers(block, cardId, outgoing, incoming, fromMicros, before, rows));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive " + partition.fileName(), e);
+        }
+        return rows;
+    }
+
+    private static void collectTransfers(ColumnarBlock block, long cardId, boolean outgoing, boolean incoming,
+                                         long fromMicros, PageCursor before, List<TransferStatementRow> rows) {
+        long[] fromCards = block.longs(TRANSFER_FROM_CARD);
+        long[] toCards = block.longs(TRANSFER_TO_CARD);
+        long beforeMicros = toMicros(before.timestamp());
+        long[] timestamps = null;
+        long[] ids = null;
+        long[] amounts = null;
+        for (int i = 0; i < block.rows(); i++) {
+            boolean out = outgoing && fromCards[i] == cardId;
+            if (!out && !(incoming && toCards[i] == cardId)) {
+                continue;
+            }
+            if (timestamps == null) {
+                timestamps = block.longs(TRANSFER_TIMESTAMP);
+                ids = block.longs(TRANSFER_ID);
+                amounts = block.longs(TRANSFER_AMOUNT);
+            }
+            if (timestamps[i] < fromMicros || timestamps[i] > beforeMicros
+                    || timestamps[i] == beforeMicros && ids[i] >= before.id()) {
+                continue;
+            }
+            rows.add(new TransferStatementRow(ids[i], fromMicros(timestamps[i]),
+                    out ? TransferDirection.OUT : TransferDirection.IN,
+                    fromCards[i], toCards[i], BigDecimal.valueOf(amounts[i], 2)));
+        }
+    }
+
+    private void archiveBefore(ArchivedTable table, YearMonth cutoff) {
+        Map<String, Partition> attached = partitionRepository.findPartitions(table.name()).stream()
+                .collect(Collectors.toMap(Partition::name, Function.identity()));
+        for (String name : partitionRepository.findMonthlyTables(table.name())) {
+            YearMonth month = PartitionMaintenanceService.monthOf(table.name(), name);
+            if (month == null || !month.isBefore(cutoff)) {
+                continue;
+            }
+            if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> archiveMonth(table, name, month)))) {
+                log.info("Archiving of {} is running on another node", table.name());
+                return;
+            }
+            // Месяц уже читается из архива, поэтому секцию можно убирать: DETACH CONCURRENTLY не
+            // блокирует запросы к родителю и выполняется вне транзакции.
+            Partition partition = attached.get(name);
+            if (partition != null) {
+                partitionRepository.detachPartition(table.name(), partition, lockTimeout);
+            }
+            partitionRepository.dropTable(name, lockTimeout);
+            log.info("Moved {} to cold storage", name);
+        }
+    }
+
+    /**
+     * Выгружает месяц в файл и регистрирует его. Возвращает false, если архивацию ведёт другой узел.
+     * Месяц, уже записанный в каталог, повторно не выгружается.
+     */
+    private boolean archiveMonth(ArchivedTable table, String partition, YearMonth month) {
+        if (!archiveRepository.tryLockArchiving()) {
+            return false;
+        }
+        if (archiveRepository.findArchived(table.name()).stream()
+                .anyMatch(archived -> archived.month().equals(month))) {
+            return true;
+        }
+        String fileName = partition + FILE_EXTENSION;
+        try (ColumnarWriter writer = new ColumnarWriter(directory.resolve(fileName), table.columns(), blockRows)) {
+            archiveRepository.streamTable(partition, table.columnNames(), table.sortColumns(), fetchSize, rs -> {
+                try {
+                    writer.append(table.reader().read(rs));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.commit();
+            if (TRANSFERS.equals(table.name())) {
+                // Сверка балансов учитывает удалённые из таблицы переводы по этим итогам.
+                archiveRepository.addArchivedTransferTotals(partition);
+            }
+            archiveRepository.register(table.name(), month, fileName, writer.rowCount());
+            log.info("Archived {} rows of {} to {}", writer.rowCount(), partition, fileName);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write archive of " + partition, e);
+        }
+        return true;
+    }
+
+    static long toMicros(LocalDateTime timestamp) {
+        return ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), timestamp);
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1000, ZoneOffset.UTC);
+    }
+
+    @FunctionalInterface
+    interface RowReader {
+        Object[] read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Операция из архива; performedById равен null для операций, выполненных системой.
+     */
+    public record ArchivedOperation(long id, LocalDateTime createdAt, String operationType, Long performedById,
+                                    String previousStatus, String newStatus, String comment) {
+    }
+
+    record ArchivedTable(String name, List<Column> columns, List<String> sortColumns, RowReader reader) {
+        List<String> columnNames() {
+            return columns.stream().map(Column::name).toList();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bankrest.service;
+
+/**
+ * Приближённая частота обращений к ключам для допуска в кэш (TinyLFU): count-min sketch из четырёх
+ * строк 4-битных счётчиков, упакованных по 16 в long. Когда число увеличений достигает десятикратного
+ * размера кэша, все счётчики делятся пополам, поэтому давние обращения постепенно забываются.
+ * Не потокобезопасно: вызывающий синхронизируется сам.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.max(maximumSize, 1);
+        int length = Integer.highestOneBit(capacity);
+        if (length < capacity) {
+            length <<= 1;
+        }
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * capacity;
+    }
+
+    int frequency(long key) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long hash = hash(key, row);
+            frequency = Math.min(frequency, (int) (table[index(hash)] >>> offset(hash)) & MAX_COUNT);
+        }
+        return frequency;
+    }
+
+    void increment(long key) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long hash = hash(key, row);
+            int index = index(hash);
+            int offset = offset(hash);
+            if (((table[index] >>> offset) & MAX_COUNT) < MAX_COUNT) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int index(long hash) {
+        return (int) (hash >>> 32) & tableMask;
+    }
+
+    private static int offset(long hash) {
+        return ((int) hash & 15) << 2;
+    }
+
+    private static long hash(long key, int row) {
+        long hash = (key + SEEDS[row]) * 0x9e3779b97f4a7c15L;
+        hash ^= hash >>> 29;
+        hash *= SEEDS[row];
+        return hash ^ (hash >>> 32);
+    }
+}
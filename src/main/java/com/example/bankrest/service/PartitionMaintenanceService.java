@@ -0,0 +1,162 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.PartitionRepository;
+import com.example.bankrest.repository.PartitionRepository.Partition;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поддерживает месячные секции transfers и card_operations_history: заранее создаёт секции
+ * на months-ahead месяцев вперёд, а при заданном detach-after-months отсоединяет секции старше
+ * этого срока. Секции по умолчанию нет, поэтому вставка в месяц без секции завершится ошибкой —
+ * запаса в несколько месяцев хватает, чтобы пережить несколько неудачных запусков подряд.
+ * Секция по умолчанию не заводится намеренно: попавшие в неё строки мешали бы создавать месячные
+ * секции и отсоединять их для холодного хранения. Вместо этого приложение не стартует, если у таблицы
+ * нет секций текущего и следующего месяца.
+ */
+@Slf4j
+@Service
+public class PartitionMaintenanceService {
+    public static final List<String> PARTITIONED_TABLES = List.of("transfers", "card_operations_history");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final PartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration interval;
+    private final int monthsAhead;
+    private final int detachAfterMonths;
+    private final Duration lockTimeout;
+
+    private ScheduledExecutorService scheduler;
+
+    public PartitionMaintenanceService(PartitionRepository partitionRepository,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${app.partitions.enabled:true}") boolean enabled,
+                                       @Value("${app.partitions.interval:PT6H}") Duration interval,
+                                       @Value("${app.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${app.partitions.detach-after-months:0}") int detachAfterMonths,
+                                       @Value("${app.partitions.lock-timeout:PT5S}") Duration lockTimeout) {
+        this(partitionRepository, transactionTemplate, Clock.systemDefaultZone(), enabled, interval, monthsAhead,
+                detachAfterMonths, lockTimeout);
+    }
+
+    PartitionMaintenanceService(PartitionRepository partitionRepository, TransactionTemplate transactionTemplate,
+                                Clock clock, boolean enabled, Duration interval, int monthsAhead,
+                                int detachAfterMonths, Duration lockTimeout) {
+        this.partitionRepository = partitionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.interval = interval;
+        this.monthsAhead = monthsAhead;
+        this.detachAfterMonths = detachAfterMonths;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (enabled) {
+            run();
+        }
+        verifyPartitionsAhead();
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("partition-maintenance").factory());
+            scheduler.scheduleWithFixedDelay(this::run, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Проверяет, что у каждой секционированной таблицы присоединены секции текущего и следующего месяца.
+     * Без них переводы и записи истории начнут падать на вставке, поэтому ошибка останавливает запуск.
+     */
+    public void verifyPartitionsAhead() {
+        YearMonth current = YearMonth.now(clock);
+        for (String table : PARTITIONED_TABLES) {
+            List<YearMonth> attached = partitionRepository.findPartitions(table).stream()
+                    .filter(partition -> !partition.detachPending())
+                    .map(partition -> monthOf(table, partition.name()))
+                    .toList();
+            for (YearMonth month : List.of(current, current.plusMonths(1))) {
+                if (!attached.contains(month)) {
+                    throw new IllegalStateException("Partition of " + table + " for " + month + " is missing");
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Обслуживает все секционированные таблицы. Ошибка по одной таблице не мешает остальным,
+     * неудавшиеся шаги повторяются при следующем запуске.
+     */
+    public void run() {
+        YearMonth current = YearMonth.now(clock);
+        for (String table : PARTITIONED_TABLES) {
+            try {
+                createFuturePartitions(table, current);
+                if (detachAfterMonths > 0) {
+                    detachPartitionsBefore(table, current.minusMonths(detachAfterMonths));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Partition maintenance of {} failed, it will be retried: {}", table, e.getMessage());
+            }
+        }
+    }
+
+    private void createFuturePartitions(String table, YearMonth current) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            LocalDate month = current.plusMonths(i).atDay(1);
+            // Каждая секция создаётся в своей транзакции, чтобы блокировка родителя держалась недолго.
+            if (Boolean.TRUE.equals(transactionTemplate.execute(
+                    status -> partitionRepository.createMonthlyPartition(table, month, lockTimeout)))) {
+                log.info("Created partition of {} for {}", table, YearMonth.from(month));
+            }
+        }
+    }
+
+    private void detachPartitionsBefore(String table, YearMonth cutoff) {
+        for (Partition partition : partitionRepository.findPartitions(table)) {
+            YearMonth month = monthOf(table, partition.name());
+            if (month != null && month.isBefore(cutoff)) {
+                partitionRepository.detachPartition(table, partition, lockTimeout);
+                log.info("Detached partition {} of {}", partition.name(), table);
+            }
+        }
+    }
+
+    static YearMonth monthOf(String table, String partition) {
+        String prefix = table + "_";
+        if (!partition.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition.substring(prefix.length()), SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.bankrest.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Скользящее окно сумм и количеств в виде кольца корзин с текущими итогами.
+ * Проверка итогов и учёт списания занимают постоянное время, сдвиг окна очищает
+ * не больше корзин, чем в нём есть. Не потокобезопасно: вызывающий синхронизируется сам.
+ */
+final class SlidingWindow {
+    private final long bucketMillis;
+    private final long[] amounts;
+    private final int[] counts;
+    private long head;
+    private long totalAmount;
+    private int totalCount;
+
+    SlidingWindow(Duration window, int buckets, long nowMillis) {
+        this.bucketMillis = window.toMillis() / buckets;
+        this.amounts = new long[buckets];
+        this.counts = new int[buckets];
+        this.head = nowMillis / bucketMillis;
+    }
+
+    long totalAmount(long nowMillis) {
+        advance(nowMillis / bucketMillis);
+        return totalAmount;
+    }
+
+    int totalCount(long nowMillis) {
+        advance(nowMillis / bucketMillis);
+        return totalCount;
+    }
+
+    /**
+     * Учитывает значения в корзине момента atMillis; момент старше окна игнорируется.
+     * Отрицательные значения снимают ранее учтённое списание.
+     */
+    void add(long atMillis, long amount, int count) {
+        long bucket = atMillis / bucketMillis;
+        advance(bucket);
+        if (head - bucket >= amounts.length) {
+            return;
+        }
+        int index = index(bucket);
+        amounts[index] += amount;
+        counts[index] += count;
+        totalAmount += amount;
+        totalCount += count;
+    }
+
+    private void advance(long bucket) {
+        if (bucket <= head) {
+            return;
+        }
+        if (bucket - head >= amounts.length) {
+            Arrays.fill(amounts, 0);
+            Arrays.fill(counts, 0);
+            totalAmount = 0;
+            totalCount = 0;
+        } else {
+            for (long expired = head + 1; expired <= bucket; expired++) {
+                int index = index(expired);
+                totalAmount -= amounts[index];
+                totalCount -= counts[index];
+                amounts[index] = 0;
+                counts[index] = 0;
+            }
+        }
+        head = bucket;
+    }
+
+    private int index(long bucket) {
+        return (int) Math.floorMod(bucket, (long) amounts.length);
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.entity.LimitPeriod;
+import com.example.bankrest.entity.LimitScope;
+import com.example.bankrest.entity.SpendingLimit;
+import com.example.bankrest.exception.SpendingLimitExceededException;
+import com.example.bankrest.exception.SpendingLimitNotFoundException;
+import com.example.bankrest.repository.SpendingLimitRepository;
+import com.example.bankrest.repository.TransferRepository;
+import com.example.bankrest.util.ValidationUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лимиты списаний по карте и по пользователю за скользящий час и сутки.
+ * Определения лимитов хранятся в spending_limits, а суммы и количества списаний — в памяти,
+ * в скользящих окнах только для тех карт и пользователей, у которых есть лимит. При старте
+ * окна восстанавливаются из transfers за последние сутки, поэтому проверка на пути перевода
+ * не обращается к БД. Счётчики ведутся на каждом узле отдельно.
+ */
+@Slf4j
+@Service
+public class SpendingLimitService {
+    private static final LimitPeriod[] PERIODS = LimitPeriod.values();
+    private static final LimitPeriod LONGEST_PERIOD = LimitPeriod.DAY;
+
+    private final SpendingLimitRepository limitRepository;
+    private final TransferRepository transferRepository;
+    private final CardService cardService;
+    private final UserService userService;
+    private final Clock clock;
+    private final Timer checkTimer;
+    private final Map<LimitScope, Map<Long, SubjectWindows>> windows = new EnumMap<>(LimitScope.class);
+
+    @Autowired
+    public SpendingLimitService(SpendingLimitRepository limitRepository,
+                                TransferRepository transferRepository,
+                                CardService cardService,
+                                UserService userService,
+                                MeterRegistry meterRegistry) {
+        this(limitRepository, transferRepository, cardService, userService, meterRegistry, Clock.systemDefaultZone());
+    }
+
+    SpendingLimitService(SpendingLimitRepository limitRepository,
+                         TransferRepository transferRepository,
+                         CardService cardService,
+                         UserService userService,
+                         MeterRegistry meterRegistry,
+                         Clock clock) {
+        this.limitRepository = limitRepository;
+        this.transferRepository = transferRepository;
+        this.cardService = cardService;
+        this.userService = userService;
+        this.clock = clock;
+        this.checkTimer = Timer.builder("bank.transfers.limits.check")
+                .description("Time spent checking spending limits on the transfer path")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        for (LimitScope scope : LimitScope.values()) {
+            windows.put(scope, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Загружает определения лимитов и восстанавливает окна по списаниям за последние сутки.
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        Map<LimitScope, Map<Long, SubjectWindows>> loaded = new EnumMap<>(LimitScope.class);
+        long now = clock.millis();
+        for (LimitScope scope : LimitScope.values()) {
+            loaded.put(scope, new HashMap<>());
+        }
+        Map<LimitScope, Map<Long, List<SpendingLimit>>> definitions = new EnumMap<>(LimitScope.class);
+        for (SpendingLimit limit : limitRepository.findAll()) {
+            definitions.computeIfAbsent(limit.getScope(), scope -> new HashMap<>())
+                    .computeIfAbsent(limit.getSubjectId(), id -> new ArrayList<>())
+                    .add(limit);
+        }
+        definitions.forEach((scope, subjects) -> subjects.forEach((subjectId, limits) ->
+                loaded.get(scope).put(subjectId, new SubjectWindows(Limits.of(limits), now))));
+
+        loadHistory(loaded.get(LimitScope.CARD), loaded.get(LimitScope.USER));
+        for (LimitScope scope : LimitScope.values()) {
+            windows.get(scope).clear();
+            windows.get(scope).putAll(loaded.get(scope));
+        }
+        log.info("Spending limits loaded for {} cards and {} users in {} ms",
+                loaded.get(LimitScope.CARD).size(), loaded.get(LimitScope.USER).size(), clock.millis() - now);
+    }
+
+    public List<SpendingLimit> getLimits(LimitScope scope, Long subjectId) {
+        ValidationUtils.validateNotNull(scope, "Scope");
+        ValidationUtils.validateNotNull(subjectId, "Subject ID");
+        return limitRepository.findByScopeAndSubjectIdOrderByPeriodAsc(scope, subjectId);
+    }
+
+    /**
+     * Создаёт или заменяет лимит субъекта за период. Если у субъекта ещё не было лимитов,
+     * его окна восстанавливаются из transfers.
+     */
+    public synchronized SpendingLimit setLimit(LimitScope scope, Long subjectId, LimitPeriod period,
+                                               BigDecimal maxAmount, Integer maxCount) {
+        ValidationUtils.validateNotNull(scope, "Scope");
+        ValidationUtils.validateNotNull(subjectId, "Subject ID");
+        ValidationUtils.validateNotNull(period, "Period");
+        if (maxAmount == null && maxCount == null) {
+            throw new IllegalArgumentException("Limit must set max amount, max count or both");
+        }
+        if (maxAmount != null) {
+            ValidationUtils.validatePositiveAmount(maxAmount, "Max amount");
+        }
+        if (maxCount != null && maxCount < 1) {
+            throw new IllegalArgumentException("Max count must be positive");
+        }
+        if (scope == LimitScope.CARD) {
+            cardService.getCardById(subjectId);
+        } else {
+            userService.getUserById(subjectId);
+        }
+
+        SpendingLimit limit = limitRepository.findByScopeAndSubjectIdAndPeriod(scope, subjectId, period)
+                .orElseGet(() -> SpendingLimit.builder().scope(scope).subjectId(subjectId).period(period).build());
+        limit.setMaxAmount(maxAmount);
+        limit.setMaxCount(maxCount);
+        SpendingLimit saved = limitRepository.save(limit);
+        refresh(scope, subjectId);
+        return saved;
+    }
+
+    public synchronized void deleteLimit(Long id) {
+        SpendingLimit limit = limitRepository.findById(id)
+                .orElseThrow(() -> new SpendingLimitNotFoundException("Spending limit with id " + id + " not found"));
+        limitRepository.delete(limit);
+        refresh(limit.getScope(), limit.getSubjectId());
+    }
+
+    /**
+     * Проверяет лимиты карты и её владельца и сразу учитывает списание. Если перевод
+     * затем не состоялся, резерв нужно снять через {@link Reservation#release()}.
+     */
+    public Reservation reserve(Long cardId, Long userId, BigDecimal amount) {
+        SubjectWindows card = windows.get(LimitScope.CARD).get(cardId);
+        SubjectWindows user = windows.get(LimitScope.USER).get(userId);
+        if (card == null && user == null) {
+            return Reservation.NONE;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            long cents = toCents(amount);
+            long now = clock.millis();
+            // Окна пользователя всегда захватываются раньше окон карты.
+            if (user != null && card != null) {
+                synchronized (user) {
+                    synchronized (card) {
+                        user.check(now, cents, "User");
+                        card.check(now, cents, "Card");
+                        user.add(now, cents, 1);
+                        card.add(now, cents, 1);
+                    }
+                }
+            } else {
+                SubjectWindows single = user != null ? user : card;
+                synchronized (single) {
+                    single.check(now, cents, user != null ? "User" : "Card");
+                    single.add(now, cents, 1);
+                }
+            }
+            return new Reservation(card, user, now, cents);
+        } finally {
+            checkTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void refresh(LimitScope scope, Long subjectId) {
+        List<SpendingLimit> limits = limitRepository.findByScopeAndSubjectIdOrderByPeriodAsc(scope, subjectId);
+        Map<Long, SubjectWindows> subjects = windows.get(scope);
+        if (limits.isEmpty()) {
+            subjects.remove(subjectId);
+            return;
+        }
+        SubjectWindows existing = subjects.get(subjectId);
+        if (existing != null) {
+            existing.limits = Limits.of(limits);
+            return;
+        }
+        SubjectWindows created = new SubjectWindows(Limits.of(limits), clock.millis());
+        Map<Long, SubjectWindows> single = Map.of(subjectId, created);
+        if (scope == LimitScope.CARD) {
+            loadHistory(single, Map.of());
+        } else {
+            loadHistory(Map.of(), single);
+        }
+        subjects.put(subjectId, created);
+    }
+
+    private void loadHistory(Map<Long, SubjectWindows> cards, Map<Long, SubjectWindows> users) {
+        if (cards.isEmpty() && users.isEmpty()) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now(clock).minus(LONGEST_PERIOD.getWindow());
+        Set<Long> cardIds = cards.keySet();
+        Set<Long> userIds = users.keySet();
+        transferRepository.streamDebitTotals(since, cardIds, userIds, total -> {
+            long at = total.minute().atZone(clock.getZone()).toInstant().toEpochMilli();
+            long cents = toCents(total.amount());
+            SubjectWindows card = cards.get(total.cardId());
+            if (card != null) {
+                card.add(at, cents, total.count());
+            }
+            SubjectWindows user = users.get(total.userId());
+            if (user != null) {
+                user.add(at, cents, total.count());
+            }
+        });
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+
+    /**
+     * Списание, учтённое в окнах карты и пользователя.
+     */
+    public static final class Reservation {
+        public static final Reservation NONE = new Reservation(null, null, 0, 0);
+
+        private final SubjectWindows card;
+        private final SubjectWindows user;
+        private final long reservedAt;
+        private final long cents;
+
+        private Reservation(SubjectWindows card, SubjectWindows user, long reservedAt, long cents) {
+            this.card = card;
+            this.user = user;
+            this.reservedAt = reservedAt;
+            this.cents = cents;
+        }
+
+        public void release() {
+            release(user);
+            release(card);
+        }
+
+        private void release(SubjectWindows subject) {
+            if (subject != null) {
+                synchronized (subject) {
+                    subject.add(reservedAt, -cents, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Максимумы по периодам в копейках и штуках; отсутствие лимита — Long/Integer.MAX_VALUE.
+     */
+    private record Limits(long[] maxCents, int[] maxCounts) {
+        static Limits of(List<SpendingLimit> limits) {
+            long[] maxCents = new long[PERIODS.length];
+            int[] maxCounts = new int[PERIODS.length];
+            Arrays.fill(maxCents, Long.MAX_VALUE);
+            Arrays.fill(maxCounts, Integer.MAX_VALUE);
+            for (SpendingLimit limit : limits) {
+                int index = limit.getPeriod().ordinal();
+                if (limit.getMaxAmount() != null) {
+                    maxCents[index] = limit.getMaxAmount().movePointRight(2)
+                            .setScale(0, RoundingMode.FLOOR).longValueExact();
+                }
+                if (limit.getMaxCount() != null) {
+                    maxCounts[index] = limit.getMaxCount();
+                }
+            }
+            return new Limits(maxCents, maxCounts);
+        }
+    }
+
+    /**
+     * Окна всех периодов одного субъекта. Методы вызываются под монитором объекта.
+     */
+    private static final class SubjectWindows {
+        private final SlidingWindow[] periods = new SlidingWindow[PERIODS.length];
+        private volatile Limits limits;
+
+        private SubjectWindows(Limits limits, long nowMillis) {
+            this.limits = limits;
+            for (LimitPeriod period : PERIODS) {
+                periods[period.ordinal()] = new SlidingWindow(period.getWindow(), period.getBuckets(), nowMillis);
+            }
+        }
+
+        private void check(long now, long cents, String subject) {
+            Limits current = limits;
+            for (int i = 0; i < periods.length; i++) {
+                SlidingWindow window = periods[i];
+                if (window.totalAmount(now) + cents > current.maxCents()[i]
+                        || window.totalCount(now) + 1 > current.maxCounts()[i]) {
+                    throw new SpendingLimitExceededException(subject + " spending limit for the last "
+                            + PERIODS[i].name().toLowerCase() + " exceeded");
+                }
+            }
+        }
+
+        private void add(long at, long cents, int count) {
+            for (SlidingWindow window : periods) {
+                window.add(at, cents, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.Transfer;
+import com.example.bankrest.entity.TransferIdempotencyKey;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.exception.TransferInProgressException;
+import com.example.bankrest.ledger.LedgerEngine;
+import com.example.bankrest.repository.TransferIdempotencyKeyRepository;
+import com.example.bankrest.repository.TransferRepository;
+import com.example.bankrest.util.ValidationUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Обеспечивает однократное выполнение перевода для пары (пользователь, Idempotency-Key).
+ * Недавние ключи хранятся в памяти, поэтому параллельные повторы ждут уже выполняющийся
+ * перевод, а долговременная гарантия даётся уникальным ограничением в БД. Повтор отдаёт
+ * перевод из полей ключа и не читает ни transfers, ни cards: карты в таком ответе содержат только id.
+ */
+@Slf4j
+@Service
+public class TransferIdempotencyService {
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final TransferIdempotencyKeyRepository keyRepository;
+    private final TransferRepository transferRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int cacheSize;
+    private final Duration cacheTtl;
+    private final Duration claimLease;
+    private final Map<String, RecentKey> recentKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Движок переводов в памяти; задан, только если app.transfers.engine=ledger.
+     */
+    private LedgerEngine ledgerEngine;
+
+    public TransferIdempotencyService(TransferIdempotencyKeyRepository keyRepository,
+                                      TransferRepository transferRepository,
+                                      TransactionTemplate transactionTemplate,
+                                      @Value("${app.transfers.idempotency.cache-size:10000}") int cacheSize,
+                                      @Value("${app.transfers.idempotency.cache-ttl:PT10M}") Duration cacheTtl,
+                                      @Value("${app.transfers.idempotency.claim-lease:PT5M}") Duration claimLease) {
+        this.keyRepository = keyRepository;
+        this.transferRepository = transferRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheSize = cacheSize;
+        this.cacheTtl = cacheTtl;
+        this.claimLease = claimLease;
+    }
+
+    @Autowired(required = false)
+    public void setLedgerEngine(LedgerEngine ledgerEngine) {
+        this.ledgerEngine = ledgerEngine;
+    }
+
+    /**
+     * Выполняет перевод по ключу не более одного раза. Действие получает функцию записи ключа
+     * и передаёт её в {@link TransferService#transferBetweenCards(Card, Card, java.math.BigDecimal, Consumer)}:
+     * там она вызывается с выполненным переводом внутри его транзакции.
+     */
+    public Transfer execute(User user, String idempotencyKey, TransferDto expected,
+                            Function<Consumer<Transfer>, Transfer> action) {
+        ValidationUtils.validateNotNull(user, "User");
+        ValidationUtils.validateNotNullOrEmpty(idempotencyKey, "Idempotency key");
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key cannot be longer than " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = user.getId() + ":" + idempotencyKey;
+        RecentKey own = new RecentKey(new CompletableFuture<>(), System.nanoTime());
+        while (true) {
+            RecentKey existing = recentKeys.putIfAbsent(cacheKey, own);
+            if (existing == null) {
+                break;
+            }
+            if (!existing.isExpired(cacheTtl)) {
+                return verified(await(existing.transfer()), expected);
+            }
+            if (recentKeys.replace(cacheKey, existing, own)) {
+                break;
+            }
+        }
+        evictIfFull();
+
+        try {
+            Transfer transfer = keyRepository.findByUserIdAndKey(user.getId(), idempotencyKey)
+                    .map(key -> storedTransfer(key, expected))
+                    .orElseGet(() -> ledgerEngine != null
+                            ? claimAndExecute(user, idempotencyKey, expected, action)
+                            : executeAndRecord(user, idempotencyKey, action));
+            own.transfer().complete(transfer);
+            return verified(transfer, expected);
+        } catch (RuntimeException e) {
+            recentKeys.remove(cacheKey, own);
+            own.transfer().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Ключ вставляется в транзакции самого перевода, поэтому фиксируется или откатывается вместе с ним:
+     * занятых без перевода ключей не остаётся. Если тот же ключ одновременно выполнил другой узел,
+     * вставка нарушает уникальность, наш перевод откатывается целиком, и отдаётся результат того узла.
+     */
+    private Transfer executeAndRecord(User user, String idempotencyKey, Function<Consumer<Transfer>, Transfer> action) {
+        try {
+            return action.apply(transfer -> keyRepository.saveAndFlush(TransferIdempotencyKey.builder()
+                    .user(user)
+                    .idempotencyKey(idempotencyKey)
+                    .transferId(transfer.getId())
+                    .fromCardId(transfer.getFromCard().getId())
+                    .toCardId(transfer.getToCard().getId())
+                    .amount(transfer.getAmount())
+                    .transferTimestamp(transfer.getTimestamp())
+                    .createdAt(LocalDateTime.now())
+                    .build()));
+        } catch (DataIntegrityViolationException e) {
+            return keyRepository.findByUserIdAndKey(user.getId(), idempotencyKey)
+                    .map(this::recordedTransfer)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Движок в памяти не выполняет перевод в транзакции БД, поэтому ключ сначала занимается
+     * короткой транзакцией вместе с картами и суммой перевода, а результат записывается после перевода.
+     * Если перевод не выполнен, ключ освобождается. Если узел упал до записи результата, занятый ключ
+     * по истечении app.transfers.idempotency.claim-lease разрешается поиском перевода, см. {@link #resolveStaleClaim}.
+     */
+    private Transfer claimAndExecute(User user, String idempotencyKey, TransferDto expected,
+                                     Function<Consumer<Transfer>, Transfer> action) {
+        Long claimId;
+        try {
+            claimId = transactionTemplate.execute(status -> keyRepository.saveAndFlush(TransferIdempotencyKey.builder()
+                    .user(user)
+                    .idempotencyKey(idempotencyKey)
+                    .fromCardId(expected.getFromCardId())
+                    .toCardId(expected.getToCardId())
+                    .amount(expected.getAmount())
+                    .createdAt(LocalDateTime.now())
+                    .build()).getId());
+        } catch (DataIntegrityViolationException e) {
+            // Нарушена уникальность ключа: его успел занять другой запрос. Наш перевод ещё
+            // не начинался, поэтому отдаём результат того запроса или сообщаем, что он выполняется.
+            return keyRepository.findByUserIdAndKey(user.getId(), idempotencyKey)
+                    .map(this::recordedTransfer)
+                    .orElseThrow(() -> e);
+        }
+
+        try {
+            return action.apply(transfer -> recordClaim(claimId, transfer));
+        } catch (RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> keyRepository.deleteById(claimId));
+            throw e;
+        }
+    }
+
+    private void recordClaim(Long claimId, Transfer transfer) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> keyRepository.recordTransfer(claimId, transfer.getId(),
+                    transfer.getFromCard().getId(), transfer.getToCard().getId(), transfer.getAmount(),
+                    transfer.getTimestamp()));
+        } catch (RuntimeException e) {
+            // Деньги уже переведены: ответ не должен сообщать об ошибке. Занятый ключ не даст повтору
+            // выполнить перевод второй раз, а по истечении аренды найдёт этот перевод.
+            log.error("Failed to record transfer {} for idempotency key {}", transfer.getId(), claimId, e);
+        }
+    }
+
+    /**
+     * Перевод из ключа. Ключ, занятый без результата, считается выполняющимся, пока не истекла аренда;
+     * устаревший ключ разрешается, и если его перевод так и не выполнялся, возвращается null.
+     */
+    private Transfer storedTransfer(TransferIdempotencyKey key, TransferDto expected) {
+        if (key.getTransferId() == null) {
+            if (key.getCreatedAt().isAfter(LocalDateTime.now().minus(claimLease))) {
+                throw new TransferInProgressException();
+            }
+            return resolveStaleClaim(key, expected);
+        }
+        return recordedTransfer(key);
+    }
+
+    /**
+     * Узел, занявший ключ, упал или не смог записать результат. Перевод ищется по картам и сумме
+     * среди выполненных после занятия ключа и не записанных в другие ключи; журнал движка к этому
+     * времени уже перенесён в transfers. Найденный перевод записывается в ключ. Если перевода нет,
+     * ключ освобождается условным удалением, и выполнить перевод сможет только один из повторов.
+     */
+    private Transfer resolveStaleClaim(TransferIdempotencyKey claim, TransferDto expected) {
+        Long fromCardId = claim.getFromCardId() != null ? claim.getFromCardId() : expected.getFromCardId();
+        Long toCardId = claim.getToCardId() != null ? claim.getToCardId() : expected.getToCardId();
+        BigDecimal amount = claim.getAmount() != null ? claim.getAmount() : expected.getAmount();
+        List<Transfer> executed = transferRepository.findUnclaimedTransfer(fromCardId, toCardId, amount,
+                claim.getCreatedAt());
+        if (!executed.isEmpty()) {
+            Transfer transfer = executed.get(0);
+            log.warn("Recovered transfer {} for stale idempotency key {}", transfer.getId(), claim.getId());
+            transactionTemplate.executeWithoutResult(status -> keyRepository.recordTransfer(claim.getId(),
+                    transfer.getId(), fromCardId, toCardId, transfer.getAmount(), transfer.getTimestamp()));
+            return Transfer.builder()
+                    .id(transfer.getId())
+                    .fromCard(Card.builder().id(fromCardId).build())
+                    .toCard(Card.builder().id(toCardId).build())
+                    .amount(transfer.getAmount())
+                    .timestamp(transfer.getTimestamp())
+                    .build();
+        }
+        Integer released = transactionTemplate.execute(status ->
+                keyRepository.releaseStaleClaim(claim.getId(), claim.getCreatedAt()));
+        if (released == null || released == 0) {
+            throw new TransferInProgressException();
+        }
+        log.warn("Released stale idempotency key {} without a transfer", claim.getId());
+        return null;
+    }
+
+    private Transfer recordedTransfer(TransferIdempotencyKey key) {
+        if (key.getTransferId() == null) {
+            throw new TransferInProgressException();
+        }
+        if (key.getAmount() == null) {
+            throw new IllegalStateException("Transfer " + key.getTransferId() + " for idempotency key no longer exists");
+        }
+        return Transfer.builder()
+                .id(key.getTransferId())
+                .fromCard(Card.builder().id(key.getFromCardId()).build())
+                .toCard(Card.builder().id(key.getToCardId()).build())
+                .amount(key.getAmount())
+                .timestamp(key.getTransferTimestamp())
+                .build();
+    }
+
+    private Transfer verified(Transfer transfer, TransferDto expected) {
+        boolean same = transfer.getFromCard().getId().equals(expected.getFromCardId())
+                && transfer.getToCard().getId().equals(expected.getToCardId())
+                && transfer.getAmount().compareTo(expected.getAmount()) == 0;
+        if (!same) {
+            throw new IllegalStateException("Idempotency key has already been used for a different transfer");
+        }
+        return transfer;
+    }
+
+    private Transfer await(CompletableFuture<Transfer> transfer) {
+        try {
+            return transfer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a duplicate transfer request");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Duplicate transfer request failed", e.getCause());
+        }
+    }
+
+    private void evictIfFull() {
+        if (recentKeys.size() <= cacheSize) {
+            return;
+        }
+        recentKeys.entrySet().removeIf(entry -> entry.getValue().isExpired(cacheTtl));
+        if (recentKeys.size() > cacheSize) {
+            recentKeys.entrySet().removeIf(entry -> entry.getValue().transfer().isDone());
+        }
+    }
+
+    private record RecentKey(CompletableFuture<Transfer> transfer, long createdAtNanos) {
+        boolean isExpired(Duration ttl) {
+            return transfer.isDone() && System.nanoTime() - createdAtNanos > ttl.toNanos();
+        }
+    }
+}
@@ -1,46 +1,148 @@
 package com.example.bankrest.service;
 
+import com.example.bankrest.dto.BatchTransferResultDto;
+import com.example.bankrest.dto.PageResponse;
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.dto.TransferStatementRow;
 import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardStatus;
 import com.example.bankrest.entity.Transfer;
+import com.example.bankrest.exception.CardNotFoundException;
 import com.example.bankrest.exception.InsufficientFundsException;
+import com.example.bankrest.exception.SpendingLimitExceededException;
+import com.example.bankrest.ledger.LedgerEngine;
+import com.example.bankrest.repository.ArchiveRepository.ArchivedPartition;
 import com.example.bankrest.repository.TransferRepository;
+import com.example.bankrest.util.PageCursor;
 import com.example.bankrest.util.ValidationUtils;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class TransferService {
+    public static final int MAX_BATCH_SIZE = 1000;
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
     private final TransferRepository transferRepository;
     private final CardService cardService;
+    private final CardTurnoverService turnoverService;
+    private final CardLocks cardLocks;
+    private final SpendingLimitService spendingLimits;
+    private final CardConcurrencyPolicy concurrencyPolicy;
+    private final TransactionTemplate transactionTemplate;
+    private final ColdStorageService coldStorage;
+
+    /**
+     * Движок переводов в памяти; задан, только если app.transfers.engine=ledger.
+     */
+    private LedgerEngine ledgerEngine;
 
-    @Transactional
+    @Autowired(required = false)
+    public void setLedgerEngine(LedgerEngine ledgerEngine) {
+        this.ledgerEngine = ledgerEngine;
+    }
+
+    /**
+     * Перевод между картами владельца. Лимиты списаний проверяются в памяти до любых обращений к БД.
+     * Конкурирующие переводы по тем же картам сначала ждут полосатую блокировку в JVM, и только
+     * затем открывается транзакция, поэтому очередь к «горячей» карте не занимает соединения из пула.
+     * Транзакция, проигравшая конфликт с параллельными проводками по картам, повторяется целиком.
+     */
     public Transfer transferBetweenCards(Card fromCard, Card toCard, BigDecimal amount) {
+        return transferBetweenCards(fromCard, toCard, amount, transfer -> { });
+    }
+
+    /**
+     * Перевод, как {@link #transferBetweenCards(Card, Card, BigDecimal)}, с записью ключа идемпотентности:
+     * recorder вызывается с сохранённым переводом внутри его транзакции, и ошибка записи откатывает перевод.
+     * Движок в памяти транзакций не открывает, поэтому в нём recorder вызывается после перевода.
+     */
+    public Transfer transferBetweenCards(Card fromCard, Card toCard, BigDecimal amount, Consumer<Transfer> recorder) {
         ValidationUtils.validateNotNull(fromCard, "From card");
         ValidationUtils.validateNotNull(toCard, "To card");
         ValidationUtils.validatePositiveAmount(amount, "Amount");
-        
+
         if (!fromCard.getUser().getId().equals(toCard.getUser().getId())) {
             throw new IllegalArgumentException("Transfers allowed only between own cards");
         }
-        
-        if (fromCard.getStatus() != com.example.bankrest.entity.CardStatus.ACTIVE ||
-            toCard.getStatus() != com.example.bankrest.entity.CardStatus.ACTIVE) {
+
+        if (fromCard.getStatus() != CardStatus.ACTIVE || toCard.getStatus() != CardStatus.ACTIVE) {
             throw new IllegalStateException("Both cards must be active");
         }
-        
-        if (fromCard.getBalance().compareTo(amount) < 0) {
-            throw new InsufficientFundsException();
+        if (isExpired(fromCard) || isExpired(toCard)) {
+            throw new IllegalStateException("Card has expired");
         }
 
-        cardService.updateCardBalance(fromCard, fromCard.getBalance().subtract(amount));
-        cardService.updateCardBalance(toCard, toCard.getBalance().add(amount));
+        SpendingLimitService.Reservation reservation =
+                spendingLimits.reserve(fromCard.getId(), fromCard.getUser().getId(), amount);
+        try {
+            if (ledgerEngine != null) {
+                if (fromCard.getId().equals(toCard.getId())) {
+                    throw new IllegalArgumentException("Cannot transfer to same card");
+                }
+                Transfer transfer = ledgerEngine.transfer(fromCard, toCard, amount);
+                recorder.accept(transfer);
+                return transfer;
+            }
+
+            return concurrencyPolicy.execute("transfer", () -> cardLocks.callWithLocks(fromCard.getId(), toCard.getId(),
+                    () -> transactionTemplate.execute(status -> {
+                        Transfer transfer = transferInTransaction(fromCard, toCard, amount);
+                        recorder.accept(transfer);
+                        return transfer;
+                    })));
+        } catch (RuntimeException e) {
+            reservation.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Карты загружаются согласно режиму блокировок, балансы читаются отдельным запросом уже после
+     * загрузки, а перевод записывается двумя проводками в журнал. Строки карт не изменяются: если
+     * после чтения балансов по карте прошла другая проводка или карта перестала быть активной,
+     * вставка проводок обнаруживает это, и транзакция откатывается с конфликтом. В ответ попадают
+     * остатки, записанные в проводки, а не пересчитанные от переданных снимков карт.
+     */
+    private Transfer transferInTransaction(Card fromCard, Card toCard, BigDecimal amount) {
+        Long fromId = fromCard.getId();
+        Long toId = toCard.getId();
+        if (fromId.equals(toId)) {
+            throw new IllegalArgumentException("Cannot transfer to same card");
+        }
+        Long ownerId = fromCard.getUser().getId();
+        Map<Long, Card> cards = cardService.lockCards(List.of(fromId, toId), concurrencyPolicy.lockMode());
+        for (Long cardId : List.of(fromId, toId)) {
+            RuntimeException rejection = rejectionFor(cardId, cards.get(cardId), ownerId);
+            if (rejection != null) {
+                throw rejection;
+            }
+        }
+        Map<Long, BigDecimal> balances = cardService.currentBalances(List.of(fromId, toId));
+        if (balances.get(fromId).compareTo(amount) < 0) {
+            throw new InsufficientFundsException();
+        }
 
         Transfer transfer = Transfer.builder()
                 .fromCard(fromCard)
@@ -49,7 +151,312 @@ public class TransferService {
                 .timestamp(LocalDateTime.now())
                 .build();
 
-        return transferRepository.save(transfer);
+        Transfer saved = transferRepository.save(transfer);
+        TransferDto recorded = TransferDto.builder()
+                .id(saved.getId())
+                .fromCardId(fromId)
+                .toCardId(toId)
+                .amount(amount)
+                .timestamp(saved.getTimestamp())
+                .build();
+        cardService.recordTransferEntries(List.of(recorded), balances);
+        fromCard.setBalance(balances.get(fromId));
+        toCard.setBalance(balances.get(toId));
+        turnoverService.recordTransfers(List.of(recorded));
+        return saved;
+    }
+
+    /**
+     * Выполняет пакет переводов между картами владельца в одной транзакции.
+     * Все карты загружаются и блокируются одним запросом, каждая инструкция проверяется
+     * по текущим балансам с учётом предыдущих, а в БД пакетно вставляются переводы
+     * и их проводки. При конфликте с параллельными проводками по картам пакет повторяется целиком, а резервы лимитов
+     * откатившейся попытки снимаются.
+     */
+    public List<BatchTransferResultDto> transferBatch(Long ownerId, List<TransferDto> instructions) {
+        ValidationUtils.validateNotNull(ownerId, "Owner");
+        ValidationUtils.validateNotNull(instructions, "Transfers");
+        if (instructions.isEmpty() || instructions.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch must contain between 1 and " + MAX_BATCH_SIZE + " transfers");
+        }
+
+        Set<Long> cardIds = new HashSet<>();
+        for (TransferDto instruction : instructions) {
+            ValidationUtils.validateNotNull(instruction.getFromCardId(), "From card ID");
+            ValidationUtils.validateNotNull(instruction.getToCardId(), "To card ID");
+            ValidationUtils.validatePositiveAmount(instruction.getAmount(), "Amount");
+            cardIds.add(instruction.getFromCardId());
+            cardIds.add(instruction.getToCardId());
+        }
+
+        if (ledgerEngine != null) {
+            return transferBatchViaLedger(ownerId, instructions, cardService.findCardsByIds(cardIds));
+        }
+
+        return concurrencyPolicy.execute("transfer-batch", () -> {
+            List<SpendingLimitService.Reservation> reservations = new ArrayList<>();
+            try {
+                return transactionTemplate.execute(status ->
+                        transferBatchInTransaction(ownerId, instructions, cardIds, reservations));
+            } catch (RuntimeException e) {
+                reservations.forEach(SpendingLimitService.Reservation::release);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Лимиты списаний резервируются по каждой принятой инструкции; инструкция сверх лимита
+     * отклоняется, как и при нехватке средств. Если транзакция откатилась, резервы снимает вызывающий.
+     */
+    private List<BatchTransferResultDto> transferBatchInTransaction(Long ownerId, List<TransferDto> instructions,
+                                                                    Set<Long> cardIds,
+                                                                    List<SpendingLimitService.Reservation> reservations) {
+        Map<Long, Card> cards = cardService.lockCards(cardIds, concurrencyPolicy.lockMode());
+        Map<Long, BigDecimal> opening = cardService.currentBalances(cards.keySet());
+        Map<Long, BigDecimal> balances = new HashMap<>(opening);
+
+        LocalDateTime now = LocalDateTime.now();
+        List<BatchTransferResultDto> results = new ArrayList<>(instructions.size());
+        List<TransferDto> accepted = new ArrayList<>();
+        List<BatchTransferResultDto> completed = new ArrayList<>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            TransferDto instruction = instructions.get(i);
+            Long fromId = instruction.getFromCardId();
+            Long toId = instruction.getToCardId();
+            BigDecimal amount = instruction.getAmount();
+            BatchTransferResultDto result = BatchTransferResultDto.builder()
+                    .index(i)
+                    .fromCardId(fromId)
+                    .toCardId(toId)
+                    .amount(amount)
+                    .build();
+            results.add(result);
+
+            String rejection = batchRejectionFor(instruction, cards, ownerId);
+            if (rejection == null && balances.get(fromId).compareTo(amount) < 0) {
+                rejection = new InsufficientFundsException().getMessage();
+            }
+            if (rejection == null) {
+                try {
+                    reservations.add(spendingLimits.reserve(fromId, ownerId, amount));
+                } catch (SpendingLimitExceededException e) {
+                    rejection = e.getMessage();
+                }
+            }
+            if (rejection != null) {
+                result.setStatus(BatchTransferResultDto.Status.REJECTED);
+                result.setMessage(rejection);
+                continue;
+            }
+
+            balances.merge(fromId, amount.negate(), BigDecimal::add);
+            balances.merge(toId, amount, BigDecimal::add);
+            result.setStatus(BatchTransferResultDto.Status.COMPLETED);
+            result.setTimestamp(now);
+            accepted.add(TransferDto.builder()
+                    .fromCardId(fromId)
+                    .toCardId(toId)
+                    .amount(amount)
+                    .timestamp(now)
+                    .build());
+            completed.add(result);
+        }
+
+        if (!accepted.isEmpty()) {
+            List<Long> transferIds = transferRepository.insertAll(accepted);
+            for (int i = 0; i < completed.size(); i++) {
+                accepted.get(i).setId(transferIds.get(i));
+                completed.get(i).setTransferId(transferIds.get(i));
+            }
+            cardService.recordTransferEntries(accepted, opening);
+            turnoverService.recordTransfers(accepted);
+        }
+        return results;
+    }
+
+    /**
+     * Для движка в памяти пакет выполняется по одной инструкции, чтобы каждая следующая
+     * видела балансы после предыдущих; атомарности всего пакета в этом режиме нет.
+     * Лимит резервируется перед каждой инструкцией и снимается, если движок её отклонил.
+     */
+    private List<BatchTransferResultDto> transferBatchViaLedger(Long ownerId, List<TransferDto> instructions,
+                                                                 Map<Long, Card> cards) {
+        List<BatchTransferResultDto> results = new ArrayList<>(instructions.size());
+        for (int i = 0; i < instructions.size(); i++) {
+            TransferDto instruction = instructions.get(i);
+            BatchTransferResultDto result = BatchTransferResultDto.builder()
+                    .index(i)
+                    .fromCardId(instruction.getFromCardId())
+                    .toCardId(instruction.getToCardId())
+                    .amount(instruction.getAmount())
+                    .build();
+            results.add(result);
+
+            String rejection = batchRejectionFor(instruction, cards, ownerId);
+            if (rejection == null) {
+                SpendingLimitService.Reservation reservation = SpendingLimitService.Reservation.NONE;
+                try {
+                    reservation = spendingLimits.reserve(instruction.getFromCardId(), ownerId, instruction.getAmount());
+                    Transfer transfer = ledgerEngine.transfer(cards.get(instruction.getFromCardId()),
+                            cards.get(instruction.getToCardId()), instruction.getAmount());
+                    result.setStatus(BatchTransferResultDto.Status.COMPLETED);
+                    result.setTransferId(transfer.getId());
+                    result.setTimestamp(transfer.getTimestamp());
+                    continue;
+                } catch (SpendingLimitExceededException e) {
+                    rejection = e.getMessage();
+                } catch (InsufficientFundsException | CardNotFoundException e) {
+                    reservation.release();
+                    rejection = e.getMessage();
+                } catch (RuntimeException e) {
+                    reservation.release();
+                    throw e;
+                }
+            }
+            result.setStatus(BatchTransferResultDto.Status.REJECTED);
+            result.setMessage(rejection);
+        }
+        return results;
+    }
+
+    /**
+     * История переводов карты по убыванию времени. Период задаётся полуинтервалом [from, to),
+     * любая из границ может отсутствовать. Месяцы, перенесённые в холодное хранение, идут после
+     * строк таблицы: страница, которую таблица не заполнила, дочитывается из архива, а строки таблицы
+     * на предыдущих страницах пропускаются по их числу. Число переводов за период считается только при withTotal.
+     */
+    public PageResponse<Transfer> getCardTransfers(Long cardId, TransferDirection direction, LocalDateTime from,
+                                                   LocalDateTime to, Pageable pageable, boolean withTotal) {
+        ValidationUtils.validateNotNull(cardId, "Card ID");
+        ValidationUtils.validateNotNull(direction, "Direction");
+        LocalDateTime start = from != null ? from : HISTORY_START;
+        LocalDateTime end = to != null ? to : HISTORY_END;
+        validatePeriod(start, end);
+        Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        List<ArchivedPartition> archived = coldStorage.archived(ColdStorageService.TRANSFERS);
+        LocalDateTime horizon = ColdStorageService.horizonOf(archived);
+        if (horizon == null || !start.isBefore(horizon)) {
+            Slice<Transfer> slice = findTransfers(cardId, direction, start, end, unsorted);
+            return PageResponse.of(slice, withTotal, () -> countTransfers(cardId, direction, start, end));
+        }
+
+        List<Transfer> rows = new ArrayList<>();
+        long hotCount = 0;
+        if (end.isAfter(horizon)) {
+            Slice<Transfer> hot = findTransfers(cardId, direction, horizon, end, unsorted);
+            if (hot.hasNext()) {
+                return PageResponse.of(hot, withTotal, () -> countTransfers(cardId, direction, horizon, end)
+                        + countArchivedTransfers(archived, cardId, direction, start, horizon));
+            }
+            rows.addAll(hot.getContent());
+            hotCount = hot.hasContent() ? unsorted.getOffset() + hot.getNumberOfElements()
+                    : countTransfers(cardId, direction, horizon, end);
+        }
+        long[] skip = {Math.max(0, unsorted.getOffset() - hotCount)};
+        int limit = unsorted.getPageSize() + 1;
+        LocalDateTime archiveEnd = end.isAfter(horizon) ? horizon : end;
+        coldStorage.scanTransfers(archived, cardId, direction, start, PageCursor.of(archiveEnd, 0), true, row -> {
+            if (skip[0] > 0) {
+                skip[0]--;
+                return true;
+            }
+            rows.add(archivedTransfer(row));
+            return rows.size() < limit;
+        });
+        boolean hasNext = rows.size() == limit;
+        long hotTotal = hotCount;
+        Slice<Transfer> page = new SliceImpl<>(hasNext ? rows.subList(0, limit - 1) : rows, unsorted, hasNext);
+        return PageResponse.of(page, withTotal, () -> hotTotal
+                + countArchivedTransfers(archived, cardId, direction, start, archiveEnd));
+    }
+
+    private Slice<Transfer> findTransfers(Long cardId, TransferDirection direction, LocalDateTime start,
+                                          LocalDateTime end, Pageable pageable) {
+        return switch (direction) {
+            case OUT -> transferRepository.findOutgoing(cardId, start, end, pageable);
+            case IN -> transferRepository.findIncoming(cardId, start, end, pageable);
+            case BOTH -> transferRepository.findIncomingAndOutgoing(cardId, start, end,
+                    pageable.getOffset() + pageable.getPageSize() + 1, pageable);
+        };
+    }
+
+    private long countTransfers(Long cardId, TransferDirection direction, LocalDateTime start, LocalDateTime end) {
+        return switch (direction) {
+            case OUT -> transferRepository.countOutgoing(cardId, start, end);
+            case IN -> transferRepository.countIncoming(cardId, start, end);
+            case BOTH -> transferRepository.countOutgoing(cardId, start, end)
+                    + transferRepository.countIncoming(cardId, start, end);
+        };
+    }
+
+    private long countArchivedTransfers(List<ArchivedPartition> archived, Long cardId, TransferDirection direction,
+                                        LocalDateTime start, LocalDateTime end) {
+        long[] count = {0};
+        coldStorage.scanTransfers(archived, cardId, direction, start, PageCursor.of(end, 0), true, row -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * История переводов карты по курсору: следующая страница начинается сразу после записи,
+     * на которую указывает after. Конец периода и курсор задают одну верхнюю границу
+     * (timestamp, id), поэтому глубина страницы не влияет на стоимость запроса.
+     * Месяцы, перенесённые в холодное хранение, дочитываются из архива, когда строк
+     * из таблицы не хватает на страницу.
+     */
+    public PageResponse<Transfer> getCardTransfersAfter(Long cardId, TransferDirection direction,
+                                                      LocalDateTime from, LocalDateTime to, String after, int size) {
+        ValidationUtils.validateNotNull(cardId, "Card ID");
+        ValidationUtils.validateNotNull(direction, "Direction");
+        LocalDateTime start = from != null ? from : HISTORY_START;
+        LocalDateTime end = to != null ? to : HISTORY_END;
+        validatePeriod(start, end);
+        PageCursor cursor = PageCursor.parseTimed(after);
+        // (end, 0) отсекает ровно timestamp >= end, так как id переводов положительны.
+        PageCursor before = cursor != null && cursor.timestamp().isBefore(end) ? cursor : PageCursor.of(end, 0);
+        int limit = size + 1;
+        List<ArchivedPartition> archived = coldStorage.archived(ColdStorageService.TRANSFERS);
+        LocalDateTime horizon = ColdStorageService.horizonOf(archived);
+        List<Transfer> rows = new ArrayList<>();
+        if (horizon == null || before.timestamp().isAfter(horizon)) {
+            LocalDateTime hotStart = horizon != null && horizon.isAfter(start) ? horizon : start;
+            rows.addAll(switch (direction) {
+                case OUT -> transferRepository.findOutgoingBefore(cardId, hotStart, before.timestamp(), before.id(),
+                        limit);
+                case IN -> transferRepository.findIncomingBefore(cardId, hotStart, before.timestamp(), before.id(),
+                        limit);
+                case BOTH -> transferRepository.findIncomingAndOutgoingBefore(cardId, hotStart,
+                        before.timestamp(), before.id(), limit);
+            });
+        }
+        if (rows.size() < limit && horizon != null && start.isBefore(horizon)) {
+            PageCursor archiveBefore = before.timestamp().isAfter(horizon) ? PageCursor.of(horizon, 0) : before;
+            coldStorage.scanTransfers(archived, cardId, direction, start, archiveBefore, true, row -> {
+                rows.add(archivedTransfer(row));
+                return rows.size() < limit;
+            });
+        }
+        return PageResponse.of(rows, size, transfer -> PageCursor.of(transfer.getTimestamp(), transfer.getId()));
+    }
+
+    private Transfer archivedTransfer(TransferStatementRow row) {
+        return Transfer.builder()
+                .id(row.id())
+                .fromCard(cardService.getCardReference(row.fromCardId()))
+                .toCard(cardService.getCardReference(row.toCardId()))
+                .amount(row.amount())
+                .timestamp(row.timestamp())
+                .build();
+    }
+
+    private void validatePeriod(LocalDateTime start, LocalDateTime end) {
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Start of period must be before its end");
+        }
     }
 
     public Page<Transfer> getTransfersFromCard(Long cardId, Pageable pageable) {
@@ -59,4 +466,43 @@ public class TransferService {
     public Page<Transfer> getTransfersToCard(Long cardId, Pageable pageable) {
         return transferRepository.findByToCard_Id(cardId, pageable);
     }
+
+    private String batchRejectionFor(TransferDto instruction, Map<Long, Card> cards, Long ownerId) {
+        Long fromId = instruction.getFromCardId();
+        Long toId = instruction.getToCardId();
+        if (fromId.equals(toId)) {
+            return "Cannot transfer to same card";
+        }
+        for (Long cardId : List.of(fromId, toId)) {
+            RuntimeException rejection = rejectionFor(cardId, cards.get(cardId), ownerId);
+            if (rejection != null) {
+                return rejection.getMessage();
+            }
+        }
+        return null;
+    }
+
+    private RuntimeException rejectionFor(Long cardId, Card card, Long ownerId) {
+        if (card == null) {
+            return new CardNotFoundException(cardId);
+        }
+        if (!card.getUser().getId().equals(ownerId)) {
+            return new IllegalArgumentException("Transfers allowed only between own cards");
+        }
+        if (card.getStatus() != CardStatus.ACTIVE) {
+            return new IllegalStateException("Both cards must be active");
+        }
+        if (isExpired(card)) {
+            return new IllegalStateException("Card has expired");
+        }
+        return null;
+    }
+
+    /**
+     * Карта действует по последний день срока включительно; статус EXPIRED фоновая обработка
+     * выставляет с задержкой, поэтому срок проверяется и здесь.
+     */
+    private static boolean isExpired(Card card) {
+        return card.getExpiryDate() != null && card.getExpiryDate().isBefore(LocalDate.now());
+    }
 }
@@ -0,0 +1,196 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferStatementFormat;
+import com.example.bankrest.dto.TransferStatementRow;
+import com.example.bankrest.repository.ArchiveRepository.ArchivedPartition;
+import com.example.bankrest.repository.TransferRepository;
+import com.example.bankrest.util.PageCursor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая выгрузка выписки по переводам карты. Строки читаются серверным курсором в
+ * read-only транзакции и сразу пишутся в ответ, поэтому расход памяти не зависит от их числа.
+ * Месяцы из холодного хранения читаются из архивных файлов по одному месяцу за раз.
+ */
+@Slf4j
+@Service
+public class TransferStatementService {
+    private static final String CSV_HEADER = "id,timestamp,direction,from_card_id,to_card_id,amount\n";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final TransferRepository transferRepository;
+    private final ColdStorageService coldStorage;
+    private final ObjectWriter jsonWriter;
+    private final int fetchSize;
+    private final Map<TransferStatementFormat, Counter> rowCounters = new EnumMap<>(TransferStatementFormat.class);
+    private final Map<TransferStatementFormat, Timer> exportTimers = new EnumMap<>(TransferStatementFormat.class);
+
+    public TransferStatementService(TransferRepository transferRepository,
+                                    ColdStorageService coldStorage,
+                                    ObjectMapper objectMapper,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.transfers.export.fetch-size:1000}") int fetchSize) {
+        this.transferRepository = transferRepository;
+        this.coldStorage = coldStorage;
+        this.jsonWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+        for (TransferStatementFormat format : TransferStatementFormat.values()) {
+            String tag = format.getExtension();
+            rowCounters.put(format, Counter.builder("bank.transfers.export.rows")
+                    .description("Rows written to transfer statement exports")
+                    .tag("format", tag)
+                    .register(meterRegistry));
+            exportTimers.put(format, Timer.builder("bank.transfers.export")
+                    .description("Duration of transfer statement exports")
+                    .tag("format", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Пишет выписку в поток ответа и возвращает число выгруженных строк. Поток не закрывается.
+     */
+    @Transactional(readOnly = true)
+    public long export(Long cardId, TransferDirection direction, LocalDateTime from, LocalDateTime to,
+                       TransferStatementFormat format, OutputStream out) throws IOException {
+        long startedAt = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        RowWriter rowWriter = format == TransferStatementFormat.CSV ? new CsvRowWriter(writer) : new JsonRowWriter(writer);
+        long[] rows = {0};
+        try {
+            rowWriter.begin();
+            Consumer<TransferStatementRow> sink = row -> {
+                try {
+                    rowWriter.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            };
+            // Архивные месяцы старше всех строк таблицы, поэтому идут первыми, и порядок выписки сохраняется.
+            List<ArchivedPartition> archived = coldStorage.archived(ColdStorageService.TRANSFERS);
+            LocalDateTime horizon = ColdStorageService.horizonOf(archived);
+            boolean startsInArchive = horizon != null && (from == null || from.isBefore(horizon));
+            if (startsInArchive) {
+                LocalDateTime archiveEnd = to != null && to.isBefore(horizon) ? to : horizon;
+                coldStorage.scanTransfers(archived, cardId, direction, from, PageCursor.of(archiveEnd, 0), false,
+                        row -> {
+                            sink.accept(row);
+                            return true;
+                        });
+            }
+            if (horizon == null || to == null || to.isAfter(horizon)) {
+                transferRepository.streamStatement(cardId, direction, startsInArchive ? horizon : from, to, fetchSize,
+                        sink);
+            }
+            rowWriter.end();
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            // Клиент прервал загрузку: курсор закрывается вместе с транзакцией.
+            throw e.getCause();
+        } finally {
+            long elapsed = System.nanoTime() - startedAt;
+            rowCounters.get(format).increment(rows[0]);
+            exportTimers.get(format).record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Exported {} transfers of card {} as {} in {} ms ({} rows/s)", rows[0], cardId, format,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), rows[0] * 1_000_000_000L / Math.max(elapsed, 1));
+        }
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void begin() throws IOException;
+
+        void write(TransferStatementRow row) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            writer.write(CSV_HEADER);
+        }
+
+        @Override
+        public void write(TransferStatementRow row) throws IOException {
+            writer.write(Long.toString(row.id()));
+            writer.write(',');
+            writer.write(row.timestamp().toString());
+            writer.write(',');
+            writer.write(row.direction().name());
+            writer.write(',');
+            writer.write(Long.toString(row.fromCardId()));
+            writer.write(',');
+            writer.write(Long.toString(row.toCardId()));
+            writer.write(',');
+            writer.write(row.amount().toPlainString());
+            writer.write('\n');
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+
+    /**
+     * Один JSON-объект на строку; генератор переиспользуется для всех строк выписки.
+     */
+    private final class JsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private JsonGenerator generator;
+
+        private JsonRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            generator = jsonWriter.createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(TransferStatementRow row) throws IOException {
+            jsonWriter.writeValue(generator, row);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void end() throws IOException {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.dto.TransferSubmissionDto;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.Transfer;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.exception.TransferQueueFullException;
+import com.example.bankrest.exception.TransferSubmissionNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный приём переводов. Запрос кладётся в ограниченную очередь без обращения к БД,
+ * а выполняют его воркеры на виртуальных потоках. Число воркеров ограничивает количество
+ * одновременно занятых соединений с БД; при заполненной очереди новые запросы отклоняются.
+ * Статусы хранятся в памяти и удаляются после истечения срока хранения.
+ */
+@Slf4j
+@Service
+public class TransferSubmissionService {
+    private final TransferService transferService;
+    private final CardService cardService;
+    private final UserService userService;
+    private final BlockingQueue<QueuedTransfer> queue;
+    private final Map<String, TransferSubmissionDto> submissions = new ConcurrentHashMap<>();
+    private final int workerCount;
+    private final int maxTracked;
+    private final Duration retention;
+    private final Timer waitTimer;
+    private final Timer completedTimer;
+    private final Timer failedTimer;
+    private final Counter rejectedCounter;
+
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public TransferSubmissionService(TransferService transferService,
+                                     CardService cardService,
+                                     UserService userService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.transfers.async.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${app.transfers.async.workers:16}") int workerCount,
+                                     @Value("${app.transfers.async.max-tracked:100000}") int maxTracked,
+                                     @Value("${app.transfers.async.status-retention:PT15M}") Duration retention) {
+        this.transferService = transferService;
+        this.cardService = cardService;
+        this.userService = userService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workerCount = workerCount;
+        this.maxTracked = maxTracked;
+        this.retention = retention;
+
+        Gauge.builder("bank.transfers.queue.depth", queue, BlockingQueue::size)
+                .description("Transfer requests waiting in the queue")
+                .register(meterRegistry);
+        Gauge.builder("bank.transfers.queue.remaining", queue, BlockingQueue::remainingCapacity)
+                .description("Free slots in the transfer queue")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("bank.transfers.queue.wait")
+                .description("Time a transfer request spends in the queue")
+                .register(meterRegistry);
+        this.completedTimer = Timer.builder("bank.transfers.queue.processing")
+                .tag("outcome", "completed")
+                .register(meterRegistry);
+        this.failedTimer = Timer.builder("bank.transfers.queue.processing")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bank.transfers.queue.rejected")
+                .description("Transfer requests rejected because the queue was full")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("transfer-worker-", 0).factory());
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drainQueue);
+        }
+    }
+
+    /**
+     * Останавливает приём и дожидается выполнения уже поставленных в очередь запросов.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (workers != null) {
+            workers.close();
+        }
+    }
+
+    public TransferSubmissionDto submit(String username, TransferDto request) {
+        if (!running) {
+            throw new IllegalStateException("Transfer queue is not accepting requests");
+        }
+        evictExpired();
+        TransferSubmissionDto submission = TransferSubmissionDto.builder()
+                .requestId(UUID.randomUUID().toString())
+                .status(TransferSubmissionDto.Status.PENDING)
+                .fromCardId(request.getFromCardId())
+                .toCardId(request.getToCardId())
+                .amount(request.getAmount())
+                .submittedAt(LocalDateTime.now())
+                .username(username)
+                .build();
+        submissions.put(submission.getRequestId(), submission);
+        if (!queue.offer(new QueuedTransfer(submission, System.nanoTime()))) {
+            submissions.remove(submission.getRequestId());
+            rejectedCounter.increment();
+            throw new TransferQueueFullException();
+        }
+        return submission;
+    }
+
+    public TransferSubmissionDto getSubmission(String username, String requestId) {
+        TransferSubmissionDto submission = submissions.get(requestId);
+        if (submission == null || !submission.getUsername().equals(username)) {
+            throw new TransferSubmissionNotFoundException(requestId);
+        }
+        return submission;
+    }
+
+    private void drainQueue() {
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedTransfer queued = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (queued != null) {
+                    waitTimer.record(System.nanoTime() - queued.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+                    process(queued.submission());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void process(TransferSubmissionDto submission) {
+        long startedAt = System.nanoTime();
+        TransferSubmissionDto result;
+        try {
+            Transfer transfer = execute(submission);
+            result = submission.toBuilder()
+                    .status(TransferSubmissionDto.Status.COMPLETED)
+                    .transferId(transfer.getId())
+                    .completedAt(LocalDateTime.now())
+                    .build();
+            completedTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            log.warn("Queued transfer {} failed: {}", submission.getRequestId(), e.getMessage());
+            result = submission.toBuilder()
+                    .status(TransferSubmissionDto.Status.FAILED)
+                    .message(e.getMessage())
+                    .completedAt(LocalDateTime.now())
+                    .build();
+            failedTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+        submissions.put(result.getRequestId(), result);
+    }
+
+    private Transfer execute(TransferSubmissionDto submission) {
+        User user = userService.getUserByUsername(submission.getUsername());
+        Card fromCard = cardService.getCardById(submission.getFromCardId());
+        Card toCard = cardService.getCardById(submission.getToCardId());
+        if (!fromCard.getUser().getId().equals(user.getId()) || !toCard.getUser().getId().equals(user.getId())) {
+            throw new IllegalArgumentException("Transfers allowed only between own cards");
+        }
+        return transferService.transferBetweenCards(fromCard, toCard, submission.getAmount());
+    }
+
+    private void evictExpired() {
+        if (submissions.size() < maxTracked) {
+            return;
+        }
+        LocalDateTime threshold = LocalDateTime.now().minus(retention);
+        submissions.values().removeIf(submission -> submission.getCompletedAt() != null
+                && submission.getCompletedAt().isBefore(threshold));
+        if (submissions.size() >= maxTracked) {
+            submissions.values().removeIf(submission -> submission.getCompletedAt() != null);
+        }
+    }
+
+    private record QueuedTransfer(TransferSubmissionDto submission, long enqueuedAtNanos) {
+    }
+}
@@ -1,16 +1,22 @@
 package com.example.bankrest.service;
 
+import com.example.bankrest.dto.PageResponse;
 import com.example.bankrest.entity.User;
 import com.example.bankrest.exception.UserNotFoundException;
 import com.example.bankrest.repository.UserRepository;
+import com.example.bankrest.util.PageCursor;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -29,6 +35,20 @@ public class UserService {
                 .orElseThrow(() -> new UserNotFoundException(username));
     }
 
+    /**
+     * Пользователи по именам одним запросом; UserNotFoundException, если хотя бы один не найден.
+     */
+    public Map<String, User> getUsersByUsernames(Collection<String> usernames) {
+        Map<String, User> users = userRepository.findByUsernameIn(Set.copyOf(usernames)).stream()
+                .collect(Collectors.toMap(User::getUsername, Function.identity()));
+        for (String username : usernames) {
+            if (!users.containsKey(username)) {
+                throw new UserNotFoundException(username);
+            }
+        }
+        return users;
+    }
+
     
     public User createUser(String username, String rawPassword, Set<com.example.bankrest.entity.Role> roles) {
         User user = User.builder()
@@ -40,8 +60,16 @@ public class UserService {
     }
 
     
-    public Page<User> getUsers(Pageable pageable) {
-        return userRepository.findAll(pageable);
+    public PageResponse<User> getUsers(Pageable pageable, boolean withTotal) {
+        return PageResponse.of(userRepository.findAllBy(pageable), withTotal, userRepository::count);
+    }
+
+    
+    public PageResponse<User> getUsersAfter(String after, int size) {
+        PageCursor cursor = PageCursor.parse(after);
+        long afterId = cursor != null ? cursor.id() : 0L;
+        return PageResponse.of(userRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size + 1)),
+                size, user -> PageCursor.ofId(user.getId()));
     }
 
     
@@ -0,0 +1,69 @@
+package com.example.bankrest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция в списке для постраничного чтения по ключу: значение ключа сортировки
+ * последней отданной записи и её id. Клиенту передаётся в виде непрозрачной строки.
+ * Для списков, упорядоченных только по id, timestamp равен null.
+ */
+public record PageCursor(LocalDateTime timestamp, long id) {
+
+    private static final int MAX_LENGTH = 128;
+    private static final String SEPARATOR = "|";
+
+    public static PageCursor ofId(long id) {
+        return new PageCursor(null, id);
+    }
+
+    public static PageCursor of(LocalDateTime timestamp, long id) {
+        ValidationUtils.validateNotNull(timestamp, "Cursor timestamp");
+        return new PageCursor(timestamp, id);
+    }
+
+    /**
+     * Разбирает курсор из параметра after. Пустое значение означает первую страницу, тогда возвращается null.
+     */
+    public static PageCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        if (value.length() > MAX_LENGTH) {
+            throw invalid();
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                return ofId(Long.parseLong(decoded));
+            }
+            return of(LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw invalid();
+        }
+    }
+
+    /**
+     * Разбирает курсор списка, упорядоченного по времени: такой курсор обязан содержать timestamp.
+     */
+    public static PageCursor parseTimed(String value) {
+        PageCursor cursor = parse(value);
+        if (cursor != null && cursor.timestamp() == null) {
+            throw invalid();
+        }
+        return cursor;
+    }
+
+    public String encode() {
+        String raw = timestamp == null ? Long.toString(id) : timestamp + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static IllegalArgumentException invalid() {
+        return new IllegalArgumentException("Invalid page cursor");
+    }
+}
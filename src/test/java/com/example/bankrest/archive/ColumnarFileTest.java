@@ -0,0 +1,86 @@
+package com.example.bankrest.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ColumnarFileTest {
+
+    private static final List<Column> COLUMNS = List.of(Column.ofLong("card_id"), Column.ofLong("delta"),
+            Column.ofString("comment"));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void commit_roundTripsValuesAcrossBlocks() throws Exception {
+        Path file = dir.resolve("history.col");
+        try (ColumnarWriter writer = new ColumnarWriter(file, COLUMNS, 4)) {
+            for (long i = 0; i < 10; i++) {
+                writer.append(i / 3, i % 2 == 0 ? -i * 1_000_000_000L : i, i == 5 ? null : "строка " + i);
+            }
+            writer.commit();
+            assertThat(writer.rowCount()).isEqualTo(10);
+        }
+
+        List<Long> cards = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        List<String> comments = new ArrayList<>();
+        ColumnarReader.read(file, block -> true, block -> {
+            for (int i = 0; i < block.rows(); i++) {
+                cards.add(block.longs(0)[i]);
+                deltas.add(block.longs(1)[i]);
+                comments.add(block.strings(2)[i]);
+            }
+        });
+
+        assertThat(cards).containsExactly(0L, 0L, 0L, 1L, 1L, 1L, 2L, 2L, 2L, 3L);
+        assertThat(deltas).containsExactly(0L, 1L, -2_000_000_000L, 3L, -4_000_000_000L, 5L,
+                -6_000_000_000L, 7L, -8_000_000_000L, 9L);
+        assertThat(comments).hasSize(10).containsNull().contains("строка 9");
+        assertThat(comments.get(5)).isNull();
+        assertThat(Files.list(dir)).containsExactly(file);
+    }
+
+    @Test
+    void read_skipsBlocksRejectedByMinMax() throws Exception {
+        Path file = dir.resolve("cards.col");
+        try (ColumnarWriter writer = new ColumnarWriter(file, COLUMNS, 3)) {
+            for (long card = 1; card <= 9; card++) {
+                writer.append(card, 0L, null);
+            }
+            writer.commit();
+        }
+
+        List<Long> found = new ArrayList<>();
+        int[] blocks = {0};
+        ColumnarReader.read(file, block -> block.mayContain(0, 5), block -> {
+            blocks[0]++;
+            for (long card : block.longs(0)) {
+                found.add(card);
+            }
+        });
+
+        assertThat(blocks[0]).isEqualTo(1);
+        assertThat(found).containsExactly(4L, 5L, 6L);
+    }
+
+    @Test
+    void close_withoutCommitLeavesNoFile() throws Exception {
+        Path file = dir.resolve("aborted.col");
+        try (ColumnarWriter writer = new ColumnarWriter(file, COLUMNS, 2)) {
+            writer.append(1L, 2L, "x");
+        }
+
+        assertThat(Files.list(dir)).isEmpty();
+        assertThatThrownBy(() -> ColumnarReader.read(file, block -> true, block -> { }))
+                .isInstanceOf(IOException.class);
+    }
+}
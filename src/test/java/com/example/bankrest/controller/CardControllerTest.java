@@ -1,11 +1,27 @@
 package com.example.bankrest.controller;
 
+import com.example.bankrest.dto.BulkCardIssueResultDto;
+import com.example.bankrest.dto.BulkCardStatusResultDto;
+import com.example.bankrest.dto.CardDto;
+import com.example.bankrest.dto.CardSearchFilter;
+import com.example.bankrest.dto.CardTurnoverDto;
+import com.example.bankrest.dto.PageResponse;
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferStatementFormat;
 import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardOperationHistory;
 import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.entity.Transfer;
 import com.example.bankrest.entity.User;
 import com.example.bankrest.exception.CardNotFoundException;
 import com.example.bankrest.exception.UserNotFoundException;
+import com.example.bankrest.security.CardAccess;
+import com.example.bankrest.service.CardBulkStatusService;
+import com.example.bankrest.service.CardOperationHistoryService;
 import com.example.bankrest.service.CardService;
+import com.example.bankrest.service.CardTurnoverService;
+import com.example.bankrest.service.TransferService;
+import com.example.bankrest.service.TransferStatementService;
 import com.example.bankrest.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -15,22 +31,26 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
@@ -47,11 +67,30 @@ class CardControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private TransferService transferService;
+
+    @Mock
+    private TransferStatementService statementService;
+
+    @Mock
+    private CardTurnoverService turnoverService;
+
+    @Mock
+    private CardOperationHistoryService operationHistoryService;
+
+    @Mock
+    private CardAccess cardAccess;
+
+    @Mock
+    private CardBulkStatusService bulkStatusService;
+
     @InjectMocks
     private CardController cardController;
 
     private User user;
     private Card card;
+    private CardDto cardDto;
     private Validator validator;
 
     @BeforeEach
@@ -76,6 +115,16 @@ class CardControllerTest {
                 .balance(new BigDecimal("1000.00"))
                 .status(CardStatus.ACTIVE)
                 .build();
+
+        cardDto = CardDto.builder()
+                .id(1L)
+                .maskedNumber("**** **** **** 1234")
+                .owner("Test User")
+                .expiryDate(card.getExpiryDate())
+                .status(CardStatus.ACTIVE)
+                .balance(new BigDecimal("1000.00"))
+                .userId(1L)
+                .build();
     }
 
     @Nested
@@ -85,27 +134,27 @@ class CardControllerTest {
         @Test
         @DisplayName("Should return user cards with pagination")
         void getUserCards_returnsPage() {
-            Page<Card> page = new PageImpl<>(Collections.singletonList(card));
+            PageResponse<CardDto> page = PageResponse.<CardDto>builder().content(Collections.singletonList(cardDto)).build();
             when(userService.getUserByUsername("testuser")).thenReturn(user);
-            when(cardService.getCardsByUser(eq(user), any(Pageable.class))).thenReturn(page);
+            when(cardService.getCardsByUser(eq(user), any(Pageable.class), eq(false))).thenReturn(page);
 
-            ResponseEntity<Page<Card>> response = cardController.getUserCards("testuser", 0, 10);
+            ResponseEntity<PageResponse<CardDto>> response = cardController.getUserCards("testuser", 0, 10, false);
 
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
             assertThat(response.getBody()).isNotNull();
             assertThat(response.getBody().getContent()).hasSize(1);
             assertThat(response.getBody().getContent().getFirst().getOwner()).isEqualTo("Test User");
-            verify(cardService).getCardsByUser(user, PageRequest.of(0, 10));
+            verify(cardService).getCardsByUser(user, PageRequest.of(0, 10), false);
         }
 
         @Test
         @DisplayName("Should return empty page when user has no cards")
         void getUserCards_noCards_returnsEmptyPage() {
-            Page<Card> emptyPage = new PageImpl<>(Collections.emptyList());
+            PageResponse<CardDto> emptyPage = PageResponse.<CardDto>builder().content(Collections.emptyList()).build();
             when(userService.getUserByUsername("testuser")).thenReturn(user);
-            when(cardService.getCardsByUser(eq(user), any(Pageable.class))).thenReturn(emptyPage);
+            when(cardService.getCardsByUser(eq(user), any(Pageable.class), eq(false))).thenReturn(emptyPage);
 
-            ResponseEntity<Page<Card>> response = cardController.getUserCards("testuser", 0, 10);
+            ResponseEntity<PageResponse<CardDto>> response = cardController.getUserCards("testuser", 0, 10, false);
 
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
             assertThat(response.getBody()).isNotNull();
@@ -115,14 +164,14 @@ class CardControllerTest {
         @Test
         @DisplayName("Should handle custom pagination parameters")
         void getUserCards_customPagination_usesCorrectParameters() {
-            Page<Card> page = new PageImpl<>(Collections.singletonList(card));
+            PageResponse<CardDto> page = PageResponse.<CardDto>builder().content(Collections.singletonList(cardDto)).build();
             when(userService.getUserByUsername("testuser")).thenReturn(user);
-            when(cardService.getCardsByUser(eq(user), any(Pageable.class))).thenReturn(page);
+            when(cardService.getCardsByUser(eq(user), any(Pageable.class), eq(false))).thenReturn(page);
 
-            ResponseEntity<Page<Card>> response = cardController.getUserCards("testuser", 2, 5);
+            ResponseEntity<PageResponse<CardDto>> response = cardController.getUserCards("testuser", 2, 5, false);
 
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-            verify(cardService).getCardsByUser(user, PageRequest.of(2, 5));
+            verify(cardService).getCardsByUser(user, PageRequest.of(2, 5), false);
         }
 
         @Test
@@ -130,7 +179,7 @@ class CardControllerTest {
         void getUserCards_userNotFound_throwsException() {
             when(userService.getUserByUsername("testuser")).thenThrow(new UserNotFoundException("User not found"));
 
-            assertThatThrownBy(() -> cardController.getUserCards("testuser", 0, 10))
+            assertThatThrownBy(() -> cardController.getUserCards("testuser", 0, 10, false))
                     .isInstanceOf(UserNotFoundException.class)
                     .hasMessage("User not found");
         }
@@ -216,6 +265,124 @@ class CardControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("Bulk Create Card Tests")
+    class BulkCreateCardTests {
+
+        @Test
+        @DisplayName("Should resolve owners once and issue all cards")
+        void createCards_resolvesUsersAndIssuesCards() {
+            User admin = User.builder().id(9L).username("admin").build();
+            CardController.CreateCardRequest first = createCardRequest("1111 2222 3333 4444");
+            CardController.CreateCardRequest second = createCardRequest("5555 6666 7777 8888");
+            CardController.BulkCreateCardRequest request = new CardController.BulkCreateCardRequest();
+            request.setCards(List.of(first, second));
+            when(userService.getUserByUsername("admin")).thenReturn(admin);
+            when(userService.getUsersByUsernames(List.of(first.getUsername(), second.getUsername())))
+                    .thenReturn(Map.of(first.getUsername(), user));
+            when(cardService.createCards(any(), eq(admin))).thenReturn(List.of(card));
+
+            ResponseEntity<BulkCardIssueResultDto> response = cardController.createCards("admin", request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody().getIssued()).isEqualTo(1);
+            assertThat(response.getBody().getCardIds()).containsExactly(card.getId());
+            verify(cardService).createCards(List.of(
+                    new CardService.NewCard(first.getCardNumber(), first.getOwner(), first.getExpiryDate(), user),
+                    new CardService.NewCard(second.getCardNumber(), second.getOwner(), second.getExpiryDate(), user)),
+                    admin);
+        }
+
+        private CardController.CreateCardRequest createCardRequest(String cardNumber) {
+            CardController.CreateCardRequest request = new CardController.CreateCardRequest();
+            request.setCardNumber(cardNumber);
+            request.setOwner("Test Owner");
+            request.setExpiryDate(LocalDate.now().plusYears(2));
+            request.setUsername(user.getUsername());
+            return request;
+        }
+    }
+
+    @Nested
+    @DisplayName("Search Cards Tests")
+    class SearchCardsTests {
+
+        @Test
+        @DisplayName("Should build filter from request parameters")
+        void searchCards_buildsFilter() {
+            PageResponse<CardDto> page = PageResponse.<CardDto>builder().content(List.of(cardDto)).size(20).build();
+            when(cardService.searchCards(any(), eq("abc"), eq(20))).thenReturn(page);
+            LocalDate from = LocalDate.of(2026, 1, 1);
+            LocalDate to = LocalDate.of(2026, 12, 31);
+
+            ResponseEntity<PageResponse<CardDto>> response = cardController.searchCards(
+                    "blocked", from, to, "Test", "Fuzzy", "1234", 1L, "abc", 20);
+
+            assertThat(response.getBody()).isSameAs(page);
+            verify(cardService).searchCards(CardSearchFilter.builder()
+                    .status(CardStatus.BLOCKED)
+                    .expiryFrom(from)
+                    .expiryTo(to)
+                    .owner("Test")
+                    .ownerMatch(CardSearchFilter.OwnerMatch.FUZZY)
+                    .last4("1234")
+                    .userId(1L)
+                    .build(), "abc", 20);
+        }
+
+        @Test
+        @DisplayName("Should default to prefix owner match without other filters")
+        void searchCards_defaultsToPrefixMatch() {
+            when(cardService.searchCards(any(), eq(""), eq(10)))
+                    .thenReturn(PageResponse.<CardDto>builder().content(List.of()).size(10).build());
+
+            cardController.searchCards(null, null, null, "Te", "prefix", null, null, "", 10);
+
+            verify(cardService).searchCards(CardSearchFilter.builder().owner("Te").build(), "", 10);
+        }
+
+        @Test
+        @DisplayName("Should reject unknown status and owner match")
+        void searchCards_invalidParams_throwException() {
+            assertThatThrownBy(() -> cardController.searchCards("lost", null, null, null, "prefix", null, null, "", 10))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Status must be one of");
+            assertThatThrownBy(() -> cardController.searchCards(null, null, null, "Te", "exact", null, null, "", 10))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Owner match must be one of");
+            verifyNoInteractions(cardService);
+        }
+    }
+
+    @Nested
+    @DisplayName("Lookup Card Tests")
+    class LookupCardTests {
+
+        @Test
+        @DisplayName("Should return card found by full number")
+        void lookupCard_found_returnsCard() {
+            CardController.CardLookupRequest request = new CardController.CardLookupRequest();
+            request.setCardNumber("1234 5678 9012 3456");
+            when(cardService.getCardByNumber("1234 5678 9012 3456")).thenReturn(cardDto);
+
+            ResponseEntity<CardDto> response = cardController.lookupCard(request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isEqualTo(cardDto);
+        }
+
+        @Test
+        @DisplayName("Should propagate CardNotFoundException")
+        void lookupCard_notFound_throwsException() {
+            CardController.CardLookupRequest request = new CardController.CardLookupRequest();
+            request.setCardNumber("1234 5678 9012 3456");
+            when(cardService.getCardByNumber(any())).thenThrow(new CardNotFoundException("Card not found with given number"));
+
+            assertThatThrownBy(() -> cardController.lookupCard(request))
+                    .isInstanceOf(CardNotFoundException.class);
+        }
+    }
+
     @Nested
     @DisplayName("Block Card Tests")
     class BlockCardTests {
@@ -266,6 +433,244 @@ class CardControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("Bulk Card Status Tests")
+    class BulkCardStatusTests {
+
+        @Test
+        @DisplayName("Should block listed cards on behalf of the admin")
+        void blockCards_passesIdsAndAdmin() {
+            CardController.BulkCardStatusRequest request = new CardController.BulkCardStatusRequest();
+            request.setCardIds(List.of(1L, 2L));
+            BulkCardStatusResultDto result = BulkCardStatusResultDto.builder()
+                    .status(CardStatus.BLOCKED).updated(2).build();
+            when(userService.getUserByUsername("admin")).thenReturn(user);
+            when(bulkStatusService.blockCards(List.of(1L, 2L), null, user)).thenReturn(result);
+
+            ResponseEntity<BulkCardStatusResultDto> response = cardController.blockCards("admin", request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isSameAs(result);
+            verifyNoInteractions(cardService);
+        }
+
+        @Test
+        @DisplayName("Should activate all cards of a user")
+        void activateCards_passesUserFilter() {
+            CardController.BulkCardStatusRequest request = new CardController.BulkCardStatusRequest();
+            request.setUserId(3L);
+            BulkCardStatusResultDto result = BulkCardStatusResultDto.builder()
+                    .status(CardStatus.ACTIVE).updated(5).build();
+            when(userService.getUserByUsername("admin")).thenReturn(user);
+            when(bulkStatusService.activateCards(null, 3L, user)).thenReturn(result);
+
+            ResponseEntity<BulkCardStatusResultDto> response = cardController.activateCards("admin", request);
+
+            assertThat(response.getBody()).isNotNull();
+            assertThat(response.getBody().getUpdated()).isEqualTo(5);
+        }
+
+        @Test
+        @DisplayName("Should reject non-positive ids in the request")
+        void bulkCardStatusRequest_invalidIds_hasViolations() {
+            CardController.BulkCardStatusRequest request = new CardController.BulkCardStatusRequest();
+            request.setCardIds(List.of(1L, -2L));
+            request.setUserId(0L);
+
+            Set<ConstraintViolation<CardController.BulkCardStatusRequest>> violations = validator.validate(request);
+
+            assertThat(violations).hasSize(2);
+            assertThat(violations).anyMatch(v -> v.getMessage().equals("User ID must be a positive number"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Get Card Transfers Tests")
+    class GetCardTransfersTests {
+
+        @Test
+        @DisplayName("Should return incoming and outgoing transfers by default")
+        void getCardTransfers_defaultsToBothDirections() {
+            PageResponse<Transfer> page = PageResponse.<Transfer>builder().content(Collections.emptyList()).build();
+            when(cardAccess.canAccess("testuser", List.of(1L))).thenReturn(true);
+            when(transferService.getCardTransfers(1L, TransferDirection.BOTH, null, null, PageRequest.of(0, 10), false))
+                    .thenReturn(page);
+
+            ResponseEntity<PageResponse<Transfer>> response = cardController.getCardTransfers(1L, "testuser", 0, 10, "both", null, null, false);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isSameAs(page);
+        }
+
+        @Test
+        @DisplayName("Should pass direction and period to service")
+        void getCardTransfers_filtersByDirectionAndPeriod() {
+            LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+            LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+            when(cardAccess.canAccess("testuser", List.of(1L))).thenReturn(true);
+            when(transferService.getCardTransfers(1L, TransferDirection.IN, from, to, PageRequest.of(1, 20), false))
+                    .thenReturn(PageResponse.<Transfer>builder().content(Collections.emptyList()).build());
+
+            ResponseEntity<PageResponse<Transfer>> response = cardController.getCardTransfers(1L, "testuser", 1, 20, "In", from, to, false);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            verify(transferService).getCardTransfers(1L, TransferDirection.IN, from, to, PageRequest.of(1, 20), false);
+        }
+
+        @Test
+        @DisplayName("Should reject unknown direction")
+        void getCardTransfers_invalidDirection_throwsException() {
+            assertThatThrownBy(() -> cardController.getCardTransfers(1L, "testuser", 0, 10, "sideways", null, null, false))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Direction must be one of");
+            verifyNoInteractions(transferService);
+        }
+
+        @Test
+        @DisplayName("Should return cursor page when after is given")
+        void getCardTransfersAfter_returnsPageWithCursor() {
+            PageResponse<Transfer> page = PageResponse.<Transfer>builder().content(Collections.emptyList()).size(10).build();
+            when(cardAccess.canAccess("testuser", List.of(1L))).thenReturn(true);
+            when(transferService.getCardTransfersAfter(1L, TransferDirection.OUT, null, null, "abc", 10)).thenReturn(page);
+
+            ResponseEntity<PageResponse<Transfer>> response =
+                    cardController.getCardTransfersAfter(1L, "testuser", "abc", 10, "out", null, null);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isSameAs(page);
+        }
+
+        @Test
+        @DisplayName("Should forbid access to another user's card")
+        void getCardTransfers_foreignCard_returnsForbidden() {
+            when(cardAccess.canAccess("other", List.of(1L))).thenReturn(false);
+
+            ResponseEntity<PageResponse<Transfer>> response = cardController.getCardTransfers(1L, "other", 0, 10, "both", null, null, false);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+            verifyNoInteractions(transferService);
+        }
+    }
+
+    @Nested
+    @DisplayName("Export Card Transfers Tests")
+    class ExportCardTransfersTests {
+
+        @Test
+        @DisplayName("Should stream statement as attachment in requested format")
+        void exportCardTransfers_streamsAttachment() throws Exception {
+            LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+            when(cardAccess.canAccess("testuser", List.of(1L))).thenReturn(true);
+
+            ResponseEntity<StreamingResponseBody> response =
+                    cardController.exportCardTransfers(1L, "testuser", "ndjson", "out", from, null);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getHeaders().getContentType()).hasToString("application/x-ndjson");
+            assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION))
+                    .contains("card-1-transfers.ndjson");
+            verifyNoInteractions(statementService);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            response.getBody().writeTo(out);
+            verify(statementService).export(1L, TransferDirection.OUT, from, null, TransferStatementFormat.NDJSON, out);
+        }
+
+        @Test
+        @DisplayName("Should reject unknown format before reading cards")
+        void exportCardTransfers_invalidFormat_throwsException() {
+            assertThatThrownBy(() -> cardController.exportCardTransfers(1L, "testuser", "xml", "both", null, null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Format must be one of");
+            verifyNoInteractions(cardService, statementService);
+        }
+
+        @Test
+        @DisplayName("Should forbid export of another user's card")
+        void exportCardTransfers_foreignCard_returnsForbidden() {
+            when(cardAccess.canAccess("other", List.of(1L))).thenReturn(false);
+
+            ResponseEntity<StreamingResponseBody> response =
+                    cardController.exportCardTransfers(1L, "other", "csv", "both", null, null);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+            verifyNoInteractions(statementService);
+        }
+    }
+
+    @Nested
+    @DisplayName("Get Card Turnover Tests")
+    class GetCardTurnoverTests {
+
+        @Test
+        @DisplayName("Should default to current month grouped by day")
+        void getCardTurnover_defaultsToCurrentMonth() {
+            LocalDate today = LocalDate.now();
+            CardTurnoverDto turnover = CardTurnoverDto.builder().cardId(1L).build();
+            when(cardAccess.canAccess("testuser", List.of(1L))).thenReturn(true);
+            when(turnoverService.getTurnover(1L, today.withDayOfMonth(1), today, CardTurnoverDto.Grouping.DAY))
+                    .thenReturn(turnover);
+
+            ResponseEntity<CardTurnoverDto> response = cardController.getCardTurnover(1L, "testuser", null, null, "day");
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isSameAs(turnover);
+        }
+
+        @Test
+        @DisplayName("Should forbid turnover of another user's card")
+        void getCardTurnover_foreignCard_returnsForbidden() {
+            when(cardAccess.canAccess("other", List.of(1L))).thenReturn(false);
+
+            ResponseEntity<CardTurnoverDto> response = cardController.getCardTurnover(1L, "other", null, null, "month");
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+            verifyNoInteractions(turnoverService);
+        }
+    }
+
+    @Nested
+    @DisplayName("Get Card History Tests")
+    class GetCardHistoryTests {
+
+        @Test
+        @DisplayName("Should read history by card reference after access check")
+        void getCardHistory_returnsPage() {
+            PageResponse<CardOperationHistory> page = PageResponse.<CardOperationHistory>builder().content(Collections.emptyList()).build();
+            when(cardAccess.canAccess("testuser", List.of(1L))).thenReturn(true);
+            when(cardService.getCardReference(1L)).thenReturn(card);
+            when(operationHistoryService.getCardHistory(card, PageRequest.of(0, 10), false)).thenReturn(page);
+
+            ResponseEntity<PageResponse<CardOperationHistory>> response = cardController.getCardHistory(1L, "testuser", 0, 10, false);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isSameAs(page);
+            verify(cardService, never()).getCardById(any());
+            verifyNoInteractions(userService);
+        }
+
+        @Test
+        @DisplayName("Should forbid history of another user's card")
+        void getCardHistory_foreignCard_returnsForbidden() {
+            when(cardAccess.canAccess("other", List.of(1L))).thenReturn(false);
+
+            ResponseEntity<PageResponse<CardOperationHistory>> response = cardController.getCardHistory(1L, "other", 0, 10, false);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+            verifyNoInteractions(operationHistoryService);
+        }
+
+        @Test
+        @DisplayName("Should propagate CardNotFoundException from access check")
+        void getCardHistory_cardNotFound_throwsException() {
+            when(cardAccess.canAccess("testuser", List.of(1L))).thenThrow(new CardNotFoundException(1L));
+
+            assertThatThrownBy(() -> cardController.getCardHistory(1L, "testuser", 0, 10, false))
+                    .isInstanceOf(CardNotFoundException.class);
+            verifyNoInteractions(operationHistoryService);
+        }
+    }
+
     @Nested
     @DisplayName("Delete Card Tests")
     class DeleteCardTests {
@@ -625,7 +1030,7 @@ class CardControllerTest {
         @DisplayName("Should handle pagination with zero size")
         void getUserCards_zeroSize_throwsException() {
             
-            assertThatThrownBy(() -> cardController.getUserCards("testuser", 0, 0))
+            assertThatThrownBy(() -> cardController.getUserCards("testuser", 0, 0, false))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("Page size must be between 1 and 100");
         }
@@ -634,7 +1039,7 @@ class CardControllerTest {
         @DisplayName("Should handle negative page number")
         void getUserCards_negativePage_throwsException() {
             
-            assertThatThrownBy(() -> cardController.getUserCards("testuser", -1, 10))
+            assertThatThrownBy(() -> cardController.getUserCards("testuser", -1, 10, false))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("Page number must be 0 or greater");
         }
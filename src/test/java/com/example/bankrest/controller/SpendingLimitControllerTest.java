@@ -0,0 +1,77 @@
+package com.example.bankrest.controller;
+
+import com.example.bankrest.entity.LimitPeriod;
+import com.example.bankrest.entity.LimitScope;
+import com.example.bankrest.entity.SpendingLimit;
+import com.example.bankrest.service.SpendingLimitService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SpendingLimitControllerTest {
+
+    @Mock
+    private SpendingLimitService spendingLimitService;
+
+    @InjectMocks
+    private SpendingLimitController spendingLimitController;
+
+    private SpendingLimit limit;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+
+        limit = SpendingLimit.builder()
+                .id(1L)
+                .scope(LimitScope.CARD)
+                .subjectId(5L)
+                .period(LimitPeriod.DAY)
+                .maxAmount(new BigDecimal("1000.00"))
+                .build();
+    }
+
+    @Test
+    void getLimits_returnsSubjectLimits() {
+        when(spendingLimitService.getLimits(LimitScope.CARD, 5L)).thenReturn(List.of(limit));
+
+        ResponseEntity<List<SpendingLimit>> response = spendingLimitController.getLimits(LimitScope.CARD, 5L);
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(response.getBody()).containsExactly(limit);
+    }
+
+    @Test
+    void setLimit_delegatesToService() {
+        SpendingLimitController.SpendingLimitRequest request = new SpendingLimitController.SpendingLimitRequest();
+        request.setScope(LimitScope.CARD);
+        request.setSubjectId(5L);
+        request.setPeriod(LimitPeriod.DAY);
+        request.setMaxAmount(new BigDecimal("1000.00"));
+        when(spendingLimitService.setLimit(LimitScope.CARD, 5L, LimitPeriod.DAY, new BigDecimal("1000.00"), null))
+                .thenReturn(limit);
+
+        ResponseEntity<SpendingLimit> response = spendingLimitController.setLimit(request);
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(response.getBody()).isEqualTo(limit);
+    }
+
+    @Test
+    void deleteLimit_invalidId_throwsException() {
+        assertThatThrownBy(() -> spendingLimitController.deleteLimit(0L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Limit ID must be a positive number");
+        verify(spendingLimitService, never()).deleteLimit(any());
+    }
+}
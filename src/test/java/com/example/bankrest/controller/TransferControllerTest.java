@@ -1,14 +1,20 @@
 package com.example.bankrest.controller;
 
+import com.example.bankrest.dto.BatchTransferResultDto;
+import com.example.bankrest.dto.TransferSubmissionDto;
 import com.example.bankrest.entity.Card;
 import com.example.bankrest.entity.CardStatus;
 import com.example.bankrest.entity.Transfer;
 import com.example.bankrest.entity.User;
 import com.example.bankrest.exception.CardNotFoundException;
 import com.example.bankrest.exception.InsufficientFundsException;
+import com.example.bankrest.exception.TransferQueueFullException;
 import com.example.bankrest.exception.UserNotFoundException;
+import com.example.bankrest.security.CardAccess;
 import com.example.bankrest.service.CardService;
+import com.example.bankrest.service.TransferIdempotencyService;
 import com.example.bankrest.service.TransferService;
+import com.example.bankrest.service.TransferSubmissionService;
 import com.example.bankrest.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -20,6 +26,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validation;
@@ -29,10 +36,15 @@ import jakarta.validation.ValidatorFactory;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -48,6 +60,15 @@ class TransferControllerTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private TransferIdempotencyService idempotencyService;
+
+    @Mock
+    private TransferSubmissionService submissionService;
+
+    @Mock
+    private CardAccess cardAccess;
+
     @InjectMocks
     private TransferController transferController;
 
@@ -115,13 +136,13 @@ class TransferControllerTest {
             request.setToCardId(2L);
             request.setAmount(new BigDecimal("100.50"));
 
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(true);
             when(cardService.getCardById(1L)).thenReturn(fromCard);
             when(cardService.getCardById(2L)).thenReturn(toCard);
             when(transferService.transferBetweenCards(fromCard, toCard, request.getAmount())).thenReturn(transfer);
 
             
-            ResponseEntity<Transfer> response = transferController.transfer("testuser", request);
+            ResponseEntity<Transfer> response = transferController.transfer("testuser", null, request);
 
             
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
@@ -129,6 +150,26 @@ class TransferControllerTest {
             verify(transferService).transferBetweenCards(fromCard, toCard, request.getAmount());
         }
 
+        @Test
+        @DisplayName("Should accept transfer whose credit is not confirmed yet")
+        void transfer_pendingTransfer_returnsAccepted() {
+            TransferController.TransferRequest request = new TransferController.TransferRequest();
+            request.setFromCardId(1L);
+            request.setToCardId(2L);
+            request.setAmount(new BigDecimal("100.50"));
+            transfer.setPending(true);
+
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(true);
+            when(cardService.getCardById(1L)).thenReturn(fromCard);
+            when(cardService.getCardById(2L)).thenReturn(toCard);
+            when(transferService.transferBetweenCards(fromCard, toCard, request.getAmount())).thenReturn(transfer);
+
+            ResponseEntity<Transfer> response = transferController.transfer("testuser", null, request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+            assertThat(response.getBody()).isEqualTo(transfer);
+        }
+
         @Test
         @DisplayName("Should handle minimum transfer amount")
         void transfer_minimumAmount_success() {
@@ -138,19 +179,194 @@ class TransferControllerTest {
             request.setToCardId(2L);
             request.setAmount(new BigDecimal("0.01"));
 
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(true);
             when(cardService.getCardById(1L)).thenReturn(fromCard);
             when(cardService.getCardById(2L)).thenReturn(toCard);
             when(transferService.transferBetweenCards(fromCard, toCard, request.getAmount())).thenReturn(transfer);
 
             
-            ResponseEntity<Transfer> response = transferController.transfer("testuser", request);
+            ResponseEntity<Transfer> response = transferController.transfer("testuser", null, request);
 
             
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         }
     }
 
+    @Nested
+    @DisplayName("Idempotent Transfer Tests")
+    class IdempotentTransferTests {
+
+        @Test
+        @DisplayName("Should route keyed transfers through idempotency service")
+        void transfer_withIdempotencyKey_usesIdempotencyService() {
+            TransferController.TransferRequest request = new TransferController.TransferRequest();
+            request.setFromCardId(1L);
+            request.setToCardId(2L);
+            request.setAmount(new BigDecimal("100.50"));
+
+            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(idempotencyService.execute(eq(user), eq("key-1"), any(), any())).thenReturn(transfer);
+
+            ResponseEntity<Transfer> response = transferController.transfer("testuser", "key-1", request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).isEqualTo(transfer);
+            verify(cardService, never()).getCardById(any());
+            verify(transferService, never()).transferBetweenCards(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should execute transfer inside idempotency action")
+        void transfer_withIdempotencyKey_actionPerformsTransfer() {
+            TransferController.TransferRequest request = new TransferController.TransferRequest();
+            request.setFromCardId(1L);
+            request.setToCardId(2L);
+            request.setAmount(new BigDecimal("100.50"));
+
+            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(true);
+            when(cardService.getCardById(1L)).thenReturn(fromCard);
+            when(cardService.getCardById(2L)).thenReturn(toCard);
+            Consumer<Transfer> recorder = recorded -> { };
+            when(transferService.transferBetweenCards(fromCard, toCard, request.getAmount(), recorder)).thenReturn(transfer);
+            when(idempotencyService.execute(eq(user), eq("key-1"), any(), any()))
+                    .thenAnswer(i -> i.<Function<Consumer<Transfer>, Transfer>>getArgument(3).apply(recorder));
+
+            ResponseEntity<Transfer> response = transferController.transfer("testuser", "key-1", request);
+
+            assertThat(response.getBody()).isEqualTo(transfer);
+        }
+
+        @Test
+        @DisplayName("Should deny keyed transfer from another user's card")
+        void transfer_withIdempotencyKey_foreignCard_throwsAccessDenied() {
+            TransferController.TransferRequest request = new TransferController.TransferRequest();
+            request.setFromCardId(1L);
+            request.setToCardId(2L);
+            request.setAmount(new BigDecimal("100.50"));
+
+            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(false);
+            when(idempotencyService.execute(eq(user), eq("key-1"), any(), any()))
+                    .thenAnswer(i -> i.<Function<Consumer<Transfer>, Transfer>>getArgument(3).apply(recorded -> { }));
+
+            assertThatThrownBy(() -> transferController.transfer("testuser", "key-1", request))
+                    .isInstanceOf(AccessDeniedException.class);
+            verify(transferService, never()).transferBetweenCards(any(), any(), any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Async Transfer Tests")
+    class AsyncTransferTests {
+
+        @Test
+        @DisplayName("Should accept transfer into queue without loading cards")
+        void submitTransfer_returnsAccepted() {
+            TransferController.TransferRequest request = new TransferController.TransferRequest();
+            request.setFromCardId(1L);
+            request.setToCardId(2L);
+            request.setAmount(new BigDecimal("100.50"));
+            TransferSubmissionDto submission = TransferSubmissionDto.builder()
+                    .requestId("req-1")
+                    .status(TransferSubmissionDto.Status.PENDING)
+                    .build();
+            when(submissionService.submit(eq("testuser"), argThat(dto -> dto.getFromCardId().equals(1L)
+                    && dto.getToCardId().equals(2L)))).thenReturn(submission);
+
+            ResponseEntity<TransferSubmissionDto> response = transferController.submitTransfer("testuser", request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+            assertThat(response.getHeaders().getLocation()).hasToString("/api/transfers/req-1");
+            assertThat(response.getBody()).isEqualTo(submission);
+            verifyNoInteractions(cardService, userService, transferService);
+        }
+
+        @Test
+        @DisplayName("Should propagate queue full error")
+        void submitTransfer_queueFull_throwsException() {
+            TransferController.TransferRequest request = new TransferController.TransferRequest();
+            request.setFromCardId(1L);
+            request.setToCardId(2L);
+            request.setAmount(new BigDecimal("100.50"));
+            when(submissionService.submit(eq("testuser"), any())).thenThrow(new TransferQueueFullException());
+
+            assertThatThrownBy(() -> transferController.submitTransfer("testuser", request))
+                    .isInstanceOf(TransferQueueFullException.class);
+        }
+
+        @Test
+        @DisplayName("Should return transfer request status")
+        void getSubmission_returnsStatus() {
+            TransferSubmissionDto submission = TransferSubmissionDto.builder()
+                    .requestId("req-1")
+                    .status(TransferSubmissionDto.Status.COMPLETED)
+                    .transferId(42L)
+                    .build();
+            when(submissionService.getSubmission("testuser", "req-1")).thenReturn(submission);
+
+            ResponseEntity<TransferSubmissionDto> response = transferController.getSubmission("testuser", "req-1");
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody().getTransferId()).isEqualTo(42L);
+        }
+    }
+
+    @Nested
+    @DisplayName("Batch Transfer Tests")
+    class BatchTransferTests {
+
+        @Test
+        @DisplayName("Should pass all instructions to the service in one call")
+        void transferBatch_delegatesToService() {
+            TransferController.TransferRequest item = new TransferController.TransferRequest();
+            item.setFromCardId(1L);
+            item.setToCardId(2L);
+            item.setAmount(new BigDecimal("10.00"));
+            TransferController.BatchTransferRequest request = new TransferController.BatchTransferRequest();
+            request.setTransfers(List.of(item, item));
+
+            List<BatchTransferResultDto> results = List.of(
+                    BatchTransferResultDto.builder().index(0).status(BatchTransferResultDto.Status.COMPLETED).build(),
+                    BatchTransferResultDto.builder().index(1).status(BatchTransferResultDto.Status.COMPLETED).build());
+            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(transferService.transferBatch(eq(1L), argThat(list -> list.size() == 2))).thenReturn(results);
+
+            ResponseEntity<List<BatchTransferResultDto>> response = transferController.transferBatch("testuser", request);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).hasSize(2);
+            verify(cardService, never()).getCardById(any());
+        }
+
+        @Test
+        @DisplayName("Should reject batch with invalid item amount")
+        void transferBatch_invalidItem_throwsException() {
+            TransferController.TransferRequest item = new TransferController.TransferRequest();
+            item.setFromCardId(1L);
+            item.setToCardId(2L);
+            item.setAmount(new BigDecimal("10.001"));
+            TransferController.BatchTransferRequest request = new TransferController.BatchTransferRequest();
+            request.setTransfers(List.of(item));
+
+            assertThatThrownBy(() -> transferController.transferBatch("testuser", request))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Transfer amount can have maximum 2 digits after decimal");
+            verify(transferService, never()).transferBatch(any(), any());
+        }
+
+        @Test
+        @DisplayName("Should fail validation for empty batch")
+        void batchTransferRequest_empty_hasViolations() {
+            TransferController.BatchTransferRequest request = new TransferController.BatchTransferRequest();
+            request.setTransfers(List.of());
+
+            assertThat(validator.validate(request))
+                    .extracting(ConstraintViolation::getMessage)
+                    .containsExactly("At least one transfer is required");
+        }
+    }
+
     @Nested
     @DisplayName("Authorization Tests")
     class AuthorizationTests {
@@ -164,19 +380,15 @@ class TransferControllerTest {
             request.setToCardId(2L);
             request.setAmount(new BigDecimal("100.50"));
 
-            User otherUser = User.builder().id(2L).username("otheruser").build();
-            Card otherUserCard = Card.builder().id(1L).user(otherUser).build();
-
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
-            when(cardService.getCardById(1L)).thenReturn(otherUserCard);
-            when(cardService.getCardById(2L)).thenReturn(toCard);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(false);
 
             
-            ResponseEntity<Transfer> response = transferController.transfer("testuser", request);
+            ResponseEntity<Transfer> response = transferController.transfer("testuser", null, request);
 
             
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
             verify(transferService, never()).transferBetweenCards(any(), any(), any());
+            verify(cardService, never()).getCardById(any());
         }
 
         @Test
@@ -188,19 +400,14 @@ class TransferControllerTest {
             request.setToCardId(2L);
             request.setAmount(new BigDecimal("100.50"));
 
-            User otherUser = User.builder().id(2L).username("otheruser").build();
-            Card otherUserCard = Card.builder().id(2L).user(otherUser).build();
-
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
-            when(cardService.getCardById(1L)).thenReturn(fromCard);
-            when(cardService.getCardById(2L)).thenReturn(otherUserCard);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(false);
 
             
-            ResponseEntity<Transfer> response = transferController.transfer("testuser", request);
+            ResponseEntity<Transfer> response = transferController.transfer("testuser", null, request);
 
             
             assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
-            verify(transferService, never()).transferBetweenCards(any(), any(), any());
+            verify(transferService, never()).transferBetweenCards(any(), any(), any(), any());
         }
     }
 
@@ -220,7 +427,7 @@ class TransferControllerTest {
             when(userService.getUserByUsername("testuser")).thenThrow(new UserNotFoundException("User not found"));
 
             
-            assertThatThrownBy(() -> transferController.transfer("testuser", request))
+            assertThatThrownBy(() -> transferController.transfer("testuser", "key-1", request))
                     .isInstanceOf(UserNotFoundException.class)
                     .hasMessage("User not found");
         }
@@ -234,11 +441,10 @@ class TransferControllerTest {
             request.setToCardId(2L);
             request.setAmount(new BigDecimal("100.50"));
 
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
-            when(cardService.getCardById(1L)).thenThrow(new CardNotFoundException("Card not found"));
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenThrow(new CardNotFoundException("Card not found"));
 
             
-            assertThatThrownBy(() -> transferController.transfer("testuser", request))
+            assertThatThrownBy(() -> transferController.transfer("testuser", null, request))
                     .isInstanceOf(CardNotFoundException.class)
                     .hasMessage("Card not found");
         }
@@ -252,14 +458,14 @@ class TransferControllerTest {
             request.setToCardId(2L);
             request.setAmount(new BigDecimal("2000.00")); 
 
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(true);
             when(cardService.getCardById(1L)).thenReturn(fromCard);
             when(cardService.getCardById(2L)).thenReturn(toCard);
             when(transferService.transferBetweenCards(fromCard, toCard, request.getAmount()))
                     .thenThrow(new InsufficientFundsException());
 
             
-            assertThatThrownBy(() -> transferController.transfer("testuser", request))
+            assertThatThrownBy(() -> transferController.transfer("testuser", null, request))
                     .isInstanceOf(InsufficientFundsException.class);
         }
 
@@ -273,7 +479,7 @@ class TransferControllerTest {
             request.setAmount(new BigDecimal("-100.50")); 
 
             
-            assertThatThrownBy(() -> transferController.transfer("testuser", request))
+            assertThatThrownBy(() -> transferController.transfer("testuser", null, request))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("Transfer amount must be at least 0.01");
         }
@@ -414,13 +620,13 @@ class TransferControllerTest {
             request.setToCardId(1L); 
             request.setAmount(new BigDecimal("100.50"));
 
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(cardAccess.isOwner("testuser", List.of(1L, 1L))).thenReturn(true);
             when(cardService.getCardById(1L)).thenReturn(fromCard);
             when(transferService.transferBetweenCards(fromCard, fromCard, request.getAmount()))
                     .thenThrow(new IllegalArgumentException("Cannot transfer to same card"));
 
             
-            assertThatThrownBy(() -> transferController.transfer("testuser", request))
+            assertThatThrownBy(() -> transferController.transfer("testuser", null, request))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("Cannot transfer to same card");
         }
@@ -440,14 +646,14 @@ class TransferControllerTest {
             request.setToCardId(2L);
             request.setAmount(new BigDecimal("100.50"));
 
-            when(userService.getUserByUsername("testuser")).thenReturn(user);
+            when(cardAccess.isOwner("testuser", List.of(1L, 2L))).thenReturn(true);
             when(cardService.getCardById(1L)).thenReturn(inactiveCard);
             when(cardService.getCardById(2L)).thenReturn(toCard);
             when(transferService.transferBetweenCards(inactiveCard, toCard, request.getAmount()))
                     .thenThrow(new IllegalStateException("Both cards must be active"));
 
             
-            assertThatThrownBy(() -> transferController.transfer("testuser", request))
+            assertThatThrownBy(() -> transferController.transfer("testuser", null, request))
                     .isInstanceOf(IllegalStateException.class)
                     .hasMessage("Both cards must be active");
         }
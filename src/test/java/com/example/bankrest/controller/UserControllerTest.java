@@ -1,13 +1,12 @@
 package com.example.bankrest.controller;
 
+import com.example.bankrest.dto.PageResponse;
 import com.example.bankrest.entity.Role;
 import com.example.bankrest.entity.User;
 import com.example.bankrest.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -87,32 +86,35 @@ class UserControllerTest {
     @Test
     void getUsers_returnsPageOfUsers() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<User> userPage = new PageImpl<>(Collections.singletonList(testUser), pageable, 1);
+        PageResponse<User> userPage = PageResponse.<User>builder()
+                .content(Collections.singletonList(testUser)).page(0).size(10).build();
 
-        when(userService.getUsers(pageable)).thenReturn(userPage);
+        when(userService.getUsers(pageable, false)).thenReturn(userPage);
 
-        ResponseEntity<Page<User>> response = userController.getUsers(0, 10);
+        ResponseEntity<PageResponse<User>> response = userController.getUsers(0, 10, false);
 
         assertThat(response.getStatusCode().value()).isEqualTo(200);
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getContent()).hasSize(1);
         assertThat(response.getBody().getContent().getFirst()).isEqualTo(testUser);
-        verify(userService).getUsers(pageable);
+        verify(userService).getUsers(pageable, false);
     }
 
     @Test
     void getUsers_withPagination_returnsCorrectPage() {
         Pageable pageable = PageRequest.of(1, 5);
-        Page<User> userPage = new PageImpl<>(Collections.singletonList(testUser), pageable, 1);
+        PageResponse<User> userPage = PageResponse.<User>builder()
+                .content(Collections.singletonList(testUser)).page(1).size(5).totalElements(6L).totalPages(2).build();
 
-        when(userService.getUsers(pageable)).thenReturn(userPage);
+        when(userService.getUsers(pageable, true)).thenReturn(userPage);
 
-        ResponseEntity<Page<User>> response = userController.getUsers(1, 5);
+        ResponseEntity<PageResponse<User>> response = userController.getUsers(1, 5, true);
 
         assertThat(response.getStatusCode().value()).isEqualTo(200);
         assertThat(response.getBody()).isNotNull();
-        assertThat(response.getBody().getNumber()).isEqualTo(1);
+        assertThat(response.getBody().getPage()).isEqualTo(1);
         assertThat(response.getBody().getSize()).isEqualTo(5);
+        assertThat(response.getBody().getTotalElements()).isEqualTo(6L);
     }
 
     @Test
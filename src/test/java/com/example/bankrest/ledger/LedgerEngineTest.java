@@ -0,0 +1,281 @@
+package com.example.bankrest.ledger;
+
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.entity.Transfer;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.exception.InsufficientFundsException;
+import com.example.bankrest.repository.CardDailyTurnoverRepository;
+import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.LedgerEntryRepository;
+import com.example.bankrest.repository.TransferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LedgerEngineTest {
+    /**
+     * Карта в одном шарде со second, загрузка баланса которой ждёт slowLoadGate.
+     */
+    private static final long SLOW_CARD_ID = 6L;
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private CardDailyTurnoverRepository turnoverRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Long, BigDecimal> projectedBalances = new ConcurrentHashMap<>();
+    private final Map<Long, TransferDto> projectedTransfers = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private final Set<Long> deletedCards = ConcurrentHashMap.newKeySet();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch slowLoadStarted = new CountDownLatch(1);
+    private final CountDownLatch slowLoadGate = new CountDownLatch(1);
+
+    private LedgerEngine engine;
+    private Card first;
+    private Card second;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        User user = User.builder().id(1L).build();
+        first = Card.builder().id(1L).user(user).status(CardStatus.ACTIVE).balance(new BigDecimal("100.00")).build();
+        second = Card.builder().id(2L).user(user).status(CardStatus.ACTIVE).balance(new BigDecimal("50.00")).build();
+        projectedBalances.put(1L, first.getBalance());
+        projectedBalances.put(2L, second.getBalance());
+
+        when(cardRepository.findById(anyLong())).thenAnswer(i -> {
+            if (i.<Long>getArgument(0) == SLOW_CARD_ID) {
+                slowLoadStarted.countDown();
+                slowLoadGate.await();
+            }
+            return Optional.ofNullable(projectedBalances.get(i.<Long>getArgument(0)))
+                    .map(balance -> Card.builder().id(i.getArgument(0)).balance(balance).build());
+        });
+        when(ledgerEntryRepository.currentBalances(any())).thenAnswer(i -> {
+            Map<Long, BigDecimal> balances = new HashMap<>();
+            i.<Collection<Long>>getArgument(0).forEach(id -> balances.put(id, projectedBalances.get(id)));
+            return balances;
+        });
+        doAnswer(i -> {
+            for (TransferDto transfer : i.<List<TransferDto>>getArgument(0)) {
+                projectedBalances.merge(transfer.getFromCardId(), transfer.getAmount().negate(), BigDecimal::add);
+                projectedBalances.merge(transfer.getToCardId(), transfer.getAmount(), BigDecimal::add);
+            }
+            return null;
+        }).when(ledgerEntryRepository).appendProjectedTransfers(any(), any());
+        when(transferRepository.allocateIds(anyInt())).thenAnswer(i -> LongStream.rangeClosed(1, i.<Integer>getArgument(0))
+                .mapToObj(n -> idSequence.incrementAndGet())
+                .toList());
+        when(transferRepository.insertAllIfAbsent(any())).thenAnswer(i -> {
+            List<TransferDto> transfers = i.getArgument(0);
+            if (transfers.stream().anyMatch(t -> deletedCards.contains(t.getToCardId()))) {
+                throw new DataIntegrityViolationException("violates foreign key constraint fk_transfers_to_card");
+            }
+            return transfers.stream()
+                    .filter(t -> projectedTransfers.putIfAbsent(t.getId(), t) == null)
+                    .map(TransferDto::getId)
+                    .toList();
+        });
+        doAnswer(i -> {
+            i.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        engine = newEngine();
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        slowLoadGate.countDown();
+        engine.stop();
+    }
+
+    @Test
+    void transfer_movesBalancesAndProjectsToDatabase() {
+        Transfer transfer = engine.transfer(first, second, new BigDecimal("30.00"));
+
+        assertThat(transfer.getId()).isEqualTo(1L);
+        assertThat(transfer.getFromCard().getBalance()).isEqualByComparingTo("70.00");
+        assertThat(transfer.getToCard().getBalance()).isEqualByComparingTo("80.00");
+        assertThat(first.getBalance()).isEqualByComparingTo("100.00");
+
+        engine.awaitProjected(transfer.getId());
+        assertThat(projectedTransfers).containsKey(1L);
+        assertThat(projectedBalances.get(1L)).isEqualByComparingTo("70.00");
+        assertThat(projectedBalances.get(2L)).isEqualByComparingTo("80.00");
+        verify(transferRepository, times(1)).allocateIds(anyInt());
+    }
+
+    @Test
+    void transfer_throwsIfInsufficientFunds() {
+        assertThatThrownBy(() -> engine.transfer(first, second, new BigDecimal("100.01")))
+                .isInstanceOf(InsufficientFundsException.class);
+
+        assertThat(engine.transfer(first, second, new BigDecimal("100.00")).getFromCard().getBalance())
+                .isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void transfer_concurrentTransfersKeepTotalBalance() throws Exception {
+        int transfersPerDirection = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Transfer>> tasks = new java.util.ArrayList<>();
+            for (int i = 0; i < transfersPerDirection; i++) {
+                tasks.add(() -> engine.transfer(first, second, new BigDecimal("0.50")));
+                tasks.add(() -> engine.transfer(second, first, new BigDecimal("0.25")));
+            }
+            for (Future<Transfer> future : executor.invokeAll(tasks)) {
+                engine.awaitProjected(future.get().getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(projectedTransfers).hasSize(2 * transfersPerDirection);
+        assertThat(projectedBalances.get(1L)).isEqualByComparingTo("50.00");
+        assertThat(projectedBalances.get(2L)).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void transfer_rejectedByDatabase_isDeadLetteredNotDropped() {
+        Card third = Card.builder().id(3L).user(first.getUser()).status(CardStatus.ACTIVE).build();
+        projectedBalances.put(3L, BigDecimal.ZERO);
+        deletedCards.add(3L);
+
+        Transfer orphan = engine.transfer(first, third, new BigDecimal("10.00"));
+        Transfer regular = engine.transfer(first, second, new BigDecimal("20.00"));
+        engine.awaitProjected(orphan.getId());
+        engine.awaitProjected(regular.getId());
+
+        verify(ledgerEntryRepository, timeout(5000)).deadLetterTransfer(
+                argThat(transfer -> transfer.getId().equals(orphan.getId()) && transfer.getToCardId() == 3L),
+                contains("fk_transfers_to_card"));
+        assertThat(projectedTransfers).containsKey(regular.getId()).doesNotContainKey(orphan.getId());
+        assertThat(meterRegistry.get("bank.ledger.dead.letters").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void transfer_timeoutBeforeDebit_abandonsTransfer() throws Exception {
+        restartWithTimeout(Duration.ofMillis(200));
+        Card slow = Card.builder().id(SLOW_CARD_ID).user(first.getUser()).status(CardStatus.ACTIVE).build();
+        projectedBalances.put(SLOW_CARD_ID, BigDecimal.ZERO);
+
+        assertThatThrownBy(() -> engine.transfer(first, slow, new BigDecimal("10.00")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Ledger did not respond in time");
+        slowLoadGate.countDown();
+
+        assertThat(engine.transfer(first, second, new BigDecimal("100.00")).getFromCard().getBalance())
+                .isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void transfer_creditNotConfirmedInTime_returnsPendingTransfer() throws Exception {
+        restartWithTimeout(Duration.ofMillis(200));
+        Card slow = Card.builder().id(SLOW_CARD_ID).user(first.getUser()).status(CardStatus.ACTIVE).build();
+        projectedBalances.put(SLOW_CARD_ID, BigDecimal.ZERO);
+        engine.transfer(first, second, new BigDecimal("1.00"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Шард карты second занят загрузкой медленной карты, поэтому зачисление ждёт.
+            executor.submit(() -> engine.transfer(first, slow, new BigDecimal("1.00")));
+            slowLoadStarted.await();
+
+            Transfer pending = engine.transfer(first, second, new BigDecimal("10.00"));
+
+            assertThat(pending.isPending()).isTrue();
+            assertThat(pending.getId()).isNotNull();
+            assertThat(pending.getFromCard().getBalance()).isEqualByComparingTo("89.00");
+            assertThat(pending.getToCard().getBalance()).isNull();
+            slowLoadGate.countDown();
+            assertThat(engine.awaitProjected(pending.getId())).isTrue();
+            assertThat(projectedBalances.get(2L)).isEqualByComparingTo("61.00");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void start_replaysJournalNotYetProjected() throws Exception {
+        engine.stop();
+        try (LedgerJournal journal = new LedgerJournal(dir.resolve("ledger.journal"), 16, Long.MAX_VALUE)) {
+            journal.recover();
+            journal.start(entries -> { });
+            journal.append(new JournalEntry(0, 99L, 1L, 2L, new BigDecimal("10.00"),
+                    java.time.LocalDateTime.now())).join();
+        }
+
+        engine = newEngine();
+        engine.start();
+
+        assertThat(projectedTransfers).containsKey(99L);
+        assertThat(projectedBalances.get(1L)).isEqualByComparingTo("90.00");
+        assertThat(projectedBalances.get(2L)).isEqualByComparingTo("60.00");
+        verify(turnoverRepository).applyTransfers(argThat(transfers ->
+                transfers.size() == 1 && transfers.getFirst().getId().equals(99L)));
+        assertThat(engine.transfer(first, second, new BigDecimal("90.00")).getFromCard().getBalance())
+                .isEqualByComparingTo("0.00");
+    }
+
+    private LedgerEngine newEngine() {
+        return newEngine(Duration.ofSeconds(5));
+    }
+
+    private LedgerEngine newEngine(Duration timeout) {
+        return new LedgerEngine(cardRepository, transferRepository, ledgerEntryRepository, turnoverRepository,
+                transactionTemplate, meterRegistry, 4,
+                dir.resolve("ledger.journal"), 64, 1024, 50, 100, timeout);
+    }
+
+    private void restartWithTimeout(Duration timeout) throws Exception {
+        engine.stop();
+        engine = newEngine(timeout);
+        engine.start();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.bankrest.ledger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LedgerJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void append_entriesSurviveReopen() throws Exception {
+        Path file = dir.resolve("ledger.journal");
+        List<JournalEntry> durable = new CopyOnWriteArrayList<>();
+
+        try (LedgerJournal journal = new LedgerJournal(file, 16, Long.MAX_VALUE)) {
+            assertThat(journal.recover()).isEmpty();
+            journal.start(durable::addAll);
+            List<CompletableFuture<JournalEntry>> appends = IntStream.rangeClosed(1, 50)
+                    .mapToObj(i -> journal.append(entry(i)))
+                    .toList();
+            CompletableFuture.allOf(appends.toArray(CompletableFuture[]::new)).join();
+        }
+
+        assertThat(durable).extracting(JournalEntry::sequence).containsExactlyElementsOf(
+                IntStream.rangeClosed(1, 50).mapToObj(Long::valueOf).toList());
+        try (LedgerJournal reopened = new LedgerJournal(file, 16, Long.MAX_VALUE)) {
+            List<JournalEntry> recovered = reopened.recover();
+            assertThat(recovered).hasSize(50);
+            assertThat(recovered.getFirst().amount()).isEqualByComparingTo("1.01");
+            assertThat(recovered.getLast().transferId()).isEqualTo(50L);
+            assertThat(recovered.getLast().timestamp()).isEqualTo(entry(50).timestamp());
+        }
+    }
+
+    @Test
+    void recover_dropsTornTail() throws Exception {
+        Path file = dir.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(file, 16, Long.MAX_VALUE)) {
+            journal.recover();
+            journal.start(entries -> { });
+            journal.append(entry(1)).join();
+            journal.append(entry(2)).join();
+        }
+        corruptLastEntry(file);
+
+        try (LedgerJournal reopened = new LedgerJournal(file, 16, Long.MAX_VALUE)) {
+            List<JournalEntry> recovered = reopened.recover();
+            assertThat(recovered).extracting(JournalEntry::transferId).containsExactly(1L);
+            reopened.start(entries -> { });
+            assertThat(reopened.append(entry(3)).join().sequence()).isEqualTo(2L);
+        }
+    }
+
+    @Test
+    void reset_discardsRecoveredEntries() throws Exception {
+        Path file = dir.resolve("ledger.journal");
+        try (LedgerJournal journal = new LedgerJournal(file, 16, Long.MAX_VALUE)) {
+            journal.recover();
+            journal.start(entries -> { });
+            journal.append(entry(1)).join();
+        }
+        try (LedgerJournal journal = new LedgerJournal(file, 16, Long.MAX_VALUE)) {
+            assertThat(journal.recover()).hasSize(1);
+            journal.reset();
+        }
+        try (LedgerJournal journal = new LedgerJournal(file, 16, Long.MAX_VALUE)) {
+            assertThat(journal.recover()).isEmpty();
+        }
+    }
+
+    @Test
+    void append_afterClose_fails() throws Exception {
+        LedgerJournal journal = new LedgerJournal(dir.resolve("ledger.journal"), 16, Long.MAX_VALUE);
+        journal.recover();
+        journal.start(entries -> { });
+        journal.close();
+
+        assertThat(journal.append(entry(1))).isCompletedExceptionally();
+    }
+
+    private static JournalEntry entry(long id) {
+        return new JournalEntry(0, id, 1L, 2L, new BigDecimal(id + ".01"),
+                LocalDateTime.of(2024, 1, 1, 12, 0).plusNanos(id * 1000));
+    }
+
+    private static void corruptLastEntry(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), channel.size() - 10);
+        }
+    }
+}
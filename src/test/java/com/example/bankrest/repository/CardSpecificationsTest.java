@@ -0,0 +1,92 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.dto.CardSearchFilter;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardStatus;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardSpecificationsTest {
+
+    @Mock
+    private Root<Card> card;
+
+    @Mock
+    private CriteriaQuery<?> query;
+
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private CriteriaBuilder cb;
+
+    @Mock
+    private Path<Object> path;
+
+    @Mock
+    private Expression<String> lowerOwner;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(card.get(anyString())).thenReturn(path);
+        when(path.get(anyString())).thenReturn(path);
+        when(cb.lower(any())).thenReturn(lowerOwner);
+    }
+
+    @Test
+    void ownerStartsWith_escapesLikeWildcards() {
+        CardSpecifications.ownerStartsWith(" 50%_Off\\ ").toPredicate(card, query, cb);
+
+        verify(cb).like(lowerOwner, "50\\%\\_off\\\\%", '\\');
+    }
+
+    @Test
+    void ownerSimilarTo_usesTrigramOperatorOnLowercaseOwner() {
+        CardSpecifications.ownerSimilarTo(" Jon Doe ").toPredicate(card, query, cb);
+
+        verify(cb).literal("jon doe");
+        verify(cb).function(eq("trgm_similar"), eq(Boolean.class), same(lowerOwner), any());
+        verify(cb).isTrue(any());
+    }
+
+    @Test
+    void matching_appliesOnlyGivenFilters() {
+        CardSearchFilter filter = CardSearchFilter.builder()
+                .status(CardStatus.ACTIVE)
+                .expiryTo(LocalDate.of(2026, 1, 31))
+                .userId(7L)
+                .build();
+
+        CardSpecifications.matching(filter).toPredicate(card, query, cb);
+
+        verify(cb).equal(path, CardStatus.ACTIVE);
+        verify(cb).lessThanOrEqualTo(any(), eq(LocalDate.of(2026, 1, 31)));
+        verify(cb).equal(path, 7L);
+        verify(cb, never()).greaterThanOrEqualTo(any(), any(LocalDate.class));
+        verify(cb, never()).like(any(), anyString(), anyChar());
+        verify(card, never()).get("last4");
+    }
+
+    @Test
+    void matching_withoutFiltersHasNoPredicate() {
+        Predicate predicate = CardSpecifications.matching(new CardSearchFilter()).toPredicate(card, query, cb);
+
+        assertThat(predicate).isNull();
+    }
+}
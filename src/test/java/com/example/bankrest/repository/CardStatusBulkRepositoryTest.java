@@ -0,0 +1,29 @@
+package com.example.bankrest.repository;
+
+import com.example.bankrest.entity.CardOperationHistory.OperationType;
+import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.repository.CardStatusBulkRepository.StatusChange;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardStatusBulkRepositoryTest {
+
+    @Test
+    void changeStatusSql_blockSkipsExpiredCards() {
+        String sql = CardStatusBulkRepository.changeStatusSql("id = ANY (?)",
+                new StatusChange(CardStatus.BLOCKED, OperationType.BLOCK, "Blocked", 1L, null), false);
+
+        assertThat(sql).contains("AND status <> 'EXPIRED'").doesNotContain("expiry_date");
+    }
+
+    @Test
+    void changeStatusSql_activationSkipsCardsPastExpiryDate() {
+        String sql = CardStatusBulkRepository.changeStatusSql("user_id = ?",
+                new StatusChange(CardStatus.ACTIVE, OperationType.ACTIVATE, "Activated", 1L, LocalDate.now()), true);
+
+        assertThat(sql).contains("AND expiry_date >= ?").doesNotContain("'EXPIRED'").contains("LIMIT ?");
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.bankrest.security;
+
+import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.exception.CardNotFoundException;
+import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.CardRepository.CardOwnership;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class CardAccessTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    private CardAccess cardAccess;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        cardAccess = new CardAccess(cardRepository);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void isOwner_checksAllCardsWithOneQuery() {
+        when(cardRepository.findOwnershipByIdIn(Set.of(1L, 2L)))
+                .thenReturn(List.of(ownership(1L, "alice"), ownership(2L, "alice")));
+
+        assertThat(cardAccess.isOwner("alice", List.of(1L, 2L))).isTrue();
+        assertThat(cardAccess.isOwner("bob", List.of(1L, 2L))).isFalse();
+
+        verify(cardRepository, times(2)).findOwnershipByIdIn(anyCollection());
+        verifyNoMoreInteractions(cardRepository);
+    }
+
+    @Test
+    void isOwner_falseWhenAnyCardBelongsToAnotherUser() {
+        when(cardRepository.findOwnershipByIdIn(Set.of(1L, 2L)))
+                .thenReturn(List.of(ownership(1L, "alice"), ownership(2L, "bob")));
+
+        assertThat(cardAccess.isOwner("alice", List.of(1L, 2L))).isFalse();
+    }
+
+    @Test
+    void isOwner_sameCardTwiceQueriesItOnce() {
+        when(cardRepository.findOwnershipByIdIn(Set.of(1L))).thenReturn(List.of(ownership(1L, "alice")));
+
+        assertThat(cardAccess.isOwner("alice", List.of(1L, 1L))).isTrue();
+    }
+
+    @Test
+    void isOwner_missingCardThrowsNotFound() {
+        when(cardRepository.findOwnershipByIdIn(Set.of(1L, 2L))).thenReturn(List.of(ownership(1L, "alice")));
+
+        assertThatThrownBy(() -> cardAccess.isOwner("alice", List.of(1L, 2L)))
+                .isInstanceOf(CardNotFoundException.class)
+                .hasMessageContaining("2");
+    }
+
+    @Test
+    void canAccess_adminAuthorityAllowsForeignCards() {
+        when(cardRepository.findOwnershipByIdIn(Set.of(1L))).thenReturn(List.of(ownership(1L, "alice")));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+
+        assertThat(cardAccess.canAccess("admin", List.of(1L))).isTrue();
+    }
+
+    @Test
+    void canAccess_userAuthorityDeniesForeignCards() {
+        when(cardRepository.findOwnershipByIdIn(Set.of(1L))).thenReturn(List.of(ownership(1L, "alice")));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "bob", null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        assertThat(cardAccess.canAccess("bob", List.of(1L))).isFalse();
+        assertThat(cardAccess.canAccess("alice", List.of(1L))).isTrue();
+    }
+
+    @Test
+    void getOwnership_returnsOwnerAndStatus() {
+        when(cardRepository.findOwnershipByIdIn(Set.of(1L))).thenReturn(List.of(ownership(1L, "alice")));
+
+        CardOwnership result = cardAccess.getOwnership(1L);
+
+        assertThat(result.getUsername()).isEqualTo("alice");
+        assertThat(result.getStatus()).isEqualTo(CardStatus.ACTIVE);
+    }
+
+    private static CardOwnership ownership(Long id, String username) {
+        return new CardOwnership() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getUserId() {
+                return (long) username.hashCode();
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+
+            @Override
+            public CardStatus getStatus() {
+                return CardStatus.ACTIVE;
+            }
+        };
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.BalanceReconciliationDto;
+import com.example.bankrest.dto.BalanceReconciliationDto.Status;
+import com.example.bankrest.exception.ReconciliationInProgressException;
+import com.example.bankrest.repository.ReconciliationRepository;
+import com.example.bankrest.repository.ReconciliationRepository.AmountConsumer;
+import com.example.bankrest.repository.ReconciliationRepository.CardBalance;
+import com.example.bankrest.repository.ReconciliationRepository.IdBounds;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BalanceReconciliationServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-11-15T12:00:00Z"), ZoneOffset.UTC);
+
+    @Mock
+    private ReconciliationRepository reconciliationRepository;
+
+    @Mock
+    private TransactionTemplate snapshotTransaction;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BalanceReconciliationService service;
+
+    /**
+     * Переводы: from, to, сумма.
+     */
+    private final List<Object[]> transfers = List.of(
+            new Object[]{1L, 2L, "100.00"},
+            new Object[]{2L, 5L, "30.50"},
+            new Object[]{5L, 1L, "10.00"});
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        doAnswer(i -> {
+            i.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(snapshotTransaction).executeWithoutResult(any());
+        doAnswer(i -> {
+            boolean outgoing = i.getArgument(0);
+            long fromId = i.getArgument(1);
+            long toId = i.getArgument(2);
+            AmountConsumer consumer = i.getArgument(4);
+            for (Object[] transfer : transfers) {
+                long cardId = (Long) (outgoing ? transfer[0] : transfer[1]);
+                if (cardId >= fromId && cardId < toId) {
+                    consumer.accept(cardId, new BigDecimal((String) transfer[2]));
+                }
+            }
+            return null;
+        }).when(reconciliationRepository).streamTransferAmounts(anyBoolean(), anyLong(), anyLong(), anyInt(), any());
+        meterRegistry = new SimpleMeterRegistry();
+        service = new BalanceReconciliationService(reconciliationRepository, snapshotTransaction, meterRegistry,
+                CLOCK, 2, 2, 100, 10);
+    }
+
+    @Test
+    void runNow_reportsCardsWhoseBalanceDiffersFromTheirTransfers() {
+        when(reconciliationRepository.findCardIdBounds()).thenReturn(new IdBounds(1, 5));
+        stubCards(
+                new CardBalance(1, new BigDecimal("910.00"), new BigDecimal("1000.00"), BigDecimal.ZERO),
+                new CardBalance(2, new BigDecimal("69.50"), BigDecimal.ZERO, BigDecimal.ZERO),
+                new CardBalance(5, new BigDecimal("24.00"), BigDecimal.ZERO, new BigDecimal("4.50")));
+
+        BalanceReconciliationDto report = service.runNow();
+
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(report.getRangesTotal()).isEqualTo(3);
+        assertThat(report.getRangesCompleted()).isEqualTo(3);
+        assertThat(report.getCardsChecked()).isEqualTo(3);
+        assertThat(report.getTransfersRead()).isEqualTo(6);
+        assertThat(report.getMismatchCount()).isEqualTo(1);
+        assertThat(report.getMismatches()).singleElement().satisfies(mismatch -> {
+            assertThat(mismatch.getCardId()).isEqualTo(5L);
+            assertThat(mismatch.getExpected()).isEqualByComparingTo("25.00");
+            assertThat(mismatch.getActual()).isEqualByComparingTo("24.00");
+        });
+        verify(snapshotTransaction, times(3)).executeWithoutResult(any());
+        verify(reconciliationRepository).streamCardBalances(eq(1L), eq(3L), any());
+        verify(reconciliationRepository).streamCardBalances(eq(3L), eq(5L), any());
+        verify(reconciliationRepository).streamCardBalances(eq(5L), eq(6L), any());
+        assertThat(meterRegistry.get("bank.reconciliation.mismatches").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.reconciliation.running").gauge().value()).isZero();
+    }
+
+    @Test
+    void runNow_countsReferencesToMissingTransfers() {
+        when(reconciliationRepository.findCardIdBounds()).thenReturn(new IdBounds(1, 5));
+        stubCards();
+        when(reconciliationRepository.countOrphanedLedgerEntries(3L, 5L)).thenReturn(2L);
+        when(reconciliationRepository.countOrphanedIdempotencyKeys()).thenReturn(1L);
+
+        BalanceReconciliationDto report = service.runNow();
+
+        assertThat(report.getStatus()).isEqualTo(Status.COMPLETED);
+        assertThat(report.getOrphanedLedgerEntries()).isEqualTo(2);
+        assertThat(report.getOrphanedIdempotencyKeys()).isEqualTo(1);
+        verify(reconciliationRepository).countOrphanedLedgerEntries(1L, 3L);
+        verify(reconciliationRepository).countOrphanedLedgerEntries(5L, 6L);
+        assertThat(meterRegistry.get("bank.reconciliation.orphaned.entries").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void runNow_failedRangeMarksRunFailedAndAllowsRestart() {
+        when(reconciliationRepository.findCardIdBounds()).thenReturn(new IdBounds(1, 1));
+        doThrow(new IllegalStateException("connection lost"))
+                .when(reconciliationRepository).streamCardBalances(anyLong(), anyLong(), any());
+
+        BalanceReconciliationDto report = service.runNow();
+
+        assertThat(report.getStatus()).isEqualTo(Status.FAILED);
+        assertThat(report.getError()).contains("connection lost");
+        assertThat(report.getFinishedAt()).isNotNull();
+
+        when(reconciliationRepository.findCardIdBounds()).thenReturn(null);
+        assertThat(service.runNow().getStatus()).isEqualTo(Status.COMPLETED);
+    }
+
+    @Test
+    void start_rejectsSecondRunWhileFirstIsInProgress() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(reconciliationRepository.findCardIdBounds()).thenAnswer(i -> {
+            entered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+
+        assertThat(service.start().getStatus()).isEqualTo(Status.RUNNING);
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThatThrownBy(() -> service.start()).isInstanceOf(ReconciliationInProgressException.class);
+        release.countDown();
+    }
+
+    private void stubCards(CardBalance... cards) {
+        doAnswer(i -> {
+            long fromId = i.getArgument(0);
+            long toId = i.getArgument(1);
+            Consumer<CardBalance> consumer = i.getArgument(2);
+            for (CardBalance card : cards) {
+                if (card.cardId() >= fromId && card.cardId() < toId) {
+                    consumer.accept(card);
+                }
+            }
+            return null;
+        }).when(reconciliationRepository).streamCardBalances(anyLong(), anyLong(), any());
+    }
+}
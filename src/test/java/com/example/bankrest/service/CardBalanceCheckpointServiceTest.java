@@ -0,0 +1,68 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class CardBalanceCheckpointServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-03-01T12:00:00Z"), ZoneOffset.UTC);
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private CardBalanceCheckpointService service;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null));
+        service = new CardBalanceCheckpointService(ledgerEntryRepository, transactionTemplate, CLOCK,
+                false, Duration.ofMinutes(1), 100, Duration.ofSeconds(10));
+    }
+
+    @Test
+    void run_checkpointsInChunksUpToLaggedBoundary() {
+        LocalDateTime boundary = LocalDateTime.of(2024, 3, 1, 11, 59, 50);
+        when(ledgerEntryRepository.lockCheckpoint()).thenReturn(OptionalLong.of(0), OptionalLong.of(100), OptionalLong.of(150));
+        when(ledgerEntryRepository.lastEntryIdBefore(boundary)).thenReturn(150L);
+
+        assertThat(service.run()).isEqualTo(2);
+
+        verify(ledgerEntryRepository).checkpointBalances(0, 100);
+        verify(ledgerEntryRepository).updateCheckpoint(100);
+        verify(ledgerEntryRepository).checkpointBalances(100, 150);
+        verify(ledgerEntryRepository).updateCheckpoint(150);
+        verify(transactionTemplate, times(3)).execute(any());
+    }
+
+    @Test
+    void run_checkpointHeldByAnotherNode_doesNothing() {
+        when(ledgerEntryRepository.lockCheckpoint()).thenReturn(OptionalLong.empty());
+
+        assertThat(service.run()).isZero();
+
+        verify(ledgerEntryRepository, never()).checkpointBalances(anyLong(), anyLong());
+        verify(ledgerEntryRepository, never()).updateCheckpoint(anyLong());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardBlockRequest;
+import com.example.bankrest.entity.CardOperationHistory;
+import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.repository.CardBlockRequestRepository;
+import com.example.bankrest.security.CardAccess;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardBlockRequestServiceTest {
+
+    @Mock
+    private CardBlockRequestRepository blockRequestRepository;
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private CardAccess cardAccess;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private CardOperationHistoryService operationHistoryService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final User admin = User.builder().id(9L).username("admin").build();
+
+    private CardBlockRequestService blockRequestService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(userService.getUserByUsername("admin")).thenReturn(admin);
+        when(blockRequestRepository.saveAndFlush(any())).thenAnswer(i -> i.getArgument(0));
+        CardConcurrencyPolicy concurrencyPolicy = new CardConcurrencyPolicy(new SimpleMeterRegistry(),
+                CardConcurrencyPolicy.LockMode.OPTIMISTIC, 3, Duration.ZERO, Duration.ZERO);
+        blockRequestService = new CardBlockRequestService(blockRequestRepository, cardService, cardAccess,
+                userService, operationHistoryService, concurrencyPolicy, transactionTemplate);
+    }
+
+    @Test
+    void processBlockRequest_approved_recordsHistory() {
+        Card card = Card.builder().id(1L).status(CardStatus.ACTIVE).build();
+        when(blockRequestRepository.findById(5L)).thenReturn(Optional.of(pendingRequest(card)));
+
+        CardBlockRequest processed = blockRequestService.processBlockRequest(5L, "admin", true, "ok");
+
+        assertThat(processed.getStatus()).isEqualTo(CardBlockRequest.BlockRequestStatus.APPROVED);
+        assertThat(processed.getAdmin()).isSameAs(admin);
+        verify(operationHistoryService).recordOperation(card, CardOperationHistory.OperationType.BLOCK, admin,
+                CardStatus.ACTIVE, CardStatus.BLOCKED, "Blocked via user request: lost");
+    }
+
+    @Test
+    void processBlockRequest_rejected_leavesCardUnchanged() {
+        Card card = Card.builder().id(1L).status(CardStatus.ACTIVE).build();
+        when(blockRequestRepository.findById(5L)).thenReturn(Optional.of(pendingRequest(card)));
+
+        CardBlockRequest processed = blockRequestService.processBlockRequest(5L, "admin", false, "no");
+
+        assertThat(processed.getStatus()).isEqualTo(CardBlockRequest.BlockRequestStatus.REJECTED);
+        assertThat(card.getStatus()).isEqualTo(CardStatus.ACTIVE);
+        verifyNoInteractions(operationHistoryService);
+    }
+
+    @Test
+    void processBlockRequest_lostRace_seesAlreadyProcessedRequest() {
+        Card card = Card.builder().id(1L).status(CardStatus.ACTIVE).build();
+        CardBlockRequest processedElsewhere = pendingRequest(Card.builder().id(1L).status(CardStatus.BLOCKED).build());
+        processedElsewhere.setStatus(CardBlockRequest.BlockRequestStatus.APPROVED);
+        when(blockRequestRepository.findById(5L)).thenReturn(Optional.of(pendingRequest(card)),
+                Optional.of(processedElsewhere));
+        doThrow(new ObjectOptimisticLockingFailureException(CardBlockRequest.class, 5L))
+                .when(blockRequestRepository).saveAndFlush(any());
+
+        assertThatThrownBy(() -> blockRequestService.processBlockRequest(5L, "admin", true, "ok"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Request has already been processed");
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    private static CardBlockRequest pendingRequest(Card card) {
+        return CardBlockRequest.builder()
+                .id(5L)
+                .card(card)
+                .reason("lost")
+                .status(CardBlockRequest.BlockRequestStatus.PENDING)
+                .build();
+    }
+}
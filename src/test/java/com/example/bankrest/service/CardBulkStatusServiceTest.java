@@ -0,0 +1,113 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.BulkCardStatusResultDto;
+import com.example.bankrest.entity.CardOperationHistory;
+import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.repository.CardStatusBulkRepository;
+import com.example.bankrest.repository.CardStatusBulkRepository.StatusChange;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardBulkStatusServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-11-15T12:00:00Z"), ZoneOffset.UTC);
+
+    @Mock
+    private CardStatusBulkRepository bulkRepository;
+
+    @Mock
+    private CardCache cardCache;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final User admin = User.builder().id(9L).username("admin").build();
+
+    private CardBulkStatusService bulkStatusService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        bulkStatusService = new CardBulkStatusService(bulkRepository, cardCache, transactionTemplate, CLOCK, 2);
+    }
+
+    @Test
+    void blockCards_splitsSortedDistinctIdsIntoChunks() {
+        when(bulkRepository.changeStatusOfCards(anyCollection(), any(), any()))
+                .thenReturn(List.of(1L, 2L), List.of(5L));
+
+        BulkCardStatusResultDto result = bulkStatusService.blockCards(List.of(5L, 2L, 1L, 2L, 7L), null, admin);
+
+        assertThat(result.getStatus()).isEqualTo(CardStatus.BLOCKED);
+        assertThat(result.getUpdated()).isEqualTo(3);
+        ArgumentCaptor<StatusChange> change = ArgumentCaptor.forClass(StatusChange.class);
+        verify(bulkRepository).changeStatusOfCards(eq(List.of(1L, 2L)), change.capture(), any());
+        verify(bulkRepository).changeStatusOfCards(eq(List.of(5L, 7L)), any(), any());
+        assertThat(change.getValue()).isEqualTo(new StatusChange(CardStatus.BLOCKED,
+                CardOperationHistory.OperationType.BLOCK, "Card blocked", 9L, null));
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(cardCache).invalidateAfterCommit(List.of(1L, 2L));
+        verify(cardCache).invalidateAfterCommit(List.of(5L));
+    }
+
+    @Test
+    void activateCards_byUserRepeatsUntilChunkIsNotFull() {
+        when(bulkRepository.changeStatusOfUserCards(eq(3L), eq(2), any(), any()))
+                .thenReturn(List.of(10L, 11L), List.of(12L, 13L), List.of());
+
+        BulkCardStatusResultDto result = bulkStatusService.activateCards(null, 3L, admin);
+
+        assertThat(result.getStatus()).isEqualTo(CardStatus.ACTIVE);
+        assertThat(result.getUpdated()).isEqualTo(4);
+        ArgumentCaptor<StatusChange> change = ArgumentCaptor.forClass(StatusChange.class);
+        verify(bulkRepository, times(3)).changeStatusOfUserCards(eq(3L), eq(2), change.capture(), any());
+        assertThat(change.getValue().activeOn()).isEqualTo(LocalDate.of(2024, 11, 15));
+        assertThat(change.getValue().operationType()).isEqualTo(CardOperationHistory.OperationType.ACTIVATE);
+    }
+
+    @Test
+    void blockCards_requiresExactlyOneTarget() {
+        assertThatThrownBy(() -> bulkStatusService.blockCards(List.of(1L), 3L, admin))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Either card IDs or user ID must be specified");
+        assertThatThrownBy(() -> bulkStatusService.blockCards(Collections.emptyList(), null, admin))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Either card IDs or user ID must be specified");
+        verifyNoInteractions(bulkRepository, transactionTemplate);
+    }
+
+    @Test
+    void blockCards_rejectsInvalidOrTooManyIds() {
+        List<Long> tooMany = LongStream.rangeClosed(1, CardBulkStatusService.MAX_CARD_IDS + 1).boxed().toList();
+
+        assertThatThrownBy(() -> bulkStatusService.blockCards(List.of(1L, 0L), null, admin))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Card ID must be a positive number");
+        assertThatThrownBy(() -> bulkStatusService.blockCards(tooMany, null, admin))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cannot contain more than");
+        verifyNoInteractions(bulkRepository);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CardCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Long, Optional<Card>> loader = id -> {
+        loads.incrementAndGet();
+        return Optional.of(Card.builder().id(id).status(CardStatus.ACTIVE).balance(new BigDecimal("10.00")).build());
+    };
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardCache cache;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CardCache(meterRegistry, 100, Duration.ofMinutes(5), clock::get);
+    }
+
+    @Test
+    void get_servesCopiesWithoutBalanceAndLoadsOnce() {
+        Card first = cache.get(1L, loader).orElseThrow();
+        first.setStatus(CardStatus.BLOCKED);
+        Card second = cache.get(1L, loader).orElseThrow();
+
+        assertThat(loads).hasValue(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getStatus()).isEqualTo(CardStatus.ACTIVE);
+        assertThat(second.getBalance()).isNull();
+        assertThat(meterRegistry.get("bank.cards.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.cards.cache.requests").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void get_doesNotCacheMissingCard() {
+        AtomicInteger calls = new AtomicInteger();
+
+        cache.get(1L, id -> {
+            calls.incrementAndGet();
+            return Optional.empty();
+        });
+        cache.get(1L, id -> {
+            calls.incrementAndGet();
+            return Optional.empty();
+        });
+
+        assertThat(calls).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void get_reloadsAfterTtl() {
+        cache.get(1L, loader);
+        clock.addAndGet(Duration.ofMinutes(5).plusNanos(1).toNanos());
+
+        cache.get(1L, loader);
+
+        assertThat(loads).hasValue(2);
+        assertThat(meterRegistry.get("bank.cards.cache.evictions").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidate_removesCardsFromAllSegments() {
+        cache.get(1L, loader);
+        cache.get(2L, loader);
+        cache.get(2L, loader);
+
+        cache.invalidate(List.of(1L, 2L));
+        cache.get(1L, loader);
+        cache.get(2L, loader);
+
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    void get_doesNotCacheLoadInvalidatedWhileLoading() {
+        cache.get(1L, id -> {
+            cache.invalidate(List.of(id));
+            return loader.apply(id);
+        });
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void admission_keepsFrequentlyUsedCardsAgainstScan() {
+        for (long id = 1; id <= 50; id++) {
+            for (int i = 0; i < 5; i++) {
+                cache.get(id, loader);
+            }
+        }
+        loads.set(0);
+
+        for (long id = 1000; id < 2000; id++) {
+            cache.get(id, loader);
+        }
+        int scanLoads = loads.getAndSet(0);
+        for (long id = 1; id <= 50; id++) {
+            cache.get(id, loader);
+        }
+
+        assertThat(scanLoads).isEqualTo(1000);
+        // Частоты в sketch приближённые, поэтому допускается вытеснение единичных часто используемых карт
+        assertThat(loads.get()).isLessThanOrEqualTo(2);
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void zeroSizeCacheLoadsEveryTime() {
+        CardCache disabled = new CardCache(new SimpleMeterRegistry(), 0, Duration.ofMinutes(5), clock::get);
+
+        disabled.get(1L, loader);
+        disabled.get(1L, loader);
+
+        assertThat(loads).hasValue(2);
+        assertThat(disabled.size()).isZero();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.exception.CardConflictException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CardConcurrencyPolicyTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardConcurrencyPolicy policy;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        policy = new CardConcurrencyPolicy(meterRegistry, CardConcurrencyPolicy.LockMode.OPTIMISTIC, 3,
+                Duration.ofMillis(1), Duration.ofMillis(5));
+    }
+
+    @Test
+    void execute_retriesConflictsAndCountsThem() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = policy.execute("transfer", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException(Card.class, 1L);
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("bank.cards.conflicts").tag("operation", "transfer").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("bank.cards.conflict.retries").tag("operation", "transfer").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("bank.cards.conflict.exhausted").tag("operation", "transfer").counter().count()).isZero();
+    }
+
+    @Test
+    void execute_givesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute("block", () -> {
+            attempts.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Card.class, 1L);
+        })).isInstanceOf(CardConflictException.class)
+                .hasCauseInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("bank.cards.conflicts").tag("operation", "block").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("bank.cards.conflict.exhausted").tag("operation", "block").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_doesNotRetryOtherFailures() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute("transfer", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("Both cards must be active");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+}
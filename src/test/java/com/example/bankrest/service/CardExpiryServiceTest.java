@@ -0,0 +1,67 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.CardExpiryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardExpiryServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-11-15T12:00:00Z"), ZoneOffset.UTC);
+    private static final LocalDate TODAY = LocalDate.of(2024, 11, 15);
+
+    @Mock
+    private CardExpiryRepository cardExpiryRepository;
+
+    @Mock
+    private CardCache cardCache;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private CardExpiryService expiryService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        expiryService = new CardExpiryService(cardExpiryRepository, cardCache, transactionTemplate, CLOCK, false,
+                Duration.ofHours(1), 100);
+    }
+
+    @Test
+    void run_expiresChunksUntilOneIsNotFull() {
+        when(cardExpiryRepository.expireChunk(eq(TODAY), eq(100), any())).thenReturn(100, 100, 42);
+
+        assertThat(expiryService.run()).isEqualTo(242);
+
+        verify(cardExpiryRepository, times(3)).expireChunk(eq(TODAY), eq(100), any());
+        verify(transactionTemplate, times(3)).execute(any());
+        verify(cardCache).invalidateAll();
+    }
+
+    @Test
+    void run_doesNothingWhenNoCardsExpired() {
+        when(cardExpiryRepository.expireChunk(any(), anyInt(), any())).thenReturn(0);
+
+        assertThat(expiryService.run()).isZero();
+
+        verify(cardExpiryRepository).expireChunk(eq(TODAY), eq(100), any());
+        verifyNoInteractions(cardCache);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.exception.CardBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CardLocksTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardLocks cardLocks;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        cardLocks = new CardLocks(meterRegistry, 10, Duration.ofSeconds(5));
+    }
+
+    @Test
+    void stripeCount_isRoundedUpToPowerOfTwo() {
+        assertThat(cardLocks.stripeCount()).isEqualTo(16);
+        assertThat(cardLocks.stripeOf(1L)).isBetween(0, 15);
+    }
+
+    @Test
+    void callWithLocks_opposingTransfersDoNotDeadlock() throws Exception {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                long from = i % 2 == 0 ? 1L : 2L;
+                long to = i % 2 == 0 ? 2L : 1L;
+                tasks.add(() -> cardLocks.callWithLocks(from, to, () -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    inside.decrementAndGet();
+                    return 1;
+                }));
+            }
+            for (Future<Integer> future : executor.invokeAll(tasks, 10, TimeUnit.SECONDS)) {
+                assertThat(future.get()).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(maxInside.get()).isEqualTo(1);
+        assertThat(meterRegistry.find("bank.cards.lock.wait").timers())
+                .extracting(timer -> timer.getId().getTag("stripe"))
+                .contains(Integer.toString(cardLocks.stripeOf(1L)), Integer.toString(cardLocks.stripeOf(2L)));
+    }
+
+    @Test
+    void callWithLocks_isReentrantForSameThread() {
+        Integer result = cardLocks.callWithLocks(1L, 2L, () -> cardLocks.callWithLocks(2L, 1L, () -> 7));
+
+        assertThat(result).isEqualTo(7);
+        long recorded = meterRegistry.find("bank.cards.lock.wait").timers().stream()
+                .mapToLong(timer -> timer.count())
+                .sum();
+        assertThat(recorded).isEqualTo(cardLocks.stripeOf(1L) == cardLocks.stripeOf(2L) ? 1 : 2);
+    }
+
+    @Test
+    void callWithLocks_throwsCardBusyAfterTimeout() throws Exception {
+        cardLocks = new CardLocks(meterRegistry, 16, Duration.ofMillis(50));
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> cardLocks.callWithLocks(1L, 1L, () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        held.await();
+
+        try {
+            assertThatThrownBy(() -> cardLocks.callWithLocks(1L, 2L, () -> 1))
+                    .isInstanceOf(CardBusyException.class);
+            assertThat(meterRegistry.get("bank.cards.lock.timeouts").counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.CardRepository.EncryptedNumber;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardNumberIndexBackfillServiceTest {
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private final EncryptionService encryptionService = new EncryptionService("1234567890123456");
+    private final CardNumberIndexService indexService =
+            new CardNumberIndexService("card-number-index-secret-0123456789");
+    private CardNumberIndexBackfillService backfillService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        backfillService = new CardNumberIndexBackfillService(cardRepository, encryptionService, indexService,
+                transactionTemplate, false, 2);
+    }
+
+    @Test
+    void run_indexesCardsInChunksUntilNoneLeft() {
+        when(cardRepository.findByNumberHashIsNullOrderByIdAsc(Limit.of(2)))
+                .thenReturn(List.of(card(1L, "1111 2222 3333 4444"), card(2L, "5555666677778888")))
+                .thenReturn(List.of(card(3L, "9999 0000 1111 2222")));
+
+        assertThat(backfillService.run()).isEqualTo(3);
+
+        verify(cardRepository).updateNumberIndex(1L, indexService.hash("1111222233334444"), "4444");
+        verify(cardRepository).updateNumberIndex(2L, indexService.hash("5555666677778888"), "8888");
+        verify(cardRepository).updateNumberIndex(3L, indexService.hash("9999000011112222"), "2222");
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void run_doesNothingWhenAllCardsIndexed() {
+        when(cardRepository.findByNumberHashIsNullOrderByIdAsc(any())).thenReturn(List.of());
+
+        assertThat(backfillService.run()).isZero();
+
+        verify(cardRepository, never()).updateNumberIndex(any(), any(), any());
+    }
+
+    private EncryptedNumber card(Long id, String cardNumber) {
+        String encrypted = encryptionService.encrypt(cardNumber);
+        return new EncryptedNumber() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getEncryptedNumber() {
+                return encrypted;
+            }
+        };
+    }
+}
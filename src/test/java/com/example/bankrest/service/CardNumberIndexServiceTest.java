@@ -0,0 +1,37 @@
+package com.example.bankrest.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CardNumberIndexServiceTest {
+
+    private final CardNumberIndexService indexService =
+            new CardNumberIndexService("card-number-index-secret-0123456789");
+
+    @Test
+    void hash_isDeterministicAndIgnoresSeparators() {
+        String hash = indexService.hash("1234 5678 9012 3456");
+
+        assertThat(hash).hasSize(64).isEqualTo(indexService.hash("1234567890123456"));
+        assertThat(hash).isNotEqualTo(indexService.hash("1234 5678 9012 3457"));
+    }
+
+    @Test
+    void hash_dependsOnSecret() {
+        CardNumberIndexService other = new CardNumberIndexService("another-card-number-index-secret-42");
+
+        assertThat(other.hash("1234 5678 9012 3456")).isNotEqualTo(indexService.hash("1234 5678 9012 3456"));
+    }
+
+    @Test
+    void last4_returnsLastDigits() {
+        assertThat(CardNumberIndexService.last4("1234 5678 9012 3456")).isEqualTo("3456");
+    }
+
+    @Test
+    void constructor_withShortSecret_throwsException() {
+        assertThatThrownBy(() -> new CardNumberIndexService("short"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.PageResponse;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.CardOperationHistory;
+import com.example.bankrest.entity.CardStatus;
+import com.example.bankrest.repository.ArchiveRepository.ArchivedPartition;
+import com.example.bankrest.repository.CardOperationHistoryRepository;
+import com.example.bankrest.service.ColdStorageService.ArchivedOperation;
+import com.example.bankrest.util.PageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CardOperationHistoryServiceTest {
+
+    private static final LocalDateTime HORIZON = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Mock
+    private CardOperationHistoryRepository operationHistoryRepository;
+
+    @Mock
+    private ColdStorageService coldStorage;
+
+    private final Card card = Card.builder().id(1L).build();
+
+    private final List<ArchivedPartition> archived = List.of(
+            new ArchivedPartition(YearMonth.of(2023, 12), "card_operations_history_2023_12.col", 5));
+
+    private CardOperationHistoryService historyService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        historyService = new CardOperationHistoryService(operationHistoryRepository, coldStorage);
+    }
+
+    @Test
+    void getCardHistory_withoutArchiveReadsOnlyTable() {
+        CardOperationHistory entry = CardOperationHistory.builder().id(3L).build();
+        when(operationHistoryRepository.findByCardAndCreatedAtGreaterThanEqualOrderByCreatedAtDescIdDesc(
+                eq(card), argThat(from -> from.getYear() == 1970), eq(PageRequest.of(0, 10))))
+                .thenReturn(new SliceImpl<>(List.of(entry), PageRequest.of(0, 10), false));
+
+        PageResponse<CardOperationHistory> page = historyService.getCardHistory(card, PageRequest.of(0, 10), false);
+
+        assertThat(page.getContent()).containsExactly(entry);
+        verify(coldStorage, never()).scanOperations(any(), any(), any(), any());
+    }
+
+    @Test
+    void getCardHistory_fillsPageFromColdStorage() {
+        when(coldStorage.archived(ColdStorageService.OPERATIONS_HISTORY)).thenReturn(archived);
+        CardOperationHistory hot = CardOperationHistory.builder().id(9L).createdAt(HORIZON.plusDays(1)).build();
+        when(operationHistoryRepository.findByCardAndCreatedAtGreaterThanEqualOrderByCreatedAtDescIdDesc(
+                card, HORIZON, PageRequest.of(0, 3)))
+                .thenReturn(new SliceImpl<>(List.of(hot), PageRequest.of(0, 3), false));
+        archiveAnswers();
+
+        PageResponse<CardOperationHistory> page = historyService.getCardHistory(card, PageRequest.of(0, 3), true);
+
+        assertThat(page.getContent()).extracting(CardOperationHistory::getId).containsExactly(9L, 5L, 4L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getTotalElements()).isEqualTo(6L);
+        assertThat(page.getContent().get(1).getCard()).isSameAs(card);
+        assertThat(page.getContent().get(1).getPerformedBy()).isNull();
+        assertThat(page.getContent().get(2).getPerformedBy().getId()).isEqualTo(7L);
+        assertThat(page.getContent().get(2).getNewStatus()).isEqualTo(CardStatus.BLOCKED);
+    }
+
+    @Test
+    void getCardHistoryAfter_continuesFromTableIntoColdStorage() {
+        when(coldStorage.archived(ColdStorageService.OPERATIONS_HISTORY)).thenReturn(archived);
+        CardOperationHistory hot = CardOperationHistory.builder().id(9L).createdAt(HORIZON.plusDays(1)).build();
+        when(operationHistoryRepository.findByCardBefore(eq(1L), eq(HORIZON), any(), eq(Long.MAX_VALUE), eq(3)))
+                .thenReturn(List.of(hot));
+        archiveAnswers();
+
+        PageResponse<CardOperationHistory> page = historyService.getCardHistoryAfter(card, null, 2);
+
+        assertThat(page.getContent()).extracting(CardOperationHistory::getId).containsExactly(9L, 5L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(PageCursor.parse(page.getNextCursor())).isEqualTo(PageCursor.of(HORIZON.minusDays(1), 5L));
+    }
+
+    @Test
+    void getCardHistoryAfter_cursorBelowHorizonSkipsTable() {
+        when(coldStorage.archived(ColdStorageService.OPERATIONS_HISTORY)).thenReturn(archived);
+        PageCursor cursor = PageCursor.of(HORIZON.minusDays(3), 3L);
+
+        historyService.getCardHistoryAfter(card, cursor.encode(), 2);
+
+        verify(operationHistoryRepository, never()).findByCardBefore(any(), any(), any(), anyLong(), anyInt());
+        verify(coldStorage).scanOperations(eq(archived), eq(1L), eq(cursor), any());
+    }
+
+    /**
+     * Архив карты: пять операций по убыванию времени, id от 5 до 1.
+     */
+    private void archiveAnswers() {
+        doAnswer(i -> {
+            Predicate<ArchivedOperation> consumer = i.getArgument(3);
+            for (long id = 5; id > 0 && consumer.test(new ArchivedOperation(id, HORIZON.minusDays(6 - id),
+                    "BLOCK", id == 5 ? null : 7L, "ACTIVE", "BLOCKED", "Card blocked")); id--) {
+                // строки архива по убыванию времени
+            }
+            return null;
+        }).when(coldStorage).scanOperations(eq(archived), eq(1L), any(), any());
+    }
+}
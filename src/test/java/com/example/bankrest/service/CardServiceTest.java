@@ -1,23 +1,41 @@
 package com.example.bankrest.service;
 
+import com.example.bankrest.dto.CardDto;
+import com.example.bankrest.dto.CardSearchFilter;
+import com.example.bankrest.dto.PageResponse;
+import com.example.bankrest.dto.TransferDto;
 import com.example.bankrest.entity.*;
+import com.example.bankrest.exception.CardConflictException;
 import com.example.bankrest.exception.CardNotFoundException;
+import com.example.bankrest.ledger.LedgerEngine;
 import com.example.bankrest.repository.CardRepository;
+import com.example.bankrest.repository.LedgerEntryRepository;
+import com.example.bankrest.util.PageCursor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -29,9 +47,25 @@ class CardServiceTest {
     @Mock
     private EncryptionService encryptionService;
 
+    @Spy
+    private CardNumberIndexService cardNumberIndex = new CardNumberIndexService("card-number-index-secret-0123456789");
+
     @Mock
     private CardOperationHistoryService operationHistoryService;
 
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Spy
+    private CardConcurrencyPolicy concurrencyPolicy = new CardConcurrencyPolicy(new SimpleMeterRegistry(),
+            CardConcurrencyPolicy.LockMode.OPTIMISTIC, 3, Duration.ZERO, Duration.ZERO);
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private CardCache cardCache = new CardCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+
     @InjectMocks
     private CardService cardService;
 
@@ -41,6 +75,7 @@ class CardServiceTest {
             // Mock initialization complete
             assert mocks != null;
         }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null));
     }
 
     @Test
@@ -57,12 +92,103 @@ class CardServiceTest {
 
         assertThat(card.getEncryptedNumber()).isEqualTo(encrypted);
         assertThat(card.getMaskedNumber()).isEqualTo("**** **** **** 3456");
+        assertThat(card.getNumberHash()).isEqualTo(cardNumberIndex.hash("1234567890123456"));
+        assertThat(card.getLast4()).isEqualTo("3456");
         assertThat(card.getOwner()).isEqualTo("Owner");
         assertThat(card.getStatus()).isEqualTo(CardStatus.ACTIVE);
         assertThat(card.getBalance()).isEqualTo(BigDecimal.ZERO);
         assertThat(card.getUser()).isEqualTo(user);
     }
 
+    @Test
+    void createCards_savesAllCardsAndHistoryInOneBatch() {
+        when(encryptionService.encrypt(any())).thenAnswer(i -> "enc:" + i.getArgument(0));
+        when(cardRepository.findNumberHashesIn(any())).thenReturn(List.of());
+        when(cardRepository.saveAll(any())).thenAnswer(i -> List.copyOf(i.<Collection<Card>>getArgument(0)));
+        User user = User.builder().id(1L).build();
+        User admin = User.builder().id(2L).build();
+        LocalDate expiry = LocalDate.now().plusYears(1);
+        List<CardService.NewCard> newCards = List.of(
+                new CardService.NewCard("1111 2222 3333 4444", "Owner One", expiry, user),
+                new CardService.NewCard("5555 6666 7777 8888", " Owner Two ", expiry, user),
+                new CardService.NewCard("9999000011112222", "Owner Three", expiry, user));
+
+        List<Card> cards = cardService.createCards(newCards, admin);
+
+        assertThat(cards).extracting(Card::getMaskedNumber)
+                .containsExactly("**** **** **** 4444", "**** **** **** 8888", "**** **** **** 2222");
+        assertThat(cards).extracting(Card::getEncryptedNumber)
+                .containsExactly("enc:1111 2222 3333 4444", "enc:5555 6666 7777 8888", "enc:9999000011112222");
+        assertThat(cards.get(1).getOwner()).isEqualTo("Owner Two");
+        assertThat(cards).allSatisfy(card -> assertThat(card.getStatus()).isEqualTo(CardStatus.ACTIVE));
+        verify(cardRepository).saveAll(any());
+        verify(cardRepository, never()).save(any());
+        verify(operationHistoryService).recordOperations(cards, CardOperationHistory.OperationType.CREATE, admin,
+                null, CardStatus.ACTIVE, "Card created");
+    }
+
+    @Test
+    void createCards_invalidCard_reportsItsIndexAndSavesNothing() {
+        User user = User.builder().id(1L).build();
+        LocalDate expiry = LocalDate.now().plusYears(1);
+        List<CardService.NewCard> newCards = List.of(
+                new CardService.NewCard("1111 2222 3333 4444", "Owner", expiry, user),
+                new CardService.NewCard("1234", "Owner", expiry, user));
+
+        assertThatThrownBy(() -> cardService.createCards(newCards, user))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Card 1: ");
+        verify(cardRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void createCards_duplicateNumbers_throwsException() {
+        when(encryptionService.encrypt(any())).thenReturn("encrypted");
+        User user = User.builder().id(1L).build();
+        LocalDate expiry = LocalDate.now().plusYears(1);
+        List<CardService.NewCard> newCards = List.of(
+                new CardService.NewCard("1111 2222 3333 4444", "Owner", expiry, user),
+                new CardService.NewCard("1111222233334444", "Owner", expiry, user));
+
+        assertThatThrownBy(() -> cardService.createCards(newCards, user))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Duplicate card number");
+        verify(cardRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void createCards_numberAlreadyIssued_throwsException() {
+        when(encryptionService.encrypt(any())).thenReturn("encrypted");
+        String issuedHash = cardNumberIndex.hash("5555666677778888");
+        when(cardRepository.findNumberHashesIn(any())).thenReturn(List.of(issuedHash));
+        User user = User.builder().id(1L).build();
+        LocalDate expiry = LocalDate.now().plusYears(1);
+        List<CardService.NewCard> newCards = List.of(
+                new CardService.NewCard("1111 2222 3333 4444", "Owner", expiry, user),
+                new CardService.NewCard("5555 6666 7777 8888", "Owner", expiry, user));
+
+        assertThatThrownBy(() -> cardService.createCards(newCards, user))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Card number already exists: **** **** **** 8888");
+        verify(cardRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void getCardByNumber_findsCardByNumberIndex() {
+        CardDto card = CardDto.builder().id(7L).maskedNumber("**** **** **** 3456").build();
+        when(cardRepository.findCardDtoByNumberHash(cardNumberIndex.hash("1234567890123456"))).thenReturn(Optional.of(card));
+
+        assertThat(cardService.getCardByNumber("1234 5678 9012 3456")).isSameAs(card);
+        verifyNoInteractions(encryptionService);
+    }
+
+    @Test
+    void getCardByNumber_unknownNumber_throwsNotFound() {
+        when(cardRepository.findCardDtoByNumberHash(any())).thenReturn(Optional.empty());
+
+        assertThrows(CardNotFoundException.class, () -> cardService.getCardByNumber("1234 5678 9012 3456"));
+    }
+
     @Test
     void createCard_withInvalidCardNumber_throwsException() {
         User user = User.builder().id(1L).build();
@@ -97,14 +223,40 @@ class CardServiceTest {
     void blockCard_setsStatusBlocked() {
         Card card = Card.builder().id(1L).status(CardStatus.ACTIVE).build();
         when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
-        when(cardRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(cardRepository.saveAndFlush(any())).thenAnswer(i -> i.getArgument(0));
         when(operationHistoryService.recordOperation(any(), any(), any(), any(), any(), any()))
                 .thenReturn(CardOperationHistory.builder().id(1L).build());
 
         cardService.blockCard(1L);
 
         assertThat(card.getStatus()).isEqualTo(CardStatus.BLOCKED);
-        verify(cardRepository).save(card);
+        verify(cardRepository).saveAndFlush(card);
+        verify(transactionTemplate).execute(any());
+    }
+
+    @Test
+    void blockCard_versionConflict_retriesWithFreshCard() {
+        Card stale = Card.builder().id(1L).status(CardStatus.ACTIVE).version(1L).build();
+        Card fresh = Card.builder().id(1L).status(CardStatus.ACTIVE).version(2L).build();
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(stale), Optional.of(fresh));
+        when(cardRepository.saveAndFlush(stale)).thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L));
+        when(cardRepository.saveAndFlush(fresh)).thenReturn(fresh);
+
+        cardService.blockCard(1L);
+
+        assertThat(fresh.getStatus()).isEqualTo(CardStatus.BLOCKED);
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(operationHistoryService, times(1)).recordOperation(eq(fresh), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void blockCard_persistentConflict_throwsCardConflictException() {
+        when(cardRepository.findById(1L)).thenAnswer(i -> Optional.of(Card.builder().id(1L).status(CardStatus.ACTIVE).build()));
+        when(cardRepository.saveAndFlush(any())).thenThrow(new ObjectOptimisticLockingFailureException(Card.class, 1L));
+
+        assertThrows(CardConflictException.class, () -> cardService.blockCard(1L));
+        verify(transactionTemplate, times(3)).execute(any());
+        verifyNoInteractions(operationHistoryService);
     }
 
     @Test
@@ -118,14 +270,24 @@ class CardServiceTest {
     void activateCard_setsStatusActive() {
         Card card = Card.builder().id(1L).status(CardStatus.BLOCKED).build();
         when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
-        when(cardRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(cardRepository.saveAndFlush(any())).thenAnswer(i -> i.getArgument(0));
         when(operationHistoryService.recordOperation(any(), any(), any(), any(), any(), any()))
                 .thenReturn(CardOperationHistory.builder().id(1L).build());
 
         cardService.activateCard(1L);
 
         assertThat(card.getStatus()).isEqualTo(CardStatus.ACTIVE);
-        verify(cardRepository).save(card);
+        verify(cardRepository).saveAndFlush(card);
+    }
+
+    @Test
+    void activateCard_pastExpiryDate_throwsException() {
+        Card card = Card.builder().id(1L).status(CardStatus.EXPIRED).expiryDate(LocalDate.now().minusDays(1)).build();
+        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+
+        assertThrows(IllegalStateException.class, () -> cardService.activateCard(1L));
+        assertThat(card.getStatus()).isEqualTo(CardStatus.EXPIRED);
+        verify(cardRepository, never()).saveAndFlush(any());
     }
 
     @Test
@@ -150,47 +312,163 @@ class CardServiceTest {
 
     @Test
     void getCardById_withExistingCard_returnsCard() {
-        Card card = Card.builder().id(1L).build();
-        when(cardRepository.findById(1L)).thenReturn(Optional.of(card));
+        User owner = User.builder().id(5L).build();
+        Card card = Card.builder().id(1L).owner("Owner").status(CardStatus.ACTIVE).user(owner)
+                .balance(new BigDecimal("100.00")).build();
+        when(cardRepository.findWithUserById(1L)).thenReturn(Optional.of(card));
 
         Card result = cardService.getCardById(1L);
 
-        assertThat(result).isEqualTo(card);
+        assertThat(result.getId()).isEqualTo(1L);
+        assertThat(result.getOwner()).isEqualTo("Owner");
+        assertThat(result.getStatus()).isEqualTo(CardStatus.ACTIVE);
+        assertThat(result.getUser()).isSameAs(owner);
+        assertThat(result.getBalance()).isNull();
     }
 
     @Test
     void getCardById_withNonExistentCard_throwsException() {
-        when(cardRepository.findById(1L)).thenReturn(Optional.empty());
+        when(cardRepository.findWithUserById(1L)).thenReturn(Optional.empty());
 
         assertThrows(CardNotFoundException.class, () -> cardService.getCardById(1L));
     }
 
     @Test
-    void updateCardBalance_updatesCardBalance() {
+    void getCardById_repeatedReadsAreServedFromCache() {
+        when(cardRepository.findWithUserById(1L))
+                .thenReturn(Optional.of(Card.builder().id(1L).status(CardStatus.ACTIVE).build()));
+
+        Card first = cardService.getCardById(1L);
+        first.setStatus(CardStatus.BLOCKED);
+        Card second = cardService.getCardById(1L);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getStatus()).isEqualTo(CardStatus.ACTIVE);
+        verify(cardRepository, times(1)).findWithUserById(1L);
+    }
+
+    @Test
+    void blockCard_invalidatesCachedCard() {
+        when(cardRepository.findWithUserById(1L))
+                .thenReturn(Optional.of(Card.builder().id(1L).status(CardStatus.ACTIVE).build()))
+                .thenReturn(Optional.of(Card.builder().id(1L).status(CardStatus.BLOCKED).build()));
+        when(cardRepository.findById(1L))
+                .thenReturn(Optional.of(Card.builder().id(1L).status(CardStatus.ACTIVE).build()));
+        when(cardRepository.saveAndFlush(any())).thenAnswer(i -> i.getArgument(0));
+        cardService.getCardById(1L);
+
+        cardService.blockCard(1L);
+
+        assertThat(cardService.getCardById(1L).getStatus()).isEqualTo(CardStatus.BLOCKED);
+        verify(cardRepository, times(2)).findWithUserById(1L);
+    }
+
+    @Test
+    void updateCardBalance_appendsAdjustmentEntry() {
         Card card = Card.builder().id(1L).balance(BigDecimal.ZERO).build();
         BigDecimal newBalance = new BigDecimal("100.50");
-        when(cardRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(ledgerEntryRepository.currentBalances(List.of(1L))).thenReturn(Map.of(1L, new BigDecimal("40.00")));
 
         cardService.updateCardBalance(card, newBalance);
 
         assertThat(card.getBalance()).isEqualTo(newBalance);
-        verify(cardRepository).save(card);
+        verify(ledgerEntryRepository).appendAdjustment(1L, new BigDecimal("60.50"), newBalance);
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void updateCardBalance_sameBalance_appendsNothing() {
+        Card card = Card.builder().id(1L).build();
+        when(ledgerEntryRepository.currentBalances(List.of(1L))).thenReturn(Map.of(1L, BigDecimal.TEN));
+
+        cardService.updateCardBalance(card, BigDecimal.TEN);
+
+        verify(ledgerEntryRepository, never()).appendAdjustment(any(), any(), any());
+    }
+
+    @Test
+    void updateCardBalance_ledgerEngine_rejectsAdjustment() {
+        cardService.setLedgerEngine(mock(LedgerEngine.class));
+        Card card = Card.builder().id(1L).build();
+
+        assertThatThrownBy(() -> cardService.updateCardBalance(card, BigDecimal.TEN))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("ledger engine");
+        verifyNoInteractions(ledgerEntryRepository);
+    }
+
+    @Test
+    void lockCards_optimisticMode_readsWithoutRowLocks() {
+        when(cardRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(Card.builder().id(1L).build(),
+                Card.builder().id(2L).build()));
+
+        assertThat(cardService.lockCards(List.of(1L, 2L), CardConcurrencyPolicy.LockMode.OPTIMISTIC)).containsOnlyKeys(1L, 2L);
+        verify(cardRepository, never()).findAllByIdInForUpdate(any());
+    }
+
+    @Test
+    void lockCards_pessimisticMode_locksRows() {
+        when(cardRepository.findAllByIdInForUpdate(List.of(1L))).thenReturn(List.of(Card.builder().id(1L).build()));
+
+        assertThat(cardService.lockCards(List.of(1L), CardConcurrencyPolicy.LockMode.PESSIMISTIC)).containsOnlyKeys(1L);
+        verify(cardRepository, never()).findAllById(any());
     }
 
     @Test
-    void getCardsByUser_returnsPage() {
+    void recordTransferEntries_delegatesToLedger() {
+        List<TransferDto> transfers = List.of(TransferDto.builder().id(5L).fromCardId(1L).toCardId(2L)
+                .amount(BigDecimal.ONE).build());
+        Map<Long, BigDecimal> balances = new HashMap<>(Map.of(1L, BigDecimal.TEN, 2L, BigDecimal.ZERO));
+
+        cardService.recordTransferEntries(transfers, balances);
+
+        verify(ledgerEntryRepository).appendTransfers(transfers, balances);
+    }
+
+    @Test
+    void getCardsByUser_returnsPageWithoutCount() {
         User user = User.builder().id(1L).build();
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> expectedPage = new PageImpl<>(Collections.singletonList(
-                Card.builder().id(1L).user(user).build()
-        ));
-        
-        when(cardRepository.findByUser(user, pageable)).thenReturn(expectedPage);
+        CardDto card = CardDto.builder().id(1L).userId(1L).build();
+        when(cardRepository.findCardDtosByUserId(1L, pageable))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(card), pageable, true));
+
+        PageResponse<CardDto> result = cardService.getCardsByUser(user, pageable, false);
+
+        assertThat(result.getContent()).containsExactly(card);
+        assertThat(result.isHasNext()).isTrue();
+        assertThat(result.getTotalElements()).isNull();
+        assertThat(result.getTotalPages()).isNull();
+        verify(cardRepository, never()).countByUser_Id(any());
+    }
 
-        Page<Card> result = cardService.getCardsByUser(user, pageable);
+    @Test
+    void getCardsByUser_withTotalCountsUserCards() {
+        User user = User.builder().id(1L).build();
+        Pageable pageable = PageRequest.of(1, 2);
+        when(cardRepository.findCardDtosByUserId(1L, pageable)).thenReturn(new SliceImpl<>(
+                List.of(CardDto.builder().id(3L).build(), CardDto.builder().id(4L).build()), pageable, true));
+        when(cardRepository.countByUser_Id(1L)).thenReturn(5L);
+
+        PageResponse<CardDto> result = cardService.getCardsByUser(user, pageable, true);
+
+        assertThat(result.getPage()).isEqualTo(1);
+        assertThat(result.getTotalElements()).isEqualTo(5L);
+        assertThat(result.getTotalPages()).isEqualTo(3);
+    }
+
+    @Test
+    void getAllCards_withTotalOnSinglePageSkipsCount() {
+        Pageable pageable = PageRequest.of(0, 5);
+        when(cardRepository.findAllCardDtos(pageable)).thenReturn(
+                new SliceImpl<>(List.of(CardDto.builder().id(6L).userId(2L).build()), pageable, false));
+
+        PageResponse<CardDto> result = cardService.getAllCards(pageable, true);
 
-        assertThat(result).isEqualTo(expectedPage);
-        verify(cardRepository).findByUser(user, pageable);
+        assertThat(result.getTotalElements()).isEqualTo(1L);
+        assertThat(result.getTotalPages()).isEqualTo(1);
+        verify(cardRepository, never()).count();
+        verify(cardRepository, never()).findAll(any(Pageable.class));
     }
 
     @Test
@@ -228,4 +506,73 @@ class CardServiceTest {
         assertThrows(IllegalArgumentException.class, () -> 
             cardService.createCard("1234 5678 9012 3456", "Owner", null, user));
     }
+
+    @Test
+    void getAllCardsAfter_continuesFromCursorId() {
+        List<CardDto> rows = List.of(CardDto.builder().id(42L).build(), CardDto.builder().id(43L).build());
+        when(cardRepository.findCardDtosAfter(41L, Limit.of(2))).thenReturn(rows);
+
+        PageResponse<CardDto> page = cardService.getAllCardsAfter(PageCursor.ofId(41L).encode(), 1);
+
+        assertThat(page.getContent()).extracting(CardDto::getId).containsExactly(42L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(PageCursor.parse(page.getNextCursor()).id()).isEqualTo(42L);
+    }
+
+    @Test
+    void getCardsByUserAfter_emptyCursorStartsFromFirstCard() {
+        User user = User.builder().id(1L).build();
+        when(cardRepository.findCardDtosByUserIdAfter(1L, 0L, Limit.of(11)))
+                .thenReturn(List.of(CardDto.builder().id(1L).userId(1L).build()));
+
+        PageResponse<CardDto> page = cardService.getCardsByUserAfter(user, "", 10);
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void searchCards_readsOneExtraRowAfterCursor() {
+        CardSearchFilter filter = CardSearchFilter.builder().status(CardStatus.ACTIVE).last4("1234").build();
+        when(cardRepository.findCardDtos(any(), eq(41L), eq(3)))
+                .thenReturn(List.of(CardDto.builder().id(42L).build(), CardDto.builder().id(43L).build(),
+                        CardDto.builder().id(44L).build()));
+
+        PageResponse<CardDto> page = cardService.searchCards(filter, PageCursor.ofId(41L).encode(), 2);
+
+        assertThat(page.getContent()).extracting(CardDto::getId).containsExactly(42L, 43L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(PageCursor.parse(page.getNextCursor()).id()).isEqualTo(43L);
+    }
+
+    @Test
+    void searchCards_rejectsInvertedExpiryRange() {
+        CardSearchFilter filter = CardSearchFilter.builder()
+                .expiryFrom(LocalDate.of(2026, 2, 1))
+                .expiryTo(LocalDate.of(2026, 1, 1))
+                .build();
+
+        assertThatThrownBy(() -> cardService.searchCards(filter, "", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Expiry date range");
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void searchCards_rejectsShortFuzzyOwnerAndInvalidLast4() {
+        CardSearchFilter fuzzy = CardSearchFilter.builder()
+                .owner(" Jo ")
+                .ownerMatch(CardSearchFilter.OwnerMatch.FUZZY)
+                .build();
+        CardSearchFilter last4 = CardSearchFilter.builder().last4("12a4").build();
+
+        assertThatThrownBy(() -> cardService.searchCards(fuzzy, "", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("at least 3 characters");
+        assertThatThrownBy(() -> cardService.searchCards(last4, "", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Last 4 digits");
+        verifyNoInteractions(cardRepository);
+    }
 }
@@ -0,0 +1,78 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.CardDailyTurnoverRepository;
+import com.example.bankrest.repository.CardDailyTurnoverRepositoryCustom.BackfillProgress;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardTurnoverBackfillServiceTest {
+
+    @Mock
+    private CardDailyTurnoverRepository turnoverRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private CardTurnoverBackfillService backfillService;
+    private BackfillProgress progress;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(turnoverRepository.lockBackfillProgress()).thenAnswer(i -> Optional.ofNullable(progress));
+        doAnswer(i -> {
+            progress = new BackfillProgress(i.getArgument(0), progress.highWatermark(), i.getArgument(1));
+            return null;
+        }).when(turnoverRepository).updateBackfillProgress(anyLong(), any());
+        backfillService = new CardTurnoverBackfillService(turnoverRepository, transactionTemplate, false, 100);
+    }
+
+    @Test
+    void run_processesChunksUpToWatermarkAndCompletes() {
+        progress = new BackfillProgress(0, 250, null);
+
+        assertThat(backfillService.run()).isEqualTo(3);
+
+        InOrder inOrder = inOrder(turnoverRepository);
+        inOrder.verify(turnoverRepository).backfill(0, 100);
+        inOrder.verify(turnoverRepository).backfill(100, 200);
+        inOrder.verify(turnoverRepository).backfill(200, 250);
+        assertThat(progress.lastTransferId()).isEqualTo(250);
+        assertThat(progress.completedAt()).isNotNull();
+    }
+
+    @Test
+    void run_resumesFromSavedProgress() {
+        progress = new BackfillProgress(180, 250, null);
+
+        assertThat(backfillService.run()).isEqualTo(1);
+
+        verify(turnoverRepository).backfill(180, 250);
+        verify(turnoverRepository, times(1)).backfill(anyLong(), anyLong());
+    }
+
+    @Test
+    void run_doesNothingWhenCompleted() {
+        progress = new BackfillProgress(250, 250, LocalDateTime.now());
+
+        assertThat(backfillService.run()).isZero();
+
+        verify(turnoverRepository, never()).backfill(anyLong(), anyLong());
+        verify(turnoverRepository, never()).updateBackfillProgress(anyLong(), any());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.CardTurnoverDto;
+import com.example.bankrest.entity.CardDailyTurnover;
+import com.example.bankrest.repository.CardDailyTurnoverRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CardTurnoverServiceTest {
+
+    @Mock
+    private CardDailyTurnoverRepository turnoverRepository;
+
+    @InjectMocks
+    private CardTurnoverService turnoverService;
+
+    private final LocalDate from = LocalDate.of(2024, 1, 1);
+    private final LocalDate to = LocalDate.of(2024, 2, 29);
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(turnoverRepository.findByCardIdAndDayBetweenOrderByDayAsc(1L, from, to)).thenReturn(List.of(
+                day(LocalDate.of(2024, 1, 5), "100.00", 2, "10.00", 1),
+                day(LocalDate.of(2024, 1, 20), "50.00", 1, "0.00", 0),
+                day(LocalDate.of(2024, 2, 3), "0.00", 0, "300.00", 3)));
+    }
+
+    @Test
+    void getTurnover_returnsTotalsAndDailyPeriods() {
+        CardTurnoverDto turnover = turnoverService.getTurnover(1L, from, to, CardTurnoverDto.Grouping.DAY);
+
+        assertThat(turnover.getDebitTotal()).isEqualByComparingTo("150.00");
+        assertThat(turnover.getDebitCount()).isEqualTo(3);
+        assertThat(turnover.getCreditTotal()).isEqualByComparingTo("310.00");
+        assertThat(turnover.getCreditCount()).isEqualTo(4);
+        assertThat(turnover.getPeriods()).extracting(CardTurnoverDto.Period::getStart)
+                .containsExactly(LocalDate.of(2024, 1, 5), LocalDate.of(2024, 1, 20), LocalDate.of(2024, 2, 3));
+    }
+
+    @Test
+    void getTurnover_groupsDaysByMonth() {
+        CardTurnoverDto turnover = turnoverService.getTurnover(1L, from, to, CardTurnoverDto.Grouping.MONTH);
+
+        assertThat(turnover.getPeriods()).hasSize(2);
+        CardTurnoverDto.Period january = turnover.getPeriods().getFirst();
+        assertThat(january.getStart()).isEqualTo(LocalDate.of(2024, 1, 1));
+        assertThat(january.getDebitTotal()).isEqualByComparingTo("150.00");
+        assertThat(january.getDebitCount()).isEqualTo(3);
+        assertThat(january.getCreditCount()).isEqualTo(1);
+        assertThat(turnover.getPeriods().get(1).getCreditTotal()).isEqualByComparingTo("300.00");
+    }
+
+    @Test
+    void getTurnover_rejectsInvalidPeriod() {
+        assertThatThrownBy(() -> turnoverService.getTurnover(1L, to, from, CardTurnoverDto.Grouping.DAY))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Start of period must not be after its end");
+        assertThatThrownBy(() -> turnoverService.getTurnover(1L, from, from.plusYears(11), CardTurnoverDto.Grouping.DAY))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Period must not exceed");
+    }
+
+    @Test
+    void recordTransfers_skipsEmptyList() {
+        turnoverService.recordTransfers(List.of());
+
+        verify(turnoverRepository, never()).applyTransfers(any());
+    }
+
+    private CardDailyTurnover day(LocalDate day, String debit, long debitCount, String credit, long creditCount) {
+        return CardDailyTurnover.builder()
+                .cardId(1L)
+                .day(day)
+                .debitTotal(new BigDecimal(debit))
+                .debitCount(debitCount)
+                .creditTotal(new BigDecimal(credit))
+                .creditCount(creditCount)
+                .build();
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.archive.ColumnarWriter;
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferStatementRow;
+import com.example.bankrest.repository.ArchiveRepository;
+import com.example.bankrest.repository.ArchiveRepository.ArchivedPartition;
+import com.example.bankrest.repository.PartitionRepository;
+import com.example.bankrest.repository.PartitionRepository.Partition;
+import com.example.bankrest.util.PageCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ColdStorageServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-11-15T12:00:00Z"), ZoneOffset.UTC);
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private ArchiveRepository archiveRepository;
+
+    @Mock
+    private PartitionRepository partitionRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    Path dir;
+
+    private ColdStorageService service;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null));
+        service = new ColdStorageService(archiveRepository, partitionRepository, transactionTemplate, CLOCK, true,
+                Duration.ofHours(6), 24, dir, 2, 100, LOCK_TIMEOUT);
+    }
+
+    @Test
+    void run_archivesMonthsOlderThanRetentionAndDropsThem() throws Exception {
+        Partition attached = new Partition("transfers_2022_10", false);
+        when(partitionRepository.findPartitions("transfers")).thenReturn(List.of(attached,
+                new Partition("transfers_2022_11", false)));
+        when(partitionRepository.findMonthlyTables("transfers"))
+                .thenReturn(List.of("transfers_2022_09", "transfers_2022_10", "transfers_2022_11"));
+        when(archiveRepository.tryLockArchiving()).thenReturn(true);
+        streamTransferRows(3);
+
+        service.run();
+
+        verify(archiveRepository).register("transfers", YearMonth.of(2022, 9), "transfers_2022_09.col", 3);
+        verify(archiveRepository).register("transfers", YearMonth.of(2022, 10), "transfers_2022_10.col", 3);
+        verify(archiveRepository).addArchivedTransferTotals("transfers_2022_09");
+        verify(archiveRepository).addArchivedTransferTotals("transfers_2022_10");
+        verify(partitionRepository).detachPartition("transfers", attached, LOCK_TIMEOUT);
+        verify(partitionRepository, times(1)).detachPartition(any(), any(), any());
+        verify(partitionRepository).dropTable("transfers_2022_09", LOCK_TIMEOUT);
+        verify(partitionRepository).dropTable("transfers_2022_10", LOCK_TIMEOUT);
+        verify(partitionRepository, never()).dropTable(eq("transfers_2022_11"), any());
+        assertThat(dir.resolve("transfers_2022_09.col")).exists();
+
+        List<ArchivedPartition> archived =
+                List.of(new ArchivedPartition(YearMonth.of(2022, 9), "transfers_2022_09.col", 3));
+        List<TransferStatementRow> rows = new ArrayList<>();
+        service.scanTransfers(archived, 1L, TransferDirection.OUT, null,
+                PageCursor.of(LocalDateTime.of(2100, 1, 1, 0, 0), 0), false, rows::add);
+        assertThat(rows).extracting(TransferStatementRow::id).containsExactly(1L, 2L, 3L);
+        assertThat(rows.getFirst().amount()).isEqualByComparingTo("10.25");
+        assertThat(rows.getFirst().timestamp()).isEqualTo(LocalDateTime.of(2022, 9, 1, 10, 0, 0, 123_456_000));
+    }
+
+    @Test
+    void run_alreadyArchivedMonthIsOnlyDropped() {
+        when(partitionRepository.findMonthlyTables("transfers")).thenReturn(List.of("transfers_2022_09"));
+        when(archiveRepository.tryLockArchiving()).thenReturn(true);
+        when(archiveRepository.findArchived("transfers"))
+                .thenReturn(List.of(new ArchivedPartition(YearMonth.of(2022, 9), "transfers_2022_09.col", 3)));
+
+        service.run();
+
+        verify(archiveRepository, never()).streamTable(any(), any(), any(), anyInt(), any());
+        verify(archiveRepository, never()).register(any(), any(), any(), anyLong());
+        verify(partitionRepository).dropTable("transfers_2022_09", LOCK_TIMEOUT);
+    }
+
+    @Test
+    void run_leavesPartitionsAloneWhileAnotherNodeArchives() {
+        when(partitionRepository.findMonthlyTables("transfers")).thenReturn(List.of("transfers_2022_09"));
+        when(archiveRepository.tryLockArchiving()).thenReturn(false);
+
+        service.run();
+
+        verify(archiveRepository, never()).streamTable(any(), any(), any(), anyInt(), any());
+        verify(partitionRepository, never()).dropTable(any(), any());
+    }
+
+    @Test
+    void scanTransfers_returnsCardRowsBeforeCursorNewestFirst() throws Exception {
+        writeTransfers("transfers_2022_09.col",
+                new long[]{1, 2, 10, 10, 100},
+                new long[]{1, 3, 11, 11, 200},
+                new long[]{2, 1, 12, 12, 300},
+                new long[]{3, 4, 13, 13, 400});
+        writeTransfers("transfers_2022_10.col",
+                new long[]{1, 2, 20, 1, 500},
+                new long[]{4, 1, 21, 2, 600});
+        List<ArchivedPartition> archived = List.of(
+                new ArchivedPartition(YearMonth.of(2022, 9), "transfers_2022_09.col", 4),
+                new ArchivedPartition(YearMonth.of(2022, 10), "transfers_2022_10.col", 2));
+
+        List<TransferStatementRow> rows = new ArrayList<>();
+        service.scanTransfers(archived, 1L, TransferDirection.BOTH, null,
+                PageCursor.of(LocalDateTime.of(2022, 10, 2, 0, 0), 21L), true, row -> {
+                    rows.add(row);
+                    return rows.size() < 3;
+                });
+
+        assertThat(rows).extracting(TransferStatementRow::id).containsExactly(20L, 12L, 11L);
+        assertThat(rows).extracting(TransferStatementRow::direction)
+                .containsExactly(TransferDirection.OUT, TransferDirection.IN, TransferDirection.OUT);
+        assertThat(rows.get(1).amount()).isEqualByComparingTo(new BigDecimal("3.00"));
+        assertThat(ColdStorageService.horizonOf(archived)).isEqualTo(LocalDateTime.of(2022, 11, 1, 0, 0));
+    }
+
+    @Test
+    void scanOperations_returnsCardOperationsBeforeCursorNewestFirst() throws Exception {
+        try (ColumnarWriter writer = new ColumnarWriter(dir.resolve("card_operations_history_2022_09.col"),
+                ColdStorageService.TABLES.get(1).columns(), 2)) {
+            writer.append(1L, micros(2022, 9, 1), 1L, "CREATE", 0L, null, "ACTIVE", "Card created");
+            writer.append(1L, micros(2022, 9, 5), 4L, "BLOCK", 7L, "ACTIVE", "BLOCKED", "Card blocked");
+            writer.append(1L, micros(2022, 9, 9), 6L, "ACTIVATE", 7L, "BLOCKED", "ACTIVE", "Card activated");
+            writer.append(2L, micros(2022, 9, 2), 2L, "CREATE", 0L, null, "ACTIVE", "Card created");
+            writer.commit();
+        }
+        List<ArchivedPartition> archived = List.of(
+                new ArchivedPartition(YearMonth.of(2022, 9), "card_operations_history_2022_09.col", 4));
+
+        List<ColdStorageService.ArchivedOperation> rows = new ArrayList<>();
+        service.scanOperations(archived, 1L, PageCursor.of(LocalDateTime.of(2022, 9, 9, 0, 0), 6L), rows::add);
+
+        assertThat(rows).extracting(ColdStorageService.ArchivedOperation::id).containsExactly(4L, 1L);
+        assertThat(rows.getFirst().performedById()).isEqualTo(7L);
+        assertThat(rows.getFirst().previousStatus()).isEqualTo("ACTIVE");
+        assertThat(rows.getLast().performedById()).isNull();
+        assertThat(rows.getLast().createdAt()).isEqualTo(LocalDateTime.of(2022, 9, 1, 0, 0));
+    }
+
+    private static long micros(int year, int month, int day) {
+        return ColdStorageService.toMicros(LocalDateTime.of(year, month, day, 0, 0));
+    }
+
+    /**
+     * Строки переводов: from, to, id, день месяца, сумма в копейках. Месяц берётся из имени файла.
+     */
+    private void writeTransfers(String fileName, long[]... rows) throws Exception {
+        YearMonth month = PartitionMaintenanceService.monthOf("transfers", fileName.replace(".col", ""));
+        try (ColumnarWriter writer = new ColumnarWriter(dir.resolve(fileName),
+                ColdStorageService.TABLES.getFirst().columns(), 2)) {
+            for (long[] row : rows) {
+                writer.append(row[0], row[1],
+                        ColdStorageService.toMicros(month.atDay((int) row[3]).atStartOfDay()), row[2], row[4]);
+            }
+            writer.commit();
+        }
+    }
+
+    private void streamTransferRows(int count) throws Exception {
+        doAnswer(i -> {
+            String table = i.getArgument(0);
+            YearMonth month = PartitionMaintenanceService.monthOf("transfers", table);
+            RowCallbackHandler handler = i.getArgument(4);
+            for (int id = 1; id <= count; id++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("from_card_id")).thenReturn(1L);
+                when(rs.getLong("to_card_id")).thenReturn(2L);
+                when(rs.getLong("id")).thenReturn((long) id);
+                when(rs.getTimestamp("timestamp")).thenReturn(Timestamp.valueOf(
+                        month.atDay(id).atTime(10, 0, 0, 123_456_000)));
+                when(rs.getBigDecimal("amount")).thenReturn(new BigDecimal("10.25"));
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(archiveRepository).streamTable(any(), any(), any(), anyInt(), any());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.repository.PartitionRepository;
+import com.example.bankrest.repository.PartitionRepository.Partition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class PartitionMaintenanceServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2024-11-15T12:00:00Z"), ZoneOffset.UTC);
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(5);
+
+    @Mock
+    private PartitionRepository partitionRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void run_createsPartitionsAheadForEveryTable() {
+        service(2, 0).run();
+
+        for (String table : PartitionMaintenanceService.PARTITIONED_TABLES) {
+            verify(partitionRepository).createMonthlyPartition(table, LocalDate.of(2024, 11, 1), LOCK_TIMEOUT);
+            verify(partitionRepository).createMonthlyPartition(table, LocalDate.of(2024, 12, 1), LOCK_TIMEOUT);
+            verify(partitionRepository).createMonthlyPartition(table, LocalDate.of(2025, 1, 1), LOCK_TIMEOUT);
+        }
+        verify(partitionRepository, never()).findPartitions(any());
+        verify(partitionRepository, never()).detachPartition(any(), any(), any());
+    }
+
+    @Test
+    void run_detachesOnlyPartitionsOlderThanRetention() {
+        Partition old = new Partition("transfers_2024_07", false);
+        Partition pending = new Partition("transfers_2024_06", true);
+        Partition kept = new Partition("transfers_2024_08", false);
+        when(partitionRepository.findPartitions("transfers")).thenReturn(List.of(pending, old, kept,
+                new Partition("transfers_archive", false)));
+
+        service(0, 3).run();
+
+        verify(partitionRepository).detachPartition("transfers", pending, LOCK_TIMEOUT);
+        verify(partitionRepository).detachPartition("transfers", old, LOCK_TIMEOUT);
+        verify(partitionRepository, never()).detachPartition("transfers", kept, LOCK_TIMEOUT);
+        verify(partitionRepository, times(2)).detachPartition(eq("transfers"), any(), any());
+    }
+
+    @Test
+    void run_failureOnOneTableDoesNotStopOthers() {
+        when(partitionRepository.createMonthlyPartition(eq("transfers"), any(), any()))
+                .thenThrow(new CannotAcquireLockException("lock timeout"));
+
+        service(0, 0).run();
+
+        verify(partitionRepository).createMonthlyPartition("card_operations_history", LocalDate.of(2024, 11, 1), LOCK_TIMEOUT);
+    }
+
+    @Test
+    void verifyPartitionsAhead_acceptsCurrentAndNextMonth() {
+        when(partitionRepository.findPartitions(any())).thenAnswer(i -> List.of(
+                new Partition(i.getArgument(0) + "_2024_11", false),
+                new Partition(i.getArgument(0) + "_2024_12", false)));
+
+        assertThatCode(() -> service(0, 0).verifyPartitionsAhead()).doesNotThrowAnyException();
+    }
+
+    @Test
+    void startOnReady_missingNextMonthPartitionFailsStartup() {
+        when(partitionRepository.findPartitions(any())).thenAnswer(i -> List.of(
+                new Partition(i.getArgument(0) + "_2024_11", false),
+                new Partition(i.getArgument(0) + "_2024_12", true)));
+
+        assertThatThrownBy(() -> service(0, 0).startOnReady())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("transfers for 2024-12");
+    }
+
+    @Test
+    void monthOf_parsesPartitionSuffix() {
+        assertThat(PartitionMaintenanceService.monthOf("transfers", "transfers_2024_03")).isEqualTo(YearMonth.of(2024, 3));
+        assertThat(PartitionMaintenanceService.monthOf("transfers", "card_operations_history_2024_03")).isNull();
+        assertThat(PartitionMaintenanceService.monthOf("transfers", "transfers_legacy")).isNull();
+    }
+
+    private PartitionMaintenanceService service(int monthsAhead, int detachAfterMonths) {
+        return new PartitionMaintenanceService(partitionRepository, transactionTemplate, CLOCK, false,
+                Duration.ofHours(6), monthsAhead, detachAfterMonths, LOCK_TIMEOUT);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.entity.LimitPeriod;
+import com.example.bankrest.entity.LimitScope;
+import com.example.bankrest.entity.SpendingLimit;
+import com.example.bankrest.exception.SpendingLimitExceededException;
+import com.example.bankrest.repository.SpendingLimitRepository;
+import com.example.bankrest.repository.TransferRepository;
+import com.example.bankrest.repository.TransferRepositoryCustom.DebitTotal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SpendingLimitServiceTest {
+
+    @Mock
+    private SpendingLimitRepository limitRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private UserService userService;
+
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private SpendingLimitService service;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        clock = new MutableClock(Instant.parse("2026-03-10T12:00:30Z"));
+        meterRegistry = new SimpleMeterRegistry();
+        service = new SpendingLimitService(limitRepository, transferRepository, cardService, userService,
+                meterRegistry, clock);
+    }
+
+    @Test
+    void reserve_withoutLimits_returnsNoneWithoutLoadingHistory() {
+        when(limitRepository.findAll()).thenReturn(List.of());
+
+        service.rebuild();
+
+        assertThat(service.reserve(1L, 1L, new BigDecimal("1000000"))).isSameAs(SpendingLimitService.Reservation.NONE);
+        verify(transferRepository, never()).streamDebitTotals(any(), any(), any(), any());
+    }
+
+    @Test
+    void rebuild_countsRecentDebitsTowardsDailyLimit() {
+        when(limitRepository.findAll()).thenReturn(List.of(limit(LimitScope.CARD, 1L, LimitPeriod.DAY, "1000", null)));
+        LocalDateTime now = LocalDateTime.now(clock);
+        stubHistory(List.of(
+                new DebitTotal(1L, 7L, now.minusHours(3).withSecond(0), new BigDecimal("600.00"), 2),
+                new DebitTotal(1L, 7L, now.minusHours(30).withSecond(0), new BigDecimal("900.00"), 1)));
+
+        service.rebuild();
+
+        assertThatThrownBy(() -> service.reserve(1L, 7L, new BigDecimal("400.01")))
+                .isInstanceOf(SpendingLimitExceededException.class)
+                .hasMessageContaining("Card spending limit for the last day");
+        assertThat(service.reserve(1L, 7L, new BigDecimal("400.00"))).isNotSameAs(SpendingLimitService.Reservation.NONE);
+        assertThatThrownBy(() -> service.reserve(1L, 7L, new BigDecimal("0.01")))
+                .isInstanceOf(SpendingLimitExceededException.class);
+        assertThat(meterRegistry.get("bank.transfers.limits.check").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void reserve_hourlyCountLimitSlidesWithTime() {
+        when(limitRepository.findAll()).thenReturn(List.of(limit(LimitScope.USER, 7L, LimitPeriod.HOUR, null, 2)));
+        service.rebuild();
+
+        service.reserve(1L, 7L, BigDecimal.ONE);
+        clock.advance(Duration.ofMinutes(30));
+        service.reserve(2L, 7L, BigDecimal.ONE);
+        assertThatThrownBy(() -> service.reserve(3L, 7L, BigDecimal.ONE))
+                .isInstanceOf(SpendingLimitExceededException.class)
+                .hasMessageContaining("User spending limit for the last hour");
+
+        clock.advance(Duration.ofMinutes(31));
+        assertThatCode(() -> service.reserve(3L, 7L, BigDecimal.ONE)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void release_returnsReservedCapacity() {
+        when(limitRepository.findAll()).thenReturn(List.of(
+                limit(LimitScope.CARD, 1L, LimitPeriod.HOUR, "100", null),
+                limit(LimitScope.USER, 7L, LimitPeriod.DAY, "150", null)));
+        service.rebuild();
+
+        SpendingLimitService.Reservation reservation = service.reserve(1L, 7L, new BigDecimal("100"));
+        assertThatThrownBy(() -> service.reserve(1L, 7L, new BigDecimal("50")))
+                .isInstanceOf(SpendingLimitExceededException.class);
+        reservation.release();
+
+        assertThatCode(() -> service.reserve(1L, 7L, new BigDecimal("100"))).doesNotThrowAnyException();
+        assertThatThrownBy(() -> service.reserve(2L, 7L, new BigDecimal("50.01")))
+                .isInstanceOf(SpendingLimitExceededException.class)
+                .hasMessageContaining("User");
+    }
+
+    @Test
+    void setLimit_newSubject_loadsItsHistoryAndEnforcesLimit() {
+        when(limitRepository.findAll()).thenReturn(List.of());
+        service.rebuild();
+        SpendingLimit saved = limit(LimitScope.CARD, 1L, LimitPeriod.HOUR, "50", null);
+        when(limitRepository.findByScopeAndSubjectIdAndPeriod(LimitScope.CARD, 1L, LimitPeriod.HOUR))
+                .thenReturn(Optional.empty());
+        when(limitRepository.save(any())).thenReturn(saved);
+        when(limitRepository.findByScopeAndSubjectIdOrderByPeriodAsc(LimitScope.CARD, 1L)).thenReturn(List.of(saved));
+        stubHistory(List.of(new DebitTotal(1L, 7L, LocalDateTime.now(clock).minusMinutes(10).withSecond(0),
+                new BigDecimal("45.00"), 1)));
+
+        service.setLimit(LimitScope.CARD, 1L, LimitPeriod.HOUR, new BigDecimal("50"), null);
+
+        verify(cardService).getCardById(1L);
+        verify(transferRepository).streamDebitTotals(any(), eq(Set.of(1L)), eq(Set.of()), any());
+        assertThatThrownBy(() -> service.reserve(1L, 7L, new BigDecimal("5.01")))
+                .isInstanceOf(SpendingLimitExceededException.class);
+    }
+
+    @Test
+    void setLimit_withoutAmountOrCount_throwsException() {
+        assertThatThrownBy(() -> service.setLimit(LimitScope.CARD, 1L, LimitPeriod.DAY, null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("max amount, max count or both");
+        verify(limitRepository, never()).save(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubHistory(List<DebitTotal> totals) {
+        doAnswer(i -> {
+            Consumer<DebitTotal> consumer = i.getArgument(3);
+            totals.forEach(consumer);
+            return null;
+        }).when(transferRepository).streamDebitTotals(any(), any(), any(), any(Consumer.class));
+    }
+
+    private static SpendingLimit limit(LimitScope scope, Long subjectId, LimitPeriod period,
+                                       String maxAmount, Integer maxCount) {
+        return SpendingLimit.builder()
+                .id(1L)
+                .scope(scope)
+                .subjectId(subjectId)
+                .period(period)
+                .maxAmount(maxAmount == null ? null : new BigDecimal(maxAmount))
+                .maxCount(maxCount)
+                .build();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
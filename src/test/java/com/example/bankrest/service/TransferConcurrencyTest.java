@@ -0,0 +1,145 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.Role;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.repository.TransferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Переводы по одним картам с нескольких узлов против настоящей PostgreSQL. Каждый узел — отдельный
+ * TransferService со своими полосатыми блокировками, поэтому одновременные переводы не упорядочиваются
+ * в JVM, и конфликты ловят только проверки при вставке проводок: условие на предыдущий остаток
+ * и уникальность (card_id, entry_seq).
+ * <p>
+ * Запускается, если задан SPRING_DATASOURCE_URL, например после docker compose up db:
+ * SPRING_DATASOURCE_URL=jdbc:postgresql://localhost:5432/bankdb mvn test
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+class TransferConcurrencyTest {
+    private static final int FORWARD_NODES = 5;
+    private static final int REVERSE_NODES = 3;
+    private static final int TRANSFERS_PER_NODE = 25;
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardTurnoverService turnoverService;
+
+    @Autowired
+    private SpendingLimitService spendingLimits;
+
+    @Autowired
+    private ColdStorageService coldStorage;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void transferBetweenCards_concurrentNodes_loseNoUpdates() throws Exception {
+        User owner = userService.createUser("concurrency-" + UUID.randomUUID(), "password", Set.of(Role.ROLE_USER));
+        Long firstId = openCard(owner);
+        Long secondId = openCard(owner);
+        CardConcurrencyPolicy policy = new CardConcurrencyPolicy(new SimpleMeterRegistry(),
+                CardConcurrencyPolicy.LockMode.OPTIMISTIC, 100, Duration.ofMillis(1), Duration.ofMillis(50));
+
+        ExecutorService executor = Executors.newFixedThreadPool(FORWARD_NODES + REVERSE_NODES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> nodes = new ArrayList<>();
+        try {
+            for (int node = 0; node < FORWARD_NODES + REVERSE_NODES; node++) {
+                Long fromId = node < FORWARD_NODES ? firstId : secondId;
+                Long toId = node < FORWARD_NODES ? secondId : firstId;
+                TransferService transferService = new TransferService(transferRepository, cardService,
+                        turnoverService, new CardLocks(new SimpleMeterRegistry(), 256, Duration.ofSeconds(5)),
+                        spendingLimits, policy, transactionTemplate, coldStorage);
+                nodes.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < TRANSFERS_PER_NODE; i++) {
+                        transferService.transferBetweenCards(cardService.getCardById(fromId),
+                                cardService.getCardById(toId), AMOUNT);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> node : nodes) {
+                node.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        BigDecimal shift = AMOUNT.multiply(BigDecimal.valueOf((long) (FORWARD_NODES - REVERSE_NODES) * TRANSFERS_PER_NODE));
+        int transfers = (FORWARD_NODES + REVERSE_NODES) * TRANSFERS_PER_NODE;
+        assertLedger(firstId, OPENING_BALANCE.subtract(shift), transfers);
+        assertLedger(secondId, OPENING_BALANCE.add(shift), transfers);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transfers WHERE from_card_id IN (?, ?)", Long.class, firstId, secondId))
+                .isEqualTo(transfers);
+    }
+
+    private Long openCard(User owner) {
+        String number = String.valueOf(ThreadLocalRandom.current().nextLong(4_000_000_000_000_000L, 5_000_000_000_000_000L));
+        Card card = cardService.createCard(number, "Concurrency Test", LocalDate.now().plusYears(3), owner);
+        jdbcTemplate.update("UPDATE cards SET balance = ? WHERE id = ?", OPENING_BALANCE, card.getId());
+        cardService.invalidateCachedCards(List.of(card.getId()));
+        return card.getId();
+    }
+
+    /**
+     * Текущий баланс и сумма проводок сходятся с ожидаемым, а номера проводок идут без пропусков.
+     */
+    private void assertLedger(Long cardId, BigDecimal expected, int entries) {
+        Map<Long, BigDecimal> balances = cardService.currentBalances(List.of(cardId));
+        assertThat(balances.get(cardId)).isEqualByComparingTo(expected);
+
+        BigDecimal net = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(CASE WHEN entry_type = 'CREDIT' THEN amount ELSE -amount END), 0) "
+                        + "FROM ledger_entries WHERE card_id = ?", BigDecimal.class, cardId);
+        assertThat(OPENING_BALANCE.add(net)).isEqualByComparingTo(expected);
+
+        Map<String, Object> sequence = jdbcTemplate.queryForMap(
+                "SELECT count(*) AS entries, MIN(entry_seq) AS first_seq, MAX(entry_seq) AS last_seq "
+                        + "FROM ledger_entries WHERE card_id = ?", cardId);
+        assertThat(((Number) sequence.get("entries")).intValue()).isEqualTo(entries);
+        assertThat(((Number) sequence.get("first_seq")).longValue()).isEqualTo(1L);
+        assertThat(((Number) sequence.get("last_seq")).longValue()).isEqualTo(entries);
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.Transfer;
+import com.example.bankrest.entity.TransferIdempotencyKey;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.exception.InsufficientFundsException;
+import com.example.bankrest.exception.TransferInProgressException;
+import com.example.bankrest.ledger.LedgerEngine;
+import com.example.bankrest.repository.TransferIdempotencyKeyRepository;
+import com.example.bankrest.repository.TransferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TransferIdempotencyServiceTest {
+
+    @Mock
+    private TransferIdempotencyKeyRepository keyRepository;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private TransferIdempotencyService idempotencyService;
+
+    private User user;
+    private Transfer transfer;
+    private TransferDto expected;
+    private final AtomicInteger openTransactions = new AtomicInteger();
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        idempotencyService = new TransferIdempotencyService(keyRepository, transferRepository, transactionTemplate,
+                100, Duration.ofMinutes(10), Duration.ofMinutes(5));
+        when(transactionTemplate.execute(any())).thenAnswer(i -> {
+            openTransactions.incrementAndGet();
+            try {
+                return ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null);
+            } finally {
+                openTransactions.decrementAndGet();
+            }
+        });
+        doAnswer(i -> {
+            openTransactions.incrementAndGet();
+            try {
+                i.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+                return null;
+            } finally {
+                openTransactions.decrementAndGet();
+            }
+        }).when(transactionTemplate).executeWithoutResult(any());
+        user = User.builder().id(1L).build();
+        transfer = Transfer.builder()
+                .id(42L)
+                .fromCard(Card.builder().id(1L).build())
+                .toCard(Card.builder().id(2L).build())
+                .amount(new BigDecimal("10.00"))
+                .timestamp(LocalDateTime.of(2024, 11, 15, 12, 0))
+                .build();
+        expected = TransferDto.builder().fromCardId(1L).toCardId(2L).amount(new BigDecimal("10")).build();
+    }
+
+    @Test
+    void execute_newKey_recordsKeyInsideTransferTransaction() {
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+        List<Integer> recordingTransactions = new ArrayList<>();
+        when(keyRepository.saveAndFlush(any())).thenAnswer(i -> {
+            recordingTransactions.add(openTransactions.get());
+            return i.getArgument(0);
+        });
+
+        Transfer result = idempotencyService.execute(user, "key", expected, this::transferInTransaction);
+
+        assertThat(result).isSameAs(transfer);
+        assertThat(recordingTransactions).containsExactly(1);
+        verify(keyRepository).saveAndFlush(argThat(k -> k.getIdempotencyKey().equals("key")
+                && k.getTransferId().equals(42L) && k.getFromCardId().equals(1L) && k.getToCardId().equals(2L)));
+        verify(keyRepository, never()).recordTransfer(any(), any(), any(), any(), any(), any());
+        verify(transactionTemplate, times(1)).execute(any());
+    }
+
+    @Test
+    void execute_versionConflict_retriesTransferWithKeyInsideEachAttempt() {
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+        CardConcurrencyPolicy policy = new CardConcurrencyPolicy(new SimpleMeterRegistry(),
+                CardConcurrencyPolicy.LockMode.OPTIMISTIC, 3, Duration.ZERO, Duration.ZERO);
+        List<Integer> enclosingTransactions = new ArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+
+        Transfer result = idempotencyService.execute(user, "key", expected, recorder -> policy.execute("transfer", () -> {
+            enclosingTransactions.add(openTransactions.get());
+            return transactionTemplate.execute(status -> {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new ObjectOptimisticLockingFailureException(Card.class, 1L);
+                }
+                recorder.accept(transfer);
+                return transfer;
+            });
+        }));
+
+        assertThat(result).isSameAs(transfer);
+        assertThat(attempts).hasValue(2);
+        assertThat(enclosingTransactions).containsExactly(0, 0);
+        verify(keyRepository, times(1)).saveAndFlush(argThat(k -> k.getTransferId().equals(42L)));
+    }
+
+    @Test
+    void execute_storedKey_returnsStoredTransferWithoutRunningAction() {
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.of(storedKey(42L)));
+
+        Transfer result = idempotencyService.execute(user, "key", expected, recorder -> {
+            throw new AssertionError("Action must not run for a stored key");
+        });
+
+        assertThat(result.getId()).isEqualTo(42L);
+        assertThat(result.getFromCard().getId()).isEqualTo(1L);
+        assertThat(result.getToCard().getId()).isEqualTo(2L);
+        assertThat(result.getAmount()).isEqualByComparingTo("10.00");
+        assertThat(result.getTimestamp()).isEqualTo(transfer.getTimestamp());
+        verify(keyRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void execute_repeatedKey_servedFromRecentKeysWithoutSecondLookup() {
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+        AtomicInteger executions = new AtomicInteger();
+
+        idempotencyService.execute(user, "key", expected, recorder -> {
+            executions.incrementAndGet();
+            return transfer;
+        });
+        Transfer replay = idempotencyService.execute(user, "key", expected, recorder -> {
+            executions.incrementAndGet();
+            return transfer;
+        });
+
+        assertThat(replay).isSameAs(transfer);
+        assertThat(executions).hasValue(1);
+        verify(keyRepository, times(1)).findByUserIdAndKey(1L, "key");
+    }
+
+    @Test
+    void execute_concurrentDuplicates_collapseOntoOneExecution() throws Exception {
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<Transfer> first = executor.submit(() -> idempotencyService.execute(user, "key", expected, recorder -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return transfer;
+            }));
+            started.await();
+            Future<Transfer> second = executor.submit(() -> idempotencyService.execute(user, "key", expected, recorder -> {
+                executions.incrementAndGet();
+                return transfer;
+            }));
+            Future<Transfer> third = executor.submit(() -> idempotencyService.execute(user, "key", expected, recorder -> {
+                executions.incrementAndGet();
+                return transfer;
+            }));
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(transfer);
+            assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(transfer);
+            assertThat(third.get(5, TimeUnit.SECONDS)).isSameAs(transfer);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void execute_failedAction_isNotRemembered() {
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> idempotencyService.execute(user, "key", expected, recorder -> {
+            throw new InsufficientFundsException();
+        })).isInstanceOf(InsufficientFundsException.class);
+
+        verify(keyRepository, never()).saveAndFlush(any());
+        Transfer retried = idempotencyService.execute(user, "key", expected, this::transferInTransaction);
+        assertThat(retried).isSameAs(transfer);
+    }
+
+    @Test
+    void execute_keyRecordedConcurrentlyElsewhere_rollsBackOwnTransferAndReturnsStoredOne() {
+        when(keyRepository.findByUserIdAndKey(1L, "key"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(storedKey(41L)));
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(keyRepository).saveAndFlush(any());
+
+        Transfer result = idempotencyService.execute(user, "key", expected, this::transferInTransaction);
+
+        assertThat(result.getId()).isEqualTo(41L);
+    }
+
+    @Test
+    void execute_keyStillInProgressElsewhere_throwsException() {
+        when(keyRepository.findByUserIdAndKey(1L, "key"))
+                .thenReturn(Optional.of(claim(LocalDateTime.now().minusSeconds(10))));
+
+        assertThatThrownBy(() -> idempotencyService.execute(user, "key", expected, recorder -> transfer))
+                .isInstanceOf(TransferInProgressException.class);
+        verify(keyRepository, never()).saveAndFlush(any());
+        verify(transferRepository, never()).findUnclaimedTransfer(any(), any(), any(), any());
+    }
+
+    @Test
+    void execute_staleClaimWithExecutedTransfer_recordsItWithoutRunningAction() {
+        TransferIdempotencyKey claim = claim(LocalDateTime.now().minusMinutes(10));
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.of(claim));
+        when(transferRepository.findUnclaimedTransfer(1L, 2L, new BigDecimal("10.00"), claim.getCreatedAt()))
+                .thenReturn(List.of(transfer));
+
+        Transfer result = idempotencyService.execute(user, "key", expected, recorder -> {
+            throw new AssertionError("Action must not run when the claimed transfer was executed");
+        });
+
+        assertThat(result.getId()).isEqualTo(42L);
+        assertThat(result.getTimestamp()).isEqualTo(transfer.getTimestamp());
+        verify(keyRepository).recordTransfer(7L, 42L, 1L, 2L, new BigDecimal("10.00"), transfer.getTimestamp());
+        verify(keyRepository, never()).releaseStaleClaim(any(), any());
+    }
+
+    @Test
+    void execute_staleClaimWithoutTransfer_releasesKeyAndRunsAction() {
+        TransferIdempotencyKey claim = claim(LocalDateTime.now().minusMinutes(10));
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.of(claim));
+        when(transferRepository.findUnclaimedTransfer(any(), any(), any(), any())).thenReturn(List.of());
+        when(keyRepository.releaseStaleClaim(7L, claim.getCreatedAt())).thenReturn(1);
+
+        Transfer result = idempotencyService.execute(user, "key", expected, this::transferInTransaction);
+
+        assertThat(result).isSameAs(transfer);
+        verify(keyRepository).saveAndFlush(argThat(k -> k.getTransferId().equals(42L)));
+    }
+
+    @Test
+    void execute_staleClaimReleasedByAnotherRetry_throwsInProgress() {
+        TransferIdempotencyKey claim = claim(LocalDateTime.now().minusMinutes(10));
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.of(claim));
+        when(transferRepository.findUnclaimedTransfer(any(), any(), any(), any())).thenReturn(List.of());
+        when(keyRepository.releaseStaleClaim(7L, claim.getCreatedAt())).thenReturn(0);
+
+        assertThatThrownBy(() -> idempotencyService.execute(user, "key", expected, this::transferInTransaction))
+                .isInstanceOf(TransferInProgressException.class);
+        verify(keyRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void execute_ledgerEngine_claimsKeyBeforeTransferAndRecordsAfter() {
+        idempotencyService.setLedgerEngine(mock(LedgerEngine.class));
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+        when(keyRepository.saveAndFlush(any())).thenAnswer(i -> {
+            TransferIdempotencyKey claim = i.getArgument(0);
+            claim.setId(7L);
+            return claim;
+        });
+
+        Transfer result = idempotencyService.execute(user, "key", expected, recorder -> {
+            recorder.accept(transfer);
+            return transfer;
+        });
+
+        assertThat(result).isSameAs(transfer);
+        verify(keyRepository).saveAndFlush(argThat(k -> k.getTransferId() == null && k.getFromCardId().equals(1L)
+                && k.getToCardId().equals(2L) && k.getAmount().compareTo(new BigDecimal("10")) == 0));
+        verify(keyRepository).recordTransfer(7L, 42L, 1L, 2L, new BigDecimal("10.00"), transfer.getTimestamp());
+    }
+
+    @Test
+    void execute_ledgerEngine_failedAction_releasesClaim() {
+        idempotencyService.setLedgerEngine(mock(LedgerEngine.class));
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+        when(keyRepository.saveAndFlush(any())).thenAnswer(i -> {
+            TransferIdempotencyKey claim = i.getArgument(0);
+            claim.setId(7L);
+            return claim;
+        });
+
+        assertThatThrownBy(() -> idempotencyService.execute(user, "key", expected, recorder -> {
+            throw new InsufficientFundsException();
+        })).isInstanceOf(InsufficientFundsException.class);
+
+        verify(keyRepository).deleteById(7L);
+    }
+
+    @Test
+    void execute_ledgerEngine_recordingResultFails_returnsExecutedTransferAndKeepsKeyClaimed() {
+        idempotencyService.setLedgerEngine(mock(LedgerEngine.class));
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.empty());
+        when(keyRepository.saveAndFlush(any())).thenAnswer(i -> {
+            TransferIdempotencyKey claim = i.getArgument(0);
+            claim.setId(7L);
+            return claim;
+        });
+        doThrow(new DataIntegrityViolationException("connection lost")).when(keyRepository)
+                .recordTransfer(any(), any(), any(), any(), any(), any());
+
+        Transfer result = idempotencyService.execute(user, "key", expected, recorder -> {
+            recorder.accept(transfer);
+            return transfer;
+        });
+
+        assertThat(result).isSameAs(transfer);
+        verify(keyRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void execute_ledgerEngine_keyClaimedConcurrentlyElsewhere_returnsStoredTransferWithoutRunningAction() {
+        idempotencyService.setLedgerEngine(mock(LedgerEngine.class));
+        when(keyRepository.findByUserIdAndKey(1L, "key"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(storedKey(42L)));
+        doThrow(new DataIntegrityViolationException("duplicate key")).when(keyRepository).saveAndFlush(any());
+
+        Transfer result = idempotencyService.execute(user, "key", expected, recorder -> {
+            throw new AssertionError("Action must not run for a key claimed elsewhere");
+        });
+
+        assertThat(result.getId()).isEqualTo(42L);
+    }
+
+    @Test
+    void execute_keyReusedForDifferentTransfer_throwsException() {
+        when(keyRepository.findByUserIdAndKey(1L, "key")).thenReturn(Optional.of(storedKey(42L)));
+        TransferDto other = TransferDto.builder().fromCardId(1L).toCardId(2L).amount(new BigDecimal("99")).build();
+
+        assertThatThrownBy(() -> idempotencyService.execute(user, "key", other, recorder -> transfer))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("different transfer");
+    }
+
+    @Test
+    void execute_blankKey_throwsException() {
+        assertThatThrownBy(() -> idempotencyService.execute(user, " ", expected, recorder -> transfer))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Перевод в транзакции с записью ключа, как в TransferService без движка в памяти.
+     */
+    private Transfer transferInTransaction(Consumer<Transfer> recorder) {
+        return transactionTemplate.execute(status -> {
+            recorder.accept(transfer);
+            return transfer;
+        });
+    }
+
+    private TransferIdempotencyKey storedKey(Long transferId) {
+        return TransferIdempotencyKey.builder()
+                .user(user)
+                .idempotencyKey("key")
+                .transferId(transferId)
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(transfer.getAmount())
+                .transferTimestamp(transfer.getTimestamp())
+                .createdAt(transfer.getTimestamp())
+                .build();
+    }
+
+    /**
+     * Ключ, занятый движком в памяти в момент createdAt и ещё без записанного перевода.
+     */
+    private TransferIdempotencyKey claim(LocalDateTime createdAt) {
+        return TransferIdempotencyKey.builder()
+                .id(7L)
+                .user(user)
+                .idempotencyKey("key")
+                .fromCardId(1L)
+                .toCardId(2L)
+                .amount(transfer.getAmount())
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
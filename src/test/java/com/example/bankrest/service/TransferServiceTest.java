@@ -1,12 +1,33 @@
 package com.example.bankrest.service;
 
+import com.example.bankrest.dto.BatchTransferResultDto;
+import com.example.bankrest.dto.PageResponse;
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.dto.TransferStatementRow;
 import com.example.bankrest.entity.*;
+import com.example.bankrest.exception.SpendingLimitExceededException;
+import com.example.bankrest.ledger.LedgerEngine;
+import com.example.bankrest.repository.ArchiveRepository.ArchivedPartition;
 import com.example.bankrest.repository.TransferRepository;
+import com.example.bankrest.util.PageCursor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -19,6 +40,25 @@ class TransferServiceTest {
     @Mock
     private CardService cardService;
 
+    @Mock
+    private CardTurnoverService turnoverService;
+
+    @Spy
+    private CardLocks cardLocks = new CardLocks(new SimpleMeterRegistry(), 16, Duration.ofSeconds(5));
+
+    @Mock
+    private SpendingLimitService spendingLimits;
+
+    @Spy
+    private CardConcurrencyPolicy concurrencyPolicy = new CardConcurrencyPolicy(new SimpleMeterRegistry(),
+            CardConcurrencyPolicy.LockMode.OPTIMISTIC, 3, Duration.ZERO, Duration.ZERO);
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ColdStorageService coldStorage;
+
     @InjectMocks
     private TransferService transferService;
 
@@ -31,6 +71,8 @@ class TransferServiceTest {
             // Mock initialization complete
             assert mocks != null;
         }
+        when(transactionTemplate.execute(any())).thenAnswer(i -> ((TransactionCallback<?>) i.getArgument(0)).doInTransaction(null));
+        when(spendingLimits.reserve(any(), any(), any())).thenReturn(SpendingLimitService.Reservation.NONE);
         User user = User.builder().id(1L).build();
         fromCard = Card.builder()
                 .id(1L)
@@ -50,12 +92,7 @@ class TransferServiceTest {
     void transferBetweenCards_successfulTransfer() {
         BigDecimal amount = new BigDecimal("200");
         when(transferRepository.save(any())).thenAnswer(i -> i.getArgument(0));
-        doAnswer(invocation -> {
-            Card card = invocation.getArgument(0);
-            BigDecimal balance = invocation.getArgument(1);
-            card.setBalance(balance);
-            return null;
-        }).when(cardService).updateCardBalance(any(), any());
+        stubLockedCards(fromCard, toCard);
 
         Transfer transfer = transferService.transferBetweenCards(fromCard, toCard, amount);
 
@@ -65,6 +102,32 @@ class TransferServiceTest {
         assertThat(fromCard.getBalance()).isEqualTo(new BigDecimal("800"));
         assertThat(toCard.getBalance()).isEqualTo(new BigDecimal("700"));
         verify(transferRepository).save(any());
+        verify(cardService, never()).updateCardBalance(any(), any());
+        verify(cardService).recordTransferEntries(argThat(transfers -> transfers.size() == 1), any());
+        verify(turnoverService).recordTransfers(argThat(transfers -> transfers.size() == 1
+                && transfers.getFirst().getFromCardId().equals(1L)
+                && transfers.getFirst().getToCardId().equals(2L)
+                && transfers.getFirst().getAmount().equals(amount)
+                && transfers.getFirst().getTimestamp().equals(transfer.getTimestamp())));
+        verify(cardLocks).callWithLocks(eq(1L), eq(2L), any());
+        verify(transactionTemplate).execute(any());
+    }
+
+    @Test
+    void transferBetweenCards_readsBalancesAfterLockingCards() {
+        BigDecimal amount = new BigDecimal("50");
+        when(transferRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        stubLockedCards(fromCard, toCard);
+
+        transferService.transferBetweenCards(toCard, fromCard, amount);
+
+        InOrder inOrder = inOrder(cardService, transferRepository);
+        inOrder.verify(cardService).lockCards(List.of(2L, 1L), CardConcurrencyPolicy.LockMode.OPTIMISTIC);
+        inOrder.verify(cardService).currentBalances(List.of(2L, 1L));
+        inOrder.verify(transferRepository).save(any());
+        inOrder.verify(cardService).recordTransferEntries(any(), any());
+        assertThat(toCard.getBalance()).isEqualByComparingTo("450");
+        assertThat(fromCard.getBalance()).isEqualByComparingTo("1050");
     }
 
     @Test
@@ -85,12 +148,446 @@ class TransferServiceTest {
                 .hasMessageContaining("Both cards must be active");
     }
 
+    @Test
+    void transferBetweenCards_throwsIfCardPastExpiryDate() {
+        toCard.setExpiryDate(LocalDate.now().minusDays(1));
+
+        assertThatThrownBy(() -> transferService.transferBetweenCards(fromCard, toCard, BigDecimal.TEN))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Card has expired");
+        verify(transferRepository, never()).save(any());
+    }
+
     @Test
     void transferBetweenCards_throwsIfInsufficientFunds() {
         BigDecimal amount = new BigDecimal("2000");
+        stubLockedCards(fromCard, toCard);
 
         assertThatThrownBy(() -> transferService.transferBetweenCards(fromCard, toCard, amount))
                 .isInstanceOf(com.example.bankrest.exception.InsufficientFundsException.class)
                 .hasMessageContaining("Insufficient funds");
+        verify(cardService, never()).recordTransferEntries(any(), any());
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenCards_throwsIfCardBlockedConcurrently() {
+        BigDecimal amount = new BigDecimal("100");
+        Card blocked = Card.builder().id(2L).user(fromCard.getUser()).status(CardStatus.BLOCKED).build();
+        stubLockedCards(fromCard, blocked);
+
+        assertThatThrownBy(() -> transferService.transferBetweenCards(fromCard, toCard, amount))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Both cards must be active");
+        verify(transferRepository, never()).save(any());
+    }
+
+    @Test
+    void transferBetweenCards_spendingLimitExceeded_doesNotTouchDatabase() {
+        when(spendingLimits.reserve(1L, 1L, BigDecimal.TEN))
+                .thenThrow(new SpendingLimitExceededException("Card spending limit for the last hour exceeded"));
+
+        assertThatThrownBy(() -> transferService.transferBetweenCards(fromCard, toCard, BigDecimal.TEN))
+                .isInstanceOf(SpendingLimitExceededException.class);
+        verifyNoInteractions(cardService, transferRepository, transactionTemplate);
+    }
+
+    @Test
+    void transferBetweenCards_failedTransfer_releasesSpendingLimitReservation() {
+        SpendingLimitService.Reservation reservation = mock(SpendingLimitService.Reservation.class);
+        when(spendingLimits.reserve(1L, 1L, BigDecimal.TEN)).thenReturn(reservation);
+        when(cardService.lockCards(any(), any())).thenReturn(Map.of(2L, toCard));
+
+        assertThatThrownBy(() -> transferService.transferBetweenCards(fromCard, toCard, BigDecimal.TEN))
+                .isInstanceOf(RuntimeException.class);
+        verify(reservation).release();
+    }
+
+    @Test
+    void transferBetweenCards_throwsIfSameCard() {
+        assertThatThrownBy(() -> transferService.transferBetweenCards(fromCard, fromCard, BigDecimal.TEN))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Cannot transfer to same card");
+    }
+
+    @Test
+    void transferBetweenCards_staleCards_returnsBalancesProducedByLedgerEntries() {
+        when(transferRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        stubLockedCards(
+                Card.builder().id(1L).user(fromCard.getUser()).status(CardStatus.ACTIVE)
+                        .balance(new BigDecimal("700.00")).build(),
+                Card.builder().id(2L).user(fromCard.getUser()).status(CardStatus.ACTIVE)
+                        .balance(new BigDecimal("300.00")).build());
+        Card staleFrom = snapshot(1L);
+        Card staleTo = snapshot(2L);
+
+        transferService.transferBetweenCards(staleFrom, staleTo, new BigDecimal("100.00"));
+
+        assertThat(staleFrom.getBalance()).isEqualByComparingTo("600.00");
+        assertThat(staleTo.getBalance()).isEqualByComparingTo("400.00");
+    }
+
+    @Test
+    void transferBetweenCards_versionConflict_retriesWholeTransaction() {
+        when(transferRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        stubLockedCards(fromCard, toCard);
+        doThrow(new org.springframework.orm.ObjectOptimisticLockingFailureException(Card.class, 1L))
+                .doNothing()
+                .when(cardService).recordTransferEntries(any(), any());
+
+        transferService.transferBetweenCards(fromCard, toCard, BigDecimal.TEN);
+
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(cardService, times(2)).currentBalances(any());
+        verify(cardService, times(2)).recordTransferEntries(any(), any());
+        verify(turnoverService, times(1)).recordTransfers(any());
+    }
+
+    @Test
+    void transferBatch_appendsEntriesForAcceptedTransfers() {
+        Card foreignCard = Card.builder().id(3L).user(User.builder().id(2L).build())
+                .status(CardStatus.ACTIVE).balance(BigDecimal.TEN).build();
+        stubLockedCards(fromCard, toCard, foreignCard);
+        when(transferRepository.insertAll(any())).thenReturn(List.of(10L, 11L));
+
+        List<BatchTransferResultDto> results = transferService.transferBatch(1L, List.of(
+                instruction(1L, 2L, "900"),
+                instruction(1L, 2L, "200"),
+                instruction(2L, 1L, "300"),
+                instruction(1L, 3L, "1")));
+
+        assertThat(results).extracting(BatchTransferResultDto::getStatus).containsExactly(
+                BatchTransferResultDto.Status.COMPLETED,
+                BatchTransferResultDto.Status.REJECTED,
+                BatchTransferResultDto.Status.COMPLETED,
+                BatchTransferResultDto.Status.REJECTED);
+        assertThat(results.get(1).getMessage()).contains("Insufficient funds");
+        assertThat(results.get(3).getMessage()).contains("Transfers allowed only between own cards");
+        assertThat(results.get(0).getTransferId()).isEqualTo(10L);
+        assertThat(results.get(2).getTransferId()).isEqualTo(11L);
+
+        ArgumentCaptor<List<TransferDto>> entries = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Map<Long, BigDecimal>> opening = ArgumentCaptor.forClass(Map.class);
+        verify(cardService).recordTransferEntries(entries.capture(), opening.capture());
+        assertThat(entries.getValue()).extracting(TransferDto::getId).containsExactly(10L, 11L);
+        assertThat(opening.getValue().get(1L)).isEqualByComparingTo("400");
+        assertThat(opening.getValue().get(2L)).isEqualByComparingTo("1100");
+        verify(cardService, times(1)).lockCards(any(), any());
+        verify(cardService, times(1)).currentBalances(any());
+        verify(turnoverService).recordTransfers(argThat(transfers -> transfers.size() == 2));
+    }
+
+    @Test
+    void transferBatch_spendingLimitExceeded_rejectsInstruction() {
+        stubLockedCards(fromCard, toCard);
+        when(transferRepository.insertAll(any())).thenReturn(List.of(10L));
+        when(spendingLimits.reserve(1L, 1L, new BigDecimal("300")))
+                .thenThrow(new SpendingLimitExceededException("Card spending limit for the last day exceeded"));
+
+        List<BatchTransferResultDto> results = transferService.transferBatch(1L, List.of(
+                instruction(1L, 2L, "300"),
+                instruction(1L, 2L, "100")));
+
+        assertThat(results).extracting(BatchTransferResultDto::getStatus).containsExactly(
+                BatchTransferResultDto.Status.REJECTED,
+                BatchTransferResultDto.Status.COMPLETED);
+        assertThat(results.get(0).getMessage()).isEqualTo("Card spending limit for the last day exceeded");
+        verify(spendingLimits).reserve(1L, 1L, new BigDecimal("100"));
+        verify(cardService).recordTransferEntries(argThat(transfers -> transfers.size() == 1), any());
+    }
+
+    @Test
+    void transferBatch_rolledBack_releasesReservations() {
+        SpendingLimitService.Reservation reservation = mock(SpendingLimitService.Reservation.class);
+        when(spendingLimits.reserve(any(), any(), any())).thenReturn(reservation);
+        stubLockedCards(fromCard, toCard);
+        when(transferRepository.insertAll(any())).thenThrow(new IllegalStateException("insert failed"));
+
+        assertThatThrownBy(() -> transferService.transferBatch(1L, List.of(
+                instruction(1L, 2L, "100"),
+                instruction(2L, 1L, "50"))))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(reservation, times(2)).release();
+    }
+
+    @Test
+    void transferBatch_allRejected_skipsWrites() {
+        stubLockedCards(fromCard);
+
+        List<BatchTransferResultDto> results = transferService.transferBatch(1L, List.of(instruction(1L, 9L, "5")));
+
+        assertThat(results.getFirst().getStatus()).isEqualTo(BatchTransferResultDto.Status.REJECTED);
+        assertThat(results.getFirst().getMessage()).isEqualTo("Card not found with id: 9");
+        verify(cardService, never()).recordTransferEntries(any(), any());
+        verify(transferRepository, never()).insertAll(any());
+        verifyNoInteractions(turnoverService);
+    }
+
+    @Test
+    void transferBatch_throwsIfEmpty() {
+        assertThatThrownBy(() -> transferService.transferBatch(1L, List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void transferBetweenCards_ledgerEngine_delegatesWithoutDatabaseUpdates() {
+        LedgerEngine ledgerEngine = mock(LedgerEngine.class);
+        transferService.setLedgerEngine(ledgerEngine);
+        Transfer executed = Transfer.builder().id(7L).build();
+        when(ledgerEngine.transfer(fromCard, toCard, BigDecimal.TEN)).thenReturn(executed);
+
+        assertThat(transferService.transferBetweenCards(fromCard, toCard, BigDecimal.TEN)).isSameAs(executed);
+        verify(cardService, never()).lockCards(any(), any());
+        verify(transferRepository, never()).save(any());
+        verifyNoInteractions(turnoverService);
+    }
+
+    @Test
+    void transferBatch_ledgerEngine_executesInstructionsOneByOne() {
+        LedgerEngine ledgerEngine = mock(LedgerEngine.class);
+        transferService.setLedgerEngine(ledgerEngine);
+        when(cardService.findCardsByIds(any())).thenReturn(Map.of(1L, fromCard, 2L, toCard));
+        when(ledgerEngine.transfer(fromCard, toCard, new BigDecimal("900")))
+                .thenReturn(Transfer.builder().id(10L).build());
+        when(ledgerEngine.transfer(fromCard, toCard, new BigDecimal("200")))
+                .thenThrow(new com.example.bankrest.exception.InsufficientFundsException());
+
+        List<BatchTransferResultDto> results = transferService.transferBatch(1L, List.of(
+                instruction(1L, 2L, "900"),
+                instruction(1L, 2L, "200"),
+                instruction(1L, 1L, "5")));
+
+        assertThat(results).extracting(BatchTransferResultDto::getStatus).containsExactly(
+                BatchTransferResultDto.Status.COMPLETED,
+                BatchTransferResultDto.Status.REJECTED,
+                BatchTransferResultDto.Status.REJECTED);
+        assertThat(results.get(0).getTransferId()).isEqualTo(10L);
+        assertThat(results.get(1).getMessage()).contains("Insufficient funds");
+        assertThat(results.get(2).getMessage()).isEqualTo("Cannot transfer to same card");
+        verify(cardService, never()).lockCards(any(), any());
+        verify(cardService, never()).recordTransferEntries(any(), any());
+    }
+
+    @Test
+    void transferBatch_ledgerEngine_reservesLimitsPerInstruction() {
+        LedgerEngine ledgerEngine = mock(LedgerEngine.class);
+        transferService.setLedgerEngine(ledgerEngine);
+        SpendingLimitService.Reservation reservation = mock(SpendingLimitService.Reservation.class);
+        when(cardService.findCardsByIds(any())).thenReturn(Map.of(1L, fromCard, 2L, toCard));
+        when(spendingLimits.reserve(1L, 1L, new BigDecimal("900"))).thenReturn(reservation);
+        when(spendingLimits.reserve(1L, 1L, new BigDecimal("5")))
+                .thenThrow(new SpendingLimitExceededException("User spending limit for the last hour exceeded"));
+        when(ledgerEngine.transfer(fromCard, toCard, new BigDecimal("900")))
+                .thenThrow(new com.example.bankrest.exception.InsufficientFundsException());
+
+        List<BatchTransferResultDto> results = transferService.transferBatch(1L, List.of(
+                instruction(1L, 2L, "900"),
+                instruction(1L, 2L, "5")));
+
+        assertThat(results).extracting(BatchTransferResultDto::getStatus).containsOnly(
+                BatchTransferResultDto.Status.REJECTED);
+        assertThat(results.get(1).getMessage()).isEqualTo("User spending limit for the last hour exceeded");
+        verify(reservation).release();
+        verify(ledgerEngine, never()).transfer(fromCard, toCard, new BigDecimal("5"));
+    }
+
+    @Test
+    void getCardTransfers_routesByDirection() {
+        Slice<Transfer> page = new SliceImpl<>(List.of());
+        when(transferRepository.findOutgoing(eq(1L), any(), any(), any())).thenReturn(page);
+        when(transferRepository.findIncoming(eq(1L), any(), any(), any())).thenReturn(page);
+        when(transferRepository.findIncomingAndOutgoing(eq(1L), any(), any(), anyLong(), any())).thenReturn(page);
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+        transferService.getCardTransfers(1L, TransferDirection.OUT, from, to, PageRequest.of(0, 10), false);
+        transferService.getCardTransfers(1L, TransferDirection.IN, from, to, PageRequest.of(0, 10), false);
+        transferService.getCardTransfers(1L, TransferDirection.BOTH, from, to, PageRequest.of(2, 10), false);
+
+        verify(transferRepository).findOutgoing(1L, from, to, PageRequest.of(0, 10));
+        verify(transferRepository).findIncoming(1L, from, to, PageRequest.of(0, 10));
+        verify(transferRepository).findIncomingAndOutgoing(1L, from, to, 31L, PageRequest.of(2, 10));
+        verify(transferRepository, never()).countOutgoing(any(), any(), any());
+        verify(transferRepository, never()).countIncoming(any(), any(), any());
+    }
+
+    @Test
+    void getCardTransfers_withTotalCountsBothDirections() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+        Transfer transfer = Transfer.builder().id(1L).build();
+        when(transferRepository.findIncomingAndOutgoing(eq(1L), eq(from), eq(to), eq(2L), any()))
+                .thenReturn(new SliceImpl<>(List.of(transfer), PageRequest.of(0, 1), true));
+        when(transferRepository.countOutgoing(1L, from, to)).thenReturn(3L);
+        when(transferRepository.countIncoming(1L, from, to)).thenReturn(4L);
+
+        PageResponse<Transfer> page =
+                transferService.getCardTransfers(1L, TransferDirection.BOTH, from, to, PageRequest.of(0, 1), true);
+
+        assertThat(page.getContent()).containsExactly(transfer);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getTotalElements()).isEqualTo(7L);
+        assertThat(page.getTotalPages()).isEqualTo(7);
+    }
+
+    @Test
+    void getCardTransfers_openPeriodUsesWideBounds() {
+        when(transferRepository.findIncomingAndOutgoing(any(), any(), any(), anyLong(), any()))
+                .thenReturn(new SliceImpl<>(List.of()));
+
+        transferService.getCardTransfers(1L, TransferDirection.BOTH, null, null, PageRequest.of(0, 10), false);
+
+        verify(transferRepository).findIncomingAndOutgoing(eq(1L),
+                argThat(from -> from.getYear() == 1970), argThat(to -> to.getYear() == 9999), eq(11L), any());
+    }
+
+    @Test
+    void getCardTransfers_continuesIntoColdStorageAfterHotRows() {
+        List<ArchivedPartition> archived = List.of(
+                new ArchivedPartition(java.time.YearMonth.of(2023, 12), "transfers_2023_12.col", 8));
+        LocalDateTime horizon = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(coldStorage.archived(ColdStorageService.TRANSFERS)).thenReturn(archived);
+        when(transferRepository.findOutgoing(eq(1L), eq(horizon), any(), eq(PageRequest.of(1, 2))))
+                .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(1, 2), false));
+        when(transferRepository.countOutgoing(eq(1L), eq(horizon), any())).thenReturn(1L);
+        doAnswer(i -> {
+            java.util.function.Predicate<TransferStatementRow> consumer = i.getArgument(6);
+            for (long id = 8; id > 0 && consumer.test(new TransferStatementRow(id, horizon.minusDays(9 - id),
+                    TransferDirection.OUT, 1L, 2L, BigDecimal.ONE)); id--) {
+                // строки архива по убыванию времени
+            }
+            return null;
+        }).when(coldStorage).scanTransfers(eq(archived), eq(1L), eq(TransferDirection.OUT), any(),
+                eq(PageCursor.of(horizon, 0)), eq(true), any());
+
+        PageResponse<Transfer> page =
+                transferService.getCardTransfers(1L, TransferDirection.OUT, null, null, PageRequest.of(1, 2), true);
+
+        // Первая страница — одна строка таблицы и архивная 8, вторая начинается с архивной 7.
+        assertThat(page.getContent()).extracting(Transfer::getId).containsExactly(7L, 6L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getTotalElements()).isEqualTo(9L);
+        assertThat(page.getTotalPages()).isEqualTo(5);
+    }
+
+    @Test
+    void getCardTransfers_throwsIfPeriodIsEmpty() {
+        LocalDateTime moment = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        assertThatThrownBy(() -> transferService.getCardTransfers(1L, TransferDirection.BOTH, moment, moment,
+                PageRequest.of(0, 10), false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Start of period must be before its end");
+    }
+
+    @Test
+    void getCardTransfersAfter_seeksFromCursorAndReturnsNextCursor() {
+        LocalDateTime last = LocalDateTime.of(2024, 1, 15, 12, 0);
+        List<Transfer> rows = List.of(
+                Transfer.builder().id(9L).timestamp(last.plusHours(1)).build(),
+                Transfer.builder().id(7L).timestamp(last).build(),
+                Transfer.builder().id(5L).timestamp(last.minusHours(1)).build());
+        String after = PageCursor.of(last.plusHours(2), 11L).encode();
+        when(transferRepository.findIncomingAndOutgoingBefore(eq(1L), any(), eq(last.plusHours(2)), eq(11L), eq(3)))
+                .thenReturn(rows);
+
+        PageResponse<Transfer> page = transferService.getCardTransfersAfter(1L, TransferDirection.BOTH, null, null, after, 2);
+
+        assertThat(page.getContent()).extracting(Transfer::getId).containsExactly(9L, 7L);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(PageCursor.parse(page.getNextCursor())).isEqualTo(PageCursor.of(last, 7L));
+    }
+
+    @Test
+    void getCardTransfersAfter_firstPageIsBoundedByEndOfPeriod() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+        when(transferRepository.findOutgoingBefore(1L, from, to, 0L, 11)).thenReturn(List.of());
+
+        PageResponse<Transfer> page = transferService.getCardTransfersAfter(1L, TransferDirection.OUT, from, to, "", 10);
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+        verify(transferRepository).findOutgoingBefore(1L, from, to, 0L, 11);
+    }
+
+    @Test
+    void getCardTransfersAfter_fillsPageFromColdStorageBelowHorizon() {
+        List<ArchivedPartition> archived = List.of(
+                new ArchivedPartition(java.time.YearMonth.of(2023, 12), "transfers_2023_12.col", 10));
+        LocalDateTime horizon = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(coldStorage.archived(ColdStorageService.TRANSFERS)).thenReturn(archived);
+        when(transferRepository.findOutgoingBefore(eq(1L), eq(horizon), any(), eq(0L), eq(3)))
+                .thenReturn(List.of(Transfer.builder().id(9L).timestamp(horizon.plusDays(1)).build()));
+        doAnswer(i -> {
+            java.util.function.Predicate<TransferStatementRow> consumer = i.getArgument(6);
+            for (long id = 8; id > 0 && consumer.test(new TransferStatementRow(id, horizon.minusDays(9 - id),
+                    TransferDirection.OUT, 1L, 2L, BigDecimal.ONE)); id--) {
+                // строки архива по убыванию времени
+            }
+            return null;
+        }).when(coldStorage).scanTransfers(eq(archived), eq(1L), eq(TransferDirection.OUT), any(),
+                eq(PageCursor.of(horizon, 0)), eq(true), any());
+
+        PageResponse<Transfer> page = transferService.getCardTransfersAfter(1L, TransferDirection.OUT, null, null, null, 2);
+
+        assertThat(page.getContent()).extracting(Transfer::getId).containsExactly(9L, 8L);
+        assertThat(page.isHasNext()).isTrue();
+        verify(cardService, times(2)).getCardReference(1L);
+    }
+
+    @Test
+    void getCardTransfersAfter_rejectsMalformedCursor() {
+        String idOnly = PageCursor.ofId(5L).encode();
+
+        assertThatThrownBy(() -> transferService.getCardTransfersAfter(1L, TransferDirection.IN, null, null, "%%%", 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid page cursor");
+        assertThatThrownBy(() -> transferService.getCardTransfersAfter(1L, TransferDirection.IN, null, null, idOnly, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid page cursor");
+        verifyNoInteractions(transferRepository);
+    }
+
+    private TransferDto instruction(Long fromId, Long toId, String amount) {
+        return TransferDto.builder().fromCardId(fromId).toCardId(toId).amount(new BigDecimal(amount)).build();
+    }
+
+    /**
+     * Карты блокируются и отдают балансы из снимков; проводки сдвигают переданные балансы,
+     * как это делает журнал.
+     */
+    private void stubLockedCards(Card... cards) {
+        Map<Long, Card> locked = new HashMap<>();
+        for (Card card : cards) {
+            locked.put(card.getId(), card);
+        }
+        when(cardService.lockCards(any(), any())).thenReturn(locked);
+        when(cardService.currentBalances(any())).thenAnswer(i -> {
+            java.util.Collection<Long> ids = i.getArgument(0);
+            Map<Long, BigDecimal> balances = new HashMap<>();
+            ids.stream().filter(locked::containsKey).forEach(id -> balances.put(id, locked.get(id).getBalance()));
+            return balances;
+        });
+        doAnswer(i -> {
+            List<TransferDto> transfers = i.getArgument(0);
+            Map<Long, BigDecimal> balances = i.getArgument(1);
+            for (TransferDto transfer : transfers) {
+                balances.merge(transfer.getFromCardId(), transfer.getAmount().negate(), BigDecimal::add);
+                balances.merge(transfer.getToCardId(), transfer.getAmount(), BigDecimal::add);
+            }
+            return null;
+        }).when(cardService).recordTransferEntries(any(), any());
+    }
+
+    private Card snapshot(Long id) {
+        return Card.builder()
+                .id(id)
+                .user(fromCard.getUser())
+                .status(CardStatus.ACTIVE)
+                .balance(new BigDecimal("1000.00"))
+                .build();
     }
 }
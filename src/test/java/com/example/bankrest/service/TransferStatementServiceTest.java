@@ -0,0 +1,127 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.TransferDirection;
+import com.example.bankrest.dto.TransferStatementFormat;
+import com.example.bankrest.dto.TransferStatementRow;
+import com.example.bankrest.repository.TransferRepository;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TransferStatementServiceTest {
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private ColdStorageService coldStorage;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferStatementService statementService;
+
+    private final List<TransferStatementRow> rows = List.of(
+            new TransferStatementRow(1L, LocalDateTime.of(2024, 1, 1, 10, 0), TransferDirection.OUT,
+                    1L, 2L, new BigDecimal("100.00")),
+            new TransferStatementRow(2L, LocalDateTime.of(2024, 1, 2, 11, 30), TransferDirection.IN,
+                    3L, 1L, new BigDecimal("25.50")));
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        meterRegistry = new SimpleMeterRegistry();
+        JsonMapper objectMapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        statementService = new TransferStatementService(transferRepository, coldStorage, objectMapper, meterRegistry, 500);
+    }
+
+    @Test
+    void export_writesCsvWithHeader() throws IOException {
+        streamRows(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long exported = statementService.export(1L, TransferDirection.BOTH, null, null, TransferStatementFormat.CSV, out);
+
+        assertThat(exported).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id,timestamp,direction,from_card_id,to_card_id,amount\n"
+                        + "1,2024-01-01T10:00,OUT,1,2,100.00\n"
+                        + "2,2024-01-02T11:30,IN,3,1,25.50\n");
+        verify(transferRepository).streamStatement(eq(1L), eq(TransferDirection.BOTH), isNull(), isNull(), eq(500), any());
+    }
+
+    @Test
+    void export_writesOneJsonObjectPerLine() throws IOException {
+        streamRows(rows);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        statementService.export(1L, TransferDirection.BOTH, null, null, TransferStatementFormat.NDJSON, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n", -1)).containsExactly(
+                "{\"id\":1,\"timestamp\":\"2024-01-01T10:00:00\",\"direction\":\"OUT\",\"fromCardId\":1,\"toCardId\":2,\"amount\":100.00}",
+                "{\"id\":2,\"timestamp\":\"2024-01-02T11:30:00\",\"direction\":\"IN\",\"fromCardId\":3,\"toCardId\":1,\"amount\":25.50}",
+                "");
+    }
+
+    @Test
+    void export_recordsRowsAndDurationPerFormat() throws IOException {
+        streamRows(rows);
+
+        statementService.export(1L, TransferDirection.OUT, null, null, TransferStatementFormat.NDJSON,
+                new ByteArrayOutputStream());
+
+        assertThat(meterRegistry.get("bank.transfers.export.rows").tag("format", "ndjson").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("bank.transfers.export.rows").tag("format", "csv").counter().count())
+                .isZero();
+        assertThat(meterRegistry.get("bank.transfers.export").tag("format", "ndjson").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void export_propagatesClientDisconnect() {
+        streamRows(rows);
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> statementService.export(1L, TransferDirection.BOTH, null, null,
+                TransferStatementFormat.CSV, broken))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void streamRows(List<TransferStatementRow> statement) {
+        doAnswer(invocation -> {
+            Consumer<TransferStatementRow> consumer = invocation.getArgument(5);
+            statement.forEach(consumer);
+            return null;
+        }).when(transferRepository).streamStatement(any(), any(), any(), any(), anyInt(), any(Consumer.class));
+    }
+}
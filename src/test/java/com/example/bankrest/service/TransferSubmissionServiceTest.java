@@ -0,0 +1,164 @@
+package com.example.bankrest.service;
+
+import com.example.bankrest.dto.TransferDto;
+import com.example.bankrest.dto.TransferSubmissionDto;
+import com.example.bankrest.entity.Card;
+import com.example.bankrest.entity.Transfer;
+import com.example.bankrest.entity.User;
+import com.example.bankrest.exception.InsufficientFundsException;
+import com.example.bankrest.exception.TransferQueueFullException;
+import com.example.bankrest.exception.TransferSubmissionNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TransferSubmissionServiceTest {
+
+    @Mock
+    private TransferService transferService;
+
+    @Mock
+    private CardService cardService;
+
+    @Mock
+    private UserService userService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransferSubmissionService submissionService;
+    private Card fromCard;
+    private Card toCard;
+
+    @BeforeEach
+    void setup() throws Exception {
+        try (AutoCloseable mocks = MockitoAnnotations.openMocks(this)) {
+            // Mock initialization complete
+            assert mocks != null;
+        }
+        meterRegistry = new SimpleMeterRegistry();
+        User user = User.builder().id(1L).username("testuser").build();
+        fromCard = Card.builder().id(1L).user(user).build();
+        toCard = Card.builder().id(2L).user(user).build();
+        when(userService.getUserByUsername("testuser")).thenReturn(user);
+        when(cardService.getCardById(1L)).thenReturn(fromCard);
+        when(cardService.getCardById(2L)).thenReturn(toCard);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (submissionService != null) {
+            submissionService.stop();
+        }
+    }
+
+    @Test
+    void submit_returnsPendingAndWorkerCompletesTransfer() {
+        when(transferService.transferBetweenCards(fromCard, toCard, BigDecimal.TEN))
+                .thenReturn(Transfer.builder().id(42L).build());
+        submissionService = newService(10, 2);
+        submissionService.start();
+
+        TransferSubmissionDto submission = submissionService.submit("testuser", request());
+
+        assertThat(submission.getStatus()).isEqualTo(TransferSubmissionDto.Status.PENDING);
+        TransferSubmissionDto completed = awaitFinished(submission.getRequestId());
+        assertThat(completed.getStatus()).isEqualTo(TransferSubmissionDto.Status.COMPLETED);
+        assertThat(completed.getTransferId()).isEqualTo(42L);
+        assertThat(completed.getCompletedAt()).isNotNull();
+        assertThat(meterRegistry.get("bank.transfers.queue.wait").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("bank.transfers.queue.processing").tag("outcome", "completed").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void submit_failedTransferReportsMessage() {
+        when(transferService.transferBetweenCards(any(), any(), any())).thenThrow(new InsufficientFundsException());
+        submissionService = newService(10, 1);
+        submissionService.start();
+
+        TransferSubmissionDto failed = awaitFinished(submissionService.submit("testuser", request()).getRequestId());
+
+        assertThat(failed.getStatus()).isEqualTo(TransferSubmissionDto.Status.FAILED);
+        assertThat(failed.getMessage()).contains("Insufficient funds");
+    }
+
+    @Test
+    void submit_foreignCardFailsWithoutTransfer() {
+        Card foreign = Card.builder().id(2L).user(User.builder().id(2L).build()).build();
+        when(cardService.getCardById(2L)).thenReturn(foreign);
+        submissionService = newService(10, 1);
+        submissionService.start();
+
+        TransferSubmissionDto failed = awaitFinished(submissionService.submit("testuser", request()).getRequestId());
+
+        assertThat(failed.getStatus()).isEqualTo(TransferSubmissionDto.Status.FAILED);
+        assertThat(failed.getMessage()).isEqualTo("Transfers allowed only between own cards");
+        verify(transferService, never()).transferBetweenCards(any(), any(), any());
+    }
+
+    @Test
+    void submit_fullQueue_throwsAndCountsRejection() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch busy = new CountDownLatch(1);
+        when(transferService.transferBetweenCards(any(), any(), any())).thenAnswer(i -> {
+            busy.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Transfer.builder().id(1L).build();
+        });
+        submissionService = newService(1, 1);
+        submissionService.start();
+
+        submissionService.submit("testuser", request());
+        assertThat(busy.await(5, TimeUnit.SECONDS)).isTrue();
+        submissionService.submit("testuser", request());
+
+        assertThatThrownBy(() -> submissionService.submit("testuser", request()))
+                .isInstanceOf(TransferQueueFullException.class);
+        assertThat(meterRegistry.get("bank.transfers.queue.rejected").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("bank.transfers.queue.depth").gauge().value()).isEqualTo(1.0);
+        release.countDown();
+    }
+
+    @Test
+    void getSubmission_otherUser_throwsNotFound() {
+        submissionService = newService(10, 1);
+        submissionService.start();
+        String requestId = submissionService.submit("testuser", request()).getRequestId();
+
+        assertThatThrownBy(() -> submissionService.getSubmission("intruder", requestId))
+                .isInstanceOf(TransferSubmissionNotFoundException.class);
+        assertThatThrownBy(() -> submissionService.getSubmission("testuser", "missing"))
+                .isInstanceOf(TransferSubmissionNotFoundException.class);
+    }
+
+    private TransferSubmissionService newService(int capacity, int workers) {
+        return new TransferSubmissionService(transferService, cardService, userService, meterRegistry,
+                capacity, workers, 1000, Duration.ofMinutes(15));
+    }
+
+    private TransferSubmissionDto awaitFinished(String requestId) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            TransferSubmissionDto submission = submissionService.getSubmission("testuser", requestId);
+            if (submission.getStatus() != TransferSubmissionDto.Status.PENDING) {
+                return submission;
+            }
+            Thread.onSpinWait();
+        }
+        throw new AssertionError("Transfer request " + requestId + " was not processed in time");
+    }
+
+    private static TransferDto request() {
+        return TransferDto.builder().fromCardId(1L).toCardId(2L).amount(BigDecimal.TEN).build();
+    }
+}